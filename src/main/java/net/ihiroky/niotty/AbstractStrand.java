@@ -0,0 +1,189 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A skeletal implementation of the dispatcher dedicated to a selection, which is shared by
+ * {@link net.ihiroky.niotty.WorkStealingEventDispatcherGroup} and
+ * {@link net.ihiroky.niotty.VirtualThreadEventDispatcherGroup}.
+ * <p>
+ * The events offered to a strand are queued in it and executed by {@link #runEvents()}
+ * in a thread at a time. The strand is submitted to the thread by {@link #submit()} when
+ * an event is offered to the empty strand. The delayed events are scheduled on the timer,
+ * which also counts the selections, and are moved to the strand when they expire.
+ * </p>
+ */
+abstract class AbstractStrand extends EventDispatcherFacade {
+
+    private final EventDispatcher timer_;
+    private final int eventsPerRun_;
+    private final Queue<Event> queue_;
+    private volatile int scheduled_;
+    private volatile Thread runner_;
+
+    private static final AtomicIntegerFieldUpdater<AbstractStrand> SCHEDULED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractStrand.class, "scheduled_");
+
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+
+    private static Logger logger_ = LoggerFactory.getLogger(AbstractStrand.class);
+
+    AbstractStrand(EventDispatcher timer, int eventsPerRun) {
+        timer_ = timer;
+        eventsPerRun_ = eventsPerRun;
+        queue_ = new ConcurrentLinkedQueue<Event>();
+        scheduled_ = FALSE;
+    }
+
+    /**
+     * Submits this strand to the thread which calls {@link #runEvents()}.
+     */
+    abstract void submit();
+
+    /**
+     * Releases this strand from the group after the last selection is rejected.
+     * @param selection the selection
+     */
+    abstract void release(EventDispatcherSelection selection);
+
+    /**
+     * Executes the events in this strand.
+     * @return true if this strand has the rest of the events and is still scheduled
+     */
+    boolean runEvents() {
+        runner_ = Thread.currentThread();
+        try {
+            for (int i = 0; i < eventsPerRun_; i++) {
+                Event event = queue_.poll();
+                if (event == null) {
+                    break;
+                }
+                dispatch(event);
+            }
+        } finally {
+            runner_ = null;
+        }
+        if (!queue_.isEmpty()) {
+            return true;
+        }
+        scheduled_ = FALSE;
+        // Re-check the event offered between the poll and the state change.
+        return !queue_.isEmpty() && SCHEDULED_UPDATER.compareAndSet(this, FALSE, TRUE);
+    }
+
+    /**
+     * Discards the events in this strand, which can't be submitted any more.
+     */
+    void discardEvents() {
+        queue_.clear();
+        scheduled_ = FALSE;
+    }
+
+    private void dispatch(Event event) {
+        try {
+            long retryDelay = event.execute();
+            if (retryDelay == Event.DONE) {
+                return;
+            }
+            if (retryDelay > 0) {
+                timer_.schedule(new Relay(this, event), retryDelay, TimeUnit.NANOSECONDS);
+            } else {
+                queue_.offer(event);
+            }
+        } catch (Exception e) {
+            logger_.warn("[dispatch] Unexpected exception.", e);
+        }
+    }
+
+    @Override
+    public void offer(Event event) {
+        queue_.offer(event);
+        if (SCHEDULED_UPDATER.compareAndSet(this, FALSE, TRUE)) {
+            submit();
+        }
+    }
+
+    @Override
+    public EventFuture schedule(Event event, long delay, TimeUnit timeUnit) {
+        Arguments.requireNonNull(event, "event");
+        Arguments.requireNonNull(timeUnit, "timeUnit");
+
+        if (delay == 0) {
+            EventFuture future = new EventFuture(System.nanoTime(), event);
+            execute(future);
+            return future;
+        }
+        return timer_.schedule(new Relay(this, event), delay, timeUnit);
+    }
+
+    @Override
+    public void execute(Event event) {
+        if (isInDispatcherThread()) {
+            dispatch(event);
+        } else {
+            offer(event);
+        }
+    }
+
+    @Override
+    public boolean isInDispatcherThread() {
+        return Thread.currentThread() == runner_;
+    }
+
+    @Override
+    public boolean isAssigned(Thread thread) {
+        return thread == runner_;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return timer_.isAlive();
+    }
+
+    @Override
+    public int reject(EventDispatcherSelection selection) {
+        int size = timer_.reject(selection);
+        if (timer_.duplicationCountFor(selection) == 0) {
+            release(selection);
+        }
+        return size;
+    }
+
+    @Override
+    public int eventQueueSize() {
+        return queue_.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Strand(timer:" + timer_ + ", runner:" + runner_ + ")";
+    }
+
+    /**
+     * Moves the delayed event from the timer to the strand.
+     */
+    private static class Relay implements Event {
+
+        private final AbstractStrand strand_;
+        private final Event event_;
+
+        Relay(AbstractStrand strand, Event event) {
+            strand_ = strand;
+            event_ = event;
+        }
+
+        @Override
+        public long execute() throws Exception {
+            strand_.offer(event_);
+            return DONE;
+        }
+    }
+}
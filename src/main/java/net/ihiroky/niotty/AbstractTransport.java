@@ -16,7 +16,7 @@ public abstract class AbstractTransport implements Transport {
 
     private final AtomicReference<Object> attachmentReference_;
     private final DefaultTransportFuture closeFuture_;
-    private final EventDispatcher dispatcher_;
+    private volatile EventDispatcher dispatcher_;
 
     /**
      * Creates a new instance.
@@ -45,6 +45,20 @@ public abstract class AbstractTransport implements Transport {
         return dispatcher_;
     }
 
+    /**
+     * Changes the instance of the {@link net.ihiroky.niotty.EventDispatcher} which handles the I/O requests.
+     * The stages in the pipeline are not changed by this method.
+     *
+     * @param eventDispatcher the new EventDispatcher
+     */
+    protected void changeEventDispatcher(EventDispatcher eventDispatcher) {
+        Arguments.requireNonNull(eventDispatcher, "eventDispatcher");
+        EventDispatcher old = dispatcher_;
+        eventDispatcher.accept(this);
+        dispatcher_ = eventDispatcher;
+        old.reject(this);
+    }
+
     @Override
     public DefaultTransportFuture closeFuture() {
         return closeFuture_;
@@ -1,5 +1,7 @@
 package net.ihiroky.niotty;
 
+import net.ihiroky.niotty.util.Arguments;
+
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.LockSupport;
 
@@ -7,10 +9,17 @@ import java.util.concurrent.locks.LockSupport;
  * A implementation of {@link net.ihiroky.niotty.EventDispatcher} which depends on
  * {@link java.util.concurrent.locks.LockSupport#parkNanos(Object, long)} and
  * {@link java.util.concurrent.locks.LockSupport#unpark(Thread)} )}.
+ * <p>
+ * The way to wait for a new event is determined by {@link net.ihiroky.niotty.WaitStrategy}.
+ * The dispatcher thread is unparked only if it is parked actually.
+ * </p>
  */
 public class DefaultEventDispatcher extends EventDispatcher {
 
     private volatile int signaled_;
+    private volatile int parked_;
+    private final WaitStrategy waitStrategy_;
+    private final WaitStrategy.Waiter waiter_;
 
     private static final AtomicIntegerFieldUpdater<DefaultEventDispatcher> SIGNALED_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(DefaultEventDispatcher.class, "signaled_");
@@ -25,8 +34,48 @@ public class DefaultEventDispatcher extends EventDispatcher {
      *                           less than or equal 0 to use unbounded queue
      */
     public DefaultEventDispatcher(int eventQueueCapacity) {
-        super(eventQueueCapacity);
+        this(eventQueueCapacity, TimerQueues.priorityQueue().newTimerQueue(), WaitStrategies.blocking());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param eventQueueCapacity the capacity of the event queue to buffer events;
+     *                           less than or equal 0 to use unbounded queue
+     * @param timerQueue the queue to hold the events scheduled with delay
+     */
+    public DefaultEventDispatcher(int eventQueueCapacity, TimerQueue timerQueue) {
+        this(eventQueueCapacity, timerQueue, WaitStrategies.blocking());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param eventQueueCapacity the capacity of the event queue to buffer events;
+     *                           less than or equal 0 to use unbounded queue
+     * @param timerQueue the queue to hold the events scheduled with delay
+     * @param waitStrategy the strategy to wait for a new event
+     */
+    public DefaultEventDispatcher(int eventQueueCapacity, TimerQueue timerQueue, WaitStrategy waitStrategy) {
+        super(eventQueueCapacity, timerQueue);
         signaled_ = FALSE;
+        parked_ = FALSE;
+        waitStrategy_ = Arguments.requireNonNull(waitStrategy, "waitStrategy");
+        waiter_ = new WaitStrategy.Waiter() {
+            @Override
+            public boolean isSignaled() {
+                return signaled_ == TRUE;
+            }
+
+            @Override
+            public void block(long timeoutNanos) {
+                parked_ = TRUE;
+                if (signaled_ == FALSE) {
+                    LockSupport.parkNanos(DefaultEventDispatcher.this, timeoutNanos);
+                }
+                parked_ = FALSE;
+            }
+        };
     }
 
     @Override
@@ -39,22 +88,13 @@ public class DefaultEventDispatcher extends EventDispatcher {
 
     @Override
     protected void poll(long timeoutNanos) throws InterruptedException {
-        long start = System.nanoTime();
-        while (signaled_ == FALSE && timeoutNanos > 0L) {
-            LockSupport.parkNanos(this, timeoutNanos);
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            long now = System.nanoTime();
-            timeoutNanos -= now - start;
-            start = now;
-        }
+        waitStrategy_.await(waiter_, timeoutNanos);
         signaled_ = FALSE;
     }
 
     @Override
     protected void wakeUp() {
-        if (SIGNALED_UPDATER.compareAndSet(this, FALSE, TRUE)) {
+        if (SIGNALED_UPDATER.compareAndSet(this, FALSE, TRUE) && parked_ == TRUE) {
             LockSupport.unpark(thread());
         }
     }
@@ -1,5 +1,7 @@
 package net.ihiroky.niotty;
 
+import net.ihiroky.niotty.util.Arguments;
+
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
@@ -14,14 +16,19 @@ public final class DefaultEventDispatcherGroup extends EventDispatcherGroup {
     private static class DefaultEventDispatcherFactory implements EventDispatcherFactory<DefaultEventDispatcher> {
 
         private int eventQueueSize_;
+        private TimerQueueFactory timerQueueFactory_;
+        private WaitStrategy waitStrategy_;
 
-        DefaultEventDispatcherFactory(int eventQueueSize) {
+        DefaultEventDispatcherFactory(
+                int eventQueueSize, TimerQueueFactory timerQueueFactory, WaitStrategy waitStrategy) {
             eventQueueSize_ = eventQueueSize;
+            timerQueueFactory_ = Arguments.requireNonNull(timerQueueFactory, "timerQueueFactory");
+            waitStrategy_ = Arguments.requireNonNull(waitStrategy, "waitStrategy");
         }
 
         @Override
         public DefaultEventDispatcher newEventDispatcher() {
-            return new DefaultEventDispatcher(eventQueueSize_);
+            return new DefaultEventDispatcher(eventQueueSize_, timerQueueFactory_.newTimerQueue(), waitStrategy_);
         }
     };
 
@@ -58,6 +65,54 @@ public final class DefaultEventDispatcherGroup extends EventDispatcherGroup {
      *                           zero or negative if the queue has no limit
      */
     public DefaultEventDispatcherGroup(int workers, ThreadFactory threadFactory, int eventQueueCapacity) {
-        super(workers, threadFactory, new DefaultEventDispatcherFactory(eventQueueCapacity));
+        this(workers, threadFactory, eventQueueCapacity, TimerQueues.priorityQueue());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     * @param threadFactory a factory to create thread which runs a event dispatcher
+     * @param eventQueueCapacity the capacity of the event queue used by {@code DefaultEventDispatcher},
+     *                           zero or negative if the queue has no limit
+     * @param timerQueueFactory a factory to create the timer queue used by {@code DefaultEventDispatcher}
+     */
+    public DefaultEventDispatcherGroup(int workers, ThreadFactory threadFactory, int eventQueueCapacity,
+            TimerQueueFactory timerQueueFactory) {
+        this(workers, threadFactory, eventQueueCapacity, timerQueueFactory, WaitStrategies.blocking());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * An invocation of this constructor behaves in exactly the same way as the invocation
+     * <code>DefaultEventDispatcherGroup(workers, threadFactory, eventQueueCapacity,
+     * TimerQueues.priorityQueue(), waitStrategy)</code>.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     * @param threadFactory a factory to create thread which runs a event dispatcher
+     * @param eventQueueCapacity the capacity of the event queue used by {@code DefaultEventDispatcher},
+     *                           zero or negative if the queue has no limit
+     * @param waitStrategy a strategy to wait for a new event, used by {@code DefaultEventDispatcher}
+     */
+    public DefaultEventDispatcherGroup(int workers, ThreadFactory threadFactory, int eventQueueCapacity,
+            WaitStrategy waitStrategy) {
+        this(workers, threadFactory, eventQueueCapacity, TimerQueues.priorityQueue(), waitStrategy);
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     * @param threadFactory a factory to create thread which runs a event dispatcher
+     * @param eventQueueCapacity the capacity of the event queue used by {@code DefaultEventDispatcher},
+     *                           zero or negative if the queue has no limit
+     * @param timerQueueFactory a factory to create the timer queue used by {@code DefaultEventDispatcher}
+     * @param waitStrategy a strategy to wait for a new event, used by {@code DefaultEventDispatcher}
+     */
+    public DefaultEventDispatcherGroup(int workers, ThreadFactory threadFactory, int eventQueueCapacity,
+            TimerQueueFactory timerQueueFactory, WaitStrategy waitStrategy) {
+        super(workers, threadFactory,
+                new DefaultEventDispatcherFactory(eventQueueCapacity, timerQueueFactory, waitStrategy));
     }
 }
@@ -321,6 +321,27 @@ public class DefaultPipeline implements Pipeline {
         }
     }
 
+    /**
+     * Changes the dispatcher of the stages which are executed by {@code oldDispatcher}
+     * to {@code newDispatcher}. The stages executed by the other dispatchers are not changed.
+     * The caller must ensure that no stage executed by {@code oldDispatcher} is running.
+     *
+     * @param oldDispatcher the current dispatcher
+     * @param newDispatcher the new dispatcher
+     * @return the number of the stages whose dispatcher is changed
+     */
+    public int changeEventDispatcher(EventDispatcher oldDispatcher, EventDispatcher newDispatcher) {
+        Arguments.requireNonNull(oldDispatcher, "oldDispatcher");
+        Arguments.requireNonNull(newDispatcher, "newDispatcher");
+        int changed = 0;
+        for (PipelineElement ctx = head_.next(); ctx.isValid(); ctx = ctx.next()) {
+            if (ctx.changeEventDispatcher(oldDispatcher, newDispatcher)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
     @Override
     public void store(Object message) {
         head_.next().callStore(message, null);
@@ -336,6 +357,16 @@ public class DefaultPipeline implements Pipeline {
         tail_.callLoad(message, parameter);
     }
 
+    /**
+     * Calls a message load chain with a message other than {@link net.ihiroky.niotty.buffer.CodecBuffer},
+     * like {@link net.ihiroky.niotty.nio.DatagramBatch}, and a parameter in this pipeline.
+     * @param message the message
+     * @param parameter the parameter
+     */
+    public void loadMessage(Object message, Object parameter) {
+        tail_.callLoad(message, parameter);
+    }
+
     @Override
     public void activate() {
         tail_.callActivated();
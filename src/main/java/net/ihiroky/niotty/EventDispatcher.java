@@ -2,16 +2,18 @@ package net.ihiroky.niotty;
 
 import net.ihiroky.niotty.util.Arguments;
 import net.ihiroky.niotty.util.MPSCArrayQueue;
+import net.ihiroky.niotty.util.MPSCLinkedArrayQueue;
+import net.ihiroky.niotty.util.MPSCQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,38 +31,97 @@ import java.util.concurrent.TimeUnit;
  * is used to register a event to the timer. If a event returns a positive value, the event is
  * registered to the timer implicitly to be processed after the returned value. If returns
  * zero, the event is inserted to the event queue to processed again immediately.
+ * The timer is implemented by {@link TimerQueue}, which is specified by the constructor.
  * </p>
  * <p>
  * This class holds a set of {@link EventDispatcherSelection}. The selection shows
  * a object which is associated with this event dispatcher. The number of selections can be used
  * to control the balancing of the association.
  * </p>
+ * <p>
+ * This class counts the number of the processed events and the time spent on the events and I/O,
+ * which are sampled by {@link net.ihiroky.niotty.EventDispatcherLoad} to measure the load.
+ * More detailed metrics, including the histograms of the queue wait and the execution time of
+ * the events, are collected if enabled by {@link #setMetricsEnabled(boolean)}.
+ * </p>
  */
 public abstract class EventDispatcher implements Runnable, Comparable<EventDispatcher> {
 
-    private final Queue<Event> eventQueue_;
-    private final Queue<EventFuture> delayQueue_;
+    private final MPSCQueue<Event> eventQueue_;
+    private final TimerQueue delayQueue_;
+    private final int maxEventsPerLoop_;
+    private final int ioRatio_;
     private volatile Thread thread_;
     private final Map<EventDispatcherSelection, Integer> selectionCountMap_;
+    private long processedEventCount_;
+    private volatile long eventCount_;
+    private volatile long busyTimeNanos_;
+    private volatile EventDispatcherMetrics metrics_;
 
     private Logger logger_ = LoggerFactory.getLogger(EventDispatcher.class);
 
     private static final int INITIAL_EVENT_BUFFER_SIZE = 1024;
-    private static final int INITIAL_DELAY_QUEUE_SIZE = 1024;
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    /** The I/O ratio to process all events in the event queue regardless of the time spent on I/O. */
+    public static final int MAX_IO_RATIO = 100;
 
     /**
      * Creates a new instance.
      * An invocation of this constructor behaves in exactly the same way as the invocation
-     * {@code EventDispatcher(0)}.
+     * {@code EventDispatcher(eventQueueCapacity, TimerQueues.priorityQueue().newTimerQueue())}.
      *
      * @param eventQueueCapacity a size of the event queue to buffer events;
      *                           less than or equal 0 to use unbounded queue
      */
     protected EventDispatcher(int eventQueueCapacity) {
-        eventQueue_ =  (eventQueueCapacity <= 0)
-                ? new ConcurrentLinkedQueue<Event>()
-                : new MPSCArrayQueue<Event>(eventQueueCapacity);
-        delayQueue_ = new PriorityQueue<EventFuture>(INITIAL_DELAY_QUEUE_SIZE);
+        this(eventQueueCapacity, TimerQueues.priorityQueue().newTimerQueue());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param eventQueueCapacity a size of the event queue to buffer events;
+     *                           less than or equal 0 to use unbounded queue
+     * @param timerQueue a queue to hold the events scheduled with delay
+     */
+    protected EventDispatcher(int eventQueueCapacity, TimerQueue timerQueue) {
+        this(eventQueueCapacity, timerQueue, 0, MAX_IO_RATIO);
+    }
+
+    /**
+     * Creates a new instance.
+     * <p>
+     * The number of events processed in an iteration of the dispatcher loop is limited by
+     * {@code maxEventsPerLoop}. If {@code ioRatio} is less than {@link #MAX_IO_RATIO}, the time
+     * to process the events is also limited to keep the ratio of the time spent on I/O,
+     * which is given by {@link #ioTimeNanos()}, to the time spent on the events.
+     * The events left in the event queue are processed in the next iteration.
+     * </p>
+     *
+     * @param eventQueueCapacity a size of the event queue to buffer events;
+     *                           less than or equal 0 to use unbounded queue
+     * @param timerQueue a queue to hold the events scheduled with delay
+     * @param maxEventsPerLoop the maximum number of the events processed in an iteration;
+     *                         less than or equal 0 if unlimited
+     * @param ioRatio the percentage of the time spent on I/O in an iteration, in [1, 100]
+     */
+    protected EventDispatcher(int eventQueueCapacity, TimerQueue timerQueue, int maxEventsPerLoop, int ioRatio) {
+        this((eventQueueCapacity <= 0)
+                ? new MPSCLinkedArrayQueue<Event>()
+                : new MPSCArrayQueue<Event>(eventQueueCapacity),
+                Arguments.requireNonNull(timerQueue, "timerQueue"), maxEventsPerLoop, ioRatio);
+    }
+
+    /**
+     * Creates a new instance with the specified queues. {@link EventDispatcherFacade} passes null
+     * as the queues, and overrides the methods which use them.
+     */
+    EventDispatcher(MPSCQueue<Event> eventQueue, TimerQueue timerQueue, int maxEventsPerLoop, int ioRatio) {
+        eventQueue_ = eventQueue;
+        delayQueue_ = timerQueue;
+        maxEventsPerLoop_ = (maxEventsPerLoop > 0) ? maxEventsPerLoop : Integer.MAX_VALUE;
+        ioRatio_ = Arguments.requireInRange(ioRatio, "ioRatio", 1, MAX_IO_RATIO);
         selectionCountMap_ = new HashMap<EventDispatcherSelection, Integer>();
     }
 
@@ -89,10 +150,14 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
      * @throws NullPointerException the event is null
      */
     public void offer(Event event) {
-        eventQueue_.offer(event);
+        eventQueue_.offer(timed(event));
         wakeUp();
     }
 
+    private Event timed(Event event) {
+        return (metrics_ != null) ? new TimedEvent(Arguments.requireNonNull(event, "event")) : event;
+    }
+
     /**
      * If a caller is executed in the dispatcher thread, run the event immediately.
      * Otherwise, inserts the event to the event queue.
@@ -171,7 +236,7 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
                 logger_.warn("[execute] Unexpected exception.", e);
             }
         } else {
-            eventQueue_.offer(event);
+            eventQueue_.offer(timed(event));
             wakeUp();
         }
     }
@@ -195,8 +260,9 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
      */
     public void run() {
         Deque<Event> eventBuffer = new ArrayDeque<Event>(INITIAL_EVENT_BUFFER_SIZE);
-        Queue<Event> eventQueue = eventQueue_;
-        Queue<EventFuture> delayQueue = delayQueue_;
+        MPSCQueue<Event> eventQueue = eventQueue_;
+        TimerQueue delayQueue = delayQueue_;
+        EventDrainer eventDrainer = new EventDrainer(eventBuffer, delayQueue);
         try {
             synchronized (this) {
                 thread_ = Thread.currentThread();
@@ -207,9 +273,21 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
             long delayNanos = Long.MAX_VALUE;
             while (thread_ != null) {
                 try {
+                    EventDispatcherMetrics metrics = metrics_;
+                    long pollStart = (metrics != null) ? System.nanoTime() : 0L;
                     poll(eventQueue.isEmpty() ? delayNanos : Event.RETRY_IMMEDIATELY);
-                    processEvents(eventQueue, eventBuffer, delayQueue);
+                    long polled = System.nanoTime();
+                    eventDrainer.metrics_ = metrics;
+                    processEvents(eventQueue, eventDrainer, eventDeadline());
+                    long processed = (metrics != null) ? System.nanoTime() : 0L;
                     delayNanos = processDelayedEvent(eventQueue, delayQueue);
+                    onLoopEnd();
+                    long now = System.nanoTime();
+                    busyTimeNanos_ += now - polled + ioTimeNanos();
+                    eventCount_ = processedEventCount_;
+                    if (metrics != null) {
+                        metrics.recordLoop(polled - pollStart, processed - polled, now - processed, delayQueue.size());
+                    }
                 } catch (InterruptedException ie) {
                     logger_.debug("[run] Interrupted.", ie);
                     break;
@@ -232,46 +310,129 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
         }
     }
 
-    private void processEvents(
-            Queue<Event> eventQueue, Deque<Event> buffer, Queue<EventFuture> delayQueue) throws Exception {
-        Event event;
-        for (;;) {
-            event = eventQueue.poll();
-            if (event == null) {
+    private long eventDeadline() {
+        if (ioRatio_ == MAX_IO_RATIO) {
+            return Long.MAX_VALUE;
+        }
+        long ioTime = ioTimeNanos();
+        if (ioTime <= 0L) {
+            return Long.MAX_VALUE;
+        }
+        return System.nanoTime() + ioTime * (MAX_IO_RATIO - ioRatio_) / ioRatio_;
+    }
+
+    private void processEvents(MPSCQueue<Event> eventQueue, EventDrainer drainer, long deadline) throws Exception {
+        int remaining = maxEventsPerLoop_;
+        while (remaining > 0) {
+            int limit = Math.min(remaining, DEADLINE_CHECK_INTERVAL);
+            int drained = eventQueue.drain(drainer, limit);
+            drainer.throwIfFailed();
+            if (drained < limit
+                    || (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline)) {
                 break;
             }
-            long retryDelay = event.execute();
+            remaining -= drained;
+        }
+    }
+
+    /**
+     * Executes the events drained from the event queue. An exception thrown by an event stops
+     * the drain, and is rethrown by {@link #throwIfFailed()}.
+     */
+    private class EventDrainer implements MPSCQueue.Consumer<Event> {
+
+        private final Deque<Event> buffer_;
+        private final TimerQueue delayQueue_;
+        private Exception exception_;
+        EventDispatcherMetrics metrics_;
+
+        EventDrainer(Deque<Event> buffer, TimerQueue delayQueue) {
+            buffer_ = buffer;
+            delayQueue_ = delayQueue;
+        }
+
+        @Override
+        public boolean accept(Event event) {
+            processedEventCount_++;
+            EventDispatcherMetrics metrics = metrics_;
+            long start = (metrics != null) ? System.nanoTime() : 0L;
+            if (event instanceof TimedEvent) {
+                TimedEvent timedEvent = (TimedEvent) event;
+                event = timedEvent.event_;
+                if (metrics != null) {
+                    metrics.recordQueueWait(start - timedEvent.offeredNanos_);
+                }
+            }
+            long retryDelay;
+            try {
+                retryDelay = event.execute();
+            } catch (Exception e) {
+                exception_ = e;
+                return false;
+            } finally {
+                if (metrics != null) {
+                    metrics.recordExecution(System.nanoTime() - start);
+                }
+            }
             if (retryDelay == Event.DONE) {
-                continue;
+                return true;
             }
             if (retryDelay > 0) {
                 long expire = System.nanoTime() + retryDelay;
                 if (expire < 0) {
                     logger_.warn("[processEvent] The expire for {} is overflowed. Skip to schedule.", event);
-                    continue;
+                    return true;
                 }
-                delayQueue.offer(eventFuture(event, expire));
+                delayQueue_.offer(eventFuture(event, expire));
             } else {
-                buffer.offerLast(event);
+                buffer_.offerLast(event);
+            }
+            return true;
+        }
+
+        void throwIfFailed() throws Exception {
+            Exception e = exception_;
+            if (e != null) {
+                exception_ = null;
+                throw e;
             }
         }
     }
 
-    private long processDelayedEvent(Queue<Event> eventQueue, Queue<EventFuture> delayQueue) throws Exception {
+    /**
+     * Holds the time when the event is offered, to measure the queue wait.
+     */
+    private static final class TimedEvent implements Event {
+
+        final Event event_;
+        final long offeredNanos_;
+
+        TimedEvent(Event event) {
+            event_ = event;
+            offeredNanos_ = System.nanoTime();
+        }
+
+        @Override
+        public long execute() throws Exception {
+            return event_.execute();
+        }
+
+        @Override
+        public String toString() {
+            return event_.toString();
+        }
+    }
+
+    private long processDelayedEvent(Queue<Event> eventQueue, TimerQueue delayQueue) throws Exception {
         long now = System.nanoTime();
         EventFuture f;
-        for (;;) {
-            f = delayQueue.peek();
-            if (f == null || f.expire() > now) {
-                break;
-            }
+        while ((f = delayQueue.poll(now)) != null) {
             if (!f.readyToDispatch()) {
-                delayQueue.poll();
                 continue;
             }
+            processedEventCount_++;
 
             try {
-                delayQueue.poll();
                 long waitTimeNanos = f.event_.execute();
                 if (waitTimeNanos == Event.DONE) {
                     f.dispatched();
@@ -293,11 +454,7 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
                 logger_.warn("[execute] Unexpected exception.", ex);
             }
         }
-        while (f != null && f.isCancelled()) {
-            delayQueue.poll();
-            f = delayQueue.peek();
-        }
-        return (f != null) ? f.expire() - now : Long.MAX_VALUE;
+        return delayQueue.nextDelayNanos(now);
     }
 
     /**
@@ -331,6 +488,69 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
         return (thread_ != null) ? thread_.toString() : super.toString();
     }
 
+    /**
+     * Returns the total number of the events processed by this dispatcher.
+     * The value is updated at the end of each iteration of the dispatcher loop.
+     * @return the total number of the processed events
+     */
+    public long eventCount() {
+        return eventCount_;
+    }
+
+    /**
+     * Returns the total time spent on the events and I/O by nanoseconds, except the time to wait.
+     * The value is updated at the end of each iteration of the dispatcher loop.
+     * @return the total time spent on the events and I/O
+     */
+    public long busyTimeNanos() {
+        return busyTimeNanos_;
+    }
+
+    /**
+     * Returns the number of the events in the event queue. This method may need to traverse
+     * the queue, so that it is not suitable to be called frequently.
+     * @return the number of the events in the event queue
+     */
+    public int eventQueueSize() {
+        return eventQueue_.size();
+    }
+
+    /**
+     * Enables or disables the metrics of this dispatcher. The metrics are reset if enabled
+     * after disabled. If enabled, an object is allocated to hold the offered time for each
+     * event offered from the other threads.
+     * <p>
+     * The sub classes which override {@link #offer(Event)} and {@link #execute(Event)} may not
+     * record the histograms in the metrics.
+     * </p>
+     * @param enabled true if the metrics is enabled
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (!enabled) {
+            metrics_ = null;
+        } else if (metrics_ == null) {
+            metrics_ = new EventDispatcherMetrics();
+        }
+    }
+
+    /**
+     * Returns the metrics of this dispatcher.
+     * @return the metrics, or null if the metrics is disabled
+     */
+    public EventDispatcherMetrics metrics() {
+        return metrics_;
+    }
+
+    /**
+     * Returns a snapshot of the selections associated with this dispatcher.
+     * @return a snapshot of the selections
+     */
+    public List<EventDispatcherSelection> selections() {
+        synchronized (selectionCountMap_) {
+            return new ArrayList<EventDispatcherSelection>(selectionCountMap_.keySet());
+        }
+    }
+
     @Override
     public int compareTo(EventDispatcher that) {
         return selectionCount() - that.selectionCount();
@@ -431,6 +651,27 @@ public abstract class EventDispatcher implements Runnable, Comparable<EventDispa
      */
     protected abstract void poll(long timeoutNanos) throws Exception;
 
+    /**
+     * Returns the time spent on I/O in the last {@link #poll(long)}, except the time to wait for I/O.
+     * This value is used to limit the time to process the events if the I/O ratio is specified.
+     * The default implementation returns zero, which means that no I/O is processed.
+     *
+     * @return the time spent on I/O by nanoseconds
+     */
+    protected long ioTimeNanos() {
+        return 0L;
+    }
+
+    /**
+     * This method is called at the end of each iteration of the dispatcher loop,
+     * after the events in the event queue and the timer are processed.
+     * The default implementation does nothing.
+     *
+     * @throws Exception if some error occurs
+     */
+    protected void onLoopEnd() throws Exception {
+    }
+
     /**
      * This method is called when a new event is inserted to the event queue.
      * The implementation is required to wake up the thread executing
@@ -0,0 +1,66 @@
+package net.ihiroky.niotty;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A skeletal implementation of {@link net.ihiroky.niotty.EventDispatcher} which hands the events
+ * to the other dispatcher or thread, like a strand of {@link net.ihiroky.niotty.WorkStealingEventDispatcherGroup}.
+ * <p>
+ * This class has neither the event queue nor the timer, so the instance costs little even if
+ * it is created for each transport. The sub class implements {@link #offer(Event)},
+ * {@link #execute(Event)} and {@link #schedule(Event, long, java.util.concurrent.TimeUnit)}
+ * to hand the events to the thread which executes them. This class is never run
+ * by a thread of {@link net.ihiroky.niotty.EventDispatcherGroup}.
+ * </p>
+ */
+public abstract class EventDispatcherFacade extends EventDispatcher {
+
+    /**
+     * Creates a new instance.
+     */
+    protected EventDispatcherFacade() {
+        super(null, null, 0, MAX_IO_RATIO);
+    }
+
+    @Override
+    public abstract void offer(Event event);
+
+    @Override
+    public abstract void execute(Event event);
+
+    @Override
+    public abstract EventFuture schedule(Event event, long delay, TimeUnit timeUnit);
+
+    /**
+     * Returns 0. The sub class which holds the events overrides this method.
+     * @return 0
+     */
+    @Override
+    public int eventQueueSize() {
+        return 0;
+    }
+
+    /**
+     * Throws {@code UnsupportedOperationException}; the facade has no loop to run.
+     */
+    @Override
+    public void run() {
+        throw new UnsupportedOperationException("The facade is not run by a thread.");
+    }
+
+    @Override
+    protected void onOpen() {
+    }
+
+    @Override
+    protected void onClose() {
+    }
+
+    @Override
+    protected void poll(long timeoutNanos) throws Exception {
+    }
+
+    @Override
+    protected void wakeUp() {
+    }
+}
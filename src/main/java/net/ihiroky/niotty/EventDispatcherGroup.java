@@ -21,6 +21,7 @@ public class EventDispatcherGroup implements Closable {
     private final ThreadFactory threadFactory_;
     private final EventDispatcherFactory eventDispatcherFactory_;
     private final int workers_;
+    private volatile boolean metricsEnabled_;
     private Logger logger_ = LoggerFactory.getLogger(EventDispatcherGroup.class);
 
     /**
@@ -60,6 +61,7 @@ public class EventDispatcherGroup implements Closable {
             newEventDispatcherList = new ArrayList<EventDispatcher>(n);
             for (int i = 0; i < n; i++) {
                 EventDispatcher newEventDispatcher = eventDispatcherFactory_.newEventDispatcher();
+                newEventDispatcher.setMetricsEnabled(metricsEnabled_);
                 Thread thread = threadFactory_.newThread(newEventDispatcher);
                 thread.start();
                 eventDispatchers_.add(newEventDispatcher);
@@ -103,6 +105,39 @@ public class EventDispatcherGroup implements Closable {
         }
     }
 
+    /**
+     * Returns a snapshot of the event dispatchers in this group.
+     * @return a snapshot of the event dispatchers
+     */
+    public List<EventDispatcher> eventDispatchers() {
+        synchronized (eventDispatchers_) {
+            return new ArrayList<EventDispatcher>(eventDispatchers_);
+        }
+    }
+
+    /**
+     * Enables or disables the metrics of the event dispatchers in this group, including
+     * the event dispatchers created later.
+     * @param enabled true if the metrics is enabled
+     * @see EventDispatcher#setMetricsEnabled(boolean)
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        synchronized (eventDispatchers_) {
+            metricsEnabled_ = enabled;
+            for (EventDispatcher dispatcher : eventDispatchers_) {
+                dispatcher.setMetricsEnabled(enabled);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the metrics of the event dispatchers in this group is enabled.
+     * @return true if the metrics is enabled
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled_;
+    }
+
     /**
      * Offers a event for each event dispatcher.
      * @param event the event to be executed in the event dispatchers
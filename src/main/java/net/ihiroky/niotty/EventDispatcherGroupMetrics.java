@@ -0,0 +1,263 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exposes the metrics of an {@link net.ihiroky.niotty.EventDispatcherGroup} as an MXBean.
+ * <p>
+ * {@link #register(String)} enables the metrics of the group and registers this object to
+ * the platform MBean server with the name
+ * {@code net.ihiroky.niotty:type=EventDispatcherGroup,name=<name>}.
+ * {@link #unregister()} unregisters this object and disables the metrics.
+ * Each attribute is aggregated over the current event dispatchers in the group when it is read.
+ * </p>
+ */
+public class EventDispatcherGroupMetrics implements EventDispatcherGroupMetricsMXBean {
+
+    private final EventDispatcherGroup eventDispatcherGroup_;
+    private ObjectName objectName_;
+
+    private static final String DOMAIN = "net.ihiroky.niotty";
+
+    /**
+     * Creates a new instance.
+     * @param eventDispatcherGroup the group to be exposed
+     */
+    public EventDispatcherGroupMetrics(EventDispatcherGroup eventDispatcherGroup) {
+        eventDispatcherGroup_ = Arguments.requireNonNull(eventDispatcherGroup, "eventDispatcherGroup");
+    }
+
+    /**
+     * Enables the metrics of the group and registers this object to the platform MBean server.
+     * @param name the name of the group in the object name
+     * @return the object name
+     * @throws JMException if failed to register this object
+     * @throws IllegalStateException if this object is already registered
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        Arguments.requireNonNull(name, "name");
+        if (objectName_ != null) {
+            throw new IllegalStateException(objectName_ + " is already registered.");
+        }
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=EventDispatcherGroup,name=" + ObjectName.quote(name));
+        eventDispatcherGroup_.setMetricsEnabled(true);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        objectName_ = objectName;
+        return objectName;
+    }
+
+    /**
+     * Unregisters this object from the platform MBean server and disables the metrics of the group.
+     * This method does nothing if this object is not registered.
+     * @throws JMException if failed to unregister this object
+     */
+    public synchronized void unregister() throws JMException {
+        ObjectName objectName = objectName_;
+        if (objectName == null) {
+            return;
+        }
+        objectName_ = null;
+        eventDispatcherGroup_.setMetricsEnabled(false);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    /**
+     * Returns the object name if this object is registered.
+     * @return the object name, or null if not registered
+     */
+    public synchronized ObjectName objectName() {
+        return objectName_;
+    }
+
+    private LatencyHistogram queueWaitHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                histogram.add(metrics.queueWaitHistogram());
+            }
+        }
+        return histogram;
+    }
+
+    private LatencyHistogram executionHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                histogram.add(metrics.executionHistogram());
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return eventDispatcherGroup_.isMetricsEnabled();
+    }
+
+    @Override
+    public void setMetricsEnabled(boolean enabled) {
+        eventDispatcherGroup_.setMetricsEnabled(enabled);
+    }
+
+    @Override
+    public int getEventDispatcherCount() {
+        return eventDispatcherGroup_.eventDispatchers().size();
+    }
+
+    @Override
+    public long getEventCount() {
+        long sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            sum += eventDispatcher.eventCount();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getBusyTimeNanos() {
+        long sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            sum += eventDispatcher.busyTimeNanos();
+        }
+        return sum;
+    }
+
+    @Override
+    public int getEventQueueSize() {
+        int sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            sum += eventDispatcher.eventQueueSize();
+        }
+        return sum;
+    }
+
+    @Override
+    public int getDelayQueueSize() {
+        int sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                sum += metrics.delayQueueSize();
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long getLoopCount() {
+        long sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                sum += metrics.loopCount();
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long getPollTimeNanos() {
+        long sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                sum += metrics.pollTimeNanos();
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long getEventTimeNanos() {
+        long sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                sum += metrics.eventTimeNanos();
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long getDelayedEventTimeNanos() {
+        long sum = 0;
+        for (EventDispatcher eventDispatcher : eventDispatcherGroup_.eventDispatchers()) {
+            EventDispatcherMetrics metrics = eventDispatcher.metrics();
+            if (metrics != null) {
+                sum += metrics.delayedEventTimeNanos();
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long getQueueWaitCount() {
+        return queueWaitHistogram().count();
+    }
+
+    @Override
+    public double getQueueWaitMeanNanos() {
+        return queueWaitHistogram().mean();
+    }
+
+    @Override
+    public long getQueueWaitP50Nanos() {
+        return queueWaitHistogram().valueAtPercentile(50d);
+    }
+
+    @Override
+    public long getQueueWaitP99Nanos() {
+        return queueWaitHistogram().valueAtPercentile(99d);
+    }
+
+    @Override
+    public long getQueueWaitP999Nanos() {
+        return queueWaitHistogram().valueAtPercentile(99.9d);
+    }
+
+    @Override
+    public long getQueueWaitMaxNanos() {
+        return queueWaitHistogram().max();
+    }
+
+    @Override
+    public long getExecutionCount() {
+        return executionHistogram().count();
+    }
+
+    @Override
+    public double getExecutionMeanNanos() {
+        return executionHistogram().mean();
+    }
+
+    @Override
+    public long getExecutionP50Nanos() {
+        return executionHistogram().valueAtPercentile(50d);
+    }
+
+    @Override
+    public long getExecutionP99Nanos() {
+        return executionHistogram().valueAtPercentile(99d);
+    }
+
+    @Override
+    public long getExecutionP999Nanos() {
+        return executionHistogram().valueAtPercentile(99.9d);
+    }
+
+    @Override
+    public long getExecutionMaxNanos() {
+        return executionHistogram().max();
+    }
+}
@@ -0,0 +1,39 @@
+package net.ihiroky.niotty;
+
+/**
+ * The management interface of the metrics of an {@link net.ihiroky.niotty.EventDispatcherGroup}.
+ * The values are aggregated over the event dispatchers in the group. The time is
+ * by nanoseconds.
+ *
+ * @see net.ihiroky.niotty.EventDispatcherGroupMetrics
+ */
+public interface EventDispatcherGroupMetricsMXBean {
+
+    boolean isMetricsEnabled();
+    void setMetricsEnabled(boolean enabled);
+
+    int getEventDispatcherCount();
+    long getEventCount();
+    long getBusyTimeNanos();
+    int getEventQueueSize();
+    int getDelayQueueSize();
+
+    long getLoopCount();
+    long getPollTimeNanos();
+    long getEventTimeNanos();
+    long getDelayedEventTimeNanos();
+
+    long getQueueWaitCount();
+    double getQueueWaitMeanNanos();
+    long getQueueWaitP50Nanos();
+    long getQueueWaitP99Nanos();
+    long getQueueWaitP999Nanos();
+    long getQueueWaitMaxNanos();
+
+    long getExecutionCount();
+    double getExecutionMeanNanos();
+    long getExecutionP50Nanos();
+    long getExecutionP99Nanos();
+    long getExecutionP999Nanos();
+    long getExecutionMaxNanos();
+}
@@ -0,0 +1,96 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the load of a {@link net.ihiroky.niotty.EventDispatcher}.
+ * <p>
+ * {@link #update()} samples the counters of the dispatcher and calculates the events per second
+ * and the ratio of the busy time to the elapsed time since the last update. The first update
+ * calculates them since this object is created. This class is not thread safe.
+ * </p>
+ */
+public final class EventDispatcherLoad {
+
+    private final EventDispatcher eventDispatcher_;
+    private long lastTime_;
+    private long lastEventCount_;
+    private long lastBusyTimeNanos_;
+    private double eventsPerSecond_;
+    private double busyRatio_;
+    private int queueDepth_;
+
+    /**
+     * Creates a new instance.
+     * @param eventDispatcher the dispatcher to be measured
+     */
+    public EventDispatcherLoad(EventDispatcher eventDispatcher) {
+        eventDispatcher_ = Arguments.requireNonNull(eventDispatcher, "eventDispatcher");
+        lastTime_ = System.nanoTime();
+        lastEventCount_ = eventDispatcher.eventCount();
+        lastBusyTimeNanos_ = eventDispatcher.busyTimeNanos();
+    }
+
+    /**
+     * Samples the counters of the dispatcher and updates the load.
+     * @return this object
+     */
+    public EventDispatcherLoad update() {
+        return update(System.nanoTime());
+    }
+
+    EventDispatcherLoad update(long now) {
+        long eventCount = eventDispatcher_.eventCount();
+        long busyTimeNanos = eventDispatcher_.busyTimeNanos();
+        long elapsed = now - lastTime_;
+        if (elapsed > 0) {
+            eventsPerSecond_ = (double) (eventCount - lastEventCount_) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+            busyRatio_ = Math.min((double) (busyTimeNanos - lastBusyTimeNanos_) / elapsed, 1d);
+        }
+        queueDepth_ = eventDispatcher_.eventQueueSize();
+        lastTime_ = now;
+        lastEventCount_ = eventCount;
+        lastBusyTimeNanos_ = busyTimeNanos;
+        return this;
+    }
+
+    /**
+     * Returns the dispatcher to be measured.
+     * @return the dispatcher
+     */
+    public EventDispatcher eventDispatcher() {
+        return eventDispatcher_;
+    }
+
+    /**
+     * Returns the number of the events processed per second.
+     * @return the number of the events processed per second
+     */
+    public double eventsPerSecond() {
+        return eventsPerSecond_;
+    }
+
+    /**
+     * Returns the ratio of the time spent on the events and I/O to the elapsed time, in [0, 1].
+     * @return the ratio of the busy time
+     */
+    public double busyRatio() {
+        return busyRatio_;
+    }
+
+    /**
+     * Returns the number of the events in the event queue at the last update.
+     * @return the number of the events in the event queue
+     */
+    public int queueDepth() {
+        return queueDepth_;
+    }
+
+    @Override
+    public String toString() {
+        return "(eventDispatcher:" + eventDispatcher_ + ", eventsPerSecond:" + eventsPerSecond_
+                + ", busyRatio:" + busyRatio_ + ", queueDepth:" + queueDepth_ + ")";
+    }
+}
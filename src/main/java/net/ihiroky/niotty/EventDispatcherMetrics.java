@@ -0,0 +1,108 @@
+package net.ihiroky.niotty;
+
+/**
+ * Holds the metrics of the dispatcher loop of an {@link net.ihiroky.niotty.EventDispatcher}.
+ * <p>
+ * This object is created by {@link EventDispatcher#setMetricsEnabled(boolean)}, and updated
+ * by the dispatcher thread. The loop counters are updated at the end of each iteration of
+ * the dispatcher loop. The histograms record the time from {@link EventDispatcher#offer(Event)}
+ * to the start of the execution (queue wait) and the execution time of each event offered
+ * to the event queue. The events executed by the timer or immediately in the dispatcher
+ * thread are not recorded into the histograms.
+ * </p>
+ */
+public final class EventDispatcherMetrics {
+
+    private final LatencyHistogram queueWaitHistogram_;
+    private final LatencyHistogram executionHistogram_;
+    private volatile long loopCount_;
+    private volatile long pollTimeNanos_;
+    private volatile long eventTimeNanos_;
+    private volatile long delayedEventTimeNanos_;
+    private volatile int delayQueueSize_;
+
+    EventDispatcherMetrics() {
+        queueWaitHistogram_ = new LatencyHistogram();
+        executionHistogram_ = new LatencyHistogram();
+    }
+
+    void recordQueueWait(long nanos) {
+        queueWaitHistogram_.record(nanos);
+    }
+
+    void recordExecution(long nanos) {
+        executionHistogram_.record(nanos);
+    }
+
+    void recordLoop(long pollNanos, long eventNanos, long delayedEventNanos, int delayQueueSize) {
+        pollTimeNanos_ += pollNanos;
+        eventTimeNanos_ += eventNanos;
+        delayedEventTimeNanos_ += delayedEventNanos;
+        delayQueueSize_ = delayQueueSize;
+        loopCount_++;
+    }
+
+    /**
+     * Returns the histogram of the time from offering the events to starting to execute them.
+     * @return the histogram of the queue wait time
+     */
+    public LatencyHistogram queueWaitHistogram() {
+        return queueWaitHistogram_;
+    }
+
+    /**
+     * Returns the histogram of the execution time of the events.
+     * @return the histogram of the execution time
+     */
+    public LatencyHistogram executionHistogram() {
+        return executionHistogram_;
+    }
+
+    /**
+     * Returns the number of the iterations of the dispatcher loop.
+     * @return the number of the iterations
+     */
+    public long loopCount() {
+        return loopCount_;
+    }
+
+    /**
+     * Returns the total time spent on {@link EventDispatcher#poll(long)} by nanoseconds,
+     * including the time to wait.
+     * @return the total time spent on the poll
+     */
+    public long pollTimeNanos() {
+        return pollTimeNanos_;
+    }
+
+    /**
+     * Returns the total time spent on the events in the event queue by nanoseconds.
+     * @return the total time spent on the events in the event queue
+     */
+    public long eventTimeNanos() {
+        return eventTimeNanos_;
+    }
+
+    /**
+     * Returns the total time spent on the events in the timer by nanoseconds.
+     * @return the total time spent on the events in the timer
+     */
+    public long delayedEventTimeNanos() {
+        return delayedEventTimeNanos_;
+    }
+
+    /**
+     * Returns the number of the events in the timer at the end of the last iteration.
+     * @return the number of the events in the timer
+     */
+    public int delayQueueSize() {
+        return delayQueueSize_;
+    }
+
+    @Override
+    public String toString() {
+        return "(loop:" + loopCount_ + ", poll:" + pollTimeNanos_ + ", event:" + eventTimeNanos_
+                + ", delayedEvent:" + delayedEventTimeNanos_ + ", delayQueueSize:" + delayQueueSize_
+                + ", queueWait:" + queueWaitHistogram_ + ", execution:" + executionHistogram_ + ")";
+    }
+}
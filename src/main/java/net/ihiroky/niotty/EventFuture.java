@@ -16,6 +16,13 @@ public class EventFuture implements Event, Comparable<EventFuture> {
     final Event event_;
     private volatile State state_;
 
+    // Used by TimerQueue.
+    volatile TimerQueue timerQueue_;
+    TimingWheel.Bucket bucket_;
+    EventFuture prev_;
+    EventFuture next_;
+    long deadlineTick_;
+
     private static final AtomicReferenceFieldUpdater<EventFuture, State> STATE_UPDATER =
             AtomicReferenceFieldUpdater.newUpdater(EventFuture.class, State.class, "state_");
 
@@ -70,7 +77,12 @@ public class EventFuture implements Event, Comparable<EventFuture> {
      * Cancels the event if not dispatched.
      */
     public void cancel() {
-        STATE_UPDATER.compareAndSet(this, State.WAITING, State.CANCELLED);
+        if (STATE_UPDATER.compareAndSet(this, State.WAITING, State.CANCELLED)) {
+            TimerQueue timerQueue = timerQueue_;
+            if (timerQueue != null) {
+                timerQueue.cancel(this);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,178 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A histogram of latencies by nanoseconds, which has log-linear buckets like HdrHistogram.
+ * <p>
+ * Each power of two range is divided into {@value #SUB_BUCKET_COUNT} linear buckets,
+ * so the relative error of the recorded values is less than 1 / {@value #SUB_BUCKET_COUNT}.
+ * The values less than {@value #SUB_BUCKET_COUNT} are recorded exactly, and the values
+ * larger than 2<sup>{@value #MAX_EXPONENT}</sup> nanoseconds (about 18 minutes)
+ * are recorded into the last bucket.
+ * </p>
+ * <p>
+ * {@link #record(long)} must be called by a single thread, which is the dispatcher thread.
+ * It does not allocate and does not use any atomic read-modify-write instruction.
+ * The other methods can be called by any thread; they see the values recorded before
+ * the last {@link #count()} update.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    private final long[] counts_;
+    private long sum_;
+    private long max_;
+
+    @SuppressWarnings("unused")
+    private volatile long count_;
+
+    private static final AtomicLongFieldUpdater<LatencyHistogram> COUNT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LatencyHistogram.class, "count_");
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int MAX_EXPONENT = 40;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    /**
+     * Creates a new empty instance.
+     */
+    public LatencyHistogram() {
+        counts_ = new long[BUCKET_COUNT];
+    }
+
+    /**
+     * Records a value. This method must be called by a single thread.
+     * @param nanos the value by nanoseconds; a negative value is recorded as zero
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts_[bucketIndex(nanos)]++;
+        sum_ += nanos;
+        if (nanos > max_) {
+            max_ = nanos;
+        }
+        COUNT_UPDATER.lazySet(this, count_ + 1);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT * 2) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index & (SUB_BUCKET_COUNT - 1);
+        return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT * 2) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        return lowestValueAt(index) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Returns the number of the recorded values.
+     * @return the number of the recorded values
+     */
+    public long count() {
+        return count_;
+    }
+
+    /**
+     * Returns the maximum recorded value.
+     * @return the maximum recorded value, or 0 if no value is recorded
+     */
+    public long max() {
+        return (count_ > 0) ? max_ : 0L;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * @return the mean of the recorded values, or 0 if no value is recorded
+     */
+    public double mean() {
+        long count = count_;
+        return (count > 0) ? (double) sum_ / count : 0d;
+    }
+
+    /**
+     * Returns the value at the specified percentile. The value is the highest value
+     * in the bucket which contains the percentile, but not more than {@link #max()}.
+     *
+     * @param percentile the percentile in [0, 100]
+     * @return the value at the percentile, or 0 if no value is recorded
+     * @throws IllegalArgumentException if the percentile is out of range
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0d || percentile > 100d) {
+            throw new IllegalArgumentException("The percentile must be in [0, 100].");
+        }
+        long count = count_;
+        if (count == 0) {
+            return 0L;
+        }
+        long max = max_;
+        long target = Math.max((long) Math.ceil(count * percentile / 100d), 1L);
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts_[i];
+            if (total >= target) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Adds the values recorded in the specified histogram to this histogram.
+     * This histogram must not be recorded by the other thread concurrently.
+     *
+     * @param histogram the histogram to be added
+     * @return this object
+     */
+    public LatencyHistogram add(LatencyHistogram histogram) {
+        Arguments.requireNonNull(histogram, "histogram");
+        long count = histogram.count_; // Read first to see the values recorded before.
+        if (count == 0) {
+            return this;
+        }
+        long added = 0;
+        long[] counts = histogram.counts_;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = counts[i];
+            counts_[i] += c;
+            added += c;
+        }
+        sum_ += histogram.sum_;
+        if (histogram.max_ > max_) {
+            max_ = histogram.max_;
+        }
+        COUNT_UPDATER.lazySet(this, count_ + added);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "(count:" + count() + ", mean:" + mean() + ", p50:" + valueAtPercentile(50d)
+                + ", p99:" + valueAtPercentile(99d) + ", max:" + max() + ")";
+    }
+}
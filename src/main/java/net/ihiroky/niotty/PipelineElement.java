@@ -14,11 +14,12 @@ public class PipelineElement {
     final Pipeline pipeline_;
     final StageKey key_;
     final Stage stage_;
-    final EventDispatcher eventDispatcher_;
+    volatile EventDispatcher eventDispatcher_;
     final StoreContext storeContext_;
     final LoadContext loadContext_;
     final StateContext stateContext_;
     final int stageType_;
+    private volatile StageHandOff handOff_;
 
     private static final Pipeline NULL_PIPELINE = new NullPipeline();
     private static final StageKey NULL_STAGE_KEY = StageKeys.of("NullStage");
@@ -103,53 +104,73 @@ public class PipelineElement {
         eventDispatcher_.reject(pipeline_.transport());
     }
 
+    /**
+     * Changes the dispatcher to execute the stage if the current one is {@code oldDispatcher}.
+     * @param oldDispatcher the current dispatcher
+     * @param newDispatcher the new dispatcher
+     * @return true if the dispatcher is changed
+     */
+    boolean changeEventDispatcher(EventDispatcher oldDispatcher, EventDispatcher newDispatcher) {
+        if (eventDispatcher_ != oldDispatcher) {
+            return false;
+        }
+        Transport transport = pipeline_.transport();
+        newDispatcher.accept(transport);
+        eventDispatcher_ = newDispatcher;
+        oldDispatcher.reject(transport);
+        return true;
+    }
+
 
-    void callStore(final Object message, final Object parameter) {
+    void callStore(Object message, Object parameter) {
         // Reduce to switch the threads if the stages side by side use the different threads.
-        if (stageType_ == STAGE_TYPE_LOAD || eventDispatcher_.isInDispatcherThread()) {
+        // The messages to the different thread are passed through the hand-off, which does not allocate.
+        EventDispatcher eventDispatcher = eventDispatcher_;
+        if (stageType_ == STAGE_TYPE_LOAD || eventDispatcher.isInDispatcherThread()) {
             stage_.stored(storeContext_, message, parameter);
         } else {
-            eventDispatcher_.offer(new Event() {
-                @Override
-                public long execute() throws Exception {
-                    stage_.stored(storeContext_, message, parameter);
-                    return DONE;
-                }
-            });
+            handOff().offer(eventDispatcher, true, message, parameter);
         }
     }
 
     // expand to context class
-    void callLoad(final Object message, final Object parameter) {
-        if (stageType_ == STAGE_TYPE_STORE || eventDispatcher_.isInDispatcherThread()) {
+    void callLoad(Object message, Object parameter) {
+        EventDispatcher eventDispatcher = eventDispatcher_;
+        if (stageType_ == STAGE_TYPE_STORE || eventDispatcher.isInDispatcherThread()) {
             stage_.loaded(loadContext_, message, parameter);
         } else {
-            eventDispatcher_.offer(new Event() {
-                @Override
-                public long execute() throws Exception {
-                    stage_.loaded(loadContext_, message, parameter);
-                    return DONE;
+            handOff().offer(eventDispatcher, false, message, parameter);
+        }
+    }
+
+    private StageHandOff handOff() {
+        StageHandOff handOff = handOff_;
+        if (handOff == null) {
+            synchronized (this) {
+                handOff = handOff_;
+                if (handOff == null) {
+                    handOff = new StageHandOff(this, StageHandOff.DEFAULT_CAPACITY);
+                    handOff_ = handOff;
                 }
-            });
+            }
         }
+        return handOff;
     }
 
     void callActivated() {
-        if (eventDispatcher_.isInDispatcherThread()) {
+        EventDispatcher eventDispatcher = eventDispatcher_;
+        if (eventDispatcher.isInDispatcherThread()) {
             stage_.activated(stateContext_);
             PipelineElement prev = prev_;
             if (prev != TERMINAL) {
                 prev.callActivated();
             }
         } else {
-            eventDispatcher_.offer(new Event() {
+            eventDispatcher.offer(new Event() {
                 @Override
                 public long execute() throws Exception {
-                    stage_.activated(stateContext_);
-                    PipelineElement prev = prev_;
-                    if (prev != TERMINAL) {
-                        prev.callActivated();
-                    }
+                    // Checks the dispatcher again in case that the stage is moved after this offer.
+                    callActivated();
                     return DONE;
                 }
             });
@@ -157,21 +178,19 @@ public class PipelineElement {
     }
 
     void callDeactivated() {
-        if (eventDispatcher_.isInDispatcherThread()) {
+        EventDispatcher eventDispatcher = eventDispatcher_;
+        if (eventDispatcher.isInDispatcherThread()) {
             stage_.deactivated(stateContext_);
             PipelineElement prev = prev_;
             if (prev != TERMINAL) {
                 prev.callDeactivated();
             }
         } else {
-            eventDispatcher_.offer(new Event() {
+            eventDispatcher.offer(new Event() {
                 @Override
                 public long execute() throws Exception {
-                    stage_.deactivated(stateContext_);
-                    PipelineElement prev = prev_;
-                    if (prev != TERMINAL) {
-                        prev.callDeactivated();
-                    }
+                    // Checks the dispatcher again in case that the stage is moved after this offer.
+                    callDeactivated();
                     return DONE;
                 }
             });
@@ -179,21 +198,19 @@ public class PipelineElement {
     }
 
     void callExceptionCaught(final Exception exception) {
-        if (eventDispatcher_.isInDispatcherThread()) {
+        EventDispatcher eventDispatcher = eventDispatcher_;
+        if (eventDispatcher.isInDispatcherThread()) {
             stage_.exceptionCaught(stateContext_, exception);
             PipelineElement prev = prev_;
             if (prev != TERMINAL) {
                 prev.callExceptionCaught(exception);
             }
         } else {
-            eventDispatcher_.offer(new Event() {
+            eventDispatcher.offer(new Event() {
                 @Override
                 public long execute() throws Exception {
-                    stage_.exceptionCaught(stateContext_, exception);
-                    PipelineElement prev = prev_;
-                    if (prev != TERMINAL) {
-                        prev.callExceptionCaught(exception);
-                    }
+                    // Checks the dispatcher again in case that the stage is moved after this offer.
+                    callExceptionCaught(exception);
                     return DONE;
                 }
             });
@@ -201,21 +218,19 @@ public class PipelineElement {
     }
 
     void callEventTriggered(final Object event) {
-        if (eventDispatcher_.isInDispatcherThread()) {
+        EventDispatcher eventDispatcher = eventDispatcher_;
+        if (eventDispatcher.isInDispatcherThread()) {
             stage_.eventTriggered(stateContext_, event);
             PipelineElement prev = prev_;
             if (prev != TERMINAL) {
                 prev.callEventTriggered(event);
             }
         } else {
-            eventDispatcher_.offer(new Event() {
+            eventDispatcher.offer(new Event() {
                 @Override
                 public long execute() throws Exception {
-                    stage_.eventTriggered(stateContext_, event);
-                    PipelineElement prev = prev_;
-                    if (prev != TERMINAL) {
-                        prev.callEventTriggered(event);
-                    }
+                    // Checks the dispatcher again in case that the stage is moved after this offer.
+                    callEventTriggered(event);
                     return DONE;
                 }
             });
@@ -0,0 +1,56 @@
+package net.ihiroky.niotty;
+
+import java.util.PriorityQueue;
+
+/**
+ * An implementation of {@link net.ihiroky.niotty.TimerQueue} based on {@code java.util.PriorityQueue}.
+ * The cancelled futures are left in the queue until they reach the head of the queue.
+ */
+class PriorityTimerQueue implements TimerQueue {
+
+    private final PriorityQueue<EventFuture> queue_;
+
+    private static final int INITIAL_QUEUE_SIZE = 1024;
+
+    PriorityTimerQueue() {
+        queue_ = new PriorityQueue<EventFuture>(INITIAL_QUEUE_SIZE);
+    }
+
+    @Override
+    public void offer(EventFuture future) {
+        queue_.offer(future);
+    }
+
+    @Override
+    public EventFuture poll(long now) {
+        EventFuture f = queue_.peek();
+        if (f == null || f.expire() > now) {
+            return null;
+        }
+        return queue_.poll();
+    }
+
+    @Override
+    public long nextDelayNanos(long now) {
+        EventFuture f = queue_.peek();
+        while (f != null && f.isCancelled()) {
+            queue_.poll();
+            f = queue_.peek();
+        }
+        return (f != null) ? f.expire() - now : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void cancel(EventFuture future) {
+    }
+
+    @Override
+    public int size() {
+        return queue_.size();
+    }
+
+    @Override
+    public void clear() {
+        queue_.clear();
+    }
+}
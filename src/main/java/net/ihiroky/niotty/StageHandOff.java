@@ -0,0 +1,202 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.MPSCLinkedArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Passes the messages to a stage executed by another dispatcher without allocation.
+ * <p>
+ * The messages are copied to a ring of pre-allocated slots, and this object itself is offered
+ * to the dispatcher as an {@link net.ihiroky.niotty.Event} only if it is not offered yet.
+ * The dispatcher calls the stage for the messages in the ring in FIFO order.
+ * If the ring is full, the messages are queued to an overflow queue which allocates a slot
+ * for each message. The overflow queue is created on the first overflow. Once the overflow
+ * queue has some messages, the following messages are also queued to it until it gets empty,
+ * to keep the order of the messages.
+ * </p>
+ * <p>
+ * The ring is based on the bounded queue by Dmitry Vyukov, in which each slot has a sequence
+ * number to tell the producers and the consumer whether the slot is available.
+ * </p>
+ */
+final class StageHandOff implements Event {
+
+    private final PipelineElement element_;
+    private final Slot[] slots_;
+    private final int mask_;
+    private volatile MPSCLinkedArrayQueue<Slot> overflow_;
+    private long head_;
+
+    @SuppressWarnings("unused")
+    private volatile long tail_;
+
+    @SuppressWarnings("unused")
+    private volatile int scheduled_;
+
+    private static final AtomicLongFieldUpdater<StageHandOff> TAIL_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(StageHandOff.class, "tail_");
+    private static final AtomicIntegerFieldUpdater<StageHandOff> SCHEDULED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(StageHandOff.class, "scheduled_");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<StageHandOff, MPSCLinkedArrayQueue> OVERFLOW_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(StageHandOff.class, MPSCLinkedArrayQueue.class, "overflow_");
+
+    private static Logger logger_ = LoggerFactory.getLogger(StageHandOff.class);
+
+    /** The number of the messages passed to the stage in an execution of this event. */
+    static final int MESSAGES_PER_EXECUTION = 64;
+
+    static final int DEFAULT_CAPACITY = 32;
+
+    StageHandOff(PipelineElement element, int capacity) {
+        capacity = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        element_ = element;
+        slots_ = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots_[i] = new Slot(i);
+        }
+        mask_ = capacity - 1;
+    }
+
+    /**
+     * Passes a message to the stage on the specified dispatcher.
+     * @param eventDispatcher the dispatcher which executes the stage
+     * @param store true if the message is stored, false if loaded
+     * @param message the message
+     * @param parameter the parameter
+     */
+    void offer(EventDispatcher eventDispatcher, boolean store, Object message, Object parameter) {
+        MPSCLinkedArrayQueue<Slot> overflow = overflow_;
+        if ((overflow != null && !overflow.isEmpty()) || !offerToRing(store, message, parameter)) {
+            overflow().offer(new Slot(store, message, parameter));
+        }
+        if (SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+            eventDispatcher.offer(this);
+        }
+    }
+
+    private MPSCLinkedArrayQueue<Slot> overflow() {
+        MPSCLinkedArrayQueue<Slot> overflow = overflow_;
+        if (overflow == null) {
+            OVERFLOW_UPDATER.compareAndSet(this, null, new MPSCLinkedArrayQueue<Slot>());
+            overflow = overflow_;
+        }
+        return overflow;
+    }
+
+    private boolean offerToRing(boolean store, Object message, Object parameter) {
+        for (;;) {
+            long tail = tail_;
+            Slot slot = slots_[(int) tail & mask_];
+            long sequence = slot.sequence_;
+            if (sequence == tail) {
+                if (TAIL_UPDATER.compareAndSet(this, tail, tail + 1)) {
+                    slot.store_ = store;
+                    slot.message_ = message;
+                    slot.parameter_ = parameter;
+                    slot.sequence_ = tail + 1;
+                    return true;
+                }
+            } else if (sequence < tail) {
+                return false;
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        MPSCLinkedArrayQueue<Slot> overflow = overflow_;
+        return tail_ == head_ && (overflow == null || overflow.isEmpty());
+    }
+
+    @Override
+    public long execute() {
+        EventDispatcher eventDispatcher = element_.eventDispatcher_;
+        if (!eventDispatcher.isInDispatcherThread()) {
+            // The stage is moved to another dispatcher after this event is offered.
+            eventDispatcher.offer(this);
+            return DONE;
+        }
+        boolean passed = false;
+        try {
+            passMessages();
+            passed = true;
+        } finally {
+            if (!passed) {
+                // Let the next offer schedule this event again if the stage throws an Error.
+                scheduled_ = 0;
+            }
+        }
+
+        if (!isEmpty()) {
+            return RETRY_IMMEDIATELY;
+        }
+        scheduled_ = 0;
+        return (!isEmpty() && SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) ? RETRY_IMMEDIATELY : DONE;
+    }
+
+    private void passMessages() {
+        for (int i = 0; i < MESSAGES_PER_EXECUTION; i++) {
+            long head = head_;
+            Slot slot = slots_[(int) head & mask_];
+            boolean store;
+            Object message;
+            Object parameter;
+            if (slot.sequence_ == head + 1) {
+                store = slot.store_;
+                message = slot.message_;
+                parameter = slot.parameter_;
+                slot.message_ = null;
+                slot.parameter_ = null;
+                slot.sequence_ = head + slots_.length;
+                head_ = head + 1;
+            } else if (tail_ != head) {
+                break; // A producer is writing to the slot. The overflow must wait for it.
+            } else {
+                MPSCLinkedArrayQueue<Slot> overflow = overflow_;
+                slot = (overflow != null) ? overflow.poll() : null;
+                if (slot == null) {
+                    break;
+                }
+                store = slot.store_;
+                message = slot.message_;
+                parameter = slot.parameter_;
+            }
+            call(store, message, parameter);
+        }
+    }
+
+    private void call(boolean store, Object message, Object parameter) {
+        PipelineElement element = element_;
+        try {
+            if (store) {
+                element.stage_.stored(element.storeContext_, message, parameter);
+            } else {
+                element.stage_.loaded(element.loadContext_, message, parameter);
+            }
+        } catch (RuntimeException re) {
+            logger_.warn("[call] Unexpected exception.", re);
+        }
+    }
+
+    private static final class Slot {
+        volatile long sequence_;
+        boolean store_;
+        Object message_;
+        Object parameter_;
+
+        Slot(long sequence) {
+            sequence_ = sequence;
+        }
+
+        Slot(boolean store, Object message, Object parameter) {
+            store_ = store;
+            message_ = message;
+            parameter_ = parameter;
+        }
+    }
+}
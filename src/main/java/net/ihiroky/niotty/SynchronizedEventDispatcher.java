@@ -1,15 +1,24 @@
 package net.ihiroky.niotty;
 
+import net.ihiroky.niotty.util.Arguments;
+
 import java.util.concurrent.TimeUnit;
 
 /**
  * A implementation of {@link net.ihiroky.niotty.EventDispatcher}. Wait operation depends on
  * {@code Object.wait()} and {@code Object.notify()}.
+ * <p>
+ * The way to wait for a new event is determined by {@link net.ihiroky.niotty.WaitStrategy}.
+ * The dispatcher thread is notified only if it waits on the monitor actually.
+ * </p>
  */
 public class SynchronizedEventDispatcher extends EventDispatcher {
 
-    private boolean signaled_;
+    private volatile boolean signaled_;
+    private volatile boolean waiting_;
     private final Object lock_;
+    private final WaitStrategy waitStrategy_;
+    private final WaitStrategy.Waiter waiter_;
 
     /**
      * Create a new instance.
@@ -17,9 +26,41 @@ public class SynchronizedEventDispatcher extends EventDispatcher {
      * @param eventQueueCapacity the capacity of the event queue
      */
     protected SynchronizedEventDispatcher(int eventQueueCapacity) {
+        this(eventQueueCapacity, WaitStrategies.blocking());
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param eventQueueCapacity the capacity of the event queue
+     * @param waitStrategy the strategy to wait for a new event
+     */
+    protected SynchronizedEventDispatcher(int eventQueueCapacity, WaitStrategy waitStrategy) {
         super(eventQueueCapacity);
         signaled_ = false;
+        waiting_ = false;
         lock_ = new Object();
+        waitStrategy_ = Arguments.requireNonNull(waitStrategy, "waitStrategy");
+        waiter_ = new WaitStrategy.Waiter() {
+            @Override
+            public boolean isSignaled() {
+                return signaled_;
+            }
+
+            @Override
+            public void block(long timeoutNanos) throws InterruptedException {
+                synchronized (lock_) {
+                    waiting_ = true;
+                    try {
+                        if (!signaled_) {
+                            TimeUnit.NANOSECONDS.timedWait(lock_, timeoutNanos);
+                        }
+                    } finally {
+                        waiting_ = false;
+                    }
+                }
+            }
+        };
     }
 
     @Override
@@ -32,25 +73,18 @@ public class SynchronizedEventDispatcher extends EventDispatcher {
 
     @Override
     protected void poll(long timeoutNanos) throws InterruptedException {
-        long start = System.nanoTime();
-        TimeUnit timeUnit = TimeUnit.NANOSECONDS;
-        synchronized (lock_) {
-            while (!signaled_ && timeoutNanos > 0) {
-                timeUnit.timedWait(lock_, timeoutNanos);
-                long now = System.nanoTime();
-                timeoutNanos -= now - start;
-                start = now;
-            }
-            signaled_ = false;
-        }
+        waitStrategy_.await(waiter_, timeoutNanos);
+        signaled_ = false;
     }
 
     @Override
     protected void wakeUp() {
-        synchronized (lock_) {
-            if (!signaled_) {
-                signaled_ = true;
-                lock_.notify();
+        if (!signaled_) {
+            signaled_ = true;
+            if (waiting_) {
+                synchronized (lock_) {
+                    lock_.notify();
+                }
             }
         }
     }
@@ -1,5 +1,7 @@
 package net.ihiroky.niotty;
 
+import net.ihiroky.niotty.util.Arguments;
+
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
@@ -16,14 +18,16 @@ public final class SynchronizedEventDispatcherGroup
             implements EventDispatcherFactory<SynchronizedEventDispatcher> {
 
         private int eventQueueSize_;
+        private WaitStrategy waitStrategy_;
 
-        SynchronizedEventDispatcherFactory(int eventQueueSize) {
+        SynchronizedEventDispatcherFactory(int eventQueueSize, WaitStrategy waitStrategy) {
             eventQueueSize_ = eventQueueSize;
+            waitStrategy_ = Arguments.requireNonNull(waitStrategy, "waitStrategy");
         }
 
         @Override
         public SynchronizedEventDispatcher newEventDispatcher() {
-            return new SynchronizedEventDispatcher(eventQueueSize_);
+            return new SynchronizedEventDispatcher(eventQueueSize_, waitStrategy_);
         }
     };
 
@@ -46,6 +50,19 @@ public final class SynchronizedEventDispatcherGroup
      * @param threadFactory a factory to create thread which runs a event dispatcher
      */
     public SynchronizedEventDispatcherGroup(int workers, ThreadFactory threadFactory, int eventQueueSize) {
-        super(workers, threadFactory, new SynchronizedEventDispatcherFactory(eventQueueSize));
+        this(workers, threadFactory, eventQueueSize, WaitStrategies.blocking());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     * @param threadFactory a factory to create thread which runs a event dispatcher
+     * @param eventQueueSize the capacity of the event queue, zero or negative if the queue has no limit
+     * @param waitStrategy a strategy to wait for a new event
+     */
+    public SynchronizedEventDispatcherGroup(
+            int workers, ThreadFactory threadFactory, int eventQueueSize, WaitStrategy waitStrategy) {
+        super(workers, threadFactory, new SynchronizedEventDispatcherFactory(eventQueueSize, waitStrategy));
     }
 }
@@ -0,0 +1,55 @@
+package net.ihiroky.niotty;
+
+/**
+ * A queue which holds {@link net.ihiroky.niotty.EventFuture}s scheduled with some delay
+ * in {@link net.ihiroky.niotty.EventDispatcher}.
+ * <p>
+ * All methods except {@link #cancel(EventFuture)} are called by the dispatcher thread
+ * only, so the implementation does not have to be thread safe for them.
+ * {@link #cancel(EventFuture)} may be called by any thread.
+ * </p>
+ * <p>
+ * The instance is created through {@link net.ihiroky.niotty.TimerQueueFactory}.
+ * See {@link net.ihiroky.niotty.TimerQueues} for the implementations provided by Niotty.
+ * </p>
+ */
+public interface TimerQueue {
+
+    /**
+     * Inserts a specified future into this queue.
+     * @param future the future to be inserted
+     */
+    void offer(EventFuture future);
+
+    /**
+     * Retrieves and removes a future which expires at the specified time.
+     * @param now the current time in nanoseconds, given by {@code System.nanoTime()}
+     * @return the expired future, or null if no future expires
+     */
+    EventFuture poll(long now);
+
+    /**
+     * Returns the time to wait until a next future to be expired.
+     * @param now the current time in nanoseconds, given by {@code System.nanoTime()}
+     * @return the time to wait in nanoseconds, or {@code Long.MAX_VALUE} if this queue is empty
+     */
+    long nextDelayNanos(long now);
+
+    /**
+     * Notifies this queue that a specified future is cancelled. The implementation may
+     * remove the future eagerly or leave it until it expires.
+     * @param future the cancelled future
+     */
+    void cancel(EventFuture future);
+
+    /**
+     * Returns the number of futures in this queue.
+     * @return the number of futures in this queue
+     */
+    int size();
+
+    /**
+     * Removes all futures in this queue.
+     */
+    void clear();
+}
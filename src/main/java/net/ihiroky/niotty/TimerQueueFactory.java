@@ -0,0 +1,14 @@
+package net.ihiroky.niotty;
+
+/**
+ * The factory to create the instance of {@link net.ihiroky.niotty.TimerQueue}.
+ */
+public interface TimerQueueFactory {
+
+    /**
+     * Creates a new timer queue.
+     *
+     * @return the timer queue
+     */
+    TimerQueue newTimerQueue();
+}
@@ -0,0 +1,54 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides factory methods of {@link net.ihiroky.niotty.TimerQueueFactory}.
+ */
+public final class TimerQueues {
+
+    private static final TimerQueueFactory PRIORITY_QUEUE_FACTORY = new TimerQueueFactory() {
+        @Override
+        public TimerQueue newTimerQueue() {
+            return new PriorityTimerQueue();
+        }
+    };
+
+    private TimerQueues() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns a factory of the timer queue based on the binary heap. This is used by default.
+     * The insertion costs O(log n). The cancelled futures are removed when they reach the head of the heap.
+     *
+     * @return the factory
+     */
+    public static TimerQueueFactory priorityQueue() {
+        return PRIORITY_QUEUE_FACTORY;
+    }
+
+    /**
+     * Returns a factory of the timer queue based on the hashed timing wheel.
+     * The insertion and the cancellation cost O(1). The cancelled futures are removed eagerly
+     * by the dispatcher thread. The futures are expired with the accuracy of the {@code tick}.
+     *
+     * @param tick the duration of a bucket in the wheel
+     * @param timeUnit the unit of the tick
+     * @param wheelSize the number of buckets in the wheel, round up to power of two
+     * @return the factory
+     */
+    public static TimerQueueFactory timingWheel(long tick, TimeUnit timeUnit, int wheelSize) {
+        final long tickNanos = Arguments.requireNonNull(timeUnit, "timeUnit").toNanos(tick);
+        Arguments.requirePositive(tickNanos, "tick");
+        final int size = Arguments.requireInRange(wheelSize, "wheelSize", 1, 1 << 30);
+        return new TimerQueueFactory() {
+            @Override
+            public TimerQueue newTimerQueue() {
+                return new TimingWheel(tickNanos, size);
+            }
+        };
+    }
+}
@@ -0,0 +1,235 @@
+package net.ihiroky.niotty;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An implementation of {@link net.ihiroky.niotty.TimerQueue} based on the hashed timing wheel.
+ * <p>
+ * The wheel consists of the buckets, each of them covers a tick. A future is linked to the bucket
+ * to which its expire belongs, so the insertion and the removal cost O(1). The future which expires
+ * after one or more turns of the wheel stays in the bucket until the wheel reaches its expire.
+ * The futures are expired by the accuracy of the tick; not earlier than its expire,
+ * and not later than its expire plus the tick.
+ * </p>
+ * <p>
+ * The future cancelled by any thread is queued in a cancellation queue, and then unlinked from
+ * the bucket by the dispatcher thread when this queue is accessed next time.
+ * </p>
+ */
+class TimingWheel implements TimerQueue {
+
+    private final Bucket[] wheel_;
+    private final int mask_;
+    private final long tickNanos_;
+    private final long origin_;
+    private final Bucket expired_;
+    private final Queue<EventFuture> cancelledQueue_;
+    private long tick_;
+    private int size_;
+
+    TimingWheel(long tickNanos, int wheelSize) {
+        this(tickNanos, wheelSize, System.nanoTime());
+    }
+
+    TimingWheel(long tickNanos, int wheelSize, long origin) {
+        int size = 1 << (32 - Integer.numberOfLeadingZeros(wheelSize - 1));
+        Bucket[] wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        wheel_ = wheel;
+        mask_ = size - 1;
+        tickNanos_ = tickNanos;
+        origin_ = origin;
+        expired_ = new Bucket();
+        cancelledQueue_ = new ConcurrentLinkedQueue<EventFuture>();
+        tick_ = 0L;
+        size_ = 0;
+    }
+
+    @Override
+    public void offer(EventFuture future) {
+        purgeCancelled();
+
+        future.timerQueue_ = this;
+        if (future.isCancelled()) {
+            return;
+        }
+        long deadline = deadlineTick(future.expire());
+        future.deadlineTick_ = deadline;
+        Bucket bucket = (deadline < tick_) ? expired_ : wheel_[(int) deadline & mask_];
+        bucket.add(future);
+        size_++;
+    }
+
+    private long deadlineTick(long expire) {
+        long d = expire - origin_;
+        if (d <= 0L) {
+            return 0L;
+        }
+        long tick = d / tickNanos_;
+        return (d % tickNanos_ == 0L) ? tick : tick + 1;
+    }
+
+    @Override
+    public EventFuture poll(long now) {
+        purgeCancelled();
+
+        EventFuture f = expired_.poll();
+        if (f != null) {
+            size_--;
+            return f;
+        }
+        long nowTick = (now - origin_) / tickNanos_;
+        if (size_ == 0) {
+            // Nothing to expire. Skip the empty buckets.
+            if (tick_ <= nowTick) {
+                tick_ = nowTick + 1;
+            }
+            return null;
+        }
+        while (tick_ <= nowTick) {
+            if (nowTick - tick_ >= wheel_.length) {
+                // The wheel turns around at least once. Check all buckets at a time.
+                for (Bucket bucket : wheel_) {
+                    bucket.transferTo(expired_, nowTick);
+                }
+                tick_ = nowTick + 1;
+            } else {
+                wheel_[(int) tick_ & mask_].transferTo(expired_, tick_);
+                tick_++;
+            }
+            f = expired_.poll();
+            if (f != null) {
+                size_--;
+                return f;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long nextDelayNanos(long now) {
+        purgeCancelled();
+
+        if (size_ == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (!expired_.isEmpty()) {
+            return 0L;
+        }
+        for (long t = tick_, end = tick_ + wheel_.length; t < end; t++) {
+            if (!wheel_[(int) t & mask_].isEmpty()) {
+                long delay = origin_ + t * tickNanos_ - now;
+                return (delay > 0L) ? delay : 0L;
+            }
+        }
+        throw new AssertionError("No future is found in the wheel though the size is " + size_);
+    }
+
+    @Override
+    public void cancel(EventFuture future) {
+        cancelledQueue_.offer(future);
+    }
+
+    private void purgeCancelled() {
+        EventFuture f;
+        while ((f = cancelledQueue_.poll()) != null) {
+            Bucket bucket = f.bucket_;
+            if (bucket != null) {
+                bucket.remove(f);
+                size_--;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size_;
+    }
+
+    @Override
+    public void clear() {
+        for (Bucket bucket : wheel_) {
+            bucket.clear();
+        }
+        expired_.clear();
+        cancelledQueue_.clear();
+        size_ = 0;
+    }
+
+    /**
+     * A doubly linked list of the futures, which is linked through the fields of the future.
+     */
+    static final class Bucket {
+
+        private EventFuture head_;
+        private EventFuture tail_;
+
+        void add(EventFuture f) {
+            f.bucket_ = this;
+            f.prev_ = tail_;
+            f.next_ = null;
+            if (tail_ != null) {
+                tail_.next_ = f;
+            } else {
+                head_ = f;
+            }
+            tail_ = f;
+        }
+
+        void remove(EventFuture f) {
+            EventFuture prev = f.prev_;
+            EventFuture next = f.next_;
+            if (prev != null) {
+                prev.next_ = next;
+            } else {
+                head_ = next;
+            }
+            if (next != null) {
+                next.prev_ = prev;
+            } else {
+                tail_ = prev;
+            }
+            f.bucket_ = null;
+            f.prev_ = null;
+            f.next_ = null;
+        }
+
+        EventFuture poll() {
+            EventFuture f = head_;
+            if (f != null) {
+                remove(f);
+            }
+            return f;
+        }
+
+        boolean isEmpty() {
+            return head_ == null;
+        }
+
+        void transferTo(Bucket bucket, long deadlineTick) {
+            EventFuture next;
+            for (EventFuture f = head_; f != null; f = next) {
+                next = f.next_;
+                if (f.deadlineTick_ <= deadlineTick) {
+                    remove(f);
+                    bucket.add(f);
+                }
+            }
+        }
+
+        void clear() {
+            EventFuture next;
+            for (EventFuture f = head_; f != null; f = next) {
+                next = f.next_;
+                f.bucket_ = null;
+                f.prev_ = null;
+                f.next_ = null;
+            }
+            head_ = null;
+            tail_ = null;
+        }
+    }
+}
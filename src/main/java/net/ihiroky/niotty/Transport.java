@@ -135,4 +135,14 @@ public interface Transport extends EventDispatcherSelection {
      * @return the number of write buffers to be flushed
      */
     int pendingWriteBuffers();
+
+    /**
+     * Returns true if the bytes of the pending write buffers do not exceed the high watermark,
+     * or fall to the low watermark after exceeding it. The change of this value is notified by
+     * {@link net.ihiroky.niotty.WritabilityEvent} through the pipeline.
+     * @return true if this transport is writable
+     * @see net.ihiroky.niotty.TransportOptions#WRITE_BUFFER_HIGH_WATERMARK
+     * @see net.ihiroky.niotty.TransportOptions#WRITE_BUFFER_LOW_WATERMARK
+     */
+    boolean isWritable();
 }
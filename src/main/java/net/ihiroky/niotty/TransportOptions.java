@@ -17,6 +17,8 @@ public final class TransportOptions {
             new TransportOptionImpl<Integer>("SO_RCVBUF", Integer.class);
     public static final TransportOption<Boolean> SO_REUSEADDR =
             new TransportOptionImpl<Boolean>("SO_REUSEADDR", Boolean.class);
+    public static final TransportOption<Boolean> SO_REUSEPORT =
+            new TransportOptionImpl<Boolean>("SO_REUSEPORT", Boolean.class);
     public static final TransportOption<Integer> SO_SNDBUF =
             new TransportOptionImpl<Integer>("SO_SNDBUF", Integer.class);
     public static final TransportOption<Boolean> TCP_NODELAY =
@@ -33,6 +35,37 @@ public final class TransportOptions {
     public static final TransportOption<Boolean> DEACTIVATE_ON_END_OF_STREAM =
             new TransportOptionImpl<Boolean>("DEACTIVATE_ON_END_OF_STREAM", Boolean.class);
 
+    /**
+     * The maximum number of the write attempts in a flush before waiting for the channel to become writable;
+     * {@link net.ihiroky.niotty.nio.NioSocketTransport#DEFAULT_WRITE_SPIN_COUNT} by default.
+     */
+    public static final TransportOption<Integer> WRITE_SPIN_COUNT =
+            new TransportOptionImpl<Integer>("WRITE_SPIN_COUNT", Integer.class);
+
+    /**
+     * The bytes of the pending write buffers above which the transport becomes unwritable;
+     * 0 (default) if the transport is always writable. The bytes are counted by the write queue
+     * at the I/O stage if it is {@link net.ihiroky.niotty.nio.ByteCountingWriteQueue}; the messages
+     * not reaching the I/O stage yet are not counted.
+     */
+    public static final TransportOption<Integer> WRITE_BUFFER_HIGH_WATERMARK =
+            new TransportOptionImpl<Integer>("WRITE_BUFFER_HIGH_WATERMARK", Integer.class);
+
+    /**
+     * The bytes of the pending write buffers to which the unwritable transport falls to become writable again;
+     * 0 by default. The value larger than the high watermark is treated as the high watermark.
+     */
+    public static final TransportOption<Integer> WRITE_BUFFER_LOW_WATERMARK =
+            new TransportOptionImpl<Integer>("WRITE_BUFFER_LOW_WATERMARK", Integer.class);
+
+    /**
+     * The maximum number of the datagrams received in a wakeup and loaded into the pipeline as
+     * a {@link net.ihiroky.niotty.nio.DatagramBatch}; 0 by default, which loads each datagram one by one.
+     * The datagrams demultiplexed into the peer transports are always loaded one by one.
+     */
+    public static final TransportOption<Integer> DATAGRAM_RECEIVE_BATCH =
+            new TransportOptionImpl<Integer>("DATAGRAM_RECEIVE_BATCH", Integer.class);
+
     private static class TransportOptionImpl<T> implements TransportOption<T> {
         private final String name_;
         private final Class<T> type_;
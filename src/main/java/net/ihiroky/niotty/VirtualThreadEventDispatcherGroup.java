@@ -0,0 +1,209 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>An implementation of {@link net.ihiroky.niotty.EventDispatcherGroup} which executes
+ * the events on virtual threads, for the stages which call blocking operations.</p>
+ *
+ * <p>{@link #assign(EventDispatcherSelection)} returns a dispatcher dedicated to the selection,
+ * called a strand. A strand which gets a new event is submitted to an executor which starts
+ * a new virtual thread for each task, and the virtual thread executes the events in the strand
+ * in FIFO order. A strand is executed by one thread at a time, so that the events for
+ * the selection (transport) are processed in order, and the blocking operations of
+ * the different selections overlap without blocking the platform threads.</p>
+ *
+ * <p>The virtual threads are looked up by reflection because this library is built for
+ * the older Java. If the runtime does not support the virtual threads (before Java 21),
+ * the strands are executed by a cached thread pool, which creates a platform thread
+ * for each concurrent strand. {@link #isVirtual()} tells which is used.</p>
+ *
+ * <p>This group has a platform thread as the timer, which executes the events scheduled
+ * with delay and counts the selections.</p>
+ */
+public final class VirtualThreadEventDispatcherGroup extends EventDispatcherGroup {
+
+    private final ThreadFactory threadFactory_;
+    private final Map<EventDispatcherSelection, Strand> strandMap_;
+    private volatile ExecutorService executor_;
+
+    /** The maximum number of the events processed in a strand before submitting it again. */
+    static final int EVENTS_PER_STRAND = 64;
+
+    private static Logger logger_ = LoggerFactory.getLogger(VirtualThreadEventDispatcherGroup.class);
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = virtualThreadPerTaskExecutorMethod();
+
+    /**
+     * Constructs a instance.
+     *
+     * An invocation of this constructor behaves in exactly the same way as the invocation
+     * <code>VirtualThreadEventDispatcherGroup(Executors.defaultThreadFactory())</code>.
+     */
+    public VirtualThreadEventDispatcherGroup() {
+        this(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * An invocation of this constructor behaves in exactly the same way as the invocation
+     * <code>VirtualThreadEventDispatcherGroup(threadFactory, TimerQueues.priorityQueue())</code>.
+     *
+     * @param threadFactory a factory to create the timer thread, and the threads which execute
+     *                      the strands if the virtual threads are not supported
+     */
+    public VirtualThreadEventDispatcherGroup(ThreadFactory threadFactory) {
+        this(threadFactory, TimerQueues.priorityQueue());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * @param threadFactory a factory to create the timer thread, and the threads which execute
+     *                      the strands if the virtual threads are not supported
+     * @param timerQueueFactory a factory to create the timer queue used by the timer
+     */
+    public VirtualThreadEventDispatcherGroup(ThreadFactory threadFactory, final TimerQueueFactory timerQueueFactory) {
+        super(1, threadFactory, new EventDispatcherFactory<DefaultEventDispatcher>() {
+            @Override
+            public DefaultEventDispatcher newEventDispatcher() {
+                return new DefaultEventDispatcher(0, timerQueueFactory.newTimerQueue());
+            }
+        });
+        Arguments.requireNonNull(timerQueueFactory, "timerQueueFactory");
+        threadFactory_ = threadFactory;
+        strandMap_ = new HashMap<EventDispatcherSelection, Strand>();
+    }
+
+    private static Method virtualThreadPerTaskExecutorMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (Exception e) {
+            logger_.debug("[virtualThreadPerTaskExecutorMethod] Virtual threads are not supported.", e);
+            return null;
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (Exception e) {
+                logger_.warn("[newExecutor] Failed to create the executor of virtual threads.", e);
+            }
+        }
+        return Executors.newCachedThreadPool(threadFactory_);
+    }
+
+    /**
+     * Returns true if the strands are executed by the virtual threads.
+     * @return true if the virtual threads are supported by the runtime
+     */
+    public static boolean isVirtual() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Returns the strand dedicated to the specified selection. The strand is executed by
+     * a virtual thread.
+     *
+     * @param selection the selection added to the timer
+     * @return the strand
+     */
+    @Override
+    public EventDispatcher assign(EventDispatcherSelection selection) {
+        EventDispatcher timer = super.assign(selection);
+        synchronized (strandMap_) {
+            if (executor_ == null) {
+                executor_ = newExecutor();
+            }
+            Strand strand = strandMap_.get(selection);
+            if (strand == null) {
+                strand = new Strand(this, timer);
+                strandMap_.put(selection, strand);
+            }
+            return strand;
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        synchronized (strandMap_) {
+            strandMap_.clear();
+            ExecutorService executor = executor_;
+            if (executor != null) {
+                executor.shutdown();
+                executor_ = null;
+            }
+        }
+    }
+
+    private void release(EventDispatcherSelection selection, Strand strand) {
+        synchronized (strandMap_) {
+            if (strandMap_.get(selection) == strand) {
+                strandMap_.remove(selection);
+            }
+        }
+    }
+
+    private boolean submit(Runnable task) {
+        ExecutorService executor = executor_;
+        if (executor == null) {
+            return false;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException ree) {
+            return false; // closed concurrently
+        }
+    }
+
+    /**
+     * The dispatcher dedicated to a selection. The events offered to this dispatcher are
+     * executed by a virtual thread at a time.
+     */
+    static final class Strand extends AbstractStrand {
+
+        private final VirtualThreadEventDispatcherGroup group_;
+        private final Runnable task_;
+
+        Strand(VirtualThreadEventDispatcherGroup group, EventDispatcher timer) {
+            super(timer, EVENTS_PER_STRAND);
+            group_ = group;
+            task_ = new Runnable() {
+                @Override
+                public void run() {
+                    if (runEvents()) {
+                        submit();
+                    }
+                }
+            };
+        }
+
+        @Override
+        void submit() {
+            if (!group_.submit(task_)) {
+                logger_.debug("[submit] {} is closed. The events are discarded.", group_);
+                discardEvents();
+            }
+        }
+
+        @Override
+        void release(EventDispatcherSelection selection) {
+            group_.release(selection, this);
+        }
+    }
+}
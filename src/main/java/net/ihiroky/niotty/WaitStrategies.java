@@ -0,0 +1,164 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+
+/**
+ * Provides factory methods of {@link net.ihiroky.niotty.WaitStrategy}.
+ */
+public final class WaitStrategies {
+
+    private static final WaitStrategy BLOCKING = new BlockingWaitStrategy();
+    private static final WaitStrategy BUSY_SPIN = new BusySpinWaitStrategy();
+
+    /** The mask to check the timeout and the interruption while spinning. */
+    private static final int SPIN_CHECK_MASK = 0xFF;
+
+    /**
+     * The source of the current time in nanoseconds, which is replaced in the tests.
+     */
+    interface NanoClock {
+        long nanoTime();
+    }
+
+    static final NanoClock SYSTEM_CLOCK = new NanoClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private WaitStrategies() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the strategy which blocks the thread until signaled. This is used by default.
+     * @return the strategy
+     */
+    public static WaitStrategy blocking() {
+        return BLOCKING;
+    }
+
+    /**
+     * Returns the strategy which spins {@code spins} times, then yields the thread {@code yields} times,
+     * and then blocks the thread until signaled.
+     *
+     * @param spins the number of spins before yielding
+     * @param yields the number of yields before blocking
+     * @return the strategy
+     */
+    public static WaitStrategy spinYieldBlocking(int spins, int yields) {
+        return spinYieldBlocking(spins, yields, SYSTEM_CLOCK);
+    }
+
+    static WaitStrategy spinYieldBlocking(int spins, int yields, NanoClock clock) {
+        return new SpinYieldBlockingWaitStrategy(
+                Arguments.requirePositiveOrZero(spins, "spins"), Arguments.requirePositiveOrZero(yields, "yields"),
+                clock);
+    }
+
+    /**
+     * Returns the strategy which spins until signaled without blocking. The dispatcher thread
+     * occupies a CPU core.
+     * @return the strategy
+     */
+    public static WaitStrategy busySpin() {
+        return BUSY_SPIN;
+    }
+
+    private static void block(WaitStrategy.Waiter waiter, long timeoutNanos, NanoClock clock)
+            throws InterruptedException {
+        long start = clock.nanoTime();
+        while (!waiter.isSignaled() && timeoutNanos > 0L) {
+            waiter.block(timeoutNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long now = clock.nanoTime();
+            timeoutNanos -= now - start;
+            start = now;
+        }
+    }
+
+    private static class BlockingWaitStrategy implements WaitStrategy {
+        @Override
+        public void await(Waiter waiter, long timeoutNanos) throws InterruptedException {
+            block(waiter, timeoutNanos, SYSTEM_CLOCK);
+        }
+
+        @Override
+        public String toString() {
+            return "blocking";
+        }
+    }
+
+    private static class SpinYieldBlockingWaitStrategy implements WaitStrategy {
+
+        private final int spins_;
+        private final int yields_;
+        private final NanoClock clock_;
+
+        SpinYieldBlockingWaitStrategy(int spins, int yields, NanoClock clock) {
+            spins_ = spins;
+            yields_ = yields;
+            clock_ = clock;
+        }
+
+        @Override
+        public void await(Waiter waiter, long timeoutNanos) throws InterruptedException {
+            if (timeoutNanos <= 0L) {
+                return;
+            }
+            NanoClock clock = clock_;
+            long start = clock.nanoTime();
+            for (int i = 0; i < spins_; i++) {
+                if (waiter.isSignaled()) {
+                    return;
+                }
+            }
+            for (int i = 0; i < yields_; i++) {
+                if (waiter.isSignaled()) {
+                    return;
+                }
+                if (clock.nanoTime() - start >= timeoutNanos) {
+                    return; // A yield may take a scheduling quantum, so the timeout is checked each time.
+                }
+                Thread.yield();
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            block(waiter, timeoutNanos - (clock.nanoTime() - start), clock);
+        }
+
+        @Override
+        public String toString() {
+            return "spinYieldBlocking(spins:" + spins_ + ", yields:" + yields_ + ")";
+        }
+    }
+
+    private static class BusySpinWaitStrategy implements WaitStrategy {
+        @Override
+        public void await(Waiter waiter, long timeoutNanos) throws InterruptedException {
+            if (timeoutNanos <= 0L) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (int i = 0; !waiter.isSignaled(); i++) {
+                if ((i & SPIN_CHECK_MASK) == SPIN_CHECK_MASK) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    if (System.nanoTime() - start >= timeoutNanos) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "busySpin";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.ihiroky.niotty;
+
+/**
+ * A strategy to wait for a signal in {@link net.ihiroky.niotty.EventDispatcher#poll(long)}.
+ * <p>
+ * The event dispatcher is signaled when a new event is inserted into its event queue.
+ * The strategy determines how the dispatcher thread waits for the signal; blocks,
+ * spins or mixes of them. The spin reduces the latency to hand off the event
+ * at the cost of the CPU.
+ * </p>
+ * <p>
+ * See {@link net.ihiroky.niotty.WaitStrategies} for the implementations provided by Niotty.
+ * </p>
+ */
+public interface WaitStrategy {
+
+    /**
+     * Waits until the waiter is signaled, the current thread is interrupted,
+     * or the timeout expires, whichever comes first.
+     *
+     * @param waiter the waiter provided by the event dispatcher
+     * @param timeoutNanos the timeout by nanoseconds; returns immediately if zero or negative
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    void await(Waiter waiter, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * An object provided by the event dispatcher to wait for the signal.
+     */
+    interface Waiter {
+
+        /**
+         * Returns true if the waiter is signaled.
+         * @return true if the waiter is signaled
+         */
+        boolean isSignaled();
+
+        /**
+         * Blocks the current thread until the waiter is signaled or the timeout expires.
+         * This method may return spuriously.
+         *
+         * @param timeoutNanos the timeout by nanoseconds
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        void block(long timeoutNanos) throws InterruptedException;
+    }
+}
@@ -0,0 +1,287 @@
+package net.ihiroky.niotty;
+
+import net.ihiroky.niotty.util.Arguments;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>An implementation of {@link net.ihiroky.niotty.EventDispatcherGroup} whose threads steal
+ * the works from each other, for the stages which do not handle I/O.</p>
+ *
+ * <p>{@link #assign(EventDispatcherSelection)} returns a dispatcher dedicated to the selection,
+ * called a strand. A strand has its own event queue and is executed by one of the worker threads
+ * at a time, so that the events for the selection (transport) are processed in FIFO order.
+ * A strand which gets a new event is queued to its home worker, which is chosen by the number
+ * of the selections. An idle worker steals the queued strand from the other busy worker.</p>
+ */
+public final class WorkStealingEventDispatcherGroup extends EventDispatcherGroup {
+
+    private final WorkerFactory workerFactory_;
+    private final Map<EventDispatcherSelection, Strand> strandMap_;
+
+    /** The maximum number of the events processed in a strand before switching to the other strand. */
+    static final int EVENTS_PER_STRAND = 64;
+
+    /** The maximum number of the strands processed in a poll of a worker. */
+    static final int STRANDS_PER_POLL = 64;
+
+    /**
+     * Constructs a instance.
+     *
+     * An invocation of this constructor behaves in exactly the same way as the invocation
+     * <code>WorkStealingEventDispatcherGroup(workers, Executors.defaultThreadFactory())</code>.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     */
+    public WorkStealingEventDispatcherGroup(int workers) {
+        this(workers, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * An invocation of this constructor behaves in exactly the same way as the invocation
+     * <code>WorkStealingEventDispatcherGroup(workers, threadFactory,
+     * TimerQueues.priorityQueue(), WaitStrategies.blocking())</code>.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     * @param threadFactory a factory to create thread which runs a event dispatcher
+     */
+    public WorkStealingEventDispatcherGroup(int workers, ThreadFactory threadFactory) {
+        this(workers, threadFactory, TimerQueues.priorityQueue(), WaitStrategies.blocking());
+    }
+
+    /**
+     * Constructs a instance.
+     *
+     * @param workers the number of the threads to be managed by the instance
+     * @param threadFactory a factory to create thread which runs a event dispatcher
+     * @param timerQueueFactory a factory to create the timer queue used by the worker
+     * @param waitStrategy a strategy to wait for a new event, used by the worker
+     */
+    public WorkStealingEventDispatcherGroup(int workers, ThreadFactory threadFactory,
+            TimerQueueFactory timerQueueFactory, WaitStrategy waitStrategy) {
+        this(workers, threadFactory, new WorkerFactory(timerQueueFactory, waitStrategy));
+    }
+
+    private WorkStealingEventDispatcherGroup(int workers, ThreadFactory threadFactory, WorkerFactory workerFactory) {
+        super(workers, threadFactory, workerFactory);
+        workerFactory_ = workerFactory;
+        strandMap_ = new HashMap<EventDispatcherSelection, Strand>();
+    }
+
+    /**
+     * Returns the strand dedicated to the specified selection. The strand is executed by
+     * the worker threads in this group.
+     *
+     * @param selection the selection added to a selected event dispatcher
+     * @return the strand
+     */
+    @Override
+    public EventDispatcher assign(EventDispatcherSelection selection) {
+        Worker home = (Worker) super.assign(selection);
+        synchronized (strandMap_) {
+            Strand strand = strandMap_.get(selection);
+            if (strand == null) {
+                strand = new Strand(this, home);
+                strandMap_.put(selection, strand);
+            }
+            return strand;
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        workerFactory_.workers_.clear();
+        synchronized (strandMap_) {
+            strandMap_.clear();
+        }
+    }
+
+    private void release(EventDispatcherSelection selection, Strand strand) {
+        synchronized (strandMap_) {
+            if (strandMap_.get(selection) == strand) {
+                strandMap_.remove(selection);
+            }
+        }
+    }
+
+    private static class WorkerFactory implements EventDispatcherFactory<Worker> {
+
+        final TimerQueueFactory timerQueueFactory_;
+        final WaitStrategy waitStrategy_;
+        final List<Worker> workers_;
+
+        WorkerFactory(TimerQueueFactory timerQueueFactory, WaitStrategy waitStrategy) {
+            timerQueueFactory_ = Arguments.requireNonNull(timerQueueFactory, "timerQueueFactory");
+            waitStrategy_ = Arguments.requireNonNull(waitStrategy, "waitStrategy");
+            workers_ = new CopyOnWriteArrayList<Worker>();
+        }
+
+        @Override
+        public Worker newEventDispatcher() {
+            Worker worker = new Worker(this);
+            workers_.add(worker);
+            return worker;
+        }
+
+        Strand steal(Worker thief) {
+            List<Worker> workers = workers_;
+            int n = workers.size();
+            if (n <= 1) {
+                return null;
+            }
+            int start = thief.nextRandom(n);
+            for (int i = 0; i < n; i++) {
+                Worker victim;
+                try {
+                    victim = workers.get((start + i) % n);
+                } catch (IndexOutOfBoundsException ioobe) {
+                    return null; // closed concurrently
+                }
+                if (victim != thief) {
+                    Strand strand = victim.runQueue_.poll();
+                    if (strand != null) {
+                        return strand;
+                    }
+                }
+            }
+            return null;
+        }
+
+        void wakeUpIdleWorker(Worker busy) {
+            for (Worker worker : workers_) {
+                if (worker != busy && worker.idle_) {
+                    worker.wakeUp();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The thread of this group, which executes the strands queued to itself
+     * or stolen from the other worker.
+     */
+    static final class Worker extends DefaultEventDispatcher {
+
+        private final WorkerFactory factory_;
+        final Queue<Strand> runQueue_;
+        volatile boolean idle_;
+        private int seed_;
+        private long strandTimeNanos_;
+
+        Worker(WorkerFactory factory) {
+            super(0, factory.timerQueueFactory_.newTimerQueue(), factory.waitStrategy_);
+            factory_ = factory;
+            runQueue_ = new ConcurrentLinkedQueue<Strand>();
+            seed_ = System.identityHashCode(this) | 1;
+        }
+
+        void push(Strand strand) {
+            runQueue_.offer(strand);
+            wakeUp();
+            if (!idle_) {
+                factory_.wakeUpIdleWorker(this);
+            }
+        }
+
+        int nextRandom(int n) {
+            int x = seed_;
+            x ^= x << 13;
+            x ^= x >>> 17;
+            x ^= x << 5;
+            seed_ = x;
+            return (x & Integer.MAX_VALUE) % n;
+        }
+
+        @Override
+        protected void poll(long timeoutNanos) throws InterruptedException {
+            long start = System.nanoTime();
+            if (runStrands()) {
+                strandTimeNanos_ = System.nanoTime() - start;
+                return;
+            }
+            strandTimeNanos_ = 0L;
+            idle_ = true;
+            try {
+                if (runQueue_.isEmpty()) {
+                    super.poll(timeoutNanos);
+                }
+            } finally {
+                idle_ = false;
+            }
+        }
+
+        /**
+         * Returns the time spent on the strands in the last poll, which is counted as the busy time.
+         * @return the time spent on the strands
+         */
+        @Override
+        protected long ioTimeNanos() {
+            return strandTimeNanos_;
+        }
+
+        private boolean runStrands() {
+            boolean ran = false;
+            for (int i = 0; i < STRANDS_PER_POLL; i++) {
+                Strand strand = runQueue_.poll();
+                if (strand == null) {
+                    strand = factory_.steal(this);
+                    if (strand == null) {
+                        break;
+                    }
+                }
+                if (strand.runEvents()) {
+                    runQueue_.offer(strand);
+                }
+                ran = true;
+            }
+            return ran;
+        }
+
+        @Override
+        protected void onClose() {
+            factory_.workers_.remove(this);
+            super.onClose();
+        }
+    }
+
+    /**
+     * The dispatcher dedicated to a selection. The events offered to this dispatcher are
+     * executed by one of the workers at a time.
+     */
+    static final class Strand extends AbstractStrand {
+
+        private final WorkStealingEventDispatcherGroup group_;
+        private final Worker home_;
+
+        Strand(WorkStealingEventDispatcherGroup group, Worker home) {
+            super(home, EVENTS_PER_STRAND);
+            group_ = group;
+            home_ = home;
+        }
+
+        Worker home() {
+            return home_;
+        }
+
+        @Override
+        void submit() {
+            home_.push(this);
+        }
+
+        @Override
+        void release(EventDispatcherSelection selection) {
+            group_.release(selection, this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package net.ihiroky.niotty;
+
+/**
+ * The event triggered in the pipeline of a {@link net.ihiroky.niotty.Transport} when its writability changes.
+ * <p>
+ * The transport becomes unwritable if the bytes of the pending write buffers exceed
+ * {@link net.ihiroky.niotty.TransportOptions#WRITE_BUFFER_HIGH_WATERMARK}, and becomes writable again
+ * if they fall to {@link net.ihiroky.niotty.TransportOptions#WRITE_BUFFER_LOW_WATERMARK}.
+ * This event is passed to {@link net.ihiroky.niotty.Stage#eventTriggered(StageContext, Object)}
+ * on each change in the I/O thread.
+ * </p>
+ *
+ * @see net.ihiroky.niotty.Transport#isWritable()
+ */
+public enum WritabilityEvent {
+
+    /** The transport becomes writable. */
+    WRITABLE,
+
+    /** The transport becomes unwritable. */
+    UNWRITABLE
+}
@@ -278,6 +278,28 @@ public final class Buffers {
         return b;
     }
 
+    /**
+     * Returns true if the content of the specified buffer is allocated from a {@link ChunkPool}.
+     * The content of such a buffer is owned by the buffer and its duplicates and slices with
+     * the reference count, and returned to the pool when all of them are disposed.
+     * So the buffer and its slices can be passed to the other threads without copying the content.
+     *
+     * @param buffer the buffer
+     * @return true if the content of the buffer is allocated from a {@code ChunkPool}
+     */
+    public static boolean isPooled(CodecBuffer buffer) {
+        if (buffer instanceof ByteBufferCodecBuffer) {
+            return ((ByteBufferCodecBuffer) buffer).chunk().manager() instanceof ChunkPool;
+        }
+        if (buffer instanceof ArrayCodecBuffer) {
+            return ((ArrayCodecBuffer) buffer).chunk().manager() instanceof ChunkPool;
+        }
+        if (buffer instanceof SlicedCodecBuffer) {
+            return isPooled(((SlicedCodecBuffer) buffer).base_);
+        }
+        return false;
+    }
+
     /**
      * Returns a buffer which contains no content.
      * An invocation of this method behaves in exactly the same way as the invocation
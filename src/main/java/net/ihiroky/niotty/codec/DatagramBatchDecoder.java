@@ -0,0 +1,63 @@
+package net.ihiroky.niotty.codec;
+
+import net.ihiroky.niotty.LoadStage;
+import net.ihiroky.niotty.StageContext;
+import net.ihiroky.niotty.nio.DatagramBatch;
+import net.ihiroky.niotty.util.Arguments;
+
+/**
+ * Adapts a {@link net.ihiroky.niotty.LoadStage} which decodes a datagram to
+ * {@link net.ihiroky.niotty.nio.DatagramBatch}.
+ * <p>
+ * Each datagram in the batch is passed to the stage with its source address as the parameter,
+ * in the same way as the datagrams loaded one by one, and the batch is released to be reused by
+ * the transport. The other messages are passed to the stage as they are. The events other than
+ * the load are also passed to the stage.
+ * </p>
+ */
+public class DatagramBatchDecoder extends LoadStage {
+
+    private final LoadStage stage_;
+
+    /**
+     * Creates a new instance.
+     * @param stage the stage which decodes a datagram
+     */
+    public DatagramBatchDecoder(LoadStage stage) {
+        stage_ = Arguments.requireNonNull(stage, "stage");
+    }
+
+    @Override
+    public void loaded(StageContext context, Object message, Object parameter) {
+        if (message instanceof DatagramBatch) {
+            DatagramBatch datagrams = (DatagramBatch) message;
+            int size = datagrams.size();
+            for (int i = 0; i < size; i++) {
+                stage_.loaded(context, datagrams.datagram(i), datagrams.source(i));
+            }
+            datagrams.release();
+            return;
+        }
+        stage_.loaded(context, message, parameter);
+    }
+
+    @Override
+    public void exceptionCaught(StageContext context, Exception exception) {
+        stage_.exceptionCaught(context, exception);
+    }
+
+    @Override
+    public void activated(StageContext context) {
+        stage_.activated(context);
+    }
+
+    @Override
+    public void deactivated(StageContext context) {
+        stage_.deactivated(context);
+    }
+
+    @Override
+    public void eventTriggered(StageContext context, Object event) {
+        stage_.eventTriggered(context, event);
+    }
+}
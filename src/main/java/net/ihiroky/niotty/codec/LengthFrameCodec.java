@@ -78,7 +78,7 @@ public class LengthFrameCodec implements Stage {
                 break;
             }
             if (output == input) {
-                output = context.changesDispatcherOnProceed()
+                output = (context.changesDispatcherOnProceed() && !Buffers.isPooled(input))
                         ? InputSupport.drain(input, frameBytes)
                         : input.slice(frameBytes);
             }
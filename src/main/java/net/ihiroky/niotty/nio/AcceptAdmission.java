@@ -0,0 +1,220 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.CompletionListener;
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.EventDispatcherGroup;
+import net.ihiroky.niotty.TransportFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Controls the admission of the connections accepted by {@link NioServerSocketTransport}.
+ * <p>
+ * The acceptors stop accepting, and {@code OP_ACCEPT} is cleared from their keys, if the number
+ * of the accepted connections reaches the maximum connections or if the event loop lag of
+ * the I/O dispatchers exceeds the maximum lag. The new connections wait in the backlog of
+ * the listen socket instead of being accepted and left unserved. The acceptors resume
+ * accepting with hysteresis; after the connections decrease to {@link #RESUME_PERCENTAGE}
+ * percent of the maximum connections and the lag decreases to {@link #RESUME_PERCENTAGE}
+ * percent of the maximum lag.
+ * </p>
+ * <p>
+ * The lag is measured by a probe event which is offered to each I/O dispatcher periodically.
+ * The lag of a dispatcher is the time from offering the probe to executing it, or the time since
+ * offered if the probe is not executed yet. The lag of the group is the maximum of them.
+ * </p>
+ */
+final class AcceptAdmission {
+
+    private final NioServerSocketTransport transport_;
+    private final EventDispatcherGroup ioEventDispatcherGroup_;
+    private final AtomicInteger connections_;
+    private final CompletionListener closeListener_;
+    private final Map<EventDispatcher, LagProbe> probeMap_;
+    private volatile int maxConnections_;
+    private volatile long maxLagNanos_;
+    private volatile boolean paused_;
+    private volatile long lagNanos_;
+    private boolean lagMonitorStarted_;
+
+    private static Logger logger_ = LoggerFactory.getLogger(AcceptAdmission.class);
+
+    /** The percentage of the limits below which the acceptors resume accepting. */
+    static final int RESUME_PERCENTAGE = 80;
+
+    static final long MIN_LAG_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final long MAX_LAG_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    AcceptAdmission(NioServerSocketTransport transport, EventDispatcherGroup ioEventDispatcherGroup) {
+        transport_ = transport;
+        ioEventDispatcherGroup_ = ioEventDispatcherGroup;
+        connections_ = new AtomicInteger();
+        probeMap_ = new HashMap<EventDispatcher, LagProbe>();
+        closeListener_ = new CompletionListener() {
+            @Override
+            public void onComplete(TransportFuture future) {
+                connections_.decrementAndGet();
+                update();
+            }
+        };
+    }
+
+    void setMaxConnections(int maxConnections) {
+        maxConnections_ = maxConnections;
+        update();
+    }
+
+    int maxConnections() {
+        return maxConnections_;
+    }
+
+    void setMaxLagNanos(long maxLagNanos) {
+        maxLagNanos_ = maxLagNanos;
+        if (maxLagNanos > 0) {
+            startLagMonitor();
+        } else {
+            lagNanos_ = 0L;
+        }
+        update();
+    }
+
+    long maxLagNanos() {
+        return maxLagNanos_;
+    }
+
+    int connections() {
+        return connections_.get();
+    }
+
+    long lagNanos() {
+        return lagNanos_;
+    }
+
+    boolean isPaused() {
+        return paused_;
+    }
+
+    /**
+     * Counts the accepted transport until it is closed.
+     * @param transport the accepted transport
+     */
+    void accepted(NioClientSocketTransport transport) {
+        connections_.incrementAndGet();
+        transport.closeFuture().addListener(closeListener_);
+        update();
+    }
+
+    /**
+     * Pauses or resumes accepting if the state is changed. The limits and the current values are
+     * read in the lock, so that the concurrent updates do not apply a stale decision.
+     */
+    synchronized void update() {
+        int maxConnections = maxConnections_;
+        long maxLag = maxLagNanos_;
+        int connections = connections_.get();
+        long lag = lagNanos_;
+        if (!paused_) {
+            if ((maxConnections > 0 && connections >= maxConnections) || (maxLag > 0 && lag >= maxLag)) {
+                changeState(true);
+            }
+        } else {
+            if ((maxConnections <= 0 || connections <= (long) maxConnections * RESUME_PERCENTAGE / 100)
+                    && (maxLag <= 0 || lag <= maxLag * RESUME_PERCENTAGE / 100)) {
+                changeState(false);
+            }
+        }
+    }
+
+    private void changeState(boolean paused) {
+        paused_ = paused;
+        logger_.info("[changeState] {} accepting on {}. connections: {}, lag: {} ns.",
+                paused ? "Pause" : "Resume", transport_, connections_.get(), lagNanos_);
+        transport_.setAcceptInterest(!paused);
+    }
+
+    private synchronized void startLagMonitor() {
+        if (lagMonitorStarted_) {
+            return;
+        }
+        lagMonitorStarted_ = true;
+        transport_.eventDispatcher().schedule(new Event() {
+            @Override
+            public long execute() {
+                long maxLag = maxLagNanos_;
+                if (maxLag <= 0 || !transport_.isOpen()) {
+                    stopLagMonitor();
+                    return DONE;
+                }
+                checkLag();
+                return Math.max(Math.min(maxLag / 2, MAX_LAG_CHECK_INTERVAL_NANOS), MIN_LAG_CHECK_INTERVAL_NANOS);
+            }
+        }, MIN_LAG_CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void stopLagMonitor() {
+        lagMonitorStarted_ = false;
+        lagNanos_ = 0L;
+        probeMap_.clear();
+        update();
+    }
+
+    /**
+     * Measures the lag of the I/O dispatchers and offers the probes. This method is called
+     * by the dispatcher of the transport.
+     */
+    void checkLag() {
+        long now = System.nanoTime();
+        List<EventDispatcher> eventDispatchers = ioEventDispatcherGroup_.eventDispatchers();
+        long lag = 0L;
+        synchronized (this) {
+            for (Iterator<EventDispatcher> i = probeMap_.keySet().iterator(); i.hasNext();) {
+                if (!eventDispatchers.contains(i.next())) {
+                    i.remove();
+                }
+            }
+            for (EventDispatcher eventDispatcher : eventDispatchers) {
+                LagProbe probe = probeMap_.get(eventDispatcher);
+                if (probe == null) {
+                    probe = new LagProbe();
+                    probeMap_.put(eventDispatcher, probe);
+                }
+                lag = Math.max(lag, probe.lagNanos(now));
+                if (probe.offeredNanos_ == 0L) {
+                    probe.offeredNanos_ = now;
+                    eventDispatcher.offer(probe);
+                }
+            }
+        }
+        lagNanos_ = lag;
+        update();
+    }
+
+    /**
+     * Measures the time from offering to executing.
+     */
+    private static class LagProbe implements Event {
+
+        volatile long offeredNanos_;
+        volatile long lagNanos_;
+
+        long lagNanos(long now) {
+            long offered = offeredNanos_;
+            return (offered != 0L) ? Math.max(now - offered, lagNanos_) : lagNanos_;
+        }
+
+        @Override
+        public long execute() {
+            lagNanos_ = System.nanoTime() - offeredNanos_;
+            offeredNanos_ = 0L;
+            return DONE;
+        }
+    }
+}
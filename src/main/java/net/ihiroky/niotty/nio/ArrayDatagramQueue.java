@@ -0,0 +1,170 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.Packet;
+import net.ihiroky.niotty.util.Arguments;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A {@link net.ihiroky.niotty.nio.DatagramQueue} which holds the datagrams in a ring of
+ * the entries allocated on the construction.
+ * <p>
+ * The packet and its target address are stored into an entry of the ring, and the entry is reused
+ * after the packet is sent. So {@link #offer(net.ihiroky.niotty.buffer.Packet, Object)} allocates
+ * no object, unlike {@link net.ihiroky.niotty.nio.SimpleDatagramQueue} which holds
+ * {@link net.ihiroky.niotty.nio.AttachedMessage}s. Each entry has a sequence number to tell
+ * whether it is published to the consumer or released to the producers, which supports
+ * multiple producers and a single consumer. If the ring is full, the offer returns false
+ * instead of waiting for the consumer, and the transport drops the packet and counts it in
+ * {@link net.ihiroky.niotty.nio.NioDatagramSocketTransport#droppedMessages()}.
+ * </p>
+ */
+public class ArrayDatagramQueue implements ParameterizedDatagramQueue, ByteCountingWriteQueue {
+
+    private final Entry[] entries_;
+    private final int mask_;
+    private volatile long tail_;
+    private volatile long head_; // Updated only by the consumer.
+    private volatile long pendingBytes_;
+
+    private static final AtomicLongFieldUpdater<ArrayDatagramQueue> TAIL_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ArrayDatagramQueue.class, "tail_");
+    private static final AtomicLongFieldUpdater<ArrayDatagramQueue> PENDING_BYTES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ArrayDatagramQueue.class, "pendingBytes_");
+
+    private static final class Entry {
+        /*
+         * The entry at the index i is released to the producer of the sequence n (n & mask == i)
+         * if sequence_ == n, and published to the consumer if sequence_ == n + 1.
+         */
+        volatile long sequence_;
+        Packet packet_;
+        SocketAddress target_;
+
+        Entry(long sequence) {
+            sequence_ = sequence;
+        }
+    }
+
+    private void addPendingBytes(long bytes) {
+        PENDING_BYTES_UPDATER.addAndGet(this, bytes);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param capacity the capacity of the queue, which is round up to power of two
+     */
+    public ArrayDatagramQueue(int capacity) {
+        Arguments.requirePositive(capacity, "capacity");
+        int size = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        Entry[] entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry(i);
+        }
+        entries_ = entries;
+        mask_ = size - 1;
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     * @return the capacity of this queue
+     */
+    public int capacity() {
+        return entries_.length;
+    }
+
+    @Override
+    public boolean offer(AttachedMessage<Packet> message) {
+        return offer(message.message(), message.parameter());
+    }
+
+    @Override
+    public boolean offer(Packet message, Object target) {
+        SocketAddress address = (SocketAddress) target;
+        for (;;) {
+            long tail = tail_;
+            Entry entry = entries_[(int) tail & mask_];
+            long sequence = entry.sequence_;
+            if (sequence == tail) {
+                if (TAIL_UPDATER.compareAndSet(this, tail, tail + 1)) {
+                    entry.packet_ = message;
+                    entry.target_ = address;
+                    addPendingBytes(message.remaining());
+                    entry.sequence_ = tail + 1;
+                    return true;
+                }
+            } else if (sequence < tail) {
+                return false; // The entry of the last round is not consumed yet.
+            }
+        }
+    }
+
+    @Override
+    public FlushStatus flush(DatagramChannel channel, ByteBuffer writeBuffer) throws IOException {
+        Entry[] entries = entries_;
+        long head = head_;
+        for (;;) {
+            Entry entry = entries[(int) head & mask_];
+            if (entry.sequence_ != head + 1) {
+                return FlushStatus.FLUSHED;
+            }
+
+            Packet packet = entry.packet_;
+            SocketAddress target = entry.target_;
+            int remaining = packet.remaining();
+            boolean sunk = (target != null) ? packet.sink(channel, writeBuffer, target) : packet.sink(channel);
+            if (!sunk) {
+                return FlushStatus.FLUSHING;
+            }
+            addPendingBytes(-remaining);
+            packet.dispose();
+            head = release(entry, head);
+        }
+    }
+
+    private long release(Entry entry, long head) {
+        entry.packet_ = null;
+        entry.target_ = null;
+        entry.sequence_ = head + entries_.length;
+        head_ = head + 1;
+        return head + 1;
+    }
+
+    @Override
+    public int size() {
+        return (int) (tail_ - head_);
+    }
+
+    @Override
+    public long pendingBytes() {
+        return pendingBytes_;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail_ == head_;
+    }
+
+    /**
+     * Disposes the packets in this queue and removes them. This method needs to be called by
+     * the thread which flushes this queue.
+     */
+    @Override
+    public void clear() {
+        Entry[] entries = entries_;
+        long head = head_;
+        for (;;) {
+            Entry entry = entries[(int) head & mask_];
+            if (entry.sequence_ != head + 1) {
+                break;
+            }
+            entry.packet_.dispose();
+            head = release(entry, head);
+        }
+        PENDING_BYTES_UPDATER.set(this, 0L);
+    }
+}
@@ -0,0 +1,25 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.util.Arguments;
+
+/**
+ * A write queue factory which creates {@link net.ihiroky.niotty.nio.ArrayDatagramQueue},
+ * which is used in {@link net.ihiroky.niotty.nio.NioDatagramSocketTransport}.
+ */
+public class ArrayDatagramQueueFactory implements WriteQueueFactory<DatagramQueue> {
+
+    private final int queueCapacity_;
+
+    /**
+     * Creates a new instance.
+     * @param queueCapacity the capacity of the queue
+     */
+    public ArrayDatagramQueueFactory(int queueCapacity) {
+        queueCapacity_ = Arguments.requirePositive(queueCapacity, "queueCapacity");
+    }
+
+    @Override
+    public ArrayDatagramQueue newWriteQueue() {
+        return new ArrayDatagramQueue(queueCapacity_);
+    }
+}
@@ -0,0 +1,19 @@
+package net.ihiroky.niotty.nio;
+
+/**
+ * A {@link net.ihiroky.niotty.nio.WriteQueue} which counts the bytes of the elements not written yet.
+ * <p>
+ * The transport evaluates {@link net.ihiroky.niotty.TransportOptions#WRITE_BUFFER_HIGH_WATERMARK}
+ * and {@link net.ihiroky.niotty.TransportOptions#WRITE_BUFFER_LOW_WATERMARK} with the count
+ * only if its write queue implements this interface. The transport with the other write queue
+ * is always writable.
+ * </p>
+ */
+public interface ByteCountingWriteQueue extends WriteQueue {
+
+    /**
+     * Returns the number of bytes of the elements in this queue, which are not written yet.
+     * @return the number of bytes of the elements in this queue
+     */
+    long pendingBytes();
+}
@@ -0,0 +1,129 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.CodecBuffer;
+
+import java.net.SocketAddress;
+import java.util.Arrays;
+
+/**
+ * The datagrams received by {@link net.ihiroky.niotty.nio.NioDatagramSocketTransport} in a wakeup,
+ * which is loaded into the pipeline as a message if
+ * {@link net.ihiroky.niotty.TransportOptions#DATAGRAM_RECEIVE_BATCH} is positive.
+ * <p>
+ * The i-th datagram is {@link #datagram(int)} and its source address is {@link #source(int)}.
+ * The datagrams are the slices of a buffer into which the transport receives them in the wakeup,
+ * which is allocated from the read chunk pool of the dispatcher if exists. The slices share
+ * the reference counted content of the buffer, so they can be passed to the other threads without
+ * copying, and the content is returned to the pool when all of them are disposed. A consumer which
+ * holds a datagram for a long time should copy it, since the datagram keeps the whole content alive.
+ * Each of them must be disposed by its consumer, or {@link #dispose()} disposes all of them.
+ * </p>
+ * <p>
+ * The transport reuses this batch for the next wakeup after {@link #release()} or {@link #dispose()}
+ * is called. The consumer must not access this batch after the call.
+ * The transport creates a new batch if this batch is not released.
+ * </p>
+ */
+public final class DatagramBatch {
+
+    private CodecBuffer[] datagrams_;
+    private SocketAddress[] sources_;
+    private int size_;
+    private volatile boolean released_;
+
+    /**
+     * Creates a new instance.
+     * @param capacity the initial capacity of the datagrams
+     */
+    public DatagramBatch(int capacity) {
+        datagrams_ = new CodecBuffer[capacity];
+        sources_ = new SocketAddress[capacity];
+    }
+
+    /**
+     * Adds a datagram.
+     * @param datagram the datagram
+     * @param source the source address of the datagram
+     */
+    public void add(CodecBuffer datagram, SocketAddress source) {
+        if (size_ == datagrams_.length) {
+            int capacity = Math.max(size_ * 2, 1);
+            datagrams_ = Arrays.copyOf(datagrams_, capacity);
+            sources_ = Arrays.copyOf(sources_, capacity);
+        }
+        datagrams_[size_] = datagram;
+        sources_[size_++] = source;
+    }
+
+    /**
+     * Returns the number of the datagrams.
+     * @return the number of the datagrams
+     */
+    public int size() {
+        return size_;
+    }
+
+    /**
+     * Returns the datagram at the specified position.
+     * @param index the index of the datagram
+     * @return the datagram
+     */
+    public CodecBuffer datagram(int index) {
+        checkIndex(index);
+        return datagrams_[index];
+    }
+
+    /**
+     * Returns the source address of the datagram at the specified position.
+     * @param index the index of the datagram
+     * @return the source address of the datagram
+     */
+    public SocketAddress source(int index) {
+        checkIndex(index);
+        return sources_[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size_) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size_);
+        }
+    }
+
+    /**
+     * Disposes all datagrams in this batch and releases this batch.
+     */
+    public void dispose() {
+        for (int i = 0; i < size_; i++) {
+            datagrams_[i].dispose();
+        }
+        release();
+    }
+
+    /**
+     * Releases this batch to be reused by the transport, without disposing the datagrams.
+     * This method is called after the consumer takes the datagrams out of this batch.
+     */
+    public void release() {
+        Arrays.fill(datagrams_, 0, size_, null);
+        Arrays.fill(sources_, 0, size_, null);
+        size_ = 0;
+        released_ = true;
+    }
+
+    /**
+     * Makes this batch available to add the datagrams if it is released.
+     * @return true if this batch is released and can be reused
+     */
+    boolean reuse() {
+        if (!released_) {
+            return false;
+        }
+        released_ = false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "(datagrams: " + size_ + ")";
+    }
+}
@@ -0,0 +1,160 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcherGroup;
+import net.ihiroky.niotty.PipelineComposer;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.CodecBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Demultiplexes the datagrams received by an unconnected {@link NioDatagramSocketTransport}
+ * into the {@link NioDatagramPeerTransport}s for each source address.
+ * <p>
+ * A peer transport is created on the first datagram from its source address, and its pipeline
+ * is composed by the peer composer and activated. The peer transports are assigned to the dispatchers
+ * of the peer group in the same way as the other transports, so the stages for the different peers
+ * are executed by the different dispatchers. A peer transport is closed if neither a datagram
+ * is received from nor a message is written to its peer in the idle timeout. The idle peers are
+ * checked by a timer on the dispatcher of the parent transport while any peer transport exists.
+ * The number of the peer transports is limited, and the datagrams from the other source addresses
+ * are loaded into the pipeline of the parent transport while the limit is reached.
+ * </p>
+ */
+final class DatagramPeers {
+
+    private final NioDatagramSocketTransport parent_;
+    private final PipelineComposer composer_;
+    private final EventDispatcherGroup eventDispatcherGroup_;
+    private final long idleTimeoutNanos_;
+    private final int maxPeers_;
+    private final ConcurrentMap<SocketAddress, NioDatagramPeerTransport> peerMap_;
+    private boolean expirationStarted_;
+
+    private static Logger logger_ = LoggerFactory.getLogger(DatagramPeers.class);
+
+    static final long MIN_EXPIRATION_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    DatagramPeers(NioDatagramSocketTransport parent, PipelineComposer composer,
+            EventDispatcherGroup eventDispatcherGroup, long idleTimeoutNanos, int maxPeers) {
+        parent_ = parent;
+        composer_ = composer;
+        eventDispatcherGroup_ = eventDispatcherGroup;
+        idleTimeoutNanos_ = idleTimeoutNanos;
+        maxPeers_ = maxPeers;
+        peerMap_ = new ConcurrentHashMap<SocketAddress, NioDatagramPeerTransport>();
+    }
+
+    long idleTimeoutNanos() {
+        return idleTimeoutNanos_;
+    }
+
+    /**
+     * Loads a datagram into the pipeline of the peer transport for its source address.
+     * The peer transport is created if it does not exist. If the number of the peer transports
+     * reaches the maximum, the datagram is loaded into the pipeline of the parent transport instead.
+     * This method is called by the dispatcher of the parent transport.
+     *
+     * @param datagram the datagram
+     * @param source the source address of the datagram
+     * @param shared true if the datagram shares the read buffer of the dispatcher
+     */
+    void load(CodecBuffer datagram, SocketAddress source, boolean shared) {
+        NioDatagramPeerTransport peer = peerMap_.get(source);
+        if (peer == null) {
+            if (peerMap_.size() >= maxPeers_) {
+                logger_.debug("[load] The number of the peers reaches {}. Load the datagram from {} into {}.",
+                        maxPeers_, source, parent_);
+                parent_.pipeline().load(datagram, source);
+                return;
+            }
+            peer = newPeer(source);
+        }
+        if (shared && !peer.eventDispatcher().isInDispatcherThread()) {
+            CodecBuffer copy = Buffers.newCodecBuffer(datagram.remaining());
+            copy.drainFrom(datagram);
+            datagram.dispose();
+            datagram = copy;
+        }
+        peer.load(datagram);
+    }
+
+    private NioDatagramPeerTransport newPeer(SocketAddress source) {
+        NioDatagramPeerTransport peer = new NioDatagramPeerTransport(
+                parent_.pipeline().name(), parent_, this, source, eventDispatcherGroup_);
+        composer_.compose(peer.pipeline());
+        peerMap_.put(source, peer);
+        peer.pipeline().activate();
+        logger_.debug("[newPeer] {} is created.", peer);
+        startExpiration();
+        return peer;
+    }
+
+    void remove(NioDatagramPeerTransport peer) {
+        peerMap_.remove(peer.remoteAddress(), peer);
+    }
+
+    NioDatagramPeerTransport peer(SocketAddress remoteAddress) {
+        return peerMap_.get(remoteAddress);
+    }
+
+    Collection<NioDatagramPeerTransport> peers() {
+        return Collections.unmodifiableCollection(peerMap_.values());
+    }
+
+    void closeAll() {
+        for (NioDatagramPeerTransport peer : peerMap_.values()) {
+            peer.close();
+        }
+    }
+
+    /**
+     * Closes the peer transports which are idle for the idle timeout.
+     * @param now the current time in nanoseconds
+     * @return the number of the closed peer transports
+     */
+    int expire(long now) {
+        int expired = 0;
+        for (NioDatagramPeerTransport peer : peerMap_.values()) {
+            if (now - peer.lastActiveNanos() >= idleTimeoutNanos_) {
+                logger_.debug("[expire] {} is idle.", peer);
+                peer.close();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private synchronized void startExpiration() {
+        if (expirationStarted_ || idleTimeoutNanos_ <= 0) {
+            return;
+        }
+        expirationStarted_ = true;
+        final long interval = Math.max(idleTimeoutNanos_ / 2, MIN_EXPIRATION_CHECK_INTERVAL_NANOS);
+        parent_.eventDispatcher().schedule(new Event() {
+            @Override
+            public long execute() {
+                if (parent_.isOpen()) {
+                    expire(System.nanoTime());
+                }
+                return stopExpirationIfIdle() ? DONE : interval;
+            }
+        }, interval, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized boolean stopExpirationIfIdle() {
+        if (peerMap_.isEmpty() || !parent_.isOpen()) {
+            expirationStarted_ = false;
+            return true;
+        }
+        return false;
+    }
+}
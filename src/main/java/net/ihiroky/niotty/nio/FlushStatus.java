@@ -1,7 +1,5 @@
 package net.ihiroky.niotty.nio;
 
-import net.ihiroky.niotty.Event;
-
 /**
  * Shows a result of
  * {@link net.ihiroky.niotty.nio.WriteQueue#flushTo(java.nio.channels.GatheringByteChannel)}
@@ -11,22 +9,16 @@ public enum FlushStatus {
     /**
      * The result of all data in the {@code WriteQueue} is flushed.
      */
-    FLUSHED(Event.DONE),
+    FLUSHED,
 
     /**
-     * The result of all data in the {@code WriteQueue} is not flushed.
+     * The result of all data in the {@code WriteQueue} is not flushed. The rest is flushed
+     * when the channel becomes writable.
      */
-    FLUSHING(100),
+    FLUSHING,
 
     /**
      * The result of data in the {@code WriteQueue} is remaining but not flushed because of some limitation.
      */
-    SKIPPED(Event.RETRY_IMMEDIATELY);
-
-    /** a wait time for I/O round operation. */
-    final long waitTimeMillis_;
-
-    FlushStatus(long waitTimeMillis) {
-        waitTimeMillis_ = waitTimeMillis;
-    }
+    SKIPPED
 }
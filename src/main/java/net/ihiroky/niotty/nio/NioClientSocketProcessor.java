@@ -19,6 +19,7 @@ public class NioClientSocketProcessor extends AbstractProcessor<NioClientSocketT
     private int readBufferSize_;
     private boolean useDirectBuffer_;
     private boolean copyReadBuffer_;
+    private boolean optimizeSelectedKeys_;
 
     private static final int DEFAULT_NUMBER_OF_MESSAGE_IO_THREAD = 1;
 
@@ -47,6 +48,7 @@ public class NioClientSocketProcessor extends AbstractProcessor<NioClientSocketT
                 .setReadBufferSize(readBufferSize_)
                 .setWriteBufferSize(0)
                 .setUseDirectBuffer(useDirectBuffer_)
+                .setOptimizeSelectedKeys(optimizeSelectedKeys_)
                 .build();
 
         if (useNonBlockingConnection_) {
@@ -103,6 +105,11 @@ public class NioClientSocketProcessor extends AbstractProcessor<NioClientSocketT
         return this;
     }
 
+    public NioClientSocketProcessor setOptimizeSelectedKeys(boolean optimizeSelectedKeys) {
+        optimizeSelectedKeys_ = optimizeSelectedKeys;
+        return this;
+    }
+
     public NioClientSocketProcessor setWriteQueueFactory(WriteQueueFactory<PacketQueue> writeQueueFactory) {
         writeQueueFactory_ = Arguments.requireNonNull(writeQueueFactory, "writeQueueFactory");
         return this;
@@ -127,4 +134,8 @@ public class NioClientSocketProcessor extends AbstractProcessor<NioClientSocketT
     public boolean duplicateReceiveBuffer() {
         return copyReadBuffer_;
     }
+
+    public boolean optimizeSelectedKeys() {
+        return optimizeSelectedKeys_;
+    }
 }
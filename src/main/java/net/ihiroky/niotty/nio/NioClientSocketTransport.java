@@ -2,6 +2,8 @@ package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.*;
 import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
+import net.ihiroky.niotty.buffer.CodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.util.Arguments;
 import net.ihiroky.niotty.util.JavaVersion;
@@ -35,6 +37,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
     private final PacketQueue writeQueue_;
     private FlushStatus flushStatus_;
     private boolean deactivateOnEndOfStream_;
+    private ReadSizePredictor readSizePredictor_;
 
     public enum ShutdownEvent {
         INPUT, OUTPUT
@@ -44,7 +47,9 @@ public class NioClientSocketTransport extends NioSocketTransport {
     private static final Set<TransportOption<?>> SUPPORTED_OPTIONS = Collections.unmodifiableSet(
             new HashSet<TransportOption<?>>(Arrays.<TransportOption<?>>asList(
                     TransportOptions.SO_RCVBUF, TransportOptions.SO_SNDBUF, TransportOptions.SO_REUSEADDR,
-                    TransportOptions.SO_KEEPALIVE, TransportOptions.SO_LINGER, TransportOptions.TCP_NODELAY)));
+                    TransportOptions.SO_KEEPALIVE, TransportOptions.SO_LINGER, TransportOptions.TCP_NODELAY,
+                    TransportOptions.WRITE_BUFFER_HIGH_WATERMARK, TransportOptions.WRITE_BUFFER_LOW_WATERMARK,
+                    TransportOptions.WRITE_SPIN_COUNT)));
 
     public NioClientSocketTransport(String name, PipelineComposer composer,
             NioEventDispatcherGroup nioEventDispatcherGroup, WriteQueueFactory<PacketQueue> writeQueueFactory) {
@@ -106,6 +111,9 @@ public class NioClientSocketTransport extends NioSocketTransport {
             deactivateOnEndOfStream_ = TransportOptions.DEACTIVATE_ON_END_OF_STREAM.cast(value);
             return this;
         }
+        if (setWriteBufferWatermark(option, value) || setWriteSpinCount(option, value)) {
+            return this;
+        }
 
         try {
             JavaVersion javaVersion = Platform.javaVersion();
@@ -166,6 +174,13 @@ public class NioClientSocketTransport extends NioSocketTransport {
         if (option == TransportOptions.DEACTIVATE_ON_END_OF_STREAM) {
             return option.cast(deactivateOnEndOfStream_);
         }
+        Integer watermark = writeBufferWatermark(option);
+        if (watermark != null) {
+            return option.cast(watermark);
+        }
+        if (option == TransportOptions.WRITE_SPIN_COUNT) {
+            return option.cast(writeSpinCount());
+        }
 
         try {
             JavaVersion javaVersion = Platform.javaVersion();
@@ -230,7 +245,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
         }
 
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
-        eventDispatcher().execute(new Event() {
+        eventDispatcher().execute(following(new Event() {
             @Override
             public long execute() throws Exception {
                 if (future.executing()) {
@@ -253,7 +268,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
                 }
                 return DONE;
             }
-        });
+        }));
         return future;
     }
 
@@ -341,7 +356,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
             return new SuccessfulTransportFuture(this);
         }
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
-        eventDispatcher().execute(new Event() {
+        eventDispatcher().execute(following(new Event() {
             @Override
             public long execute() {
                 SelectionKey key = key();
@@ -363,7 +378,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
                 }
                 return DONE;
             }
-        });
+        }));
         return future;
     }
 
@@ -373,7 +388,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
             return new SuccessfulTransportFuture(this);
         }
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
-        eventDispatcher().execute(new Event() {
+        eventDispatcher().execute(following(new Event() {
             @Override
             public long execute() {
                 SelectionKey key = key();
@@ -395,14 +410,25 @@ public class NioClientSocketTransport extends NioSocketTransport {
                 }
                 return DONE;
             }
-        });
+        }));
         return future;
 
     }
 
+    @Override
+    long pendingWriteBytes() {
+        return pendingBytes(writeQueue_);
+    }
+
     @Override
     void readyToWrite(Packet message, Object parameter) {
-        writeQueue_.offer(message);
+        PacketQueue writeQueue = writeQueue_;
+        if (writeQueue instanceof ParameterizedPacketQueue) {
+            ((ParameterizedPacketQueue) writeQueue).offer(message, parameter);
+        } else {
+            writeQueue.offer(message);
+        }
+        updateWritability(pendingBytes(writeQueue_));
     }
 
     @Override
@@ -417,12 +443,7 @@ public class NioClientSocketTransport extends NioSocketTransport {
         ReadableByteChannel channel = (ReadableByteChannel) key.channel();
         try {
             if (key.isReadable()) {
-                ByteBuffer readBuffer = selectDispatcher.readBuffer_;
-                readBuffer.clear();
-                int read = channel.read(readBuffer);
-                if (read >= 0) {
-                    readBuffer.flip();
-                    pipeline().load(Buffers.wrap(readBuffer), null);
+                if (read(channel, key, selectDispatcher)) {
                     return;
                 }
                 logger_.debug("[onSelected] transport reaches the end of its stream: {}", this);
@@ -447,6 +468,76 @@ public class NioClientSocketTransport extends NioSocketTransport {
         }
     }
 
+    /**
+     * Reads from the channel until the socket buffer is drained or the number of bytes read
+     * reaches the maximum per selection, and loads the read data into the pipeline.
+     * The size of each read is predicted by the recent read sizes of this transport.
+     * If the dispatcher has the read chunk pool, each read is done into a new buffer allocated
+     * from the pool. Otherwise, it is done into the read buffer of the dispatcher. The buffer is
+     * not loaded if no data is read.
+     *
+     * @return false if this transport reaches the end of its stream
+     */
+    private boolean read(ReadableByteChannel channel, SelectionKey key, NioEventDispatcher selectDispatcher)
+            throws IOException {
+        ReadSizePredictor predictor = readSizePredictor_;
+        if (predictor == null) {
+            predictor = new ReadSizePredictor(ReadSizePredictor.DEFAULT_MIN_SIZE,
+                    selectDispatcher.initialReadSize(), selectDispatcher.maxReadBufferSize());
+            readSizePredictor_ = predictor;
+        }
+        ByteBufferChunkPool chunkPool = selectDispatcher.readChunkPool();
+        int budget = selectDispatcher.maxReadBytesPerSelect();
+        int total = 0;
+        for (;;) {
+            int size = predictor.size();
+            int read;
+            CodecBuffer buffer;
+            if (chunkPool != null) {
+                buffer = Buffers.newCodecBuffer(chunkPool, size);
+                read = read(channel, buffer, size);
+            } else {
+                ByteBuffer readBuffer = selectDispatcher.readBuffer(size);
+                read = channel.read(readBuffer);
+                readBuffer.flip();
+                buffer = Buffers.wrap(readBuffer);
+            }
+            if (read < 0) {
+                return false;
+            }
+            if (read == 0) {
+                buffer.dispose();
+                return true;
+            }
+            predictor.record(read);
+            pipeline().load(buffer, null);
+            total += read;
+            if (read < size || total >= budget || !key.isValid()) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads from the channel into the buffer, which is disposed if no data is read by an exception
+     * or the end of the stream.
+     */
+    private static int read(ReadableByteChannel channel, CodecBuffer buffer, int size) throws IOException {
+        ByteBuffer byteBuffer = buffer.byteBuffer();
+        byteBuffer.limit(size);
+        int read = -1;
+        try {
+            read = channel.read(byteBuffer);
+        } finally {
+            if (read >= 0) {
+                buffer.endIndex(read);
+            } else {
+                buffer.dispose();
+            }
+        }
+        return read;
+    }
+
     @Override
     void flush(ByteBuffer writeBuffer) throws IOException {
         if (flushStatus_ == FlushStatus.FLUSHING) {
@@ -458,8 +549,18 @@ public class NioClientSocketTransport extends NioSocketTransport {
 
 
     private void flushForcibly(ByteBuffer writeBuffer) throws IOException {
-        FlushStatus status = writeQueue_.flush(channel_);
+        PacketQueue writeQueue = writeQueue_;
+        FlushStatus status;
+        int spin = writeSpinCount();
+        for (;;) {
+            long pendingBytes = pendingBytes(writeQueue);
+            status = writeQueue.flush(channel_);
+            if (status != FlushStatus.FLUSHING || --spin <= 0 || pendingBytes(writeQueue) == pendingBytes) {
+                break;
+            }
+        }
         flushStatus_ = status;
         handleFlushStatus(status);
+        updateWritability(pendingBytes(writeQueue_));
     }
 }
@@ -0,0 +1,200 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.AbstractTransport;
+import net.ihiroky.niotty.DefaultPipeline;
+import net.ihiroky.niotty.DefaultTransportFuture;
+import net.ihiroky.niotty.EventDispatcherGroup;
+import net.ihiroky.niotty.Pipeline;
+import net.ihiroky.niotty.PipelineComposer;
+import net.ihiroky.niotty.Stage;
+import net.ihiroky.niotty.StageContext;
+import net.ihiroky.niotty.TransportFuture;
+import net.ihiroky.niotty.TransportOption;
+import net.ihiroky.niotty.buffer.CodecBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A transport which represents a remote peer of an unconnected
+ * {@link net.ihiroky.niotty.nio.NioDatagramSocketTransport}.
+ * <p>
+ * The instances are created by the parent transport for each source address of the received datagrams
+ * if {@link NioDatagramSocketTransport#demultiplexPeers(PipelineComposer, EventDispatcherGroup, long,
+ * java.util.concurrent.TimeUnit)} is called. Each of them has its own pipeline, so the stages can hold
+ * the state for the peer. The datagrams from the peer are loaded into the pipeline with the source address
+ * as the parameter, and the messages written to this transport are sent to the peer through the pipeline
+ * and the socket of the parent transport. This transport has no socket, so it can't be bound or connected,
+ * and has no socket option.
+ * </p>
+ */
+public class NioDatagramPeerTransport extends AbstractTransport {
+
+    private final NioDatagramSocketTransport parent_;
+    private final DatagramPeers peers_;
+    private final SocketAddress remoteAddress_;
+    private final DefaultPipeline pipeline_;
+    private volatile long lastActiveNanos_;
+
+    private static Logger logger_ = LoggerFactory.getLogger(NioDatagramPeerTransport.class);
+
+    NioDatagramPeerTransport(String name, NioDatagramSocketTransport parent, DatagramPeers peers,
+            SocketAddress remoteAddress, EventDispatcherGroup eventDispatcherGroup) {
+        super(name, PipelineComposer.empty(), eventDispatcherGroup);
+        parent_ = parent;
+        peers_ = peers;
+        remoteAddress_ = remoteAddress;
+        pipeline_ = new DefaultPipeline(name, this, eventDispatcherGroup, Pipeline.IO_STAGE_KEY, new PeerStage());
+        lastActiveNanos_ = System.nanoTime();
+    }
+
+    /**
+     * Loads a datagram from the peer into the pipeline. The datagram must not be shared
+     * with the dispatcher of the parent if the pipeline is executed by the other dispatcher.
+     * @param datagram the datagram
+     */
+    void load(CodecBuffer datagram) {
+        lastActiveNanos_ = System.nanoTime();
+        pipeline_.load(datagram, remoteAddress_);
+    }
+
+    long lastActiveNanos() {
+        return lastActiveNanos_;
+    }
+
+    /**
+     * Returns the parent transport which sends and receives the datagrams of this transport.
+     * @return the parent transport
+     */
+    public NioDatagramSocketTransport parent() {
+        return parent_;
+    }
+
+    @Override
+    public Pipeline pipeline() {
+        return pipeline_;
+    }
+
+    /**
+     * Throws {@code UnsupportedOperationException}.
+     * @param local the local address
+     * @return never returns
+     */
+    @Override
+    public TransportFuture bind(SocketAddress local) {
+        throw new UnsupportedOperationException("The peer transport can't be bound.");
+    }
+
+    /**
+     * Throws {@code UnsupportedOperationException}.
+     * @param remote the remote address
+     * @return never returns
+     */
+    @Override
+    public TransportFuture connect(SocketAddress remote) {
+        throw new UnsupportedOperationException("The peer transport can't be connected.");
+    }
+
+    /**
+     * Closes this transport and deactivates its pipeline. The parent transport is not closed.
+     * If a datagram is received from the peer after this method is called, the parent creates
+     * a new peer transport for the peer.
+     * @return the close future
+     */
+    @Override
+    public TransportFuture close() {
+        DefaultTransportFuture closeFuture = closeFuture();
+        if (closeFuture.executing()) {
+            peers_.remove(this);
+            pipeline_.deactivate();
+            eventDispatcher().reject(this);
+            pipeline_.close();
+            closeFuture.done();
+        }
+        return closeFuture;
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return parent_.localAddress();
+    }
+
+    @Override
+    public SocketAddress remoteAddress() {
+        return remoteAddress_;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closeFuture().isDone() && parent_.isOpen();
+    }
+
+    @Override
+    public <T> NioDatagramPeerTransport setOption(TransportOption<T> option, T value) {
+        throw new UnsupportedOperationException(option.toString());
+    }
+
+    @Override
+    public <T> T option(TransportOption<T> option) {
+        throw new UnsupportedOperationException(option.toString());
+    }
+
+    @Override
+    public Set<TransportOption<?>> supportedOptions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public int pendingWriteBuffers() {
+        return parent_.pendingWriteBuffers();
+    }
+
+    @Override
+    public boolean isWritable() {
+        return parent_.isWritable();
+    }
+
+    @Override
+    public String toString() {
+        return "(peer: " + remoteAddress_ + ", parent: " + parent_ + ")";
+    }
+
+    /**
+     * Passes the loaded datagrams to the next stage, and writes the stored messages
+     * to the peer through the parent transport.
+     */
+    private class PeerStage implements Stage {
+
+        @Override
+        public void loaded(StageContext context, Object message, Object parameter) {
+            context.proceed(message, parameter);
+        }
+
+        @Override
+        public void stored(StageContext context, Object message, Object parameter) {
+            lastActiveNanos_ = System.nanoTime();
+            parent_.write(message, remoteAddress_);
+        }
+
+        @Override
+        public void exceptionCaught(StageContext context, Exception exception) {
+            logger_.error("[exceptionCaught] " + NioDatagramPeerTransport.this, exception);
+        }
+
+        @Override
+        public void activated(StageContext context) {
+        }
+
+        @Override
+        public void deactivated(StageContext context) {
+        }
+
+        @Override
+        public void eventTriggered(StageContext context, Object event) {
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.*;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.CodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.util.Arguments;
 import net.ihiroky.niotty.util.JavaVersion;
@@ -22,11 +24,14 @@ import java.nio.channels.DatagramChannel;
 import java.nio.channels.MembershipKey;
 import java.nio.channels.SelectionKey;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * An implementation of {@link net.ihiroky.niotty.Transport} for NIO {@code DatagramChannel}.
@@ -38,15 +43,32 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
     private final DatagramQueue writeQueue_;
     private FlushStatus flushStatus_;
     private final Map<GroupKey, MembershipKey> membershipKeyMap_;
+    private volatile int receiveBatch_;
+    private volatile DatagramPeers peers_;
+    private DatagramBatch batch_; // Accessed only by the dispatcher which selects this transport.
+    private volatile long droppedMessages_;
 
     private static Logger logger_ = LoggerFactory.getLogger(NioDatagramSocketTransport.class);
 
+    /** The maximum number of the datagrams received in a selection, which bounds a flood of empty datagrams. */
+    static final int MAX_DATAGRAMS_PER_SELECT = 1024;
+
+    private static final int INITIAL_BATCH_CAPACITY = 16;
+
+    /** The default maximum number of the peer transports created by the demultiplexing. */
+    public static final int DEFAULT_MAX_PEERS = 4096;
+
+    private static final AtomicLongFieldUpdater<NioDatagramSocketTransport> DROPPED_MESSAGES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(NioDatagramSocketTransport.class, "droppedMessages_");
+
     private static final Set<TransportOption<?>> SUPPORTED_OPTIONS = Collections.unmodifiableSet(
             new HashSet<TransportOption<?>>(Arrays.<TransportOption<?>>asList(
                     TransportOptions.SO_RCVBUF, TransportOptions.SO_SNDBUF, TransportOptions.SO_BROADCAST,
                     TransportOptions.SO_REUSEADDR,
                     TransportOptions.IP_MULTICAST_IF, TransportOptions.IP_MULTICAST_LOOP,
-                    TransportOptions.IP_MULTICAST_TTL, TransportOptions.IP_TOS)));
+                    TransportOptions.IP_MULTICAST_TTL, TransportOptions.IP_TOS,
+                    TransportOptions.WRITE_BUFFER_HIGH_WATERMARK, TransportOptions.WRITE_BUFFER_LOW_WATERMARK,
+                    TransportOptions.WRITE_SPIN_COUNT, TransportOptions.DATAGRAM_RECEIVE_BATCH)));
 
     /**
      * Constructs the instance.
@@ -116,6 +138,13 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
      */
     @Override
     public <T> NioDatagramSocketTransport setOption(TransportOption<T> option, T value) {
+        if (setWriteBufferWatermark(option, value) || setWriteSpinCount(option, value)) {
+            return this;
+        }
+        if (option == TransportOptions.DATAGRAM_RECEIVE_BATCH) {
+            receiveBatch_ = Arguments.requirePositiveOrZero((Integer) value, "value");
+            return this;
+        }
         try {
             JavaVersion javaVersion = Platform.javaVersion();
             if (javaVersion.ge(JavaVersion.JAVA7)) {
@@ -169,6 +198,16 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
      */
     @Override
     public <T> T option(TransportOption<T> option) {
+        Integer watermark = writeBufferWatermark(option);
+        if (watermark != null) {
+            return option.cast(watermark);
+        }
+        if (option == TransportOptions.WRITE_SPIN_COUNT) {
+            return option.cast(writeSpinCount());
+        }
+        if (option == TransportOptions.DATAGRAM_RECEIVE_BATCH) {
+            return option.cast(receiveBatch_);
+        }
         try {
             JavaVersion javaVersion = Platform.javaVersion();
             if (javaVersion.ge(JavaVersion.JAVA7)) {
@@ -246,7 +285,7 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
         }
 
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
-        eventDispatcher().execute(new Event() {;
+        eventDispatcher().execute(following(new Event() {;
             @Override
             public long execute() throws Exception {
                 if (future.executing()) {
@@ -269,7 +308,7 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
                 }
                 return DONE;
             }
-        });
+        }));
         return future;
     }
 
@@ -305,6 +344,14 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
         return writeQueue_.size();
     }
 
+    /**
+     * Returns the number of the messages dropped because the write queue is full.
+     * @return the number of the dropped messages
+     */
+    public long droppedMessages() {
+        return droppedMessages_;
+    }
+
     /**
      * <p>Connects the socket of this transport.</p>
      *
@@ -321,7 +368,7 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
     @Override
     public TransportFuture connect(final SocketAddress remote) {
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
-        eventDispatcher().execute(new Event() {
+        eventDispatcher().execute(following(new Event() {
             @Override
             public long execute() throws Exception {
                 if (future.executing()) {
@@ -334,7 +381,7 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
                 }
                 return DONE;
             }
-        });
+        }));
         return future;
     }
 
@@ -356,7 +403,7 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
      */
     public TransportFuture disconnect() {
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
-        eventDispatcher().execute(new Event() {
+        eventDispatcher().execute(following(new Event() {
             @Override
             public long execute() {
                 if (future.executing()) {
@@ -369,7 +416,7 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
                 }
                 return DONE;
             }
-        });
+        }));
         return future;
     }
 
@@ -385,6 +432,78 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
         super.write(message, target);
     }
 
+    /**
+     * <p>Demultiplexes the received datagrams into the {@link NioDatagramPeerTransport}s
+     * for each source address, up to {@link #DEFAULT_MAX_PEERS} peer transports.</p>
+     *
+     * @param peerComposer the composer to initialize the pipelines of the peer transports
+     * @param peerGroup the group which offers the dispatchers to execute the peer transports
+     * @param idleTimeout the idle timeout of the peer transports, negative or 0 if not expired
+     * @param unit the unit of {@code idleTimeout}
+     * @return this object
+     * @see #demultiplexPeers(PipelineComposer, EventDispatcherGroup, long, TimeUnit, int)
+     */
+    public NioDatagramSocketTransport demultiplexPeers(PipelineComposer peerComposer,
+            EventDispatcherGroup peerGroup, long idleTimeout, TimeUnit unit) {
+        return demultiplexPeers(peerComposer, peerGroup, idleTimeout, unit, DEFAULT_MAX_PEERS);
+    }
+
+    /**
+     * <p>Demultiplexes the received datagrams into the {@link NioDatagramPeerTransport}s
+     * for each source address.</p>
+     *
+     * <p>A peer transport is created on the first datagram from a new source address,
+     * and its pipeline is composed by {@code peerComposer}. The datagrams from the source are loaded
+     * into the pipeline of the peer transport instead of the pipeline of this transport, so each
+     * pipeline can hold the state for its peer. The peer transports are spread over the dispatchers
+     * of {@code peerGroup}. The messages written to a peer transport are sent to its peer through
+     * this transport. A peer transport is closed if it is idle for {@code idleTimeout}, and all
+     * of them are closed when this transport is closed.</p>
+     *
+     * <p>If the number of the peer transports reaches {@code maxPeers}, no peer transport is created
+     * until some of them are closed, and the datagrams from the new source addresses are loaded
+     * into the pipeline of this transport with the source address as the parameter.</p>
+     *
+     * <p>This method should be called before this transport is bound.
+     * The connected transport does not demultiplex the datagrams.</p>
+     *
+     * @param peerComposer the composer to initialize the pipelines of the peer transports
+     * @param peerGroup the group which offers the dispatchers to execute the peer transports
+     * @param idleTimeout the idle timeout of the peer transports, negative or 0 if not expired
+     * @param unit the unit of {@code idleTimeout}
+     * @param maxPeers the maximum number of the peer transports
+     * @return this object
+     */
+    public NioDatagramSocketTransport demultiplexPeers(PipelineComposer peerComposer,
+            EventDispatcherGroup peerGroup, long idleTimeout, TimeUnit unit, int maxPeers) {
+        Arguments.requireNonNull(peerComposer, "peerComposer");
+        Arguments.requireNonNull(peerGroup, "peerGroup");
+        Arguments.requireNonNull(unit, "unit");
+        Arguments.requirePositive(maxPeers, "maxPeers");
+        peers_ = new DatagramPeers(this, peerComposer, peerGroup, unit.toNanos(idleTimeout), maxPeers);
+        return this;
+    }
+
+    /**
+     * Returns the peer transports which are created by the demultiplexing.
+     * @return the unmodifiable view of the peer transports, or an empty collection
+     *         if this transport does not demultiplex the datagrams
+     */
+    public Collection<NioDatagramPeerTransport> peers() {
+        DatagramPeers peers = peers_;
+        return (peers != null) ? peers.peers() : Collections.<NioDatagramPeerTransport>emptyList();
+    }
+
+    /**
+     * Returns the peer transport for a specified remote address.
+     * @param remoteAddress the remote address
+     * @return the peer transport, or null if it does not exist
+     */
+    public NioDatagramPeerTransport peer(SocketAddress remoteAddress) {
+        DatagramPeers peers = peers_;
+        return (peers != null) ? peers.peer(remoteAddress) : null;
+    }
+
     /**
      * Returns true if this transport is connected.
      * @return true if this transport is connected.
@@ -393,14 +512,37 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
         return channel_.isConnected();
     }
 
+    @Override
+    long pendingWriteBytes() {
+        return pendingBytes(writeQueue_);
+    }
+
     @Override
     void readyToWrite(Packet message, Object parameter) {
-        writeQueue_.offer(new AttachedMessage<Packet>(message, parameter));
+        DatagramQueue writeQueue = writeQueue_;
+        boolean offered;
+        if (writeQueue instanceof ParameterizedDatagramQueue) {
+            offered = ((ParameterizedDatagramQueue) writeQueue).offer(message, parameter);
+        } else {
+            offered = writeQueue.offer(new AttachedMessage<Packet>(message, parameter));
+        }
+        if (!offered) {
+            long dropped = DROPPED_MESSAGES_UPDATER.incrementAndGet(this);
+            logger_.warn("[readyToWrite] The write queue of {} is full. Drop the message to {} (dropped: {}).",
+                    this, parameter, dropped);
+            message.dispose();
+            return;
+        }
+        updateWritability(pendingBytes(writeQueue_));
     }
 
     @Override
     void onCloseSelectableChannel() {
         writeQueue_.clear();
+        DatagramPeers peers = peers_;
+        if (peers != null) {
+            peers.closeAll();
+        }
     }
 
     @Override
@@ -422,14 +564,11 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
                     pipeline().load(Buffers.wrap(readBuffer), null);
                     readBuffer.clear();
                 } else {
-                    for (;;) {
-                        SocketAddress source = channel.receive(readBuffer);
-                        if (source == null) {
-                            break;
-                        }
-                        readBuffer.flip();
-                        pipeline().load(Buffers.wrap(readBuffer), source);
-                        readBuffer.clear();
+                    DatagramPeers peers = peers_;
+                    if (receiveBatch_ > 0 && peers == null) {
+                        receiveBatch(channel, readBuffer, selectDispatcher);
+                    } else {
+                        receive(key, channel, readBuffer, selectDispatcher.maxReadBytesPerSelect(), peers);
                     }
                 }
                 readBuffer.clear();
@@ -447,6 +586,115 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
         }
     }
 
+    /**
+     * Receives the datagrams into the read buffer of the dispatcher and loads each of them into
+     * the pipeline, or into the pipeline of its peer transport if the datagrams are demultiplexed.
+     * The datagrams are received up to the maximum read bytes per selection of the dispatcher
+     * and {@link #MAX_DATAGRAMS_PER_SELECT}. The rest of them are received in the next selection.
+     */
+    private void receive(SelectionKey key, DatagramChannel channel, ByteBuffer readBuffer,
+            int budget, DatagramPeers peers) throws IOException {
+        int total = 0;
+        for (int count = 0; count < MAX_DATAGRAMS_PER_SELECT; count++) {
+            SocketAddress source = channel.receive(readBuffer);
+            if (source == null) {
+                break;
+            }
+            readBuffer.flip();
+            total += readBuffer.remaining();
+            if (peers != null) {
+                peers.load(Buffers.wrap(readBuffer), source, true);
+            } else {
+                pipeline().load(Buffers.wrap(readBuffer), source);
+            }
+            readBuffer.clear();
+            if (total >= budget || !key.isValid()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Receives the datagrams up to {@link TransportOptions#DATAGRAM_RECEIVE_BATCH} into a buffer, and loads
+     * them into the pipeline as a {@link DatagramBatch}. The buffer is allocated once in a wakeup from the read
+     * chunk pool of the dispatcher if exists, and each datagram is received into the room of the size of
+     * the read buffer of the dispatcher in it, and sliced. The datagrams are received up to the maximum read
+     * bytes per selection of the dispatcher and {@link #MAX_DATAGRAMS_PER_SELECT}. The rest of them are
+     * received in the next selection. If the pipeline is not {@link net.ihiroky.niotty.DefaultPipeline},
+     * the datagrams are loaded one by one.
+     */
+    private void receiveBatch(DatagramChannel channel, ByteBuffer readBuffer, NioEventDispatcher selectDispatcher)
+            throws IOException {
+        int batch = Math.min(receiveBatch_, MAX_DATAGRAMS_PER_SELECT);
+        int budget = selectDispatcher.maxReadBytesPerSelect();
+        int room = readBuffer.capacity();
+        // The datagrams are received while the total is less than the budget, so the last one may exceed it.
+        int slabSize = (int) Math.min((long) room * batch, (long) budget + room);
+        ByteBufferChunkPool chunkPool = selectDispatcher.readChunkPool();
+        CodecBuffer slab = (chunkPool != null)
+                ? Buffers.newCodecBuffer(chunkPool, slabSize)
+                : Buffers.newCodecBuffer(slabSize);
+        DatagramBatch datagrams = null;
+        try {
+            ByteBuffer space = slab.byteBuffer();
+            int total = 0;
+            for (int count = 0; count < batch && total < budget; count++) {
+                int position = space.position();
+                space.limit(position + room);
+                SocketAddress source = channel.receive(space);
+                if (source == null) {
+                    break;
+                }
+                int length = space.position() - position;
+                CodecBuffer datagram;
+                if (length > 0) {
+                    slab.endIndex(space.position());
+                    datagram = slab.slice(length);
+                } else {
+                    datagram = Buffers.emptyBuffer();
+                }
+                if (datagrams == null) {
+                    datagrams = batch(Math.min(batch, INITIAL_BATCH_CAPACITY));
+                }
+                datagrams.add(datagram, source);
+                total += length;
+            }
+        } catch (IOException ioe) {
+            if (datagrams != null) {
+                datagrams.dispose();
+            }
+            throw ioe;
+        } finally {
+            slab.dispose(); // The slices retain the content.
+        }
+        if (datagrams == null) {
+            return;
+        }
+
+        Pipeline pipeline = pipeline();
+        if (pipeline instanceof DefaultPipeline) {
+            ((DefaultPipeline) pipeline).loadMessage(datagrams, null);
+            return;
+        }
+        int size = datagrams.size();
+        for (int i = 0; i < size; i++) {
+            pipeline.load(datagrams.datagram(i), datagrams.source(i));
+        }
+        datagrams.release();
+    }
+
+    /**
+     * Returns the batch released by the consumer of the previous wakeup, or a new batch if not released.
+     */
+    private DatagramBatch batch(int capacity) {
+        DatagramBatch datagrams = batch_;
+        if (datagrams == null || !datagrams.reuse()) {
+            datagrams = new DatagramBatch(capacity);
+            batch_ = datagrams;
+        }
+        return datagrams;
+    }
+
     @Override
     void flush(ByteBuffer writeBuffer) throws IOException {
         if (flushStatus_ == FlushStatus.FLUSHING) {
@@ -457,9 +705,19 @@ public class NioDatagramSocketTransport extends NioSocketTransport {
     }
 
     private void flushForcibly(ByteBuffer writeBuffer) throws IOException {
-        FlushStatus status = writeQueue_.flush(channel_, writeBuffer);
+        DatagramQueue writeQueue = writeQueue_;
+        FlushStatus status;
+        int spin = writeSpinCount();
+        for (;;) {
+            long pendingBytes = pendingBytes(writeQueue);
+            status = writeQueue.flush(channel_, writeBuffer);
+            if (status != FlushStatus.FLUSHING || --spin <= 0 || pendingBytes(writeQueue) == pendingBytes) {
+                break;
+            }
+        }
         flushStatus_ = status;
         handleFlushStatus(status);
+        updateWritability(pendingBytes(writeQueue_));
     }
 
     /**
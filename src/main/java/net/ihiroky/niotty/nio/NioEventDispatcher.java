@@ -4,6 +4,7 @@ import net.ihiroky.niotty.EventDispatcher;
 import net.ihiroky.niotty.Stage;
 import net.ihiroky.niotty.StageContext;
 import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.buffer.CodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import org.slf4j.Logger;
@@ -14,7 +15,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -24,16 +27,40 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class NioEventDispatcher extends EventDispatcher {
 
-    private Selector selector_;
+    private volatile Selector selector_;
+    private SelectedKeySet selectedKeys_;
     private final AtomicBoolean wakenUp_;
-    final ByteBuffer readBuffer_;
+    ByteBuffer readBuffer_;
     final ByteBuffer writeBuffer_;
+    private final boolean direct_;
+    private final int initialReadSize_;
+    private final int maxReadBufferSize_;
+    private final int maxReadBytesPerSelect_;
+    private final ByteBufferChunkPool readChunkPool_;
     private final Stage ioStage_;
+    private final List<NioSocketTransport> flushPendingTransports_;
+    private final List<NioSocketTransport> interestOpsPendingTransports_;
+    private final int flushConsolidationThreshold_;
+    private final ByteBufferChunkPool writeChunkPool_;
+    private final boolean optimizeSelectedKeys_;
+    private final int selectorRebuildThreshold_;
+    private long ioTimeNanos_;
+    private int prematureSelectCount_;
+    private volatile long selectorRebuildCount_;
 
     private static Logger logger_ = LoggerFactory.getLogger(NioEventDispatcher.class);
 
     private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).asReadOnlyBuffer();
 
+    /** The default number of the successive premature empty selections to rebuild the selector. */
+    public static final int DEFAULT_SELECTOR_REBUILD_THRESHOLD = 512;
+
+    /** The default maximum size of the read buffer which grows with the read size of the connections. */
+    public static final int DEFAULT_MAX_READ_BUFFER_SIZE = 65536;
+
+    /** The default maximum number of bytes read from a connection per selection. */
+    public static final int DEFAULT_MAX_READ_BYTES_PER_SELECT = 4 * DEFAULT_MAX_READ_BUFFER_SIZE;
+
     /**
      * Creates a new instance with unbounded event queue.
      *
@@ -45,7 +72,18 @@ public class NioEventDispatcher extends EventDispatcher {
         wakenUp_ = new AtomicBoolean();
         readBuffer_ = EMPTY_BUFFER;
         writeBuffer_ = EMPTY_BUFFER;
-        ioStage_ = new IOStage(EMPTY_BUFFER);
+        direct_ = false;
+        initialReadSize_ = 0;
+        maxReadBufferSize_ = DEFAULT_MAX_READ_BUFFER_SIZE;
+        maxReadBytesPerSelect_ = DEFAULT_MAX_READ_BYTES_PER_SELECT;
+        readChunkPool_ = null;
+        ioStage_ = new IOStage(this);
+        flushPendingTransports_ = new ArrayList<NioSocketTransport>();
+        interestOpsPendingTransports_ = new ArrayList<NioSocketTransport>();
+        flushConsolidationThreshold_ = 0;
+        writeChunkPool_ = null;
+        optimizeSelectedKeys_ = false;
+        selectorRebuildThreshold_ = DEFAULT_SELECTOR_REBUILD_THRESHOLD;
     }
 
     /**
@@ -58,21 +96,210 @@ public class NioEventDispatcher extends EventDispatcher {
      * @param direct true if the direct buffer is used
      */
     protected NioEventDispatcher(int eventQueueCapacity, int readBufferSize, int writeBufferSize, boolean direct) {
-        super(eventQueueCapacity);
+        this(NioEventDispatcherGroup.newBuilder().setEventQueueCapacity(eventQueueCapacity)
+                .setReadBufferSize(readBufferSize).setWriteBufferSize(writeBufferSize).setUseDirectBuffer(direct));
+    }
+
+    /**
+     * Creates a new instance configured by the builder of {@link NioEventDispatcherGroup}.
+     * @param builder the builder
+     */
+    NioEventDispatcher(NioEventDispatcherGroup.Builder builder) {
+        super(builder.eventQueueCapacity(), builder.timerQueueFactory().newTimerQueue(),
+                builder.maxEventsPerLoop(), builder.ioRatio());
+        boolean direct = builder.useDirectBuffer();
+        int readBufferSize = builder.readBufferSize_();
+        int writeBufferSize = builder.writeBufferSize_();
         wakenUp_ = new AtomicBoolean();
         readBuffer_ = direct ? ByteBuffer.allocateDirect(readBufferSize) : ByteBuffer.allocate(readBufferSize);
+        direct_ = direct;
+        initialReadSize_ = readBufferSize;
+        maxReadBufferSize_ = Math.max(builder.maxReadBufferSize(), readBufferSize);
+        maxReadBytesPerSelect_ = builder.maxReadBytesPerSelect();
+        readChunkPool_ = builder.readChunkPool();
         writeBuffer_ = direct ? ByteBuffer.allocateDirect(writeBufferSize) : ByteBuffer.allocate(writeBufferSize);
-        ioStage_ = new IOStage(writeBuffer_);
+        ioStage_ = new IOStage(this);
+        flushPendingTransports_ = new ArrayList<NioSocketTransport>();
+        interestOpsPendingTransports_ = new ArrayList<NioSocketTransport>();
+        flushConsolidationThreshold_ = builder.flushConsolidationThreshold();
+        writeChunkPool_ = builder.writeChunkPool();
+        optimizeSelectedKeys_ = builder.optimizeSelectedKeys();
+        selectorRebuildThreshold_ = builder.selectorRebuildThreshold();
     }
 
     Stage ioStage() {
         return ioStage_;
     }
 
+    /**
+     * Returns the read buffer which is cleared and limited to the specified size.
+     * The read buffer is reallocated if its capacity is less than the size.
+     * This method must be called in the dispatcher thread.
+     *
+     * @param size the size to read, which must be less than or equal {@link #maxReadBufferSize()}
+     * @return the read buffer
+     */
+    ByteBuffer readBuffer(int size) {
+        ByteBuffer readBuffer = readBuffer_;
+        if (readBuffer.capacity() < size) {
+            readBuffer = direct_ ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+            readBuffer_ = readBuffer;
+            logger_.debug("[readBuffer] The read buffer grows to {} bytes.", size);
+        }
+        readBuffer.clear();
+        readBuffer.limit(size);
+        return readBuffer;
+    }
+
+    int initialReadSize() {
+        return initialReadSize_;
+    }
+
+    int maxReadBufferSize() {
+        return maxReadBufferSize_;
+    }
+
+    int maxReadBytesPerSelect() {
+        return maxReadBytesPerSelect_;
+    }
+
+    /**
+     * Returns the pool to allocate the buffers to read from the connections.
+     * @return the pool, or null if the read buffer of this dispatcher is used
+     */
+    ByteBufferChunkPool readChunkPool() {
+        return readChunkPool_;
+    }
+
+    /**
+     * Returns the pool to allocate the buffers to build the messages to be written, which is used by
+     * {@link NioSocketTransport#newWriteBuffer(int)}.
+     * @return the pool, or null if the buffers are allocated in the heap
+     * @see NioEventDispatcherGroup.Builder#setWriteChunkPool(net.ihiroky.niotty.buffer.ByteBufferChunkPool)
+     */
+    public ByteBufferChunkPool writeChunkPool() {
+        return writeChunkPool_;
+    }
+
+    /**
+     * Returns the threshold of the flush consolidation.
+     * @return the threshold in bytes; 0 if the flush consolidation is disabled
+     * @see NioEventDispatcherGroup.Builder#setFlushConsolidationThreshold(int)
+     */
+    public int flushConsolidationThreshold() {
+        return flushConsolidationThreshold_;
+    }
+
+    /**
+     * Flushes the transport, or defers the flush to the end of the current iteration
+     * if the flush consolidation is enabled. This method must be called in the dispatcher thread.
+     *
+     * @param transport the transport to which a packet is written
+     * @param bytes the bytes of the packet
+     */
+    void flushOrDefer(NioSocketTransport transport, int bytes) {
+        int threshold = flushConsolidationThreshold_;
+        if (threshold > 0) {
+            long pendingBytes = (long) transport.pendingFlushBytes_ + bytes;
+            if (pendingBytes < threshold) {
+                transport.pendingFlushBytes_ = (int) pendingBytes;
+                if (!transport.flushPending_) {
+                    transport.flushPending_ = true;
+                    flushPendingTransports_.add(transport);
+                }
+                return;
+            }
+        }
+        flush(transport);
+    }
+
+    /**
+     * Flushes the transport immediately. This method must be called in the dispatcher thread.
+     * @param transport the transport
+     */
+    void flush(NioSocketTransport transport) {
+        transport.flushPending_ = false;
+        transport.pendingFlushBytes_ = 0;
+        try {
+            transport.flush(writeBuffer_);
+        } catch (IOException ioe) {
+            logger_.warn("[flush] Flush failed.", ioe);
+            writeBuffer_.clear();
+            transport.doCloseSelectableChannel();
+        }
+    }
+
+    private void flushPendingTransports() {
+        List<NioSocketTransport> transports = flushPendingTransports_;
+        try {
+            // The size is checked on each iteration; a flush may fire the writability event and
+            // make a stage write to a transport again, which appends the transport to the list.
+            for (int i = 0; i < transports.size(); i++) {
+                NioSocketTransport transport = transports.get(i);
+                if (!transport.flushPending_) {
+                    continue;
+                }
+                if (transport.eventDispatcher() == this) {
+                    flush(transport);
+                } else {
+                    // moved to another dispatcher after the write
+                    transport.flushNow();
+                }
+            }
+        } finally {
+            transports.clear();
+        }
+    }
+
+    /**
+     * Returns the number of the transports whose flush is deferred to the end of the current iteration.
+     * @return the number of the transports
+     */
+    int flushPendingTransportCount() {
+        return flushPendingTransports_.size();
+    }
+
+    /**
+     * Defers applying the changes of the interest set of the transport to the end of the current iteration.
+     * This method must be called in the dispatcher thread.
+     * @param transport the transport
+     */
+    void deferInterestOps(NioSocketTransport transport) {
+        if (!transport.interestOpsPending_) {
+            transport.interestOpsPending_ = true;
+            interestOpsPendingTransports_.add(transport);
+        }
+    }
+
+    private void applyInterestOps() {
+        List<NioSocketTransport> transports = interestOpsPendingTransports_;
+        int size = transports.size();
+        for (int i = 0; i < size; i++) {
+            NioSocketTransport transport = transports.get(i);
+            if (transport.interestOpsPending_) {
+                transport.applyInterestOps();
+            }
+        }
+        transports.clear();
+    }
+
+    @Override
+    protected void onLoopEnd() {
+        if (!flushPendingTransports_.isEmpty()) {
+            flushPendingTransports();
+        }
+        if (!interestOpsPendingTransports_.isEmpty()) {
+            applyInterestOps();
+        }
+    }
+
     @Override
     protected void onOpen() {
         try {
             selector_ = Selector.open();
+            if (optimizeSelectedKeys_) {
+                selectedKeys_ = SelectedKeySet.install(selector_);
+            }
         } catch (IOException e) {
             if (selector_ != null) {
                 try {
@@ -88,21 +315,158 @@ public class NioEventDispatcher extends EventDispatcher {
 
     @Override
     protected void poll(long timeoutNanos) throws Exception {
-        int selected = (timeoutNanos == 0)
-                ? selector_.selectNow()
-                : selector_.select(Math.max(TimeUnit.NANOSECONDS.toMillis(timeoutNanos), 1));
+        // left by an exception in the last iteration
+        onLoopEnd();
+        int selected;
+        if (timeoutNanos == 0) {
+            selected = selector_.selectNow();
+        } else {
+            long timeoutMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(timeoutNanos), 1);
+            long start = System.nanoTime();
+            selected = selector_.select(timeoutMillis);
+            if (selected == 0 && selectorRebuildThreshold_ > 0) {
+                checkPrematureSelect(System.nanoTime() - start, timeoutMillis);
+            } else {
+                prematureSelectCount_ = 0;
+            }
+        }
         wakenUp_.set(false);
         if (selected > 0) {
-            for (Iterator<SelectionKey> iterator = selector_.selectedKeys().iterator(); iterator.hasNext();) {
-                SelectionKey key = iterator.next();
-                iterator.remove();
+            long start = System.nanoTime();
+            if (selectedKeys_ != null) {
+                processSelectedKeys(selectedKeys_);
+            } else {
+                processSelectedKeys(selector_.selectedKeys());
+            }
+            ioTimeNanos_ = System.nanoTime() - start;
+        } else {
+            ioTimeNanos_ = 0L;
+        }
+    }
+
+    /**
+     * Counts up the selections which return no key before the timeout without any wake up,
+     * and rebuilds the selector if the count reaches the threshold. Such selections may be caused
+     * by the epoll bug of the JDK, which makes the dispatcher loop spin.
+     */
+    private void checkPrematureSelect(long elapsedNanos, long timeoutMillis) {
+        if (wakenUp_.get()
+                || Thread.currentThread().isInterrupted()
+                || elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            prematureSelectCount_ = 0;
+            return;
+        }
+        if (++prematureSelectCount_ >= selectorRebuildThreshold_) {
+            logger_.warn("[checkPrematureSelect] Selector returns prematurely {} times in a row. Rebuild it: {}",
+                    prematureSelectCount_, selector_);
+            rebuildSelector();
+            prematureSelectCount_ = 0;
+        }
+    }
+
+    /**
+     * Replaces the selector with a new one. The valid keys registered to the current selector are
+     * registered to the new one with their interest operations and attachments.
+     * This method must be called in the dispatcher thread.
+     */
+    void rebuildSelector() {
+        Selector oldSelector = selector_;
+        Selector newSelector;
+        try {
+            newSelector = Selector.open();
+        } catch (IOException ioe) {
+            logger_.warn("[rebuildSelector] Failed to open a new selector.", ioe);
+            return;
+        }
+        SelectedKeySet newSelectedKeys = optimizeSelectedKeys_ ? SelectedKeySet.install(newSelector) : null;
+
+        int registered = 0;
+        for (SelectionKey key : oldSelector.keys()) {
+            if (!key.isValid()) {
+                continue;
+            }
+            SelectableChannel channel = key.channel();
+            Object attachment = key.attachment();
+            try {
+                SelectionKey newKey = channel.register(newSelector, key.interestOps(), attachment);
+                key.cancel();
+                if (attachment instanceof NioSocketTransport) {
+                    ((NioSocketTransport) attachment).setSelectionKey(newKey);
+                }
+                registered++;
+            } catch (Exception e) {
+                logger_.warn("[rebuildSelector] Failed to register " + attachment + " to the new selector.", e);
+                if (attachment instanceof NioSocketTransport) {
+                    ((NioSocketTransport) attachment).doCloseSelectableChannel();
+                } else {
+                    key.cancel();
+                    try {
+                        channel.close();
+                    } catch (IOException ioe) {
+                        logger_.debug("[rebuildSelector] Failed to close channel: " + channel, ioe);
+                    }
+                }
+            }
+        }
+
+        selector_ = newSelector;
+        selectedKeys_ = newSelectedKeys;
+        selectorRebuildCount_++;
+        try {
+            oldSelector.close();
+        } catch (IOException ioe) {
+            logger_.warn("[rebuildSelector] Failed to close the old selector.", ioe);
+        }
+        logger_.info("[rebuildSelector] Selector is rebuilt. {} keys are registered to the new selector.", registered);
+    }
+
+    /**
+     * Returns the number of the times the selector is rebuilt.
+     * @return the number of the times the selector is rebuilt
+     */
+    public long selectorRebuildCount() {
+        return selectorRebuildCount_;
+    }
+
+    private void processSelectedKeys(Set<SelectionKey> selectedKeys) {
+        for (Iterator<SelectionKey> iterator = selectedKeys.iterator(); iterator.hasNext();) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
 
+            NioSocketTransport transport = (NioSocketTransport) key.attachment();
+            transport.selectedCount_++;
+            transport.onSelected(key, this);
+        }
+    }
+
+    private void processSelectedKeys(SelectedKeySet selectedKeys) {
+        SelectionKey[] keys = selectedKeys.keys();
+        int size = selectedKeys.size();
+        try {
+            for (int i = 0; i < size; i++) {
+                SelectionKey key = keys[i];
                 NioSocketTransport transport = (NioSocketTransport) key.attachment();
+                transport.selectedCount_++;
                 transport.onSelected(key, this);
             }
+        } finally {
+            selectedKeys.reset();
         }
     }
 
+    /**
+     * Returns true if the selected key set of the selector is replaced with an array based one.
+     * @return true if the selected key set of the selector is replaced with an array based one
+     */
+    boolean isSelectedKeySetOptimized() {
+        return selectedKeys_ != null;
+    }
+
+    @Override
+    protected long ioTimeNanos() {
+        return ioTimeNanos_;
+    }
+
     @Override
     protected void wakeUp() {
         if (wakenUp_.compareAndSet(false, true)) {
@@ -146,22 +510,30 @@ public class NioEventDispatcher extends EventDispatcher {
         return selector_.keys();
     }
 
+    Selector selector() {
+        return selector_;
+    }
+
     boolean isOpen() {
         return (selector_ != null) && selector_.isOpen();
     }
 
     private static class IOStage implements Stage {
 
-        private final ByteBuffer writeBuffer_;
+        private final NioEventDispatcher dispatcher_;
 
-        IOStage(ByteBuffer writeBuffer) {
-            writeBuffer_ = writeBuffer;
+        IOStage(NioEventDispatcher dispatcher) {
+            dispatcher_ = dispatcher;
         }
 
         @Override
         public void loaded(StageContext context, Object message, Object parameter) {
+            if (message instanceof DatagramBatch) {
+                context.proceed(message, parameter); // Not shared with this dispatcher.
+                return;
+            }
             CodecBuffer buffer = (CodecBuffer) message;
-            if (context.changesDispatcherOnProceed()) {
+            if (context.changesDispatcherOnProceed() && !Buffers.isPooled(buffer)) {
                 CodecBuffer copy = Buffers.newCodecBuffer(buffer.remaining());
                 copy.drainFrom(buffer);
                 buffer.dispose();
@@ -172,15 +544,11 @@ public class NioEventDispatcher extends EventDispatcher {
 
         @Override
         public void stored(StageContext context, Object message, Object parameter) {
-            final NioSocketTransport transport = (NioSocketTransport) context.transport();
-            transport.readyToWrite((Packet) message, parameter);
-            try {
-                transport.flush(writeBuffer_);
-            } catch (IOException ioe) {
-                logger_.warn("[stored] Flush failed.", ioe);
-                writeBuffer_.clear();
-                transport.doCloseSelectableChannel();
-            }
+            NioSocketTransport transport = (NioSocketTransport) context.transport();
+            Packet packet = (Packet) message;
+            int bytes = packet.remaining();
+            transport.readyToWrite(packet, parameter);
+            dispatcher_.flushOrDefer(transport, bytes);
         }
 
         @Override
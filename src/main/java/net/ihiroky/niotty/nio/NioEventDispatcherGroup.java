@@ -3,6 +3,9 @@ package net.ihiroky.niotty.nio;
 import net.ihiroky.niotty.EventDispatcher;
 import net.ihiroky.niotty.EventDispatcherFactory;
 import net.ihiroky.niotty.EventDispatcherGroup;
+import net.ihiroky.niotty.TimerQueueFactory;
+import net.ihiroky.niotty.TimerQueues;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.util.Arguments;
 
 import java.util.concurrent.Executors;
@@ -28,6 +31,18 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
         super(workers, threadFactory, eventDispatcherFactory);
     }
 
+    /**
+     * Returns the total number of the times the selectors in this group are rebuilt.
+     * @return the total number of the times the selectors are rebuilt
+     */
+    public long selectorRebuildCount() {
+        long count = 0;
+        for (EventDispatcher eventDispatcher : eventDispatchers()) {
+            count += ((NioEventDispatcher) eventDispatcher).selectorRebuildCount();
+        }
+        return count;
+    }
+
     /**
      * Creates a new builder to build {@link NioEventDispatcherGroup}.
      * @return a new builder to build {@link NioEventDispatcherGroup}.
@@ -46,6 +61,16 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
         private int readBufferSize_;
         private int writeBufferSize_;
         private boolean useDirectBuffer_;
+        private TimerQueueFactory timerQueueFactory_;
+        private int maxEventsPerLoop_;
+        private int ioRatio_;
+        private boolean optimizeSelectedKeys_;
+        private int selectorRebuildThreshold_;
+        private int maxReadBufferSize_;
+        private int maxReadBytesPerSelect_;
+        private ByteBufferChunkPool readChunkPool_;
+        private int flushConsolidationThreshold_;
+        private ByteBufferChunkPool writeChunkPool_;
 
         static final int DEFAULT_READ_BUFFER_SIZE = 8192;
         static final int DEFAULT_WRITE_BUFFER_SIZE = 8192;
@@ -58,6 +83,13 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             readBufferSize_ = DEFAULT_READ_BUFFER_SIZE;
             writeBufferSize_ = DEFAULT_WRITE_BUFFER_SIZE;
             useDirectBuffer_ = DEFAULT_USE_DIRECT_BUFFER;
+            timerQueueFactory_ = TimerQueues.priorityQueue();
+            maxEventsPerLoop_ = 0;
+            ioRatio_ = EventDispatcher.MAX_IO_RATIO;
+            optimizeSelectedKeys_ = false;
+            selectorRebuildThreshold_ = NioEventDispatcher.DEFAULT_SELECTOR_REBUILD_THRESHOLD;
+            maxReadBufferSize_ = NioEventDispatcher.DEFAULT_MAX_READ_BUFFER_SIZE;
+            maxReadBytesPerSelect_ = NioEventDispatcher.DEFAULT_MAX_READ_BYTES_PER_SELECT;
         }
 
         /**
@@ -103,7 +135,9 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
         }
 
         /**
-         * Sets the read buffer size.
+         * Sets the read buffer size. The size to read from each connection starts with this value,
+         * and grows or shrinks with the recent read sizes of the connection up to
+         * {@link #setMaxReadBufferSize(int)}.
          * @param readBufferSize the read buffer size
          * @return this builder
          */
@@ -112,6 +146,62 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             return this;
         }
 
+        /**
+         * Sets the maximum read buffer size. The read buffer grows up to this value if connections
+         * fill the read buffer successively. If less than the read buffer size, the read buffer size is used.
+         * @param maxReadBufferSize the maximum read buffer size
+         * @return this builder
+         */
+        public Builder setMaxReadBufferSize(int maxReadBufferSize) {
+            maxReadBufferSize_ = Arguments.requirePositiveOrZero(maxReadBufferSize, "maxReadBufferSize");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes read from a connection per selection. A readable connection
+         * is read repeatedly until its socket buffer is drained or this value is reached, so that
+         * a large burst is read with fewer wakeups without starving the other connections.
+         * @param maxReadBytesPerSelect the maximum number of bytes; at least one read is done
+         * @return this builder
+         */
+        public Builder setMaxReadBytesPerSelect(int maxReadBytesPerSelect) {
+            maxReadBytesPerSelect_ = Arguments.requirePositiveOrZero(maxReadBytesPerSelect, "maxReadBytesPerSelect");
+            return this;
+        }
+
+        /**
+         * Sets the pool to allocate the buffers to read from the connections. If the pool is set,
+         * each read from a connection is done into a new buffer allocated from the pool instead of
+         * the read buffer shared in the dispatcher, and the buffer is passed to the pipeline.
+         * The buffer is returned to the pool when it and its slices are disposed, so the stages
+         * running in the other dispatchers receive it without copying the content.
+         * The pool should allocate the direct buffers not to make the channel copy the read data
+         * through a temporary direct buffer. The pool is not closed when the group is closed.
+         *
+         * @param readChunkPool the pool; null if the read buffer shared in the dispatcher is used
+         * @return this builder
+         */
+        public Builder setReadChunkPool(ByteBufferChunkPool readChunkPool) {
+            readChunkPool_ = readChunkPool;
+            return this;
+        }
+
+        /**
+         * Sets the pool to allocate the buffers to build the messages to be written, which is used by
+         * {@link NioSocketTransport#newWriteBuffer(int)}. The stages can encode the messages directly
+         * into the buffers from the pool. The pool should allocate the direct buffers, so that
+         * the buffers are written to the channel without being copied into the write buffer
+         * of the dispatcher or a temporary direct buffer of the JDK. The pool is not closed
+         * when the group is closed.
+         *
+         * @param writeChunkPool the pool; null if the buffers are allocated in the heap (default)
+         * @return this builder
+         */
+        public Builder setWriteChunkPool(ByteBufferChunkPool writeChunkPool) {
+            writeChunkPool_ = writeChunkPool;
+            return this;
+        }
+
         /**
          * Sets the write buffer size.
          * @param writeBufferSize the write buffer size
@@ -122,6 +212,24 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             return this;
         }
 
+        /**
+         * Sets the threshold of the flush consolidation. If the threshold is positive, the packets
+         * written to the transports are not flushed immediately. Each transport is flushed once at
+         * the end of the current iteration of the dispatcher loop, or when the bytes of the packets
+         * written since the last flush reach the threshold. This reduces the write operations
+         * if a lot of packets are written to a transport in an iteration. The packets are flushed
+         * immediately if the threshold is zero (default).
+         *
+         * @param flushConsolidationThreshold the threshold in bytes; 0 if each packet is flushed immediately
+         * @return this builder
+         * @see NioSocketTransport#flushNow()
+         */
+        public Builder setFlushConsolidationThreshold(int flushConsolidationThreshold) {
+            flushConsolidationThreshold_ =
+                    Arguments.requirePositiveOrZero(flushConsolidationThreshold, "flushConsolidationThreshold");
+            return this;
+        }
+
         /**
          * Sets true if use the direct buffer.
          * @param useDirectBuffer true if use the direct buffer
@@ -132,6 +240,66 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             return this;
         }
 
+        /**
+         * Sets the factory of the timer queue which holds the events scheduled with delay.
+         * @param timerQueueFactory the factory of the timer queue
+         * @return this builder
+         * @see net.ihiroky.niotty.TimerQueues
+         */
+        public Builder setTimerQueueFactory(TimerQueueFactory timerQueueFactory) {
+            timerQueueFactory_ = Arguments.requireNonNull(timerQueueFactory, "timerQueueFactory");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of the events processed in an iteration of the dispatcher loop.
+         * The events left in the event queue are processed in the next iteration,
+         * after the selector is polled.
+         * @param maxEventsPerLoop the maximum number of the events; 0 if unlimited
+         * @return this builder
+         */
+        public Builder setMaxEventsPerLoop(int maxEventsPerLoop) {
+            maxEventsPerLoop_ = Arguments.requirePositiveOrZero(maxEventsPerLoop, "maxEventsPerLoop");
+            return this;
+        }
+
+        /**
+         * Sets the percentage of the time spent on I/O in an iteration of the dispatcher loop.
+         * The time to process the events is limited to {@code ioTime * (100 - ioRatio) / ioRatio}.
+         * If 100, the events are processed regardless of the time spent on I/O.
+         * @param ioRatio the percentage of the time spent on I/O, in [1, 100]
+         * @return this builder
+         */
+        public Builder setIoRatio(int ioRatio) {
+            ioRatio_ = Arguments.requireInRange(ioRatio, "ioRatio", 1, EventDispatcher.MAX_IO_RATIO);
+            return this;
+        }
+
+        /**
+         * Sets true if the selected key set of the selector is replaced with an array based one.
+         * The array based one reduces the garbage and the hash operations on selection. This option
+         * depends on the internal of the JDK selector implementation; the default selected key set is
+         * used if the replacement fails.
+         * @param optimizeSelectedKeys true if the selected key set is replaced
+         * @return this builder
+         */
+        public Builder setOptimizeSelectedKeys(boolean optimizeSelectedKeys) {
+            optimizeSelectedKeys_ = optimizeSelectedKeys;
+            return this;
+        }
+
+        /**
+         * Sets the number of the successive selections which return no key before the timeout
+         * without any wake up. The selector is rebuilt if the number of such selections reaches this value.
+         * @param selectorRebuildThreshold the threshold to rebuild the selector; 0 if the selector is never rebuilt
+         * @return this builder
+         */
+        public Builder setSelectorRebuildThreshold(int selectorRebuildThreshold) {
+            selectorRebuildThreshold_ =
+                    Arguments.requirePositiveOrZero(selectorRebuildThreshold, "selectorRebuildThreshold");
+            return this;
+        }
+
         /**
          * Returns the number of workers.
          * @return the number of workers
@@ -164,6 +332,46 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             return readBufferSize_;
         }
 
+        /**
+         * Returns the maximum read buffer size.
+         * @return the maximum read buffer size
+         */
+        public int maxReadBufferSize() {
+            return maxReadBufferSize_;
+        }
+
+        /**
+         * Returns the maximum number of bytes read from a connection per selection.
+         * @return the maximum number of bytes read from a connection per selection
+         */
+        public int maxReadBytesPerSelect() {
+            return maxReadBytesPerSelect_;
+        }
+
+        /**
+         * Returns the pool to allocate the buffers to read from the connections.
+         * @return the pool, or null if the read buffer shared in the dispatcher is used
+         */
+        public ByteBufferChunkPool readChunkPool() {
+            return readChunkPool_;
+        }
+
+        /**
+         * Returns the pool to allocate the buffers to build the messages to be written.
+         * @return the pool, or null if the buffers are allocated in the heap
+         */
+        public ByteBufferChunkPool writeChunkPool() {
+            return writeChunkPool_;
+        }
+
+        /**
+         * Returns the threshold of the flush consolidation.
+         * @return the threshold in bytes; 0 if each packet is flushed immediately
+         */
+        public int flushConsolidationThreshold() {
+            return flushConsolidationThreshold_;
+        }
+
         /**
          * Returns the write buffer size.
          * @return the write buffer size
@@ -180,6 +388,46 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             return useDirectBuffer_;
         }
 
+        /**
+         * Returns the factory of the timer queue.
+         * @return the factory of the timer queue
+         */
+        public TimerQueueFactory timerQueueFactory() {
+            return timerQueueFactory_;
+        }
+
+        /**
+         * Returns the maximum number of the events processed in an iteration of the dispatcher loop.
+         * @return the maximum number of the events processed in an iteration of the dispatcher loop
+         */
+        public int maxEventsPerLoop() {
+            return maxEventsPerLoop_;
+        }
+
+        /**
+         * Returns the percentage of the time spent on I/O in an iteration of the dispatcher loop.
+         * @return the percentage of the time spent on I/O in an iteration of the dispatcher loop
+         */
+        public int ioRatio() {
+            return ioRatio_;
+        }
+
+        /**
+         * Returns true if the selected key set of the selector is replaced with an array based one.
+         * @return true if the selected key set of the selector is replaced with an array based one
+         */
+        public boolean optimizeSelectedKeys() {
+            return optimizeSelectedKeys_;
+        }
+
+        /**
+         * Returns the threshold to rebuild the selector.
+         * @return the threshold to rebuild the selector
+         */
+        public int selectorRebuildThreshold() {
+            return selectorRebuildThreshold_;
+        }
+
         /**
          * Builds the new {@link NioEventDispatcherGroup}.
          * @return
@@ -188,8 +436,7 @@ public class NioEventDispatcherGroup extends EventDispatcherGroup {
             return new NioEventDispatcherGroup(workers_, threadFactory(), new EventDispatcherFactory() {
                 @Override
                 public EventDispatcher newEventDispatcher() {
-                    return new NioEventDispatcher(
-                            eventQueueCapacity_, readBufferSize_, writeBufferSize_, useDirectBuffer_);
+                    return new NioEventDispatcher(Builder.this);
                 }
             });
         }
@@ -5,6 +5,8 @@ import net.ihiroky.niotty.NameCountThreadFactory;
 import net.ihiroky.niotty.PipelineComposer;
 import net.ihiroky.niotty.util.Arguments;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * An implementation of {@link net.ihiroky.niotty.Processor} for NIO {@code ServerSocketChannel}.
  */
@@ -15,9 +17,15 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
     private WriteQueueFactory<PacketQueue> writeQueueFactory_;
 
     private int numberOfIoThread_;
+    private int numberOfAcceptThread_;
+    private boolean reusePortAcceptors_;
+    private int maxAcceptsPerSelect_;
+    private int maxConnections_;
+    private long maxEventLoopLagNanos_;
     private int readBufferSize_;
     private boolean useDirectBuffer_;
     private boolean copyReadBuffer_;
+    private boolean optimizeSelectedKeys_;
 
     private static final int DEFAULT_NUMBER_OF_IO_THREAD =
             Math.max(Runtime.getRuntime().availableProcessors() / 2, 2);
@@ -28,6 +36,8 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
         writeQueueFactory_ = new SimplePacketQueueFactory();
 
         numberOfIoThread_ = DEFAULT_NUMBER_OF_IO_THREAD;
+        numberOfAcceptThread_ = 1;
+        maxAcceptsPerSelect_ = NioServerSocketTransport.DEFAULT_MAX_ACCEPTS_PER_SELECT;
         readBufferSize_ = SelectDispatcherFactory.DEFAULT_READ_BUFFER_SIZE;
         useDirectBuffer_ = SelectDispatcherFactory.DEFAULT_USE_DIRECT_BUFFER;
 
@@ -42,9 +52,10 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
                 .setReadBufferSize(readBufferSize_)
                 .setWriteBufferSize(0)
                 .setUseDirectBuffer(useDirectBuffer_)
+                .setOptimizeSelectedKeys(optimizeSelectedKeys_)
                 .build();
         acceptSelectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder()
-                .setWorkers(1)
+                .setWorkers(numberOfAcceptThread_)
                 .setThreadFactory(new NameCountThreadFactory(name().concat("-Accept")))
                 .setBufferSizeNonIo()
                 .build();
@@ -59,7 +70,11 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
     @Override
     public NioServerSocketTransport createTransport() {
         return new NioServerSocketTransport(name(), pipelineComposer(),
-                acceptSelectDispatcherGroup_, ioSelectDispatcherGroup_, writeQueueFactory_);
+                acceptSelectDispatcherGroup_, ioSelectDispatcherGroup_, writeQueueFactory_)
+                .setReusePortAcceptors(reusePortAcceptors_)
+                .setMaxAcceptsPerSelect(maxAcceptsPerSelect_)
+                .setMaxConnections(maxConnections_)
+                .setMaxEventLoopLag(maxEventLoopLagNanos_, TimeUnit.NANOSECONDS);
     }
 
     @Override
@@ -80,6 +95,51 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
         return this;
     }
 
+    public NioServerSocketProcessor setNumberOfAcceptThread(int numberOfAcceptThread) {
+        this.numberOfAcceptThread_ = Arguments.requirePositive(numberOfAcceptThread, "numberOfAcceptThread");
+        return this;
+    }
+
+    /**
+     * Enables or disables the mode to bind an acceptor for each accept thread with {@code SO_REUSEPORT}
+     * for the transports created by this processor.
+     * @param reusePortAcceptors true if the mode is enabled
+     * @return this object
+     * @see NioServerSocketTransport#setReusePortAcceptors(boolean)
+     */
+    public NioServerSocketProcessor setReusePortAcceptors(boolean reusePortAcceptors) {
+        reusePortAcceptors_ = reusePortAcceptors;
+        return this;
+    }
+
+    public NioServerSocketProcessor setMaxAcceptsPerSelect(int maxAcceptsPerSelect) {
+        maxAcceptsPerSelect_ = Arguments.requirePositive(maxAcceptsPerSelect, "maxAcceptsPerSelect");
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of the connections accepted by each transport created by this processor.
+     * @param maxConnections the maximum number of the connections; less than or equal 0 if unlimited
+     * @return this object
+     * @see NioServerSocketTransport#setMaxConnections(int)
+     */
+    public NioServerSocketProcessor setMaxConnections(int maxConnections) {
+        maxConnections_ = maxConnections;
+        return this;
+    }
+
+    /**
+     * Sets the maximum event loop lag of the I/O dispatchers to accept the connections.
+     * @param maxLag the maximum lag; less than or equal 0 if not measured
+     * @param unit the unit of the maximum lag
+     * @return this object
+     * @see NioServerSocketTransport#setMaxEventLoopLag(long, java.util.concurrent.TimeUnit)
+     */
+    public NioServerSocketProcessor setMaxEventLoopLag(long maxLag, TimeUnit unit) {
+        maxEventLoopLagNanos_ = Arguments.requireNonNull(unit, "unit").toNanos(maxLag);
+        return this;
+    }
+
     public NioServerSocketProcessor setReadBufferSize(int readBufferSize) {
         readBufferSize_ = Arguments.requirePositive(readBufferSize, "readBufferSize");
         return this;
@@ -95,6 +155,11 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
         return this;
     }
 
+    public NioServerSocketProcessor setOptimizeSelectedKeys(boolean optimizeSelectedKeys) {
+        optimizeSelectedKeys_ = optimizeSelectedKeys;
+        return this;
+    }
+
     public NioServerSocketProcessor setWriteQueueFactory(WriteQueueFactory<PacketQueue> writeQueueFactory) {
         writeQueueFactory_ = writeQueueFactory;
         return this;
@@ -112,6 +177,26 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
         return numberOfIoThread_;
     }
 
+    public int numberOfAcceptThread() {
+        return numberOfAcceptThread_;
+    }
+
+    public boolean reusePortAcceptors() {
+        return reusePortAcceptors_;
+    }
+
+    public int maxAcceptsPerSelect() {
+        return maxAcceptsPerSelect_;
+    }
+
+    public int maxConnections() {
+        return maxConnections_;
+    }
+
+    public long maxEventLoopLagNanos() {
+        return maxEventLoopLagNanos_;
+    }
+
     public int readBufferSize() {
         return readBufferSize_;
     }
@@ -123,4 +208,8 @@ public class NioServerSocketProcessor extends AbstractProcessor<NioServerSocketT
     public boolean duplicateReadBuffer() {
         return copyReadBuffer_;
     }
+
+    public boolean optimizeSelectedKeys() {
+        return optimizeSelectedKeys_;
+    }
 }
@@ -2,6 +2,7 @@ package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.*;
 import net.ihiroky.niotty.buffer.Packet;
+import net.ihiroky.niotty.util.Arguments;
 import net.ihiroky.niotty.util.JavaVersion;
 import net.ihiroky.niotty.util.Platform;
 import org.slf4j.Logger;
@@ -11,6 +12,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.NotYetBoundException;
@@ -18,30 +20,64 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An implementation of {@link net.ihiroky.niotty.Transport} for NIO {@code ServerSocketChannel}.
+ * <p>
+ * By default, this transport accepts the connections with a channel registered to one of
+ * the dispatchers in the accept dispatcher group. If {@link #setReusePortAcceptors(boolean)}
+ * is enabled, {@link #bind(java.net.SocketAddress, int)} opens a channel for each dispatcher
+ * in the accept dispatcher group and binds them to the same address with {@code SO_REUSEPORT},
+ * so that the kernel spreads the incoming connections across the dispatchers. Each channel,
+ * called an acceptor, registers the accepted connections to its own dispatcher to keep them
+ * on the same core if the dispatcher is also in the I/O dispatcher group. Otherwise, the accepted
+ * connections are assigned to the least loaded I/O dispatchers as usual. This mode requires
+ * Java 9 or later and the operating system which supports {@code SO_REUSEPORT}.
+ * </p>
+ * <p>
+ * The admission of the connections can be controlled by {@link #setMaxConnections(int)} and
+ * {@link #setMaxEventLoopLag(long, java.util.concurrent.TimeUnit)}. If the number of the accepted
+ * connections or the event loop lag of the I/O dispatchers exceeds the limit, this transport
+ * stops accepting and leaves the new connections in the backlog until the load decreases enough.
+ * </p>
  */
 public class NioServerSocketTransport extends NioSocketTransport {
 
     private ServerSocketChannel serverChannel_;
     private final DefaultPipeline pipeline_;
     private final String name_;
+    private final NioEventDispatcherGroup acceptEventDispatcherGroup_;
     private final NioEventDispatcherGroup ioEventDispatcherGroup_;
     private final PipelineComposer childPipelineComposer_;
     private final WriteQueueFactory<PacketQueue> writeQueueFactory_;
     private final Map<TransportOption<Object>, Object> acceptedSocketOptionMap_;
+    private final List<NioServerSocketTransport> acceptors_;
+    private volatile boolean reusePortAcceptors_;
+    private volatile EventDispatcher acceptedEventDispatcher_;
+    private volatile int maxAcceptsPerSelect_;
+    private final Map<EventDispatcher, AcceptedRegistration> registrationMap_;
+    private AcceptAdmission admission_;
     private Logger logger_ = LoggerFactory.getLogger(NioServerSocketTransport.class);
 
     private static final Set<TransportOption<?>> SUPPORTED_OPTIONS = Collections.unmodifiableSet(
             new HashSet<TransportOption<?>>(Arrays.<TransportOption<?>>asList(
-                    TransportOptions.SO_RCVBUF, TransportOptions.SO_REUSEADDR)));
+                    TransportOptions.SO_RCVBUF, TransportOptions.SO_REUSEADDR, TransportOptions.SO_REUSEPORT)));
+
+    /** The default maximum number of the connections accepted in a wakeup of the accept dispatcher. */
+    public static final int DEFAULT_MAX_ACCEPTS_PER_SELECT = 64;
+
+    /** {@code StandardSocketOptions.SO_REUSEPORT} since Java 9, or null. */
+    private static final SocketOption<Boolean> SO_REUSEPORT = reusePortOption();
 
     public NioServerSocketTransport(String name, PipelineComposer childPipelineComposer,
             NioEventDispatcherGroup acceptEventDispatcherGroup,
@@ -56,10 +92,15 @@ public class NioServerSocketTransport extends NioSocketTransport {
 
             serverChannel_ = serverChannel;
             name_ = name;
+            acceptEventDispatcherGroup_ = acceptEventDispatcherGroup;
             ioEventDispatcherGroup_ = ioEventDispatcherGroup;
             childPipelineComposer_ = childPipelineComposer;
             writeQueueFactory_ = writeQueueFactory;
             acceptedSocketOptionMap_ = new HashMap<TransportOption<Object>, Object>();
+            acceptors_ = new CopyOnWriteArrayList<NioServerSocketTransport>();
+            maxAcceptsPerSelect_ = DEFAULT_MAX_ACCEPTS_PER_SELECT;
+            registrationMap_ = new HashMap<EventDispatcher, AcceptedRegistration>();
+            admission_ = new AcceptAdmission(this, ioEventDispatcherGroup);
             Stage ioStage = ((NioEventDispatcher) eventDispatcher()).ioStage();
             pipeline_ = new DefaultPipeline(name, this, acceptEventDispatcherGroup, Pipeline.IO_STAGE_KEY, ioStage);
         } catch (IOException ioe) {
@@ -82,14 +123,177 @@ public class NioServerSocketTransport extends NioSocketTransport {
 
         serverChannel_ = channel;
         name_ = name;
+        acceptEventDispatcherGroup_ = acceptEventDispatcherGroup;
         ioEventDispatcherGroup_ = ioEventDispatcherGroup;
         childPipelineComposer_ = childPipelineComposer;
         writeQueueFactory_ = writeQueueFactory;
         acceptedSocketOptionMap_ = new HashMap<TransportOption<Object>, Object>();
+        acceptors_ = new CopyOnWriteArrayList<NioServerSocketTransport>();
+        maxAcceptsPerSelect_ = DEFAULT_MAX_ACCEPTS_PER_SELECT;
+        registrationMap_ = new HashMap<EventDispatcher, AcceptedRegistration>();
+        admission_ = new AcceptAdmission(this, ioEventDispatcherGroup);
         Stage ioStage = ((NioEventDispatcher) eventDispatcher()).ioStage();
         pipeline_ = new DefaultPipeline(name, this, acceptEventDispatcherGroup, Pipeline.IO_STAGE_KEY, ioStage);
     }
 
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> reusePortOption() {
+        if (!Platform.javaVersion().ge(JavaVersion.JAVA9)) {
+            return null;
+        }
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if {@code SO_REUSEPORT} is supported by the runtime and the operating system.
+     * @return true if {@code SO_REUSEPORT} is supported
+     */
+    public boolean isReusePortSupported() {
+        return SO_REUSEPORT != null && serverChannel_.supportedOptions().contains(SO_REUSEPORT);
+    }
+
+    /**
+     * Enables or disables the mode to bind an acceptor for each dispatcher in the accept
+     * dispatcher group with {@code SO_REUSEPORT}. This mode must be set before
+     * {@link #bind(java.net.SocketAddress, int)}.
+     *
+     * @param enabled true if the mode is enabled
+     * @return this object
+     */
+    public NioServerSocketTransport setReusePortAcceptors(boolean enabled) {
+        reusePortAcceptors_ = enabled;
+        return this;
+    }
+
+    /**
+     * Returns true if the mode to bind an acceptor for each dispatcher in the accept
+     * dispatcher group is enabled.
+     * @return true if the mode is enabled
+     */
+    public boolean reusePortAcceptors() {
+        return reusePortAcceptors_;
+    }
+
+    /**
+     * Sets the maximum number of the connections accepted in a wakeup of the accept dispatcher.
+     * The rest of the pending connections are accepted in the next wakeup.
+     *
+     * @param maxAcceptsPerSelect the maximum number of the connections accepted in a wakeup
+     * @return this object
+     */
+    public NioServerSocketTransport setMaxAcceptsPerSelect(int maxAcceptsPerSelect) {
+        maxAcceptsPerSelect_ = Arguments.requirePositive(maxAcceptsPerSelect, "maxAcceptsPerSelect");
+        for (NioServerSocketTransport acceptor : acceptors_) {
+            acceptor.maxAcceptsPerSelect_ = maxAcceptsPerSelect;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of the connections accepted in a wakeup of the accept dispatcher.
+     * @return the maximum number of the connections accepted in a wakeup
+     */
+    public int maxAcceptsPerSelect() {
+        return maxAcceptsPerSelect_;
+    }
+
+    /**
+     * Sets the maximum number of the connections accepted by this transport and not closed yet.
+     * This transport stops accepting if the number of the connections reaches the maximum,
+     * and resumes if it decreases to 80 percent of the maximum.
+     *
+     * @param maxConnections the maximum number of the connections; less than or equal 0 if unlimited
+     * @return this object
+     */
+    public NioServerSocketTransport setMaxConnections(int maxConnections) {
+        admission_.setMaxConnections(maxConnections);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of the connections accepted by this transport and not closed yet.
+     * @return the maximum number of the connections; less than or equal 0 if unlimited
+     */
+    public int maxConnections() {
+        return admission_.maxConnections();
+    }
+
+    /**
+     * Sets the maximum event loop lag of the I/O dispatchers. The lag is the time from offering
+     * an event to executing it, which is measured periodically for each I/O dispatcher.
+     * This transport stops accepting if the lag of any I/O dispatcher reaches the maximum,
+     * and resumes if it decreases to 80 percent of the maximum.
+     *
+     * @param maxLag the maximum lag; less than or equal 0 if not measured
+     * @param unit the unit of the maximum lag
+     * @return this object
+     */
+    public NioServerSocketTransport setMaxEventLoopLag(long maxLag, TimeUnit unit) {
+        Arguments.requireNonNull(unit, "unit");
+        admission_.setMaxLagNanos(unit.toNanos(maxLag));
+        return this;
+    }
+
+    /**
+     * Returns the maximum event loop lag of the I/O dispatchers by nanoseconds.
+     * @return the maximum lag; less than or equal 0 if not measured
+     */
+    public long maxEventLoopLagNanos() {
+        return admission_.maxLagNanos();
+    }
+
+    /**
+     * Returns the last measured event loop lag of the I/O dispatchers by nanoseconds.
+     * @return the lag, or 0 if not measured
+     */
+    public long eventLoopLagNanos() {
+        return admission_.lagNanos();
+    }
+
+    /**
+     * Returns the number of the connections accepted by this transport and not closed yet.
+     * @return the number of the connections
+     */
+    public int connections() {
+        return admission_.connections();
+    }
+
+    /**
+     * Returns true if this transport stops accepting by the admission control.
+     * @return true if this transport stops accepting
+     */
+    public boolean isAcceptPaused() {
+        return admission_.isPaused();
+    }
+
+    /**
+     * Sets or clears {@code OP_ACCEPT} of this transport and the acceptors in their dispatcher threads.
+     * @param enabled true if set
+     */
+    void setAcceptInterest(final boolean enabled) {
+        List<NioServerSocketTransport> acceptors = new ArrayList<NioServerSocketTransport>(acceptors_);
+        acceptors.add(this);
+        for (final NioServerSocketTransport acceptor : acceptors) {
+            acceptor.eventDispatcher().execute(new Event() {
+                @Override
+                public long execute() {
+                    if (acceptor.key() != null) {
+                        if (enabled) {
+                            acceptor.setInterestOp(SelectionKey.OP_ACCEPT);
+                        } else {
+                            acceptor.clearInterestOp(SelectionKey.OP_ACCEPT);
+                        }
+                    }
+                    return DONE;
+                }
+            });
+        }
+    }
+
     /**
      * Set a socket option.
      * @param option the option
@@ -106,6 +310,8 @@ public class NioServerSocketTransport extends NioSocketTransport {
                     serverChannel_.setOption(StandardSocketOptions.SO_RCVBUF, (Integer) value);
                 } else if (option == TransportOptions.SO_REUSEADDR) {
                     serverChannel_.setOption(StandardSocketOptions.SO_REUSEADDR, (Boolean) value);
+                } else if (option == TransportOptions.SO_REUSEPORT && SO_REUSEPORT != null) {
+                    serverChannel_.setOption(SO_REUSEPORT, (Boolean) value);
                 } else {
                     throw new UnsupportedOperationException(option.toString());
                 }
@@ -139,6 +345,8 @@ public class NioServerSocketTransport extends NioSocketTransport {
                     return option.cast(serverChannel_.getOption(StandardSocketOptions.SO_RCVBUF));
                 } else if (option == TransportOptions.SO_REUSEADDR) {
                     return option.cast(serverChannel_.getOption(StandardSocketOptions.SO_REUSEADDR));
+                } else if (option == TransportOptions.SO_REUSEPORT && SO_REUSEPORT != null) {
+                    return option.cast(serverChannel_.getOption(SO_REUSEPORT));
                 } else {
                     throw new UnsupportedOperationException(option.toString());
                 }
@@ -237,7 +445,9 @@ public class NioServerSocketTransport extends NioSocketTransport {
         } catch (IOException ioe) {
             return new FailedTransportFuture(this, ioe);
         }
-
+        if (reusePortAcceptors_ && !isReusePortSupported()) {
+            return new FailedTransportFuture(this, new UnsupportedOperationException("SO_REUSEPORT"));
+        }
 
         final DefaultTransportFuture future = new DefaultTransportFuture(this);
         eventDispatcher().execute(new Event() {
@@ -246,7 +456,11 @@ public class NioServerSocketTransport extends NioSocketTransport {
                 if (future.executing()) {
                     try {
                         ServerSocketChannel channel = serverChannel_;
-                        if (Platform.javaVersion().ge(JavaVersion.JAVA7)) {
+                        if (reusePortAcceptors_) {
+                            if (channel.getLocalAddress() == null) {
+                                bindAcceptors(socketAddress, backlog);
+                            }
+                        } else if (Platform.javaVersion().ge(JavaVersion.JAVA7)) {
                             if (channel.getLocalAddress() == null) {
                                 channel.bind(socketAddress, backlog);
                                 register(channel, SelectionKey.OP_ACCEPT);
@@ -269,6 +483,104 @@ public class NioServerSocketTransport extends NioSocketTransport {
         return future;
     }
 
+    /**
+     * Binds the channel of this transport and opens, binds and registers the acceptor
+     * for each of the other dispatchers in the accept dispatcher group.
+     * This method is called in the dispatcher thread of this transport.
+     */
+    private void bindAcceptors(SocketAddress socketAddress, int backlog) throws IOException {
+        ioEventDispatcherGroup_.open();
+        List<EventDispatcher> ioEventDispatchers = ioEventDispatcherGroup_.eventDispatchers();
+        EventDispatcher eventDispatcher = eventDispatcher();
+        try {
+            serverChannel_.setOption(SO_REUSEPORT, true);
+            serverChannel_.bind(socketAddress, backlog);
+            SocketAddress localAddress = serverChannel_.getLocalAddress(); // the port may be ephemeral
+            acceptedEventDispatcher_ = ioEventDispatcherFor(eventDispatcher, ioEventDispatchers);
+            for (EventDispatcher acceptEventDispatcher : acceptEventDispatcherGroup_.eventDispatchers()) {
+                if (acceptEventDispatcher == eventDispatcher) {
+                    continue;
+                }
+                NioServerSocketTransport acceptor = newAcceptor();
+                acceptors_.add(acceptor);
+                acceptor.switchEventDispatcher(acceptor.eventDispatcher(), acceptEventDispatcher);
+                acceptor.serverChannel_.setOption(SO_REUSEPORT, true);
+                acceptor.serverChannel_.bind(localAddress, backlog);
+                acceptor.acceptedEventDispatcher_ = ioEventDispatcherFor(acceptEventDispatcher, ioEventDispatchers);
+                acceptor.register(acceptor.serverChannel_, SelectionKey.OP_ACCEPT);
+            }
+            register(serverChannel_, SelectionKey.OP_ACCEPT);
+            logger_.debug("[bindAcceptors] {} acceptors are bound to {}.", acceptors_.size() + 1, localAddress);
+        } catch (IOException ioe) {
+            closeAcceptors();
+            serverChannel_.close();
+            throw ioe;
+        }
+    }
+
+    private NioServerSocketTransport newAcceptor() throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        NioServerSocketTransport acceptor;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF,
+                    serverChannel_.getOption(StandardSocketOptions.SO_RCVBUF));
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR,
+                    serverChannel_.getOption(StandardSocketOptions.SO_REUSEADDR));
+            acceptor = new NioServerSocketTransport(name_, childPipelineComposer_,
+                    acceptEventDispatcherGroup_, ioEventDispatcherGroup_, writeQueueFactory_, channel);
+        } catch (IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+        synchronized (acceptedSocketOptionMap_) {
+            acceptor.acceptedSocketOptionMap_.putAll(acceptedSocketOptionMap_);
+        }
+        acceptor.maxAcceptsPerSelect_ = maxAcceptsPerSelect_;
+        acceptor.admission_ = admission_;
+        return acceptor;
+    }
+
+    /**
+     * Returns the I/O dispatcher to which the acceptor on the specified dispatcher pins the accepted
+     * connections. The accept dispatcher itself is used if it is also in the I/O dispatcher group.
+     * Otherwise, null is returned and the accepted connections are assigned to the least loaded
+     * I/O dispatchers, so that all of the I/O dispatchers are used even if the accept dispatchers are fewer.
+     */
+    private static EventDispatcher ioEventDispatcherFor(
+            EventDispatcher acceptEventDispatcher, List<EventDispatcher> ioEventDispatchers) {
+        return ioEventDispatchers.contains(acceptEventDispatcher) ? acceptEventDispatcher : null;
+    }
+
+    private void closeAcceptors() {
+        for (NioServerSocketTransport acceptor : acceptors_) {
+            acceptor.close();
+        }
+        acceptors_.clear();
+    }
+
+    /**
+     * Returns the acceptors opened in addition to this transport by
+     * {@link #bind(java.net.SocketAddress, int)} if {@link #setReusePortAcceptors(boolean)} is enabled.
+     * @return the acceptors
+     */
+    List<NioServerSocketTransport> acceptors() {
+        return acceptors_;
+    }
+
+    EventDispatcher acceptedEventDispatcher() {
+        return acceptedEventDispatcher_;
+    }
+
+    void setAcceptedEventDispatcher(EventDispatcher eventDispatcher) {
+        acceptedEventDispatcher_ = eventDispatcher;
+    }
+
+    @Override
+    void onCloseSelectableChannel() {
+        closeAcceptors();
+    }
+
     @Override
     public TransportFuture close() {
         if (eventDispatcher() != null) {
@@ -288,59 +600,166 @@ public class NioServerSocketTransport extends NioSocketTransport {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Accepts the pending connections up to {@link #maxAcceptsPerSelect()}. The accepted transports are
+     * registered to their dispatchers by an event for each dispatcher after the loop.
+     */
     @Override
     void onSelected(SelectionKey key, NioEventDispatcher selectDispatcher) {
         ServerSocketChannel channel = (ServerSocketChannel) key.channel();
-        SocketChannel acceptedChannel;
+        Map<EventDispatcher, AcceptedRegistration> registrationMap = registrationMap_;
+        AcceptAdmission admission = admission_;
         try {
-            acceptedChannel = channel.accept();
-            logger_.info("[onSelected] New channel {} is accepted.", acceptedChannel);
-        } catch (NotYetBoundException nybe) {
-            logger_.error("[onSelected] failed to accept channel.", nybe);
-            unregister(); // leave from selector and wait for somebody to bind me.
-            return;
-        } catch (IOException ioe) {
-            logger_.error("[onSelected] failed to accept channel.", ioe);
-            doCloseSelectableChannel();
-            return;
+            for (int i = maxAcceptsPerSelect_; i > 0; i--) {
+                if (admission.isPaused()) {
+                    clearInterestOp(SelectionKey.OP_ACCEPT); // set again on resumed
+                    break;
+                }
+                SocketChannel acceptedChannel;
+                try {
+                    acceptedChannel = channel.accept();
+                } catch (NotYetBoundException nybe) {
+                    logger_.error("[onSelected] failed to accept channel.", nybe);
+                    unregister(); // leave from selector and wait for somebody to bind me.
+                    return;
+                } catch (IOException ioe) {
+                    logger_.error("[onSelected] failed to accept channel.", ioe);
+                    doCloseSelectableChannel();
+                    return;
+                }
+                if (acceptedChannel == null) {
+                    break;
+                }
+                logger_.debug("[onSelected] New channel {} is accepted.", acceptedChannel);
+                accept(acceptedChannel, registrationMap);
+            }
+        } finally {
+            if (!registrationMap.isEmpty()) {
+                for (Map.Entry<EventDispatcher, AcceptedRegistration> entry : registrationMap.entrySet()) {
+                    entry.getKey().offer(entry.getValue());
+                }
+                registrationMap.clear();
+            }
         }
+    }
 
+    private void accept(SocketChannel acceptedChannel, Map<EventDispatcher, AcceptedRegistration> registrationMap) {
+        NioClientSocketTransport acceptedTransport;
         try {
             acceptedChannel.configureBlocking(false);
-            register(acceptedChannel);
-        } catch (IOException ioe) {
-            logger_.error("[register] Failed to register channel " + channel);
+            acceptedTransport = newAcceptedTransport(acceptedChannel);
+        } catch (Exception e) {
+            logger_.error("[accept] Failed to set up accepted channel " + acceptedChannel, e);
             try {
                 acceptedChannel.close();
-            } catch (IOException e) {
-                logger_.warn("[onSelected] Failed to close accepted channel.", e);
+            } catch (IOException ioe) {
+                logger_.warn("[accept] Failed to close accepted channel.", ioe);
             }
+            return;
         }
+
+        EventDispatcher eventDispatcher = acceptedTransport.eventDispatcher();
+        if (eventDispatcher.isInDispatcherThread()) {
+            registerAccepted(acceptedTransport, acceptedChannel);
+            return;
+        }
+        AcceptedRegistration registration = registrationMap.get(eventDispatcher);
+        if (registration == null) {
+            registration = new AcceptedRegistration();
+            registrationMap.put(eventDispatcher, registration);
+        }
+        registration.add(acceptedTransport, acceptedChannel);
     }
 
     void register(SelectableChannel channel) throws IOException {
-        // SocketChannel#getRemoteAddress() may throw IOException, so get remoteAddress first.
-        SocketChannel socketChannel = (SocketChannel) channel;
+        NioClientSocketTransport acceptedChannel = newAcceptedTransport((SocketChannel) channel);
+        try {
+            acceptedChannel.register(channel, SelectionKey.OP_READ);
+        } catch (IOException ioe) {
+            try {
+                acceptedChannel.unregister(); // Not bound yet. So not doCloseSelectableChannel() but unregister().
+            } catch (Exception e) {
+                logger_.warn("[register] Failed to close accepted channel.", e);
+            }
+            throw ioe;
+        }
+    }
+
+    private NioClientSocketTransport newAcceptedTransport(SocketChannel socketChannel) {
         NioClientSocketTransport acceptedChannel = new NioClientSocketTransport(
                 name_, childPipelineComposer_, ioEventDispatcherGroup_, writeQueueFactory_, socketChannel);
+        EventDispatcher acceptedEventDispatcher = acceptedEventDispatcher_;
+        if (acceptedEventDispatcher != null && acceptedEventDispatcher.isAlive()
+                && acceptedChannel.eventDispatcher() != acceptedEventDispatcher) {
+            // Not registered yet, so no event is in flight for the accepted transport.
+            acceptedChannel.switchEventDispatcher(acceptedChannel.eventDispatcher(), acceptedEventDispatcher);
+        }
         synchronized (acceptedSocketOptionMap_) {
             for (Map.Entry<TransportOption<Object>, Object> option : acceptedSocketOptionMap_.entrySet()) {
                 acceptedChannel.setOption(option.getKey(), option.getValue());
             }
         }
-        for (TransportOption<?> name : acceptedChannel.supportedOptions()) {
-            logger_.debug("[register] Accepted socket's {} = {}", name, acceptedChannel.option(name));
+        if (logger_.isDebugEnabled()) {
+            for (TransportOption<?> name : acceptedChannel.supportedOptions()) {
+                logger_.debug("[register] Accepted socket's {} = {}", name, acceptedChannel.option(name));
+            }
         }
+        admission_.accepted(acceptedChannel);
+        return acceptedChannel;
+    }
 
+    /**
+     * Registers the accepted transport in its dispatcher thread.
+     * The accepted channel is closed if failed.
+     */
+    private void registerAccepted(NioClientSocketTransport acceptedTransport, SocketChannel acceptedChannel) {
         try {
-            acceptedChannel.register(channel, SelectionKey.OP_READ);
-        } catch (IOException ioe) {
+            NioEventDispatcher eventDispatcher = (NioEventDispatcher) acceptedTransport.eventDispatcher();
+            if (eventDispatcher.isInDispatcherThread()) {
+                acceptedTransport.registerNow(eventDispatcher, acceptedChannel, SelectionKey.OP_READ);
+            } else {
+                acceptedTransport.register(acceptedChannel, SelectionKey.OP_READ); // moved concurrently
+            }
+        } catch (Exception e) {
+            logger_.warn("[registerAccepted] Failed to register accepted channel " + acceptedChannel, e);
+            acceptedTransport.closeFuture().setThrowable(e);
             try {
-                acceptedChannel.unregister(); // Not bound yet. So not doCloseSelectableChannel() but unregister().
-            } catch (Exception e) {
-                logger_.warn("[register] Failed to close accepted channel.", e);
+                acceptedTransport.unregister();
+            } catch (Exception ue) {
+                logger_.warn("[registerAccepted] Failed to unregister accepted transport.", ue);
             }
-            throw ioe;
+            try {
+                acceptedChannel.close();
+            } catch (IOException ioe) {
+                logger_.warn("[registerAccepted] Failed to close accepted channel.", ioe);
+            }
+        }
+    }
+
+    /**
+     * Registers the transports accepted in a wakeup to the same dispatcher at once.
+     */
+    private class AcceptedRegistration implements Event {
+
+        private final List<NioClientSocketTransport> transports_;
+        private final List<SocketChannel> channels_;
+
+        AcceptedRegistration() {
+            transports_ = new ArrayList<NioClientSocketTransport>();
+            channels_ = new ArrayList<SocketChannel>();
+        }
+
+        void add(NioClientSocketTransport transport, SocketChannel channel) {
+            transports_.add(transport);
+            channels_.add(channel);
+        }
+
+        @Override
+        public long execute() {
+            for (int i = 0; i < transports_.size(); i++) {
+                registerAccepted(transports_.get(i), channels_.get(i));
+            }
+            return DONE;
         }
     }
 
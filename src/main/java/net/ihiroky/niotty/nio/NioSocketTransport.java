@@ -1,6 +1,9 @@
 package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.*;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
+import net.ihiroky.niotty.buffer.CodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.util.Arguments;
 import org.slf4j.Logger;
@@ -8,9 +11,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A skeletal implementation of {@link net.ihiroky.niotty.Transport} for NIO.
@@ -20,13 +24,30 @@ public abstract class NioSocketTransport extends AbstractTransport {
 
     private final DefaultPipeline pipeline_;
     private SelectionKey key_;
+    private final AtomicBoolean migrating_;
+    volatile long selectedCount_;
+    boolean flushPending_;
+    int pendingFlushBytes_;
+    private volatile int highWatermark_;
+    private volatile int lowWatermark_;
+    private volatile boolean writable_;
+    private volatile int writeSpinCount_;
+    private int pendingSetOps_;
+    private int pendingClearOps_;
+    boolean interestOpsPending_;
     private static Logger logger_ = LoggerFactory.getLogger(NioSocketTransport.class);
 
+    /** The default maximum number of the write attempts in a flush before waiting for {@code OP_WRITE}. */
+    public static final int DEFAULT_WRITE_SPIN_COUNT = 16;
+
     NioSocketTransport(String name, PipelineComposer pipelineComposer, NioEventDispatcherGroup eventDispatcherGroup) {
         super(name, pipelineComposer, eventDispatcherGroup);
 
         Stage ioStage = ((NioEventDispatcher) eventDispatcher()).ioStage();
         pipeline_ = new DefaultPipeline(name, this, eventDispatcherGroup, Pipeline.IO_STAGE_KEY, ioStage);
+        migrating_ = new AtomicBoolean();
+        writable_ = true;
+        writeSpinCount_ = DEFAULT_WRITE_SPIN_COUNT;
     }
 
     @Override
@@ -40,18 +61,18 @@ public abstract class NioSocketTransport extends AbstractTransport {
     }
 
     final TransportFuture closeSelectableChannel() {
-        NioEventDispatcher dispatcher = (NioEventDispatcher) eventDispatcher();
+        EventDispatcher dispatcher = eventDispatcher();
         if (dispatcher == null) {
             pipeline_.close();
             return new SuccessfulTransportFuture(this);
         }
-        dispatcher.offer(new Event() {
+        dispatcher.offer(following(new Event() {
             @Override
             public long execute() {
                 NioSocketTransport.this.doCloseSelectableChannel();
                 return DONE;
             }
-        });
+        }));
         return closeFuture();
     }
 
@@ -82,24 +103,158 @@ public abstract class NioSocketTransport extends AbstractTransport {
         return closeFuture;
     }
 
+    /**
+     * Closes the channel whose key is cancelled, which is left by a failed migration.
+     * This method needs to be called by the dispatcher thread.
+     * @param activated true if the pipeline is activated
+     * @return close future
+     */
+    final TransportFuture closeUnregistered(boolean activated) {
+        DefaultTransportFuture closeFuture = closeFuture();
+        if (key_ != null && closeFuture.executing()) {
+            if (activated) {
+                try {
+                    pipeline().deactivate();
+                } catch (RuntimeException re) {
+                    logger_.warn("[closeUnregistered] {}'s deactivation is failed.", this);
+                }
+            }
+            eventDispatcher().reject(this);
+            try {
+                key_.channel().close();
+                closeFuture.done();
+            } catch (Exception e) {
+                closeFuture.setThrowable(e);
+            }
+
+            onCloseSelectableChannel();
+            pipeline_.close();
+        }
+        return closeFuture;
+    }
+
     void onCloseSelectableChannel() {
     }
 
+    /**
+     * Returns an event which executes the specified event in the thread of the dispatcher
+     * of this transport at the time of the execution. If this transport is migrated after the event
+     * is offered to the old dispatcher, the event is forwarded to the current one instead of
+     * being executed by the old one concurrently with the new one.
+     *
+     * @param event the event for this transport
+     * @return the event which follows the dispatcher of this transport
+     */
+    final Event following(final Event event) {
+        return new Event() {
+            @Override
+            public long execute() throws Exception {
+                EventDispatcher dispatcher = eventDispatcher();
+                if (!dispatcher.isInDispatcherThread()) {
+                    dispatcher.offer(this);
+                    return DONE;
+                }
+                return event.execute();
+            }
+        };
+    }
+
     final SelectionKey key() {
         return key_;
     }
 
+    /**
+     * Adds the operation to the interest set of the key. If called in the dispatcher thread,
+     * the change is applied at the end of the current iteration of the dispatcher loop, so that
+     * the changes cancelling each other in the iteration do not update the selector.
+     * @param op the operation
+     */
     void setInterestOp(int op) {
-        int interestOps = key_.interestOps();
-        if ((interestOps & op) == 0) {
-            key_.interestOps(interestOps | op);
-        }
+        pendingSetOps_ |= op;
+        pendingClearOps_ &= ~op;
+        deferInterestOps();
     }
 
+    /**
+     * Removes the operation from the interest set of the key. If called in the dispatcher thread,
+     * the change is applied at the end of the current iteration of the dispatcher loop.
+     * @param op the operation
+     */
     void clearInterestOp(int op) {
-        int interestOps = key_.interestOps();
-        if ((interestOps & op) != 0) {
-            key_.interestOps(interestOps & ~op);
+        pendingClearOps_ |= op;
+        pendingSetOps_ &= ~op;
+        deferInterestOps();
+    }
+
+    private void deferInterestOps() {
+        EventDispatcher dispatcher = eventDispatcher();
+        if (dispatcher instanceof NioEventDispatcher && dispatcher.isInDispatcherThread()) {
+            ((NioEventDispatcher) dispatcher).deferInterestOps(this);
+        } else {
+            applyInterestOps();
+        }
+    }
+
+    /**
+     * Applies the pending changes of the interest set to the key.
+     */
+    final void applyInterestOps() {
+        int setOps = pendingSetOps_;
+        int clearOps = pendingClearOps_;
+        pendingSetOps_ = 0;
+        pendingClearOps_ = 0;
+        interestOpsPending_ = false;
+        SelectionKey key = key_;
+        if (key == null || (setOps | clearOps) == 0) {
+            return;
+        }
+        try {
+            int interestOps = key.interestOps();
+            int newInterestOps = (interestOps | setOps) & ~clearOps;
+            if (newInterestOps != interestOps) {
+                key.interestOps(newInterestOps);
+            }
+        } catch (CancelledKeyException cke) {
+            // cancelled on migration; the target registers the channel with the pending ops.
+        }
+    }
+
+    /**
+     * Moves this transport and the stages executed by the current dispatcher to the specified dispatcher.
+     * The migration is executed asynchronously.
+     *
+     * @param target the dispatcher to which this transport is moved
+     * @return the future which represents the result of the migration; it is cancelled
+     *         if the migration is not started
+     * @see net.ihiroky.niotty.nio.TransportMigration
+     */
+    TransportFuture migrate(NioEventDispatcher target) {
+        Arguments.requireNonNull(target, "target");
+        if (eventDispatcher() == target || !migrating_.compareAndSet(false, true)) {
+            return new CancelledTransportFuture(this);
+        }
+        return TransportMigration.start(this, target);
+    }
+
+    boolean isMigrating() {
+        return migrating_.get();
+    }
+
+    void migrated() {
+        migrating_.set(false);
+    }
+
+    /**
+     * Changes the dispatcher of this transport and the stages executed by {@code oldDispatcher}.
+     * @param oldDispatcher the current dispatcher
+     * @param newDispatcher the new dispatcher
+     */
+    void switchEventDispatcher(EventDispatcher oldDispatcher, EventDispatcher newDispatcher) {
+        changeEventDispatcher(newDispatcher);
+        pipeline_.changeEventDispatcher(oldDispatcher, newDispatcher);
+        Pipeline pipeline = pipeline();
+        if (pipeline != pipeline_ && pipeline instanceof DefaultPipeline) {
+            ((DefaultPipeline) pipeline).changeEventDispatcher(oldDispatcher, newDispatcher);
         }
     }
 
@@ -110,20 +265,14 @@ public abstract class NioSocketTransport extends AbstractTransport {
 
         final NioEventDispatcher dispatcher = (NioEventDispatcher)  eventDispatcher();
         if (dispatcher.isInDispatcherThread()) {
-            if (ops == SelectionKey.OP_READ) {
-                pipeline().activate();
-            }
-            key_ = dispatcher.register(channel, ops, NioSocketTransport.this);
+            registerNow(dispatcher, channel, ops);
         } else {
             // case: ConnectorSelector <-> TcpIOSelector
             dispatcher.offer(new Event() {
                 @Override
                 public long execute() {
                     try {
-                        if (ops == SelectionKey.OP_READ) {
-                            pipeline().activate();
-                        }
-                        key_ = dispatcher.register(channel, ops, NioSocketTransport.this);
+                        registerNow(dispatcher, channel, ops);
                     } catch (Exception e) {
                         logger_.warn("[register] Failed to register a channel:" + this, e);
                     }
@@ -133,6 +282,17 @@ public abstract class NioSocketTransport extends AbstractTransport {
         }
     }
 
+    /**
+     * Registers the channel to the selector of the dispatcher.
+     * This method needs to be called by the dispatcher thread.
+     */
+    final void registerNow(NioEventDispatcher dispatcher, SelectableChannel channel, int ops) throws IOException {
+        if (ops == SelectionKey.OP_READ) {
+            pipeline().activate();
+        }
+        key_ = dispatcher.register(channel, ops, this);
+    }
+
     // This method needs to be called by I/O thread.
     void unregister() {
         SelectionKey key = key_;
@@ -150,21 +310,174 @@ public abstract class NioSocketTransport extends AbstractTransport {
         logger_.debug("[unregister] {} is unregistered from {}.", this, Thread.currentThread());
     }
 
+    @Override
+    public boolean isWritable() {
+        return writable_;
+    }
+
+    /**
+     * Allocates a buffer to build a message to be written to this transport. The buffer is allocated
+     * from the write chunk pool of the dispatcher if the pool is set, so a stage which encodes
+     * the message directly into the buffer makes it written without copying. Otherwise, the buffer
+     * is allocated in the heap.
+     *
+     * @param capacity the initial capacity of the buffer
+     * @return the new buffer
+     * @see NioEventDispatcherGroup.Builder#setWriteChunkPool(net.ihiroky.niotty.buffer.ByteBufferChunkPool)
+     */
+    public CodecBuffer newWriteBuffer(int capacity) {
+        EventDispatcher dispatcher = eventDispatcher();
+        ByteBufferChunkPool chunkPool = (dispatcher instanceof NioEventDispatcher)
+                ? ((NioEventDispatcher) dispatcher).writeChunkPool() : null;
+        return (chunkPool != null)
+                ? Buffers.newCodecBuffer(chunkPool, capacity)
+                : Buffers.newCodecBuffer(capacity);
+    }
+
+    /**
+     * Returns the bytes of the pending write buffers.
+     * @return the bytes of the pending write buffers
+     */
+    long pendingWriteBytes() {
+        return 0L;
+    }
+
+    /**
+     * Returns the bytes of the pending write buffers in the specified write queue.
+     * @param writeQueue the write queue
+     * @return the bytes of the pending write buffers, or 0 if the write queue does not count them
+     */
+    static long pendingBytes(WriteQueue writeQueue) {
+        return (writeQueue instanceof ByteCountingWriteQueue)
+                ? ((ByteCountingWriteQueue) writeQueue).pendingBytes() : 0L;
+    }
+
+    /**
+     * Sets the watermark if the option is {@link TransportOptions#WRITE_BUFFER_HIGH_WATERMARK}
+     * or {@link TransportOptions#WRITE_BUFFER_LOW_WATERMARK}.
+     * @param option the option
+     * @param value the value of the option
+     * @return true if the option is the watermark
+     */
+    final boolean setWriteBufferWatermark(TransportOption<?> option, Object value) {
+        if (option == TransportOptions.WRITE_BUFFER_HIGH_WATERMARK) {
+            highWatermark_ = Arguments.requirePositiveOrZero(
+                    TransportOptions.WRITE_BUFFER_HIGH_WATERMARK.cast(value), "value");
+        } else if (option == TransportOptions.WRITE_BUFFER_LOW_WATERMARK) {
+            lowWatermark_ = Arguments.requirePositiveOrZero(
+                    TransportOptions.WRITE_BUFFER_LOW_WATERMARK.cast(value), "value");
+        } else {
+            return false;
+        }
+        EventDispatcher dispatcher = eventDispatcher();
+        if (dispatcher != null) {
+            dispatcher.execute(following(new Event() {
+                @Override
+                public long execute() {
+                    updateWritability(pendingWriteBytes());
+                    return DONE;
+                }
+            }));
+        }
+        return true;
+    }
+
+    /**
+     * Returns the watermark if the option is {@link TransportOptions#WRITE_BUFFER_HIGH_WATERMARK}
+     * or {@link TransportOptions#WRITE_BUFFER_LOW_WATERMARK}.
+     * @param option the option
+     * @return the watermark, or null if the option is not the watermark
+     */
+    final Integer writeBufferWatermark(TransportOption<?> option) {
+        if (option == TransportOptions.WRITE_BUFFER_HIGH_WATERMARK) {
+            return highWatermark_;
+        }
+        if (option == TransportOptions.WRITE_BUFFER_LOW_WATERMARK) {
+            return lowWatermark_;
+        }
+        return null;
+    }
+
+    /**
+     * Changes the writability with the bytes of the pending write buffers, and triggers
+     * {@link WritabilityEvent} in the pipeline if it is changed. This method must be called
+     * in the dispatcher thread after the write buffers are queued or flushed.
+     * <p>
+     * The writability is evaluated only at the I/O stage. The messages which are handed off
+     * between the stages executed by the different dispatchers and do not reach the I/O stage
+     * yet are not counted, so the pending bytes can exceed the high watermark by them.
+     * </p>
+     *
+     * @param pendingBytes the bytes of the pending write buffers
+     */
+    final void updateWritability(long pendingBytes) {
+        int high = highWatermark_;
+        if (writable_) {
+            if (high > 0 && pendingBytes > high) {
+                writable_ = false;
+                pipeline().eventTriggered(WritabilityEvent.UNWRITABLE);
+            }
+        } else if (high <= 0 || pendingBytes <= Math.min(lowWatermark_, high)) {
+            writable_ = true;
+            pipeline().eventTriggered(WritabilityEvent.WRITABLE);
+        }
+    }
+
+    /**
+     * Flushes the packets written to this transport immediately. If the flush consolidation of
+     * the dispatcher is enabled, the packets are flushed at the end of the iteration of the dispatcher loop
+     * by default. Call this method after {@link #write(Object)} to send a latency sensitive message
+     * without waiting for the end of the iteration. The flush is executed in the dispatcher thread;
+     * the packets which do not reach the I/O stage yet are not flushed by this call.
+     *
+     * @see NioEventDispatcherGroup.Builder#setFlushConsolidationThreshold(int)
+     */
+    public void flushNow() {
+        // The dispatcher is not NioEventDispatcher while this transport is migrating.
+        EventDispatcher dispatcher = eventDispatcher();
+        if (dispatcher instanceof NioEventDispatcher && dispatcher.isInDispatcherThread()) {
+            ((NioEventDispatcher) dispatcher).flush(this);
+            return;
+        }
+        dispatcher.offer(new Event() {
+            @Override
+            public long execute() {
+                flushNow();
+                return DONE;
+            }
+        });
+    }
+
+    /**
+     * Returns the maximum number of the write attempts in a flush. A flush retries to write
+     * while the previous attempt writes some bytes but does not write all pending buffers,
+     * up to this count. After that, the rest is written when the channel becomes writable.
+     * @return the maximum number of the write attempts in a flush
+     */
+    final int writeSpinCount() {
+        return writeSpinCount_;
+    }
+
+    /**
+     * Sets the write spin count if the option is {@link TransportOptions#WRITE_SPIN_COUNT}.
+     * @param option the option
+     * @param value the value of the option
+     * @return true if the option is the write spin count
+     */
+    final boolean setWriteSpinCount(TransportOption<?> option, Object value) {
+        if (option != TransportOptions.WRITE_SPIN_COUNT) {
+            return false;
+        }
+        writeSpinCount_ = Arguments.requirePositive(TransportOptions.WRITE_SPIN_COUNT.cast(value), "value");
+        return true;
+    }
+
     protected void handleFlushStatus(FlushStatus status) {
         switch (status) {
             case FLUSHED:
                 clearInterestOp(SelectionKey.OP_WRITE);
                 return;
             case FLUSHING:
-                clearInterestOp(SelectionKey.OP_WRITE);
-                eventDispatcher().schedule(new Event() {
-                    @Override
-                    public long execute() throws Exception {
-                        setInterestOp(SelectionKey.OP_WRITE);
-                        return DONE;
-                    }
-                }, status.waitTimeMillis_, TimeUnit.MILLISECONDS);
-                return;
             case SKIPPED:
                 setInterestOp(SelectionKey.OP_WRITE);
                 return;
@@ -0,0 +1,161 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.EventDispatcherLoad;
+import net.ihiroky.niotty.EventDispatcherSelection;
+import net.ihiroky.niotty.util.Arguments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a {@link net.ihiroky.niotty.nio.NioClientSocketTransport} from the busiest
+ * {@link net.ihiroky.niotty.nio.NioEventDispatcher} to the least busy one in a
+ * {@link net.ihiroky.niotty.nio.NioEventDispatcherGroup}.
+ * <p>
+ * {@link #rebalance()} measures the busy ratio of each dispatcher by
+ * {@link net.ihiroky.niotty.EventDispatcherLoad} and the number of the selections of each transport
+ * since the last call. If the difference of the busy ratio between the busiest dispatcher and
+ * the least busy one exceeds the threshold, the transport whose share of the selections is
+ * the closest to the half of the difference is moved. The transport and its stages executed by
+ * the busiest dispatcher are moved at a safe point; see {@link net.ihiroky.niotty.nio.TransportMigration}.
+ * </p>
+ * <p>
+ * This class implements {@link net.ihiroky.niotty.Event} which calls {@link #rebalance()}
+ * periodically, so it can be scheduled to an {@link net.ihiroky.niotty.EventDispatcher}.
+ * This class is not thread safe; {@code rebalance()} must be called by a single thread.
+ * </p>
+ */
+public class NioTransportRebalancer implements Event {
+
+    private final NioEventDispatcherGroup group_;
+    private final double threshold_;
+    private final long periodNanos_;
+    private Map<EventDispatcher, EventDispatcherLoad> loadMap_;
+    private Map<NioClientSocketTransport, Long> selectedCountMap_;
+
+    private static Logger logger_ = LoggerFactory.getLogger(NioTransportRebalancer.class);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param group the group which holds the dispatchers to be balanced
+     * @param threshold the difference of the busy ratio to move a transport, in (0, 1]
+     * @param period the period to execute {@link #rebalance()} as an event
+     * @param timeUnit the unit of the period
+     */
+    public NioTransportRebalancer(NioEventDispatcherGroup group, double threshold, long period, TimeUnit timeUnit) {
+        Arguments.requireNonNull(group, "group");
+        Arguments.requireNonNull(timeUnit, "timeUnit");
+        if (threshold <= 0d || threshold > 1d) {
+            throw new IllegalArgumentException("The threshold must be in (0, 1].");
+        }
+        group_ = group;
+        threshold_ = threshold;
+        periodNanos_ = timeUnit.toNanos(Arguments.requirePositive(period, "period"));
+        loadMap_ = new HashMap<EventDispatcher, EventDispatcherLoad>();
+        selectedCountMap_ = new HashMap<NioClientSocketTransport, Long>();
+    }
+
+    @Override
+    public long execute() throws Exception {
+        rebalance();
+        return periodNanos_;
+    }
+
+    /**
+     * Measures the load of the dispatchers and moves a transport if required.
+     * @return true if a transport is started to move
+     */
+    public boolean rebalance() {
+        List<EventDispatcher> dispatchers = group_.eventDispatchers();
+        Map<EventDispatcher, EventDispatcherLoad> loadMap =
+                new HashMap<EventDispatcher, EventDispatcherLoad>(dispatchers.size() * 2);
+        Map<NioClientSocketTransport, Long> selectedCountMap = new HashMap<NioClientSocketTransport, Long>();
+        EventDispatcherLoad busiest = null;
+        EventDispatcherLoad leastBusy = null;
+        boolean sampled = true;
+        for (EventDispatcher dispatcher : dispatchers) {
+            EventDispatcherLoad load = loadMap_.get(dispatcher);
+            if (load == null) {
+                load = new EventDispatcherLoad(dispatcher);
+                sampled = false;
+            } else {
+                load.update();
+                if (busiest == null || load.busyRatio() > busiest.busyRatio()) {
+                    busiest = load;
+                }
+                if (leastBusy == null || load.busyRatio() < leastBusy.busyRatio()) {
+                    leastBusy = load;
+                }
+            }
+            loadMap.put(dispatcher, load);
+            for (EventDispatcherSelection selection : dispatcher.selections()) {
+                if (selection instanceof NioClientSocketTransport) {
+                    NioClientSocketTransport transport = (NioClientSocketTransport) selection;
+                    selectedCountMap.put(transport, transport.selectedCount_);
+                }
+            }
+        }
+        Map<NioClientSocketTransport, Long> lastSelectedCountMap = selectedCountMap_;
+        loadMap_ = loadMap;
+        selectedCountMap_ = selectedCountMap;
+
+        if (!sampled || busiest == null || busiest == leastBusy
+                || busiest.busyRatio() - leastBusy.busyRatio() < threshold_) {
+            return false;
+        }
+        NioClientSocketTransport transport =
+                chooseTransport(busiest, leastBusy, selectedCountMap, lastSelectedCountMap);
+        if (transport == null) {
+            return false;
+        }
+        boolean started = !transport.migrate((NioEventDispatcher) leastBusy.eventDispatcher()).isCancelled();
+        if (started) {
+            logger_.debug("[rebalance] Move {} from {} to {}.", transport, busiest, leastBusy);
+        }
+        return started;
+    }
+
+    private static NioClientSocketTransport chooseTransport(
+            EventDispatcherLoad source, EventDispatcherLoad target,
+            Map<NioClientSocketTransport, Long> selectedCountMap,
+            Map<NioClientSocketTransport, Long> lastSelectedCountMap) {
+        EventDispatcher dispatcher = source.eventDispatcher();
+        Map<NioClientSocketTransport, Long> deltaMap = new HashMap<NioClientSocketTransport, Long>();
+        long total = 0;
+        for (Map.Entry<NioClientSocketTransport, Long> entry : selectedCountMap.entrySet()) {
+            NioClientSocketTransport transport = entry.getKey();
+            if (transport.eventDispatcher() != dispatcher) {
+                continue;
+            }
+            Long last = lastSelectedCountMap.get(transport);
+            long delta = (last != null) ? entry.getValue() - last : 0L;
+            total += delta;
+            if (delta > 0 && transport.isOpen() && !transport.isMigrating()) {
+                deltaMap.put(transport, delta);
+            }
+        }
+        if (deltaMap.size() < 2) {
+            // Moving the only active transport does not balance the load.
+            return null;
+        }
+
+        double desired = total * (source.busyRatio() - target.busyRatio()) / (2 * source.busyRatio());
+        NioClientSocketTransport chosen = null;
+        double minDistance = Double.MAX_VALUE;
+        for (Map.Entry<NioClientSocketTransport, Long> entry : deltaMap.entrySet()) {
+            double distance = Math.abs(entry.getValue() - desired);
+            if (distance < minDistance) {
+                minDistance = distance;
+                chosen = entry.getKey();
+            }
+        }
+        return chosen;
+    }
+}
@@ -0,0 +1,23 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.Packet;
+
+/**
+ * A {@link net.ihiroky.niotty.nio.DatagramQueue} which receives a packet and its target address
+ * separately, without {@link net.ihiroky.niotty.nio.AttachedMessage}.
+ * <p>
+ * The transport passes the packet and the target address by {@link #offer(Packet, Object)} only if
+ * the write queue implements this interface. The other write queue receives them by
+ * {@link #offer(AttachedMessage)}.
+ * </p>
+ */
+public interface ParameterizedDatagramQueue extends DatagramQueue {
+
+    /**
+     * Inserts a specified {@code bufferSink} with its target address at the tail of this queue.
+     * @param message the element to add
+     * @param target the target address, or null if the channel is connected
+     * @return true if the {@code bufferSink} is added to this queue.
+     */
+    boolean offer(Packet message, Object target);
+}
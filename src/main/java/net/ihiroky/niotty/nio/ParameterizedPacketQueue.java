@@ -0,0 +1,24 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.Packet;
+
+/**
+ * A {@link net.ihiroky.niotty.nio.PacketQueue} which receives the parameter given to
+ * {@link net.ihiroky.niotty.Transport#write(Object, Object)} with the packet.
+ * <p>
+ * The transport passes the parameter to its write queue only if the write queue implements
+ * this interface. The other write queue receives the packet by {@link #offer(Packet)}.
+ * </p>
+ */
+public interface ParameterizedPacketQueue extends PacketQueue {
+
+    /**
+     * Inserts a specified {@code bufferSink} with the parameter given to
+     * {@link net.ihiroky.niotty.Transport#write(Object, Object)}. The implementation
+     * may use the parameter to decide the order to be written.
+     * @param message the element to add
+     * @param parameter the parameter, or null if not specified
+     * @return true if the {@code bufferSink} is added to this queue.
+     */
+    boolean offer(Packet message, Object parameter);
+}
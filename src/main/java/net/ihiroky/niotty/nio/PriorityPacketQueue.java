@@ -0,0 +1,188 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.Packet;
+import net.ihiroky.niotty.util.Arguments;
+import net.ihiroky.niotty.util.MPSCArrayQueue;
+import net.ihiroky.niotty.util.MPSCLinkedArrayQueue;
+
+import java.io.IOException;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A {@link net.ihiroky.niotty.nio.PacketQueue} which holds the packets in strict priority lanes.
+ * <p>
+ * The lane of a packet is selected by the parameter of
+ * {@link net.ihiroky.niotty.Transport#write(Object, Object)}. An {@code Integer} parameter
+ * in [0, lanes) is the index of the lane, and 0 is the highest priority. The other parameters,
+ * including null, select the lowest priority lane. So the messages written without the parameter
+ * are written after the control messages written with a higher priority lane, like
+ * {@code transport.write(heartbeat, 0)}.
+ * </p>
+ * <p>
+ * The flush writes the packets one by one from the head of the highest priority lane which
+ * is not empty. If a packet is written partially, the rest of the packet is written first
+ * in the next flush before the lanes are selected again, so the packets are never interleaved
+ * on the channel. The packets in the same lane are written in FIFO order.
+ * </p>
+ */
+public class PriorityPacketQueue implements ParameterizedPacketQueue, ByteCountingWriteQueue {
+
+    private final Queue<Packet>[] lanes_;
+    private Packet partial_; // Accessed only by the thread which flushes this queue.
+    private int partialLane_;
+
+    private volatile int size_;
+
+    private volatile long pendingBytes_;
+
+    private static final AtomicIntegerFieldUpdater<PriorityPacketQueue> SIZE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PriorityPacketQueue.class, "size_");
+    private static final AtomicLongFieldUpdater<PriorityPacketQueue> PENDING_BYTES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(PriorityPacketQueue.class, "pendingBytes_");
+
+    /**
+     * Creates a new instance.
+     * @param lanes the number of the lanes
+     * @param queueCapacity the capacity of each lane, negative or 0 if use unbounded queue
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityPacketQueue(int lanes, int queueCapacity) {
+        Arguments.requirePositive(lanes, "lanes");
+        Queue<Packet>[] queues = (Queue<Packet>[]) new Queue<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            queues[i] = (queueCapacity <= 0)
+                    ? new MPSCLinkedArrayQueue<Packet>()
+                    : new MPSCArrayQueue<Packet>(queueCapacity);
+        }
+        lanes_ = queues;
+    }
+
+    /**
+     * Returns the number of the lanes.
+     * @return the number of the lanes
+     */
+    public int lanes() {
+        return lanes_.length;
+    }
+
+    /**
+     * Returns the index of the lane selected by a specified parameter.
+     * @param parameter the parameter given to {@code Transport.write(Object, Object)}
+     * @return the index of the lane
+     */
+    int laneOf(Object parameter) {
+        int lowest = lanes_.length - 1;
+        if (parameter instanceof Integer) {
+            int lane = (Integer) parameter;
+            return (lane >= 0 && lane <= lowest) ? lane : lowest;
+        }
+        return lowest;
+    }
+
+    /**
+     * Inserts a specified packet at the tail of the lowest priority lane.
+     * @param message the element to add
+     * @return true if the packet is added to this queue.
+     */
+    @Override
+    public boolean offer(Packet message) {
+        return offer(message, null);
+    }
+
+    @Override
+    public boolean offer(Packet message, Object parameter) {
+        // Count before the packet gets visible to the flushing thread, which subtracts it after written.
+        int remaining = message.remaining();
+        SIZE_UPDATER.incrementAndGet(this);
+        PENDING_BYTES_UPDATER.addAndGet(this, remaining);
+        if (!lanes_[laneOf(parameter)].offer(message)) {
+            SIZE_UPDATER.decrementAndGet(this);
+            PENDING_BYTES_UPDATER.addAndGet(this, -remaining);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public FlushStatus flush(GatheringByteChannel channel) throws IOException {
+        Packet message = partial_;
+        if (message != null) {
+            if (!sink(message, lanes_[partialLane_], channel)) {
+                return FlushStatus.FLUSHING;
+            }
+            partial_ = null;
+        }
+
+        Queue<Packet>[] lanes = lanes_;
+        int lane = 0;
+        while (lane < lanes.length) {
+            message = lanes[lane].peek();
+            if (message == null) {
+                lane++;
+                continue;
+            }
+            if (!sink(message, lanes[lane], channel)) {
+                partial_ = message;
+                partialLane_ = lane;
+                return FlushStatus.FLUSHING;
+            }
+            lane = 0; // A higher priority packet may be offered while writing.
+        }
+        return FlushStatus.FLUSHED;
+    }
+
+    /**
+     * Writes the packet at the head of {@code lane}, and removes it if it is written completely.
+     */
+    private boolean sink(Packet message, Queue<Packet> lane, GatheringByteChannel channel) throws IOException {
+        int remaining = message.remaining();
+        if (message.sink(channel)) {
+            PENDING_BYTES_UPDATER.addAndGet(this, -remaining);
+            message.dispose();
+            lane.poll();
+            SIZE_UPDATER.decrementAndGet(this);
+            return true;
+        }
+        PENDING_BYTES_UPDATER.addAndGet(this, message.remaining() - remaining);
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size_;
+    }
+
+    @Override
+    public long pendingBytes() {
+        return pendingBytes_;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Queue<Packet> lane : lanes_) {
+            if (!lane.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Disposes the packets in this queue and removes them. This method needs to be called by
+     * the thread which flushes this queue.
+     */
+    @Override
+    public void clear() {
+        for (Queue<Packet> lane : lanes_) {
+            for (Packet packet; (packet = lane.poll()) != null;) {
+                packet.dispose(); // The partial packet is still at the head of its lane.
+            }
+        }
+        partial_ = null;
+        SIZE_UPDATER.set(this, 0);
+        PENDING_BYTES_UPDATER.set(this, 0L);
+    }
+}
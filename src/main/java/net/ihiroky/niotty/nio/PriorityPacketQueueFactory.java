@@ -0,0 +1,36 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.util.Arguments;
+
+/**
+ * A write queue factory which creates {@link net.ihiroky.niotty.nio.PriorityPacketQueue},
+ * which is used in {@link net.ihiroky.niotty.nio.NioClientSocketTransport}.
+ */
+public class PriorityPacketQueueFactory implements WriteQueueFactory<PacketQueue> {
+
+    private final int lanes_;
+    private final int queueCapacity_;
+
+    /**
+     * Creates a new instance which creates the queues with unbounded lanes.
+     * @param lanes the number of the lanes
+     */
+    public PriorityPacketQueueFactory(int lanes) {
+        this(lanes, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param lanes the number of the lanes
+     * @param queueCapacity the capacity of each lane, negative or 0 if use unbounded queue
+     */
+    public PriorityPacketQueueFactory(int lanes, int queueCapacity) {
+        lanes_ = Arguments.requirePositive(lanes, "lanes");
+        queueCapacity_ = queueCapacity;
+    }
+
+    @Override
+    public PriorityPacketQueue newWriteQueue() {
+        return new PriorityPacketQueue(lanes_, queueCapacity_);
+    }
+}
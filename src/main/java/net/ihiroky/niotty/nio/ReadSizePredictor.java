@@ -0,0 +1,69 @@
+package net.ihiroky.niotty.nio;
+
+/**
+ * Predicts the size of the next read from a connection with its recent read sizes.
+ * <p>
+ * The size is doubled up to the maximum size if a read fills the size, and halved down to
+ * the minimum size if two successive reads are less than or equal half of the size.
+ * The size grows quickly to follow a bulk transfer, and shrinks slowly not to make
+ * the reads of an intermittent transfer small.
+ * </p>
+ * <p>
+ * This class is not thread safe; an instance is used in the dispatcher thread of the connection.
+ * </p>
+ */
+final class ReadSizePredictor {
+
+    private final int minSize_;
+    private final int maxSize_;
+    private int size_;
+    private boolean decreasing_;
+
+    static final int DEFAULT_MIN_SIZE = 64;
+
+    /**
+     * Creates a new instance.
+     * @param minSize the minimum size
+     * @param initialSize the initial size
+     * @param maxSize the maximum size
+     */
+    ReadSizePredictor(int minSize, int initialSize, int maxSize) {
+        minSize_ = Math.min(minSize, maxSize);
+        maxSize_ = maxSize;
+        size_ = Math.max(Math.min(initialSize, maxSize), minSize_);
+    }
+
+    /**
+     * Returns the size of the next read.
+     * @return the size of the next read
+     */
+    int size() {
+        return size_;
+    }
+
+    /**
+     * Updates the size with the result of a read.
+     * @param read the number of bytes read
+     */
+    void record(int read) {
+        int size = size_;
+        if (read >= size) {
+            size_ = Math.min(size << 1, maxSize_);
+            decreasing_ = false;
+        } else if (read <= (size >>> 1)) {
+            if (decreasing_) {
+                size_ = Math.max(size >>> 1, minSize_);
+                decreasing_ = false;
+            } else {
+                decreasing_ = true;
+            }
+        } else {
+            decreasing_ = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "(size:" + size_ + ", min:" + minSize_ + ", max:" + maxSize_ + ")";
+    }
+}
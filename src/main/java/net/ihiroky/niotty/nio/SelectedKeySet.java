@@ -0,0 +1,138 @@
+package net.ihiroky.niotty.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of the selected keys backed by an array, which replaces the selected key set of the
+ * JDK selector implementation.
+ * <p>
+ * The selector adds the selected keys into this set. {@link NioEventDispatcher} iterates them
+ * by index without any allocation, and then clears them by {@link #reset()}.
+ * This set does not check the duplication of the keys; the selector does not add the same key
+ * twice in a select operation.
+ * </p>
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    private SelectionKey[] keys_;
+    private int size_;
+
+    private static Logger logger_ = LoggerFactory.getLogger(SelectedKeySet.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final String SELECTOR_IMPL_CLASS = "sun.nio.ch.SelectorImpl";
+
+    SelectedKeySet() {
+        keys_ = new SelectionKey[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Replaces the selected key set of the specified selector with a new instance of this class.
+     *
+     * @param selector the selector
+     * @return the new instance, or null if the selector does not allow to replace
+     */
+    static SelectedKeySet install(Selector selector) {
+        try {
+            Class<?> implClass = Class.forName(SELECTOR_IMPL_CLASS, false, ClassLoader.getSystemClassLoader());
+            if (!implClass.isAssignableFrom(selector.getClass())) {
+                logger_.debug("[install] {} is not a subclass of {}.", selector.getClass(), SELECTOR_IMPL_CLASS);
+                return null;
+            }
+            Field selectedKeysField = implClass.getDeclaredField("selectedKeys");
+            Field publicSelectedKeysField = implClass.getDeclaredField("publicSelectedKeys");
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+
+            SelectedKeySet keySet = new SelectedKeySet();
+            selectedKeysField.set(selector, keySet);
+            publicSelectedKeysField.set(selector, keySet);
+            return keySet;
+        } catch (Throwable t) {
+            logger_.debug("[install] Failed to replace the selected key set. Use the default one.", t);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (size_ == keys_.length) {
+            keys_ = Arrays.copyOf(keys_, size_ << 1);
+        }
+        keys_[size_++] = key;
+        return true;
+    }
+
+    /**
+     * Returns the array which holds the selected keys. The keys exist in [0, size()).
+     * @return the array
+     */
+    SelectionKey[] keys() {
+        return keys_;
+    }
+
+    /**
+     * Clears the keys.
+     */
+    void reset() {
+        Arrays.fill(keys_, 0, size_, null);
+        size_ = 0;
+    }
+
+    @Override
+    public int size() {
+        return size_;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int index_;
+
+            @Override
+            public boolean hasNext() {
+                return index_ < size_;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (index_ >= size_) {
+                    throw new NoSuchElementException();
+                }
+                return keys_[index_++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -2,27 +2,32 @@ package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.util.MPSCArrayQueue;
+import net.ihiroky.niotty.util.MPSCLinkedArrayQueue;
 
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  *
  */
-public class SimpleDatagramQueue implements DatagramQueue {
+public class SimpleDatagramQueue implements DatagramQueue, ByteCountingWriteQueue {
 
     private Queue<AttachedMessage<Packet>> queue_;
 
     @SuppressWarnings("unused")
     private volatile int size_; // For monitoring. Broken if queue_ has elements more than Integer.MAX_VALUE.
 
+    private volatile long pendingBytes_;
+
     private static final AtomicIntegerFieldUpdater<SimpleDatagramQueue> SIZE_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(SimpleDatagramQueue.class, "size_");
+    private static final AtomicLongFieldUpdater<SimpleDatagramQueue> PENDING_BYTES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(SimpleDatagramQueue.class, "pendingBytes_");
 
     private void incrementSize() {
         int size;
@@ -44,19 +49,24 @@ public class SimpleDatagramQueue implements DatagramQueue {
         }
     }
 
+    private void addPendingBytes(long bytes) {
+        PENDING_BYTES_UPDATER.addAndGet(this, bytes);
+    }
+
     /**
      * Creates a new instance.
      * @param queueCapacity the capacity of the queue, negative or 0 if use unbounded queue
      */
     public SimpleDatagramQueue(int queueCapacity) {
         queue_ = (queueCapacity <= 0)
-                ? new ConcurrentLinkedQueue<AttachedMessage<Packet>>()
+                ? new MPSCLinkedArrayQueue<AttachedMessage<Packet>>()
                 : new MPSCArrayQueue<AttachedMessage<Packet>>(queueCapacity);
     }
 
     @Override
     public boolean offer(AttachedMessage<Packet> message) {
         incrementSize();
+        addPendingBytes(message.message().remaining());
         return queue_.offer(message);
     }
 
@@ -70,8 +80,10 @@ public class SimpleDatagramQueue implements DatagramQueue {
 
             Packet buffer = message.message();
             SocketAddress target = (SocketAddress) message.parameter();
+            int remaining = buffer.remaining();
             boolean sunk = (target != null) ? buffer.sink(channel, writeBuffer, target) : buffer.sink(channel);
             if (sunk) {
+                addPendingBytes(-remaining);
                 buffer.dispose();
                 queue_.poll();
                 decrementSize();
@@ -86,6 +98,11 @@ public class SimpleDatagramQueue implements DatagramQueue {
         return size_;
     }
 
+    @Override
+    public long pendingBytes() {
+        return pendingBytes_;
+    }
+
     @Override
     public boolean isEmpty() {
         return queue_.isEmpty();
@@ -94,5 +111,6 @@ public class SimpleDatagramQueue implements DatagramQueue {
     @Override
     public void clear() {
         queue_.clear();
+        PENDING_BYTES_UPDATER.set(this, 0L);
     }
 }
@@ -1,26 +1,62 @@
 package net.ihiroky.niotty.nio;
 
+import net.ihiroky.niotty.buffer.CodecBuffer;
+import net.ihiroky.niotty.buffer.CodecBufferList;
 import net.ihiroky.niotty.buffer.Packet;
+import net.ihiroky.niotty.util.Arguments;
 import net.ihiroky.niotty.util.MPSCArrayQueue;
+import net.ihiroky.niotty.util.MPSCLinkedArrayQueue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
- *
+ * A {@link net.ihiroky.niotty.nio.PacketQueue} which holds the packets in a FIFO queue.
+ * <p>
+ * The packets are written one by one by default. If the gathering write is enabled, the successive
+ * {@link net.ihiroky.niotty.buffer.CodecBuffer}s at the head of the queue are written by a single
+ * {@code GatheringByteChannel.write(ByteBuffer[], int, int)} call, up to the maximum number of
+ * the buffers and the maximum bytes. The buffers written completely are disposed, and the startIndex of
+ * the buffer written partially is advanced by the written bytes. The other packets, including
+ * {@link net.ihiroky.niotty.buffer.CodecBufferList}, are written by {@link Packet#sink(GatheringByteChannel)}.
+ * </p>
  */
-public class SimplePacketQueue implements PacketQueue {
+public class SimplePacketQueue implements PacketQueue, ByteCountingWriteQueue {
 
     private Queue<Packet> queue_;
 
+    /*
+     * The buffers polled from queue_ to be written by the gathering write, which precede the packets in queue_.
+     * These fields are accessed only by the thread which flushes this queue.
+     */
+    private final CodecBuffer[] gathered_;
+    private final ByteBuffer[] byteBuffers_;
+    private final int maxGatheringBytes_;
+    private int gatheredHead_;
+    private int gatheredTail_;
+
+    /*
+     * The number of the buffers in gathered_, which publishes gatheredTail_ - gatheredHead_ to the other threads.
+     * This is updated before a buffer is polled from queue_, so isEmpty() never misses the buffer in transit.
+     */
+    private volatile int gatheredCount_;
+
     @SuppressWarnings("unused")
     private volatile int size_; // For monitoring. Broken if queue_ has elements more than Integer.MAX_VALUE.
 
+    private volatile long pendingBytes_;
+
     private static final AtomicIntegerFieldUpdater<SimplePacketQueue> SIZE_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(SimplePacketQueue.class, "size_");
+    private static final AtomicLongFieldUpdater<SimplePacketQueue> PENDING_BYTES_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(SimplePacketQueue.class, "pendingBytes_");
+    private static final AtomicIntegerFieldUpdater<SimplePacketQueue> GATHERED_COUNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SimplePacketQueue.class, "gatheredCount_");
 
     private void incrementSize() {
         int size;
@@ -42,52 +78,217 @@ public class SimplePacketQueue implements PacketQueue {
         }
     }
 
+    private void addPendingBytes(long bytes) {
+        PENDING_BYTES_UPDATER.addAndGet(this, bytes);
+    }
+
+    /** The default maximum number of the buffers written by a gathering write, which is IOV_MAX on Linux. */
+    public static final int DEFAULT_MAX_GATHERING_BUFFERS = 1024;
+
+    /** The default maximum bytes written by a gathering write. */
+    public static final int DEFAULT_MAX_GATHERING_BYTES = 256 * 1024;
+
     /**
-     * Creates a new instance.
+     * Creates a new instance which writes the packets one by one.
      * @param queueCapacity the capacity of the queue, negative or 0 if use unbounded queue
      */
     public SimplePacketQueue(int queueCapacity) {
+        this(queueCapacity, 0, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param queueCapacity the capacity of the queue, negative or 0 if use unbounded queue
+     * @param maxGatheringBuffers the maximum number of the buffers written by a gathering write;
+     *                            less than or equal 1 if the packets are written one by one
+     * @param maxGatheringBytes the maximum bytes written by a gathering write; a buffer larger than this value
+     *                          is written alone
+     */
+    public SimplePacketQueue(int queueCapacity, int maxGatheringBuffers, int maxGatheringBytes) {
         queue_ = (queueCapacity <= 0)
-                ? new ConcurrentLinkedQueue<Packet>()
+                ? new MPSCLinkedArrayQueue<Packet>()
                 : new MPSCArrayQueue<Packet>(queueCapacity);
+        if (maxGatheringBuffers > 1) {
+            gathered_ = new CodecBuffer[maxGatheringBuffers];
+            byteBuffers_ = new ByteBuffer[maxGatheringBuffers];
+            maxGatheringBytes_ = Arguments.requirePositive(maxGatheringBytes, "maxGatheringBytes");
+        } else {
+            gathered_ = null;
+            byteBuffers_ = null;
+            maxGatheringBytes_ = 0;
+        }
     }
 
     @Override
     public boolean offer(Packet packet) {
         incrementSize();
+        addPendingBytes(packet.remaining());
         return queue_.offer(packet);
     }
 
     @Override
     public FlushStatus flush(GatheringByteChannel channel) throws IOException {
+        return (gathered_ != null) ? flushGathering(channel) : flushEach(channel);
+    }
+
+    private FlushStatus flushEach(GatheringByteChannel channel) throws IOException {
         for (;;) {
             Packet message = queue_.peek();
             if (message == null) {
                 return FlushStatus.FLUSHED;
             }
+            if (!sink(message, channel)) {
+                return FlushStatus.FLUSHING;
+            }
+        }
+    }
+
+    /**
+     * Writes the packet at the head of {@code queue_}, and removes it if it is written completely.
+     */
+    private boolean sink(Packet message, GatheringByteChannel channel) throws IOException {
+        int remaining = message.remaining();
+        if (message.sink(channel)) {
+            addPendingBytes(-remaining);
+            message.dispose();
+            queue_.poll();
+            decrementSize();
+            return true;
+        }
+        addPendingBytes(message.remaining() - remaining);
+        return false;
+    }
+
+    private FlushStatus flushGathering(GatheringByteChannel channel) throws IOException {
+        CodecBuffer[] gathered = gathered_;
+        ByteBuffer[] byteBuffers = byteBuffers_;
+        for (;;) {
+            gather();
+            int count = gatheredTail_;
+            if (count == 0) {
+                Packet message = queue_.peek();
+                if (message == null) {
+                    return FlushStatus.FLUSHED;
+                }
+                if (!sink(message, channel)) {
+                    return FlushStatus.FLUSHING;
+                }
+                continue;
+            }
 
-            if (message.sink(channel)) {
-                message.dispose();
-                queue_.poll();
-                decrementSize();
-            } else {
+            for (int i = 0; i < count; i++) {
+                byteBuffers[i] = gathered[i].byteBuffer();
+            }
+            try {
+                channel.write(byteBuffers, 0, count);
+            } finally {
+                int written = 0;
+                long writtenBytes = 0;
+                for (; written < count; written++) {
+                    ByteBuffer byteBuffer = byteBuffers[written];
+                    CodecBuffer buffer = gathered[written];
+                    if (byteBuffer.hasRemaining()) {
+                        int skip = buffer.remaining() - byteBuffer.remaining();
+                        buffer.skipStartIndex(skip);
+                        writtenBytes += skip;
+                        break;
+                    }
+                    writtenBytes += buffer.remaining();
+                    buffer.dispose();
+                    decrementSize();
+                }
+                addPendingBytes(-writtenBytes);
+                Arrays.fill(byteBuffers, 0, count, null);
+                gatheredHead_ = written;
+                GATHERED_COUNT_UPDATER.lazySet(this, count - written);
+            }
+            if (gatheredHead_ < count) {
                 return FlushStatus.FLUSHING;
             }
         }
     }
 
+    /**
+     * Moves the buffers written partially to the head of {@code gathered_}, and then moves the successive
+     * buffers at the head of {@code queue_} to {@code gathered_} up to the maximum buffers and bytes.
+     */
+    private void gather() {
+        CodecBuffer[] gathered = gathered_;
+        int head = gatheredHead_;
+        int tail = gatheredTail_;
+        if (head > 0) {
+            System.arraycopy(gathered, head, gathered, 0, tail - head);
+            Arrays.fill(gathered, tail - head, tail, null);
+            tail -= head;
+            gatheredHead_ = 0;
+        }
+
+        long bytes = 0;
+        for (int i = 0; i < tail; i++) {
+            bytes += gathered[i].remaining();
+        }
+        int maxBuffers = gathered.length;
+        int maxBytes = maxGatheringBytes_;
+        while (tail < maxBuffers) {
+            Packet message = queue_.peek();
+            if (!isGatherable(message)) {
+                break;
+            }
+            int remaining = message.remaining();
+            if (tail > 0 && bytes + remaining > maxBytes) {
+                break;
+            }
+            GATHERED_COUNT_UPDATER.lazySet(this, tail + 1);
+            queue_.poll();
+            gathered[tail++] = (CodecBuffer) message;
+            bytes += remaining;
+        }
+        gatheredTail_ = tail;
+    }
+
+    private static boolean isGatherable(Packet message) {
+        return message instanceof CodecBuffer && !(message instanceof CodecBufferList);
+    }
+
     @Override
     public int size() {
         return size_;
     }
 
+    @Override
+    public long pendingBytes() {
+        return pendingBytes_;
+    }
+
+    /**
+     * Returns true if this queue contains no elements. This method can be called by any thread.
+     * @return true if this queue contains no elements
+     */
     @Override
     public boolean isEmpty() {
-        return queue_.isEmpty();
+        // Check queue_ first; the buffer moved from queue_ to gathered_ is counted before it is polled.
+        return queue_.isEmpty() && gatheredCount_ == 0;
     }
 
+    /**
+     * Disposes the packets in this queue and removes them. This method needs to be called by
+     * the thread which flushes this queue.
+     */
     @Override
     public void clear() {
-        queue_.clear();
+        if (gathered_ != null) {
+            for (int i = gatheredHead_; i < gatheredTail_; i++) {
+                gathered_[i].dispose();
+            }
+            Arrays.fill(gathered_, null);
+            gatheredHead_ = 0;
+            gatheredTail_ = 0;
+            GATHERED_COUNT_UPDATER.set(this, 0);
+        }
+        for (Packet packet; (packet = queue_.poll()) != null;) {
+            packet.dispose();
+        }
+        SIZE_UPDATER.set(this, 0);
+        PENDING_BYTES_UPDATER.set(this, 0L);
     }
 }
@@ -6,6 +6,8 @@ package net.ihiroky.niotty.nio;
 public class SimplePacketQueueFactory implements WriteQueueFactory<PacketQueue> {
 
     private final int queueCapacity_;
+    private final int maxGatheringBuffers_;
+    private final int maxGatheringBytes_;
 
     public SimplePacketQueueFactory() {
         this(0);
@@ -16,11 +18,37 @@ public class SimplePacketQueueFactory implements WriteQueueFactory<PacketQueue>
      * @param queueCapacity the capacity of the queue, negative or 0 if use unbounded queue
      */
     public SimplePacketQueueFactory(int queueCapacity) {
+        this(queueCapacity, 0, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param queueCapacity the capacity of the queue, negative or 0 if use unbounded queue
+     * @param maxGatheringBuffers the maximum number of the buffers written by a gathering write;
+     *                            less than or equal 1 if the packets are written one by one
+     * @param maxGatheringBytes the maximum bytes written by a gathering write
+     * @see SimplePacketQueue#SimplePacketQueue(int, int, int)
+     */
+    public SimplePacketQueueFactory(int queueCapacity, int maxGatheringBuffers, int maxGatheringBytes) {
         queueCapacity_ = queueCapacity;
+        maxGatheringBuffers_ = maxGatheringBuffers;
+        maxGatheringBytes_ = maxGatheringBytes;
+    }
+
+    /**
+     * Creates a new instance which creates the queues with the gathering write
+     * of {@link SimplePacketQueue#DEFAULT_MAX_GATHERING_BUFFERS} and
+     * {@link SimplePacketQueue#DEFAULT_MAX_GATHERING_BYTES}.
+     * @param queueCapacity the capacity of the queue, negative or 0 if use unbounded queue
+     * @return the new instance
+     */
+    public static SimplePacketQueueFactory gathering(int queueCapacity) {
+        return new SimplePacketQueueFactory(queueCapacity,
+                SimplePacketQueue.DEFAULT_MAX_GATHERING_BUFFERS, SimplePacketQueue.DEFAULT_MAX_GATHERING_BYTES);
     }
 
     @Override
     public SimplePacketQueue newWriteQueue() {
-        return new SimplePacketQueue(queueCapacity_);
+        return new SimplePacketQueue(queueCapacity_, maxGatheringBuffers_, maxGatheringBytes_);
     }
 }
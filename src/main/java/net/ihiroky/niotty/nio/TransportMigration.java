@@ -0,0 +1,214 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.DefaultTransportFuture;
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcherFacade;
+import net.ihiroky.niotty.EventFuture;
+import net.ihiroky.niotty.TransportFuture;
+import net.ihiroky.niotty.util.Arguments;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves a {@link net.ihiroky.niotty.nio.NioSocketTransport} and the stages executed by its dispatcher
+ * from the current dispatcher (source) to another one (target).
+ * <p>
+ * The migration is executed in the following steps to keep the order of the events for the transport.
+ * </p>
+ * <ol>
+ *     <li>In the source thread, the selection key is cancelled and the transport and the stages
+ *     are switched to a holding dispatcher, which queues the events without executing them.</li>
+ *     <li>In the source thread, after the events queued in the source before the switch are
+ *     executed, the target is requested to take over the transport.</li>
+ *     <li>In the target thread, the channel is registered to the selector of the target,
+ *     the transport and the stages are switched to the target, and then the events queued in
+ *     the holding dispatcher are executed.</li>
+ * </ol>
+ * <p>
+ * The events which are scheduled with delay in the source before the migration are executed
+ * in the source. The events for the transport and the stages which are offered to the source
+ * concurrently with the switch check the dispatcher again when executed, and are forwarded
+ * to the holding dispatcher if they reach the source after the switch.
+ * </p>
+ * <p>
+ * If the channel fails to be registered to the target, the transport is closed in the target thread
+ * and the migration fails.
+ * </p>
+ */
+final class TransportMigration {
+
+    private final NioSocketTransport transport_;
+    private final NioEventDispatcher source_;
+    private final NioEventDispatcher target_;
+    private final HoldingEventDispatcher holding_;
+    private final DefaultTransportFuture future_;
+    private int interestOps_;
+
+    private static Logger logger_ = LoggerFactory.getLogger(TransportMigration.class);
+
+    private TransportMigration(NioSocketTransport transport, NioEventDispatcher source, NioEventDispatcher target) {
+        transport_ = transport;
+        source_ = source;
+        target_ = target;
+        holding_ = new HoldingEventDispatcher(target);
+        future_ = new DefaultTransportFuture(transport);
+    }
+
+    static TransportFuture start(NioSocketTransport transport, NioEventDispatcher target) {
+        NioEventDispatcher source = (NioEventDispatcher) transport.eventDispatcher();
+        final TransportMigration migration = new TransportMigration(transport, source, target);
+        source.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                migration.leaveSource();
+                return DONE;
+            }
+        });
+        return migration.future_;
+    }
+
+    private void leaveSource() {
+        if (transport_.flushPending_) {
+            // Flush here not to leave the transport in the flush pending list of the source.
+            // The flush closes the transport if it fails, so check the key after that.
+            source_.flush(transport_);
+        }
+        SelectionKey key = transport_.key();
+        if (key == null || !key.isValid()) {
+            logger_.debug("[leaveSource] {} is not registered. Abort the migration.", transport_);
+            transport_.migrated();
+            future_.cancel();
+            return;
+        }
+        transport_.applyInterestOps();
+        interestOps_ = key.interestOps();
+        key.cancel();
+        transport_.switchEventDispatcher(source_, holding_);
+
+        // The events for the transport queued before the switch are executed in the source until this event.
+        source_.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                target_.offer(new Event() {
+                    @Override
+                    public long execute() throws Exception {
+                        enterTarget();
+                        return DONE;
+                    }
+                });
+                return DONE;
+            }
+        });
+    }
+
+    private void enterTarget() {
+        SelectableChannel channel = transport_.key().channel();
+        int ops = interestOps_;
+        if (transport_.pendingWriteBuffers() > 0) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        try {
+            transport_.setSelectionKey(target_.register(channel, ops, transport_));
+        } catch (Exception e) {
+            logger_.warn("[enterTarget] Failed to register " + transport_ + " to " + target_
+                    + ". Close the transport.", e);
+            transport_.switchEventDispatcher(holding_, target_);
+            transport_.closeUnregistered((interestOps_ & SelectionKey.OP_READ) != 0);
+            holding_.release();
+            transport_.migrated();
+            future_.setThrowable(e);
+            return;
+        }
+        transport_.switchEventDispatcher(holding_, target_);
+        holding_.release();
+        transport_.migrated();
+        future_.done();
+        logger_.debug("[enterTarget] {} is moved from {} to {}.", transport_, source_, target_);
+    }
+
+    /**
+     * Queues the events until released, and then forwards them to the target.
+     */
+    private static class HoldingEventDispatcher extends EventDispatcherFacade {
+
+        private final NioEventDispatcher target_;
+        private List<Event> events_;
+
+        HoldingEventDispatcher(NioEventDispatcher target) {
+            target_ = target;
+            events_ = new ArrayList<Event>();
+        }
+
+        /**
+         * Executes the queued events in the target thread. The events offered after this method
+         * are forwarded to the target.
+         */
+        void release() {
+            List<Event> events;
+            synchronized (this) {
+                events = events_;
+                events_ = null;
+            }
+            for (Event event : events) {
+                target_.execute(event);
+            }
+        }
+
+        @Override
+        public void offer(Event event) {
+            Arguments.requireNonNull(event, "event");
+            synchronized (this) {
+                if (events_ != null) {
+                    events_.add(event);
+                    return;
+                }
+            }
+            target_.offer(event);
+        }
+
+        @Override
+        public void execute(Event event) {
+            offer(event);
+        }
+
+        @Override
+        public EventFuture schedule(final Event event, long delay, TimeUnit timeUnit) {
+            Arguments.requireNonNull(event, "event");
+            Arguments.requireNonNull(timeUnit, "timeUnit");
+
+            if (delay == 0) {
+                EventFuture future = new EventFuture(System.nanoTime(), event);
+                offer(future);
+                return future;
+            }
+            return target_.schedule(new Event() {
+                @Override
+                public long execute() throws Exception {
+                    offer(event);
+                    return DONE;
+                }
+            }, delay, timeUnit);
+        }
+
+        @Override
+        public boolean isInDispatcherThread() {
+            return false;
+        }
+
+        @Override
+        public boolean isAssigned(Thread thread) {
+            return false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return target_.isAlive();
+        }
+    }
+}
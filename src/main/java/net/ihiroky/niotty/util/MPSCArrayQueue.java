@@ -3,7 +3,6 @@ package net.ihiroky.niotty.util;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Queue;
 import java.util.concurrent.locks.LockSupport;
 
 /**
@@ -12,22 +11,20 @@ import java.util.concurrent.locks.LockSupport;
  *
  * This class is not a general-purpose Queue implementation.
  * The {@link #offer(Object)} may block if no space to insert is available.
- * So {@link #offer(Object)} always returns true. And some methods of
+ * So {@link #offer(Object)} always returns true. {@link #relaxedOffer(Object)}
+ * returns false instead if no space is available. And some methods of
  * {@link java.util.Queue} throws {@link java.lang.UnsupportedOperationException}.
  *
+ * The head and tail indices are placed on the different cache lines by the padding
+ * in the super classes, so that the producers and the consumer do not share the line.
+ *
  * @param <E> the type of the element in this queue
  */
-public final class MPSCArrayQueue<E> implements Queue<E> {
+public final class MPSCArrayQueue<E> extends MPSCArrayQueuePad2 implements MPSCQueue<E> {
 
     private final int MASK;
     private final E[] BUFFER;
 
-    @SuppressWarnings("unused")
-    private volatile int head_;
-
-    @SuppressWarnings("unused")
-    private volatile int tail_;
-
     private static final long HEAD_OFFSET;
     private static final long TAIL_OFFSET;
     private static final int BUFFER_BASE;
@@ -37,8 +34,8 @@ public final class MPSCArrayQueue<E> implements Queue<E> {
 
     static {
         try {
-            HEAD_OFFSET = Platform.UNSAFE.objectFieldOffset(MPSCArrayQueue.class.getDeclaredField("head_"));
-            TAIL_OFFSET = Platform.UNSAFE.objectFieldOffset(MPSCArrayQueue.class.getDeclaredField("tail_"));
+            HEAD_OFFSET = Platform.UNSAFE.objectFieldOffset(MPSCArrayQueueHead.class.getDeclaredField("head_"));
+            TAIL_OFFSET = Platform.UNSAFE.objectFieldOffset(MPSCArrayQueueTail.class.getDeclaredField("tail_"));
             BUFFER_BASE = Platform.UNSAFE.arrayBaseOffset(Object[].class);
             BUFFER_SCALE = Platform.UNSAFE.arrayIndexScale(Object[].class);
         } catch (Exception e) {
@@ -100,6 +97,23 @@ public final class MPSCArrayQueue<E> implements Queue<E> {
         return true;
     }
 
+    @Override
+    public boolean relaxedOffer(final E e) {
+        if (e == null) {
+            throw new NullPointerException("Null is not a valid element");
+        }
+
+        int currentTail;
+        do {
+            currentTail = tail_;
+            if (((currentTail - head_) & MASK) == MASK) {
+                return false;
+            }
+        } while (!Platform.UNSAFE.compareAndSwapInt(this, TAIL_OFFSET, currentTail, (currentTail + 1) & MASK));
+        Platform.UNSAFE.putOrderedObject(BUFFER, bufferOffset(currentTail), e);
+        return true;
+    }
+
     @Override
     public E poll() {
         final int currentHead = head_;
@@ -112,6 +126,33 @@ public final class MPSCArrayQueue<E> implements Queue<E> {
         return e;
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public int drain(final Consumer<? super E> consumer, final int limit) {
+        int currentHead = head_;
+        int count = 0;
+        try {
+            while (count < limit) {
+                final long offset = bufferOffset(currentHead);
+                final E e = (E) Platform.UNSAFE.getObjectVolatile(BUFFER, offset);
+                if (e == null) {
+                    break;
+                }
+                Platform.UNSAFE.putOrderedObject(BUFFER, offset, null);
+                currentHead = (currentHead + 1) & MASK;
+                count++;
+                if (!consumer.accept(e)) {
+                    break;
+                }
+            }
+        } finally {
+            if (count > 0) {
+                Platform.UNSAFE.putOrderedInt(this, HEAD_OFFSET, currentHead);
+            }
+        }
+        return count;
+    }
+
     @Override
     public E remove() {
         final E e = poll();
@@ -244,3 +285,23 @@ public final class MPSCArrayQueue<E> implements Queue<E> {
     }
 }
 
+
+abstract class MPSCArrayQueuePad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MPSCArrayQueueTail extends MPSCArrayQueuePad0 {
+    volatile int tail_;
+}
+
+abstract class MPSCArrayQueuePad1 extends MPSCArrayQueueTail {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class MPSCArrayQueueHead extends MPSCArrayQueuePad1 {
+    volatile int head_;
+}
+
+abstract class MPSCArrayQueuePad2 extends MPSCArrayQueueHead {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
@@ -0,0 +1,390 @@
+package net.ihiroky.niotty.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An unbounded queue which supports multiple producers and single consumer,
+ * multiple consumers are not supported.
+ *
+ * The elements are stored in fixed size arrays (chunks) linked in order of the insertion.
+ * A producer which inserts an element at the head of a chunk links a new chunk to the last one.
+ * The consumer passes a chunk which is consumed to the producers, and the chunk is used
+ * instead of a new chunk on the next link. So this queue does not allocate any object
+ * on {@link #offer(Object)} as long as the consumer keeps up with the producers.
+ *
+ * This class is not a general-purpose Queue implementation.
+ * {@link #offer(Object)} and {@link #relaxedOffer(Object)} always return true.
+ * {@link #poll()}, {@link #peek()}, {@link #drain(Consumer, int)} and {@link #clear()} must be
+ * called by the single consumer thread. And some methods of {@link java.util.Queue} throws
+ * {@link java.lang.UnsupportedOperationException}.
+ *
+ * @param <E> the type of the element in this queue
+ */
+public final class MPSCLinkedArrayQueue<E> implements MPSCQueue<E> {
+
+    private final int MASK;
+    private final long NEXT_OFFSET;
+
+    /**
+     * An index of the next element to be inserted, which is doubled to flag a chunk link in progress.
+     * The lowest bit is set while the last chunk is linked to a new one.
+     */
+    @SuppressWarnings("unused")
+    private volatile long producerIndex_;
+
+    @SuppressWarnings("unused")
+    private volatile Object[] producerChunk_;
+
+    /** An index of the next element to be polled, which is doubled as {@code producerIndex_}. */
+    @SuppressWarnings("unused")
+    private volatile long consumerIndex_;
+
+    private Object[] consumerChunk_;
+
+    /** A consumed chunk to be reused. */
+    @SuppressWarnings("unused")
+    private volatile Object[] spareChunk_;
+
+    private static final long PRODUCER_INDEX_OFFSET;
+    private static final long CONSUMER_INDEX_OFFSET;
+    private static final long SPARE_CHUNK_OFFSET;
+    private static final int BUFFER_BASE;
+    private static final int BUFFER_SCALE;
+
+    /** The default number of the elements in a chunk. */
+    public static final int DEFAULT_CHUNK_SIZE = 128;
+
+    static {
+        try {
+            PRODUCER_INDEX_OFFSET = Platform.UNSAFE.objectFieldOffset(
+                    MPSCLinkedArrayQueue.class.getDeclaredField("producerIndex_"));
+            CONSUMER_INDEX_OFFSET = Platform.UNSAFE.objectFieldOffset(
+                    MPSCLinkedArrayQueue.class.getDeclaredField("consumerIndex_"));
+            SPARE_CHUNK_OFFSET = Platform.UNSAFE.objectFieldOffset(
+                    MPSCLinkedArrayQueue.class.getDeclaredField("spareChunk_"));
+            BUFFER_BASE = Platform.UNSAFE.arrayBaseOffset(Object[].class);
+            BUFFER_SCALE = Platform.UNSAFE.arrayIndexScale(Object[].class);
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Constructs a new instance with {@link #DEFAULT_CHUNK_SIZE}.
+     */
+    public MPSCLinkedArrayQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a new instance with the given chunk size.
+     * The chunk size is round up to power of two.
+     *
+     * @param chunkSize the number of the elements in a chunk, must be 2 or more
+     */
+    public MPSCLinkedArrayQueue(int chunkSize) {
+        Arguments.requireInRange(chunkSize, "chunkSize", 2, 1 << 30);
+        chunkSize = 1 << (32 - Integer.numberOfLeadingZeros(chunkSize - 1));
+        MASK = chunkSize - 1;
+        NEXT_OFFSET = bufferOffset(chunkSize);
+        Object[] chunk = new Object[chunkSize + 1]; // The last element holds the next chunk.
+        producerChunk_ = chunk;
+        consumerChunk_ = chunk;
+    }
+
+    private static long bufferOffset(int i) {
+        return BUFFER_BASE + ((long) i) * BUFFER_SCALE;
+    }
+
+    private long elementOffset(long index) {
+        return bufferOffset((int) (index >> 1) & MASK);
+    }
+
+    @Override
+    public boolean add(final E e) {
+        return offer(e);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        if (e == null) {
+            throw new NullPointerException("Null is not a valid element");
+        }
+
+        for (;;) {
+            long index = producerIndex_;
+            if ((index & 1L) != 0) {
+                continue; // The last chunk is being linked to a new one.
+            }
+            Object[] chunk = producerChunk_;
+            if (((index >> 1) & MASK) == 0 && index != 0) {
+                if (Platform.UNSAFE.compareAndSwapLong(this, PRODUCER_INDEX_OFFSET, index, index + 1)) {
+                    linkChunk(chunk, index, e);
+                    return true;
+                }
+                continue;
+            }
+            if (Platform.UNSAFE.compareAndSwapLong(this, PRODUCER_INDEX_OFFSET, index, index + 2)) {
+                Platform.UNSAFE.putOrderedObject(chunk, elementOffset(index), e);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Inserts a specified element at the tail of this queue.
+     * This method behaves in exactly the same way as {@link #offer(Object)} since this queue is unbounded.
+     *
+     * @param e the element to add
+     * @return true
+     */
+    @Override
+    public boolean relaxedOffer(final E e) {
+        return offer(e);
+    }
+
+    private void linkChunk(Object[] last, long index, E e) {
+        Object[] chunk = spareChunk_;
+        if (chunk == null || !Platform.UNSAFE.compareAndSwapObject(this, SPARE_CHUNK_OFFSET, chunk, null)) {
+            chunk = new Object[MASK + 2];
+        }
+        Platform.UNSAFE.putOrderedObject(chunk, elementOffset(index), e);
+        Platform.UNSAFE.putOrderedObject(last, NEXT_OFFSET, chunk);
+        producerChunk_ = chunk;
+        producerIndex_ = index + 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E poll() {
+        final long index = consumerIndex_;
+        Object[] chunk = consumerChunk_;
+        if (((index >> 1) & MASK) == 0 && index != 0) {
+            Object[] next = nextChunk(chunk, index);
+            if (next == null) {
+                return null;
+            }
+            Platform.UNSAFE.putObject(chunk, NEXT_OFFSET, null);
+            Platform.UNSAFE.putOrderedObject(this, SPARE_CHUNK_OFFSET, chunk);
+            consumerChunk_ = next;
+            chunk = next;
+        }
+
+        final long offset = elementOffset(index);
+        E e = (E) Platform.UNSAFE.getObjectVolatile(chunk, offset);
+        if (e == null) {
+            if (index == producerIndex_) {
+                return null;
+            }
+            do { // A producer has got the index but has not inserted the element yet.
+                e = (E) Platform.UNSAFE.getObjectVolatile(chunk, offset);
+            } while (e == null);
+        }
+        Platform.UNSAFE.putOrderedObject(chunk, offset, null);
+        Platform.UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index + 2);
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public int drain(final Consumer<? super E> consumer, final int limit) {
+        long index = consumerIndex_;
+        Object[] chunk = consumerChunk_;
+        int count = 0;
+        try {
+            while (count < limit) {
+                if (((index >> 1) & MASK) == 0 && index != 0) {
+                    Object[] next = nextChunk(chunk, index);
+                    if (next == null) {
+                        break;
+                    }
+                    Platform.UNSAFE.putObject(chunk, NEXT_OFFSET, null);
+                    Platform.UNSAFE.putOrderedObject(this, SPARE_CHUNK_OFFSET, chunk);
+                    consumerChunk_ = next;
+                    chunk = next;
+                }
+
+                final long offset = elementOffset(index);
+                E e = (E) Platform.UNSAFE.getObjectVolatile(chunk, offset);
+                if (e == null) {
+                    if (index == producerIndex_) {
+                        break;
+                    }
+                    do {
+                        e = (E) Platform.UNSAFE.getObjectVolatile(chunk, offset);
+                    } while (e == null);
+                }
+                Platform.UNSAFE.putOrderedObject(chunk, offset, null);
+                index += 2;
+                count++;
+                if (!consumer.accept(e)) {
+                    break;
+                }
+            }
+        } finally {
+            if (count > 0) {
+                Platform.UNSAFE.putOrderedLong(this, CONSUMER_INDEX_OFFSET, index);
+            }
+        }
+        return count;
+    }
+
+    private Object[] nextChunk(Object[] chunk, long index) {
+        Object[] next = (Object[]) Platform.UNSAFE.getObjectVolatile(chunk, NEXT_OFFSET);
+        if (next == null) {
+            if (index == producerIndex_) {
+                return null;
+            }
+            do { // A producer is linking a new chunk.
+                next = (Object[]) Platform.UNSAFE.getObjectVolatile(chunk, NEXT_OFFSET);
+            } while (next == null);
+        }
+        return next;
+    }
+
+    @Override
+    public E remove() {
+        final E e = poll();
+        if (e == null) {
+            throw new NoSuchElementException("Queue is empty");
+        }
+        return e;
+    }
+
+    @Override
+    public E element() {
+        final E e = peek();
+        if (e == null) {
+            throw new NoSuchElementException("Queue is empty");
+        }
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E peek() {
+        final long index = consumerIndex_;
+        Object[] chunk = consumerChunk_;
+        if (((index >> 1) & MASK) == 0 && index != 0) {
+            chunk = nextChunk(chunk, index);
+            if (chunk == null) {
+                return null;
+            }
+        }
+
+        final long offset = elementOffset(index);
+        E e = (E) Platform.UNSAFE.getObjectVolatile(chunk, offset);
+        if (e == null) {
+            if (index == producerIndex_) {
+                return null;
+            }
+            do {
+                e = (E) Platform.UNSAFE.getObjectVolatile(chunk, offset);
+            } while (e == null);
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        long consumerIndex = consumerIndex_;
+        long size = (producerIndex_ >> 1) - (consumerIndex >> 1);
+        return (size <= Integer.MAX_VALUE) ? (int) size : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return consumerIndex_ == producerIndex_;
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public boolean contains(final Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public Object[] toArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public <T> T[] toArray(final T[] a) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public boolean remove(final Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public boolean containsAll(final Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> c) {
+        for (final E e : c) {
+            offer(e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Throws UnsupportedOperationException.
+     * @return nothing
+     */
+    @Override
+    public boolean retainAll(final Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        Object value;
+        do {
+            value = poll();
+        } while (value != null);
+    }
+}
@@ -0,0 +1,49 @@
+package net.ihiroky.niotty.util;
+
+import java.util.Queue;
+
+/**
+ * A queue which supports multiple producers and single consumer.
+ *
+ * {@link #poll()}, {@link #peek()} and {@link #drain(Consumer, int)} must be called by
+ * the single consumer thread.
+ *
+ * @param <E> the type of the element in this queue
+ */
+public interface MPSCQueue<E> extends Queue<E> {
+
+    /**
+     * Inserts a specified element at the tail of this queue if it is possible to do so immediately.
+     * Unlike {@link #offer(Object)}, this method does not wait for the space to insert.
+     *
+     * @param e the element to add
+     * @return true if the element is added, false if this queue is full
+     */
+    boolean relaxedOffer(E e);
+
+    /**
+     * Removes the elements at the head of this queue and passes them to the specified consumer
+     * until this queue gets empty, the number of the removed elements reaches the limit or
+     * the consumer returns false. The consumed position is published to the producers
+     * once per call.
+     *
+     * @param consumer the consumer to receive the elements
+     * @param limit the maximum number of the elements to be removed
+     * @return the number of the removed elements
+     */
+    int drain(Consumer<? super E> consumer, int limit);
+
+    /**
+     * Receives the elements removed by {@link #drain(Consumer, int)}.
+     * @param <E> the type of the element
+     */
+    interface Consumer<E> {
+
+        /**
+         * Receives an element removed from the queue.
+         * @param e the element
+         * @return true to continue receiving the elements, false to stop
+         */
+        boolean accept(E e);
+    }
+}
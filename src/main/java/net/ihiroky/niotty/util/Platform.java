@@ -48,6 +48,8 @@ public final class Platform {
             return JavaVersion.JAVA7;
         } else if (version.startsWith("1.6.")) {
             return JavaVersion.JAVA6;
+        } else if (majorVersion(version) >= 9) {
+            return JavaVersion.JAVA9; // "9", "11.0.21", "21.0.1" and so on since Java 9.
         }
 
         try {
@@ -58,6 +60,14 @@ public final class Platform {
         throw new AssertionError("Invalid version/vendor " + version + "/" + vendor);
     }
 
+    private static int majorVersion(String version) {
+        int end = 0;
+        while (end < version.length() && Character.isDigit(version.charAt(end))) {
+            end++;
+        }
+        return (end > 0) ? Integer.parseInt(version.substring(0, end)) : -1;
+    }
+
     public static void release(ByteBuffer buffer) {
         if (buffer.isDirect()) {
             try {
@@ -0,0 +1,130 @@
+package net.ihiroky.niotty;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+
+/**
+ *
+ */
+public class EventDispatcherGroupMetricsTest {
+
+    private DefaultEventDispatcherGroup group_;
+    private EventDispatcherGroupMetrics sut_;
+
+    @Before
+    public void setUp() {
+        group_ = new DefaultEventDispatcherGroup(2);
+        sut_ = new EventDispatcherGroupMetrics(group_);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut_.unregister();
+        group_.close();
+    }
+
+    @Test
+    public void testMetrics_DisabledByDefault() throws Exception {
+        group_.open();
+
+        for (EventDispatcher eventDispatcher : group_.eventDispatchers()) {
+            assertThat(eventDispatcher.metrics(), is(nullValue()));
+        }
+        assertThat(sut_.getQueueWaitCount(), is(0L));
+    }
+
+    @Test(timeout = 5000)
+    public void testMetrics_RecordsQueueWaitAndExecution() throws Exception {
+        group_.setMetricsEnabled(true);
+        EventDispatcher eventDispatcher = group_.assign(new EventDispatcherSelection() {});
+        final CountDownLatch latch = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            eventDispatcher.offer(new Event() {
+                @Override
+                public long execute() throws Exception {
+                    Thread.sleep(1);
+                    latch.countDown();
+                    return DONE;
+                }
+            });
+        }
+        latch.await();
+        EventDispatcherMetrics metrics = eventDispatcher.metrics();
+        while (metrics.executionHistogram().count() < 10) {
+            Thread.sleep(1);
+        }
+
+        assertThat(metrics.queueWaitHistogram().count(), is(10L));
+        assertThat(metrics.executionHistogram().valueAtPercentile(50d) >= TimeUnit.MILLISECONDS.toNanos(1), is(true));
+        assertThat(sut_.getExecutionCount(), is(10L));
+        assertThat(sut_.getExecutionMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(1), is(true));
+        // The last event waits for the preceding events.
+        assertThat(sut_.getQueueWaitMaxNanos() >= TimeUnit.MILLISECONDS.toNanos(5), is(true));
+    }
+
+    @Test(timeout = 5000)
+    public void testMetrics_CountsLoopAndDelayQueue() throws Exception {
+        group_.setMetricsEnabled(true);
+        EventDispatcher eventDispatcher = group_.assign(new EventDispatcherSelection() {});
+        eventDispatcher.schedule(new Event() {
+            @Override
+            public long execute() throws Exception {
+                return DONE;
+            }
+        }, 1, TimeUnit.HOURS);
+
+        EventDispatcherMetrics metrics = eventDispatcher.metrics();
+        while (metrics.delayQueueSize() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertThat(metrics.loopCount() > 0, is(true));
+        assertThat(sut_.getDelayQueueSize(), is(1));
+    }
+
+    @Test
+    public void testSetMetricsEnabled_AppliesToNewDispatchers() throws Exception {
+        group_.setMetricsEnabled(true);
+        group_.open();
+
+        for (EventDispatcher eventDispatcher : group_.eventDispatchers()) {
+            assertThat(eventDispatcher.metrics(), is(notNullValue()));
+        }
+
+        group_.setMetricsEnabled(false);
+
+        for (EventDispatcher eventDispatcher : group_.eventDispatchers()) {
+            assertThat(eventDispatcher.metrics(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        group_.open();
+
+        ObjectName objectName = sut_.register("test");
+
+        assertThat(objectName, is(new ObjectName("net.ihiroky.niotty:type=EventDispatcherGroup,name=\"test\"")));
+        assertThat(server.isRegistered(objectName), is(true));
+        assertThat(group_.isMetricsEnabled(), is(true));
+        assertThat(server.getAttribute(objectName, "EventDispatcherCount"), is((Object) 2));
+
+        sut_.unregister();
+
+        assertThat(server.isRegistered(objectName), is(false));
+        assertThat(group_.isMetricsEnabled(), is(false));
+        assertThat(sut_.objectName(), is(nullValue()));
+    }
+}
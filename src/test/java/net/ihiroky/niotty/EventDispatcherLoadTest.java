@@ -0,0 +1,75 @@
+package net.ihiroky.niotty;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class EventDispatcherLoadTest {
+
+    private DefaultEventDispatcherGroup group_;
+
+    @Before
+    public void setUp() throws Exception {
+        group_ = new DefaultEventDispatcherGroup(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        group_.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testUpdate() throws Exception {
+        EventDispatcher dispatcher = group_.assign(mock(EventDispatcherSelection.class));
+        EventDispatcherLoad sut = new EventDispatcherLoad(dispatcher);
+        int n = 10;
+        final CountDownLatch latch = new CountDownLatch(n);
+        for (int i = 0; i < n; i++) {
+            dispatcher.offer(new Event() {
+                @Override
+                public long execute() throws Exception {
+                    Thread.sleep(1);
+                    latch.countDown();
+                    return DONE;
+                }
+            });
+        }
+        latch.await(3, TimeUnit.SECONDS);
+        while (dispatcher.eventCount() < n) {
+            Thread.sleep(1);
+        }
+
+        sut.update();
+
+        assertThat(sut.eventDispatcher(), is(dispatcher));
+        assertThat(sut.eventsPerSecond() > 0d, is(true));
+        assertThat(sut.busyRatio() > 0d, is(true));
+        assertThat(sut.busyRatio() <= 1d, is(true));
+        assertThat(sut.queueDepth(), is(0));
+    }
+
+    @Test
+    public void testUpdate_NothingIsProcessed() throws Exception {
+        EventDispatcher dispatcher = mock(EventDispatcher.class);
+        when(dispatcher.eventCount()).thenReturn(10L);
+        when(dispatcher.busyTimeNanos()).thenReturn(100L);
+        when(dispatcher.eventQueueSize()).thenReturn(3);
+        EventDispatcherLoad sut = new EventDispatcherLoad(dispatcher);
+
+        sut.update(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(sut.eventsPerSecond(), is(0d));
+        assertThat(sut.busyRatio(), is(0d));
+        assertThat(sut.queueDepth(), is(3));
+    }
+}
@@ -19,6 +19,12 @@ class EventDispatcherMock extends EventDispatcher {
         condition_ = lock_.newCondition();
     }
 
+    EventDispatcherMock(int maxEventsPerLoop, int ioRatio) {
+        super(0, TimerQueues.priorityQueue().newTimerQueue(), maxEventsPerLoop, ioRatio);
+        lock_ = new ReentrantLock();
+        condition_ = lock_.newCondition();
+    }
+
     protected void onOpen() {
     }
 
@@ -8,6 +8,9 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -379,4 +382,81 @@ public class EventDispatcherTest {
 
         assertThat(sut_.isAssigned(Thread.currentThread()), is(false));
     }
+
+    @Test(timeout = 1000)
+    public void testRun_EventsOverMaxEventsPerLoopAreCarriedOver() throws Exception {
+        final List<String> trace = Collections.synchronizedList(new ArrayList<String>());
+        EventDispatcher sut = new EventDispatcherMock(3, EventDispatcher.MAX_IO_RATIO) {
+            @Override
+            protected void poll(long timeoutNanos) throws Exception {
+                trace.add("p");
+                super.poll(timeoutNanos);
+            }
+        };
+        final int events = 10;
+        final AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < events; i++) {
+            sut.offer(new Event() {
+                @Override
+                public long execute() throws Exception {
+                    trace.add("e");
+                    counter.incrementAndGet();
+                    return DONE;
+                }
+            });
+        }
+
+        executor_.execute(sut);
+        while (counter.get() < events) {
+            Thread.sleep(10);
+        }
+        sut.close();
+
+        int eventsInLoop = 0;
+        synchronized (trace) {
+            for (String s : trace) {
+                if (s.equals("p")) {
+                    eventsInLoop = 0;
+                } else {
+                    assertThat(++eventsInLoop <= 3, is(true));
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testRun_EventTimeIsLimitedByIoRatio() throws Exception {
+        final AtomicInteger polls = new AtomicInteger();
+        EventDispatcher sut = new EventDispatcherMock(0, 50) {
+            @Override
+            protected void poll(long timeoutNanos) throws Exception {
+                polls.incrementAndGet();
+                super.poll(timeoutNanos);
+            }
+            @Override
+            protected long ioTimeNanos() {
+                return 1L;
+            }
+        };
+        final int events = 256;
+        final AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < events; i++) {
+            sut.offer(new Event() {
+                @Override
+                public long execute() throws Exception {
+                    counter.incrementAndGet();
+                    return DONE;
+                }
+            });
+        }
+
+        executor_.execute(sut);
+        while (counter.get() < events) {
+            Thread.sleep(10);
+        }
+        sut.close();
+
+        // The deadline is checked every 64 events.
+        assertThat(polls.get() >= events / 64, is(true));
+    }
 }
@@ -0,0 +1,104 @@
+package net.ihiroky.niotty;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+
+/**
+ *
+ */
+public class LatencyHistogramTest {
+
+    private LatencyHistogram sut_;
+
+    @Before
+    public void setUp() {
+        sut_ = new LatencyHistogram();
+    }
+
+    @Test
+    public void testBucketIndex_ValuesInBucketAreInRange() throws Exception {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lowest = LatencyHistogram.lowestValueAt(i);
+            long highest = LatencyHistogram.highestValueAt(i);
+            assertThat(LatencyHistogram.bucketIndex(lowest), is(i));
+            assertThat(LatencyHistogram.bucketIndex(highest), is(i));
+            if (i > 0) {
+                assertThat(LatencyHistogram.highestValueAt(i - 1) + 1, is(lowest));
+            }
+        }
+    }
+
+    @Test
+    public void testBucketIndex_RelativeErrorIsLessThanSubBucketResolution() throws Exception {
+        for (int i = LatencyHistogram.SUB_BUCKET_COUNT; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long lowest = LatencyHistogram.lowestValueAt(i);
+            long highest = LatencyHistogram.highestValueAt(i);
+            assertThat((double) (highest - lowest) / lowest < 1d / LatencyHistogram.SUB_BUCKET_COUNT, is(true));
+        }
+    }
+
+    @Test
+    public void testBucketIndex_LargeValueIsInLastBucket() throws Exception {
+        assertThat(LatencyHistogram.bucketIndex(Long.MAX_VALUE), is(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void testRecord_EmptyHistogram() throws Exception {
+        assertThat(sut_.count(), is(0L));
+        assertThat(sut_.max(), is(0L));
+        assertThat(sut_.mean(), is(0d));
+        assertThat(sut_.valueAtPercentile(99d), is(0L));
+    }
+
+    @Test
+    public void testValueAtPercentile() throws Exception {
+        for (int i = 1; i <= 1000; i++) {
+            sut_.record(i * 1000L);
+        }
+
+        assertThat(sut_.count(), is(1000L));
+        assertThat(sut_.max(), is(1000000L));
+        assertThat(sut_.mean(), is(500500d));
+        assertWithinError(sut_.valueAtPercentile(50d), 500000L);
+        assertWithinError(sut_.valueAtPercentile(99d), 990000L);
+        assertThat(sut_.valueAtPercentile(100d), is(1000000L));
+        assertWithinError(sut_.valueAtPercentile(0d), 1000L);
+    }
+
+    @Test
+    public void testRecord_NegativeValueIsZero() throws Exception {
+        sut_.record(-1L);
+
+        assertThat(sut_.count(), is(1L));
+        assertThat(sut_.valueAtPercentile(100d), is(0L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueAtPercentile_OutOfRange() throws Exception {
+        sut_.valueAtPercentile(100.1d);
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        LatencyHistogram other = new LatencyHistogram();
+        sut_.record(10L);
+        other.record(20L);
+        other.record(3000L);
+
+        sut_.add(other);
+
+        assertThat(sut_.count(), is(3L));
+        assertThat(sut_.max(), is(3000L));
+        assertThat(sut_.mean(), is(1010d));
+        assertThat(sut_.valueAtPercentile(50d), is(20L));
+        assertThat(other.count(), is(2L));
+    }
+
+    private static void assertWithinError(long actual, long expected) {
+        long error = expected / LatencyHistogram.SUB_BUCKET_COUNT;
+        assertThat(actual + " is near " + expected, Math.abs(actual - expected) <= error, is(true));
+    }
+}
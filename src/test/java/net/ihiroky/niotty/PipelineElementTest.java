@@ -79,6 +79,7 @@ public class PipelineElementTest {
 
         ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
         verify(eventDispatcher_).offer(eventCaptor.capture());
+        when(eventDispatcher_.isInDispatcherThread()).thenReturn(true);
         eventCaptor.getValue().execute();
         verify(stage_).stored(sut_.storeContext_, message, parameter);
     }
@@ -121,6 +122,7 @@ public class PipelineElementTest {
 
         ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
         verify(eventDispatcher_).offer(eventCaptor.capture());
+        when(eventDispatcher_.isInDispatcherThread()).thenReturn(true);
         eventCaptor.getValue().execute();
         verify(stage_).loaded(sut_.loadContext_, message, parameter);
     }
@@ -160,6 +162,7 @@ public class PipelineElementTest {
 
         ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
         verify(eventDispatcher_).offer(eventCaptor.capture());
+        when(eventDispatcher_.isInDispatcherThread()).thenReturn(true);
         eventCaptor.getValue().execute();
         verify(stage_).activated(sut_.stateContext_);
         verify(prev_).callActivated();
@@ -186,6 +189,7 @@ public class PipelineElementTest {
 
         ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
         verify(eventDispatcher_).offer(eventCaptor.capture());
+        when(eventDispatcher_.isInDispatcherThread()).thenReturn(true);
         eventCaptor.getValue().execute();
         verify(stage_).deactivated(sut_.stateContext_);
         verify(prev_).callDeactivated();
@@ -214,6 +218,7 @@ public class PipelineElementTest {
 
         ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
         verify(eventDispatcher_).offer(eventCaptor.capture());
+        when(eventDispatcher_.isInDispatcherThread()).thenReturn(true);
         eventCaptor.getValue().execute();
         verify(stage_).exceptionCaught(sut_.stateContext_, e);
         verify(prev_).callExceptionCaught(e);
@@ -0,0 +1,107 @@
+package net.ihiroky.niotty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures the throughput and the allocation of a pipeline which has 3 stages executed by
+ * 3 different dispatchers. The caller thread stores the messages into the pipeline, so each
+ * message is passed between the threads 3 times. The number of the messages in the pipeline
+ * is limited by a window.
+ *
+ * The allocation is measured by {@code com.sun.management.ThreadMXBean} if available.
+ *
+ * Usage: java net.ihiroky.niotty.PipelineHandOffBenchmark [messages] [window] [rounds]
+ */
+public class PipelineHandOffBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int messages = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int window = (args.length > 1) ? Integer.parseInt(args[1]) : 128;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+        DefaultEventDispatcherGroup group0 = new DefaultEventDispatcherGroup(1);
+        DefaultEventDispatcherGroup group1 = new DefaultEventDispatcherGroup(1);
+        DefaultEventDispatcherGroup group2 = new DefaultEventDispatcherGroup(1);
+        final AtomicLong processed = new AtomicLong();
+        try {
+            AbstractTransport transport = mock(AbstractTransport.class);
+            DefaultPipeline pipeline = new DefaultPipeline("benchmark", transport, group2,
+                    StageKeys.of("stage2"), new PassStage() {
+                        @Override
+                        public void stored(StageContext context, Object message, Object parameter) {
+                            processed.lazySet(processed.get() + 1);
+                        }
+                    });
+            pipeline.add(StageKeys.of("stage0"), new PassStage(), group0);
+            pipeline.add(StageKeys.of("stage1"), new PassStage(), group1);
+
+            Object message = new Object();
+            for (int r = 0; r < rounds; r++) {
+                long base = processed.get();
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < messages; i++) {
+                    while (i - (processed.get() - base) >= window) {
+                        Thread.yield();
+                    }
+                    pipeline.store(message);
+                }
+                while (processed.get() - base < messages) {
+                    Thread.yield();
+                }
+                long end = System.nanoTime();
+                long allocated = allocatedBytes() - allocatedBefore;
+
+                System.out.printf("%8.1f ns/message, %6.2f bytes/message allocated%n",
+                        (double) (end - start) / messages,
+                        (allocated >= 0) ? (double) allocated / messages : Double.NaN);
+            }
+        } finally {
+            group0.close();
+            group1.close();
+            group2.close();
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1L;
+        }
+        long[] ids = bean.getAllThreadIds();
+        long sum = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(ids)) {
+            if (bytes > 0) {
+                sum += bytes;
+            }
+        }
+        return sum;
+    }
+
+    private static class PassStage extends StoreStage {
+        @Override
+        public void stored(StageContext context, Object message, Object parameter) {
+            context.proceed(message, parameter);
+        }
+
+        @Override
+        public void exceptionCaught(StageContext context, Exception exception) {
+        }
+
+        @Override
+        public void activated(StageContext context) {
+        }
+
+        @Override
+        public void deactivated(StageContext context) {
+        }
+
+        @Override
+        public void eventTriggered(StageContext context, Object event) {
+        }
+    }
+}
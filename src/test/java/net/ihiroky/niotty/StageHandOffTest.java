@@ -0,0 +1,127 @@
+package net.ihiroky.niotty;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class StageHandOffTest {
+
+    private PipelineElement element_;
+    private Stage stage_;
+    private EventDispatcher eventDispatcher_;
+
+    @Before
+    public void setUp() throws Exception {
+        EventDispatcherGroup eventDispatcherGroup = mock(EventDispatcherGroup.class);
+        eventDispatcher_ = mock(EventDispatcher.class);
+        when(eventDispatcher_.isInDispatcherThread()).thenReturn(true);
+        when(eventDispatcherGroup.assign(Mockito.<EventDispatcherSelection>any())).thenReturn(eventDispatcher_);
+        stage_ = mock(Stage.class);
+        element_ = new PipelineElement(mock(Pipeline.class), StageKeys.of("Test"), stage_, eventDispatcherGroup);
+    }
+
+    @Test
+    public void testOffer_OffersItselfOnlyOnceUntilExecuted() throws Exception {
+        StageHandOff sut = new StageHandOff(element_, 4);
+
+        sut.offer(eventDispatcher_, true, "a", null);
+        sut.offer(eventDispatcher_, false, "b", null);
+        long result = sut.execute();
+        sut.offer(eventDispatcher_, true, "c", null);
+
+        InOrder inOrder = inOrder(stage_);
+        inOrder.verify(stage_).stored(element_.storeContext_, "a", null);
+        inOrder.verify(stage_).loaded(element_.loadContext_, "b", null);
+        verify(eventDispatcher_, times(2)).offer(sut);
+        assertThat(result, is(Event.DONE));
+    }
+
+    @Test
+    public void testExecute_ForwardsItselfIfStageIsMovedToAnotherDispatcher() throws Exception {
+        StageHandOff sut = new StageHandOff(element_, 4);
+        sut.offer(eventDispatcher_, true, "a", null);
+        EventDispatcher moved = mock(EventDispatcher.class);
+        element_.eventDispatcher_ = moved;
+
+        long result = sut.execute();
+
+        verify(stage_, never()).stored(element_.storeContext_, "a", null);
+        verify(moved).offer(sut);
+        assertThat(result, is(Event.DONE));
+    }
+
+    @Test
+    public void testExecute_KeepsOrderIfRingIsFull() throws Exception {
+        StageHandOff sut = new StageHandOff(element_, 2);
+
+        for (int i = 0; i < 5; i++) {
+            sut.offer(eventDispatcher_, true, i, null);
+        }
+        sut.execute();
+        for (int i = 5; i < 8; i++) {
+            sut.offer(eventDispatcher_, true, i, null);
+        }
+        sut.execute();
+
+        InOrder inOrder = inOrder(stage_);
+        for (int i = 0; i < 8; i++) {
+            inOrder.verify(stage_).stored(element_.storeContext_, i, null);
+        }
+    }
+
+    @Test
+    public void testExecute_RetriesIfMessagesAreLeft() throws Exception {
+        StageHandOff sut = new StageHandOff(element_, 128);
+        for (int i = 0; i < StageHandOff.MESSAGES_PER_EXECUTION + 1; i++) {
+            sut.offer(eventDispatcher_, true, i, null);
+        }
+
+        long result0 = sut.execute();
+        long result1 = sut.execute();
+
+        verify(stage_, times(StageHandOff.MESSAGES_PER_EXECUTION + 1))
+                .stored(eq(element_.storeContext_), any(), any());
+        verify(eventDispatcher_).offer(sut);
+        assertThat(result0, is(Event.RETRY_IMMEDIATELY));
+        assertThat(result1, is(Event.DONE));
+    }
+
+    @Test
+    public void testExecute_ContinuesIfStageThrowsException() throws Exception {
+        StageHandOff sut = new StageHandOff(element_, 4);
+        doThrow(new RuntimeException()).when(stage_).stored(element_.storeContext_, "a", null);
+
+        sut.offer(eventDispatcher_, true, "a", null);
+        sut.offer(eventDispatcher_, true, "b", null);
+        sut.execute();
+
+        verify(stage_).stored(element_.storeContext_, "b", null);
+    }
+
+    @Test
+    public void testExecute_OffersItselfAgainAfterStageThrowsError() throws Exception {
+        StageHandOff sut = new StageHandOff(element_, 4);
+        Error error = new AssertionError();
+        doThrow(error).when(stage_).stored(element_.storeContext_, "a", null);
+        sut.offer(eventDispatcher_, true, "a", null);
+
+        try {
+            sut.execute();
+        } catch (Error e) {
+            assertThat(e, is(sameInstance(error)));
+        }
+        sut.offer(eventDispatcher_, true, "b", null);
+        sut.execute();
+
+        verify(eventDispatcher_, times(2)).offer(sut);
+        verify(stage_).stored(element_.storeContext_, "b", null);
+    }
+}
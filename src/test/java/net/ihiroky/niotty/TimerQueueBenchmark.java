@@ -0,0 +1,73 @@
+package net.ihiroky.niotty;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link net.ihiroky.niotty.PriorityTimerQueue} with {@link net.ihiroky.niotty.TimingWheel}
+ * holding 100k live timers. Each round inserts the timers, cancels a half of them, and then expires
+ * the rest of them by advancing the clock tick by tick.
+ *
+ * Usage: java net.ihiroky.niotty.TimerQueueBenchmark [timers] [rounds]
+ */
+public class TimerQueueBenchmark {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+
+    public static void main(String[] args) {
+        int timers = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        Event event = new Event() {
+            @Override
+            public long execute() throws Exception {
+                return DONE;
+            }
+        };
+        long[] expires = new long[timers];
+        Random random = new Random(0);
+        for (int i = 0; i < timers; i++) {
+            expires[i] = 1 + (long) (random.nextDouble() * MAX_DELAY_NANOS);
+        }
+
+        for (int r = 0; r < rounds; r++) {
+            run("PriorityTimerQueue", new PriorityTimerQueue(), expires, event);
+            run("TimingWheel       ", new TimingWheel(TICK_NANOS, WHEEL_SIZE, 0L), expires, event);
+        }
+    }
+
+    private static void run(String name, TimerQueue queue, long[] expires, Event event) {
+        int n = expires.length;
+        EventFuture[] futures = new EventFuture[n];
+        for (int i = 0; i < n; i++) {
+            futures[i] = new EventFuture(expires[i], event);
+        }
+
+        long start = System.nanoTime();
+        for (EventFuture future : futures) {
+            queue.offer(future);
+        }
+        long offered = System.nanoTime();
+        for (int i = 0; i < n; i += 2) {
+            futures[i].cancel();
+        }
+        long cancelled = System.nanoTime();
+        int polled = 0;
+        for (long now = 0; now <= MAX_DELAY_NANOS + TICK_NANOS; now += TICK_NANOS) {
+            EventFuture f;
+            while ((f = queue.poll(now)) != null) {
+                if (f.readyToDispatch()) {
+                    f.dispatched();
+                    polled++;
+                }
+            }
+            queue.nextDelayNanos(now);
+        }
+        long end = System.nanoTime();
+
+        System.out.printf("%s offer: %6d ns/op, cancel: %6d ns/op, expire: %6d ns/op (%d expired)%n",
+                name, (offered - start) / n, (cancelled - offered) / (n / 2), (end - cancelled) / polled, polled);
+    }
+}
@@ -0,0 +1,146 @@
+package net.ihiroky.niotty;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class TimingWheelTest {
+
+    private TimingWheel sut_;
+    private static final long TICK = 10L;
+    private static final int WHEEL_SIZE = 8;
+
+    @Before
+    public void setUp() throws Exception {
+        sut_ = new TimingWheel(TICK, WHEEL_SIZE, 0L);
+    }
+
+    private static EventFuture newFuture(long expire) {
+        return new EventFuture(expire, mock(Event.class));
+    }
+
+    @Test
+    public void testPoll_ReturnsNullIfEmpty() throws Exception {
+        assertThat(sut_.poll(100L), is(nullValue()));
+        assertThat(sut_.nextDelayNanos(100L), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPoll_ReturnsFutureAfterItsExpire() throws Exception {
+        EventFuture f = newFuture(25L);
+        sut_.offer(f);
+
+        assertThat(sut_.size(), is(1));
+        assertThat(sut_.poll(24L), is(nullValue()));
+        assertThat(sut_.poll(29L), is(nullValue()));
+        assertThat(sut_.poll(30L), is(sameInstance(f)));
+        assertThat(sut_.size(), is(0));
+    }
+
+    @Test
+    public void testPoll_ReturnsFuturesInExpireOrder() throws Exception {
+        EventFuture f0 = newFuture(50L);
+        EventFuture f1 = newFuture(10L);
+        EventFuture f2 = newFuture(30L);
+        sut_.offer(f0);
+        sut_.offer(f1);
+        sut_.offer(f2);
+
+        assertThat(sut_.poll(100L), is(sameInstance(f1)));
+        assertThat(sut_.poll(100L), is(sameInstance(f2)));
+        assertThat(sut_.poll(100L), is(sameInstance(f0)));
+        assertThat(sut_.poll(100L), is(nullValue()));
+    }
+
+    @Test
+    public void testPoll_FutureOverOneTurn() throws Exception {
+        EventFuture near = newFuture(20L);
+        EventFuture far = newFuture(20L + TICK * WHEEL_SIZE * 2);
+        sut_.offer(near);
+        sut_.offer(far);
+
+        assertThat(sut_.poll(20L), is(sameInstance(near)));
+        assertThat(sut_.poll(20L + TICK * WHEEL_SIZE), is(nullValue()));
+        assertThat(sut_.poll(20L + TICK * WHEEL_SIZE * 2 - 1), is(nullValue()));
+        assertThat(sut_.poll(20L + TICK * WHEEL_SIZE * 2), is(sameInstance(far)));
+    }
+
+    @Test
+    public void testPoll_SkipsLongIdle() throws Exception {
+        EventFuture f = newFuture(TICK * WHEEL_SIZE * 100);
+        sut_.offer(f);
+
+        assertThat(sut_.poll(TICK * WHEEL_SIZE * 1000), is(sameInstance(f)));
+    }
+
+    @Test
+    public void testOffer_PastExpireIsPolledImmediately() throws Exception {
+        sut_.poll(100L);
+        EventFuture f = newFuture(50L);
+        sut_.offer(f);
+
+        assertThat(sut_.nextDelayNanos(100L), is(0L));
+        assertThat(sut_.poll(100L), is(sameInstance(f)));
+    }
+
+    @Test
+    public void testNextDelayNanos_ReturnsDelayToNextBucket() throws Exception {
+        sut_.offer(newFuture(35L));
+
+        assertThat(sut_.nextDelayNanos(12L), is(28L));
+    }
+
+    @Test
+    public void testCancel_RemovesFutureEagerly() throws Exception {
+        EventFuture f0 = newFuture(30L);
+        EventFuture f1 = newFuture(30L);
+        sut_.offer(f0);
+        sut_.offer(f1);
+
+        f0.cancel();
+
+        assertThat(sut_.nextDelayNanos(0L), is(30L));
+        assertThat(sut_.size(), is(1));
+        assertThat(sut_.poll(30L), is(sameInstance(f1)));
+        assertThat(sut_.poll(30L), is(nullValue()));
+    }
+
+    @Test
+    public void testCancel_AllFuturesAreCancelled() throws Exception {
+        EventFuture f = newFuture(30L);
+        sut_.offer(f);
+
+        f.cancel();
+
+        assertThat(sut_.nextDelayNanos(0L), is(Long.MAX_VALUE));
+        assertThat(sut_.size(), is(0));
+    }
+
+    @Test
+    public void testOffer_CancelledFutureIsIgnored() throws Exception {
+        EventFuture f = newFuture(30L);
+        f.cancel();
+
+        sut_.offer(f);
+
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.poll(30L), is(nullValue()));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        sut_.offer(newFuture(30L));
+        sut_.offer(newFuture(300L));
+
+        sut_.clear();
+
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.poll(1000L), is(nullValue()));
+    }
+}
@@ -0,0 +1,210 @@
+package net.ihiroky.niotty;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.junit.Assume.*;
+
+/**
+ *
+ */
+public class VirtualThreadEventDispatcherGroupTest {
+
+    private VirtualThreadEventDispatcherGroup sut_;
+
+    @Before
+    public void setUp() {
+        sut_ = new VirtualThreadEventDispatcherGroup();
+    }
+
+    @After
+    public void tearDown() {
+        sut_.close();
+    }
+
+    @Test
+    public void testAssign_ReturnsSameStrandForSameSelection() throws Exception {
+        EventDispatcherSelection selection = new EventDispatcherSelection() {};
+
+        EventDispatcher strand0 = sut_.assign(selection);
+        EventDispatcher strand1 = sut_.assign(selection);
+
+        assertThat(strand0, is(sameInstance(strand1)));
+    }
+
+    @Test
+    public void testAssign_ReturnsNewStrandAfterReleased() throws Exception {
+        EventDispatcherSelection selection = new EventDispatcherSelection() {};
+
+        EventDispatcher strand0 = sut_.assign(selection);
+        strand0.reject(selection);
+        EventDispatcher strand1 = sut_.assign(selection);
+
+        assertThat(strand0, is(not(sameInstance(strand1))));
+    }
+
+    @Test(timeout = 5000)
+    public void testOffer_KeepsFifoOrderPerSelection() throws Exception {
+        int selections = 8;
+        final int events = 10000;
+        final CountDownLatch latch = new CountDownLatch(selections * events);
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        List<EventDispatcher> strands = new ArrayList<EventDispatcher>();
+        for (int s = 0; s < selections; s++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            strands.add(sut_.assign(new EventDispatcherSelection() {}));
+        }
+
+        for (int i = 0; i < events; i++) {
+            for (int s = 0; s < selections; s++) {
+                final List<Integer> result = results.get(s);
+                final int value = i;
+                strands.get(s).offer(new Event() {
+                    @Override
+                    public long execute() throws Exception {
+                        result.add(value);
+                        latch.countDown();
+                        return DONE;
+                    }
+                });
+            }
+        }
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        for (List<Integer> result : results) {
+            for (int i = 0; i < events; i++) {
+                assertThat(result.get(i), is(i));
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testOffer_BlockingStrandDoesNotBlockOtherStrands() throws Exception {
+        EventDispatcher strand0 = sut_.assign(new EventDispatcherSelection() {});
+        EventDispatcher strand1 = sut_.assign(new EventDispatcherSelection() {});
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch executed = new CountDownLatch(1);
+
+        strand0.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                blocked.countDown();
+                blocking.await();
+                return DONE;
+            }
+        });
+        blocked.await();
+        strand1.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                executed.countDown();
+                return DONE;
+            }
+        });
+
+        try {
+            assertThat(executed.await(3, TimeUnit.SECONDS), is(true));
+        } finally {
+            blocking.countDown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testIsInDispatcherThread() throws Exception {
+        final EventDispatcher strand = sut_.assign(new EventDispatcherSelection() {});
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] result = new boolean[2];
+
+        strand.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                result[0] = strand.isInDispatcherThread();
+                strand.execute(new Event() {
+                    @Override
+                    public long execute() throws Exception {
+                        result[1] = true; // executed inline
+                        return DONE;
+                    }
+                });
+                latch.countDown();
+                return DONE;
+            }
+        });
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        assertThat(result[0], is(true));
+        assertThat(result[1], is(true));
+        assertThat(strand.isInDispatcherThread(), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void testSchedule_ExecutesDelayedEventInStrand() throws Exception {
+        final EventDispatcher strand = sut_.assign(new EventDispatcherSelection() {});
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] result = new boolean[1];
+
+        strand.schedule(new Event() {
+            @Override
+            public long execute() throws Exception {
+                result[0] = strand.isInDispatcherThread();
+                latch.countDown();
+                return DONE;
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        assertThat(result[0], is(true));
+    }
+
+    @Test(timeout = 10000)
+    public void testOffer_BlockingEventsOverlap() throws Exception {
+        int selections = 500;
+        final CountDownLatch latch = new CountDownLatch(selections);
+        long start = System.nanoTime();
+
+        for (int s = 0; s < selections; s++) {
+            sut_.assign(new EventDispatcherSelection() {}).offer(new Event() {
+                @Override
+                public long execute() throws Exception {
+                    Thread.sleep(200);
+                    latch.countDown();
+                    return DONE;
+                }
+            });
+        }
+
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), is(true));
+    }
+
+    @Test(timeout = 5000)
+    public void testOffer_ExecutesOnVirtualThreadIfSupported() throws Exception {
+        assumeThat(VirtualThreadEventDispatcherGroup.isVirtual(), is(true));
+        final Method isVirtual = Thread.class.getMethod("isVirtual");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Object[] result = new Object[1];
+
+        sut_.assign(new EventDispatcherSelection() {}).offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                result[0] = isVirtual.invoke(Thread.currentThread());
+                latch.countDown();
+                return DONE;
+            }
+        });
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        assertThat(result[0], is((Object) Boolean.TRUE));
+    }
+}
@@ -0,0 +1,173 @@
+package net.ihiroky.niotty;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+
+/**
+ *
+ */
+public class WaitStrategiesTest {
+
+    private static class WaiterMock implements WaitStrategy.Waiter {
+        volatile boolean signaled_;
+        int blockCount_;
+
+        @Override
+        public boolean isSignaled() {
+            return signaled_;
+        }
+
+        @Override
+        public void block(long timeoutNanos) throws InterruptedException {
+            blockCount_++;
+            TimeUnit.NANOSECONDS.sleep(timeoutNanos);
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testBlocking_ReturnsOnTimeout() throws Exception {
+        WaiterMock waiter = new WaiterMock();
+
+        WaitStrategies.blocking().await(waiter, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(waiter.blockCount_ > 0, is(true));
+    }
+
+    @Test
+    public void testBlocking_ReturnsImmediatelyIfSignaled() throws Exception {
+        WaiterMock waiter = new WaiterMock();
+        waiter.signaled_ = true;
+
+        WaitStrategies.blocking().await(waiter, Long.MAX_VALUE);
+
+        assertThat(waiter.blockCount_, is(0));
+    }
+
+    @Test
+    public void testSpinYieldBlocking_ReturnsWithoutBlockingIfSignaledWhileSpinning() throws Exception {
+        final WaiterMock waiter = new WaiterMock() {
+            int count_;
+            @Override
+            public boolean isSignaled() {
+                return ++count_ == 10;
+            }
+        };
+
+        WaitStrategies.spinYieldBlocking(100, 100).await(waiter, Long.MAX_VALUE);
+
+        assertThat(waiter.blockCount_, is(0));
+    }
+
+    @Test
+    public void testSpinYieldBlocking_BlocksAfterSpinAndYield() throws Exception {
+        WaiterMock waiter = new WaiterMock() {
+            int signalChecks_;
+            @Override
+            public boolean isSignaled() {
+                signalChecks_++;
+                return signaled_;
+            }
+            @Override
+            public void block(long timeoutNanos) {
+                blockCount_++;
+                // The spins and the yields check the signal 100 + 10 times, and block() checks it once.
+                assertThat(signalChecks_, is(111));
+                signaled_ = true;
+            }
+        };
+        WaitStrategies.NanoClock clock = new WaitStrategies.NanoClock() {
+            @Override
+            public long nanoTime() {
+                return 0L;
+            }
+        };
+
+        WaitStrategies.spinYieldBlocking(100, 10, clock).await(waiter, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(waiter.blockCount_, is(1));
+    }
+
+    @Test
+    public void testSpinYieldBlocking_ReturnsOnTimeoutWhileYielding() throws Exception {
+        final int[] clockCalls = new int[1];
+        WaiterMock waiter = new WaiterMock() {
+            @Override
+            public boolean isSignaled() {
+                return false;
+            }
+        };
+        WaitStrategies.NanoClock clock = new WaitStrategies.NanoClock() {
+            long now_;
+            @Override
+            public long nanoTime() {
+                // Called on the start and before each yield; a yield takes 1 ms.
+                clockCalls[0]++;
+                return now_++ * TimeUnit.MILLISECONDS.toNanos(1);
+            }
+        };
+
+        WaitStrategies.spinYieldBlocking(100, 1000, clock).await(waiter, TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertThat(clockCalls[0], is(6)); // Times out on the 5th check after 4 yields.
+        assertThat(waiter.blockCount_, is(0));
+    }
+
+    @Test(timeout = 1000)
+    public void testBusySpin_ReturnsOnTimeoutWithoutBlocking() throws Exception {
+        WaiterMock waiter = new WaiterMock();
+
+        WaitStrategies.busySpin().await(waiter, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(waiter.blockCount_, is(0));
+    }
+
+    @Test(timeout = 1000, expected = InterruptedException.class)
+    public void testBusySpin_ThrowsInterruptedException() throws Exception {
+        WaiterMock waiter = new WaiterMock();
+
+        Thread.currentThread().interrupt();
+        WaitStrategies.busySpin().await(waiter, Long.MAX_VALUE);
+    }
+
+    private static void assertEventIsHandedOff(EventDispatcherGroup group) throws Exception {
+        try {
+            final CountDownLatch latch = new CountDownLatch(2);
+            EventDispatcher dispatcher = group.assign(new EventDispatcherSelection() {});
+            Event event = new Event() {
+                @Override
+                public long execute() throws Exception {
+                    latch.countDown();
+                    return DONE;
+                }
+            };
+            dispatcher.offer(event);
+            Thread.sleep(10);
+            dispatcher.offer(event);
+            assertThat(latch.await(1, TimeUnit.SECONDS), is(true));
+        } finally {
+            group.close();
+        }
+    }
+
+    @Test
+    public void testDefaultEventDispatcherGroup() throws Exception {
+        assertEventIsHandedOff(new DefaultEventDispatcherGroup(
+                1, Executors.defaultThreadFactory(), 0, WaitStrategies.spinYieldBlocking(1000, 10)));
+        assertEventIsHandedOff(new DefaultEventDispatcherGroup(
+                1, Executors.defaultThreadFactory(), 0, WaitStrategies.busySpin()));
+    }
+
+    @Test
+    public void testSynchronizedEventDispatcherGroup() throws Exception {
+        assertEventIsHandedOff(new SynchronizedEventDispatcherGroup(
+                1, Executors.defaultThreadFactory(), 0, WaitStrategies.blocking()));
+        assertEventIsHandedOff(new SynchronizedEventDispatcherGroup(
+                1, Executors.defaultThreadFactory(), 0, WaitStrategies.spinYieldBlocking(1000, 10)));
+    }
+}
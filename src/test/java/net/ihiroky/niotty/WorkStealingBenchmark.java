@@ -0,0 +1,74 @@
+package net.ihiroky.niotty;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link net.ihiroky.niotty.DefaultEventDispatcherGroup} with
+ * {@link net.ihiroky.niotty.WorkStealingEventDispatcherGroup} under the skewed load.
+ * The selections (connections) are assigned in round robin, and the events are offered
+ * so that the selections assigned to the first worker get most of the load.
+ *
+ * Usage: java net.ihiroky.niotty.WorkStealingBenchmark [workers] [selections] [events] [rounds]
+ */
+public class WorkStealingBenchmark {
+
+    private static volatile long sink_;
+
+    public static void main(String[] args) throws Exception {
+        int workers = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int selections = (args.length > 1) ? Integer.parseInt(args[1]) : 64;
+        int events = (args.length > 2) ? Integer.parseInt(args[2]) : 200000;
+        int rounds = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+
+        for (int r = 0; r < rounds; r++) {
+            run("default      ", new DefaultEventDispatcherGroup(workers), workers, selections, events);
+            run("work stealing", new WorkStealingEventDispatcherGroup(workers), workers, selections, events);
+        }
+    }
+
+    private static void run(String name, EventDispatcherGroup group,
+            int workers, int selections, int events) throws Exception {
+        try {
+            EventDispatcher[] dispatchers = new EventDispatcher[selections];
+            for (int i = 0; i < selections; i++) {
+                dispatchers[i] = group.assign(new EventDispatcherSelection() {});
+            }
+            final CountDownLatch latch = new CountDownLatch(events);
+            Event event = new Event() {
+                @Override
+                public long execute() throws Exception {
+                    sink_ += work();
+                    latch.countDown();
+                    return DONE;
+                }
+            };
+
+            // The selection i is assigned to the worker (i % workers). Offer 90% of the events
+            // to the selections assigned to the worker 0.
+            int hot = Math.max(selections / workers, 1);
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                int s = (i % 10 != 0)
+                        ? (i % hot) * workers
+                        : i % selections;
+                dispatchers[s].offer(event);
+            }
+            latch.await();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%s: %,d events/s%n", name, events * TimeUnit.SECONDS.toNanos(1) / elapsed);
+        } finally {
+            group.close();
+        }
+    }
+
+    private static long work() {
+        long x = System.nanoTime();
+        for (int i = 0; i < 500; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,180 @@
+package net.ihiroky.niotty;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+
+/**
+ *
+ */
+public class WorkStealingEventDispatcherGroupTest {
+
+    private WorkStealingEventDispatcherGroup sut_;
+
+    @Before
+    public void setUp() {
+        sut_ = new WorkStealingEventDispatcherGroup(2);
+    }
+
+    @After
+    public void tearDown() {
+        sut_.close();
+    }
+
+    @Test
+    public void testAssign_ReturnsSameStrandForSameSelection() throws Exception {
+        EventDispatcherSelection selection = new EventDispatcherSelection() {};
+
+        EventDispatcher strand0 = sut_.assign(selection);
+        EventDispatcher strand1 = sut_.assign(selection);
+
+        assertThat(strand0, is(sameInstance(strand1)));
+    }
+
+    @Test
+    public void testAssign_ReturnsNewStrandAfterReleased() throws Exception {
+        EventDispatcherSelection selection = new EventDispatcherSelection() {};
+
+        EventDispatcher strand0 = sut_.assign(selection);
+        strand0.reject(selection);
+        EventDispatcher strand1 = sut_.assign(selection);
+
+        assertThat(strand0, is(not(sameInstance(strand1))));
+    }
+
+    @Test
+    public void testAssign_ReturnsStrandWithoutEventQueueAndTimer() throws Exception {
+        EventDispatcher strand = sut_.assign(new EventDispatcherSelection() {});
+
+        assertThat(strand instanceof EventDispatcherFacade, is(true));
+        assertThat(strand.eventQueueSize(), is(0));
+    }
+
+    @Test(timeout = 5000)
+    public void testOffer_KeepsFifoOrderPerSelection() throws Exception {
+        int selections = 8;
+        final int events = 10000;
+        final CountDownLatch latch = new CountDownLatch(selections * events);
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        List<EventDispatcher> strands = new ArrayList<EventDispatcher>();
+        for (int s = 0; s < selections; s++) {
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            strands.add(sut_.assign(new EventDispatcherSelection() {}));
+        }
+
+        for (int i = 0; i < events; i++) {
+            for (int s = 0; s < selections; s++) {
+                final List<Integer> result = results.get(s);
+                final int value = i;
+                strands.get(s).offer(new Event() {
+                    @Override
+                    public long execute() throws Exception {
+                        result.add(value);
+                        latch.countDown();
+                        return DONE;
+                    }
+                });
+            }
+        }
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        for (List<Integer> result : results) {
+            for (int i = 0; i < events; i++) {
+                assertThat(result.get(i), is(i));
+            }
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testOffer_IdleWorkerStealsStrandFromBusyWorker() throws Exception {
+        // 2 workers; the selection 0 and 2 share the same home worker.
+        WorkStealingEventDispatcherGroup.Strand strand0 =
+                (WorkStealingEventDispatcherGroup.Strand) sut_.assign(new EventDispatcherSelection() {});
+        sut_.assign(new EventDispatcherSelection() {});
+        WorkStealingEventDispatcherGroup.Strand strand2 =
+                (WorkStealingEventDispatcherGroup.Strand) sut_.assign(new EventDispatcherSelection() {});
+        assertThat(strand0.home(), is(sameInstance(strand2.home())));
+
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch stolen = new CountDownLatch(1);
+        strand0.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                blocked.countDown();
+                blocking.await();
+                return DONE;
+            }
+        });
+        blocked.await();
+        strand2.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                stolen.countDown();
+                return DONE;
+            }
+        });
+
+        try {
+            assertThat(stolen.await(3, TimeUnit.SECONDS), is(true));
+        } finally {
+            blocking.countDown();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testIsInDispatcherThread() throws Exception {
+        final EventDispatcher strand = sut_.assign(new EventDispatcherSelection() {});
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] result = new boolean[2];
+
+        strand.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                result[0] = strand.isInDispatcherThread();
+                strand.execute(new Event() {
+                    @Override
+                    public long execute() throws Exception {
+                        result[1] = true; // executed inline
+                        return DONE;
+                    }
+                });
+                latch.countDown();
+                return DONE;
+            }
+        });
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        assertThat(result[0], is(true));
+        assertThat(result[1], is(true));
+        assertThat(strand.isInDispatcherThread(), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void testSchedule_ExecutesDelayedEventInStrand() throws Exception {
+        final EventDispatcher strand = sut_.assign(new EventDispatcherSelection() {});
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] result = new boolean[1];
+
+        strand.schedule(new Event() {
+            @Override
+            public long execute() throws Exception {
+                result[0] = strand.isInDispatcherThread();
+                latch.countDown();
+                return DONE;
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        assertThat(latch.await(3, TimeUnit.SECONDS), is(true));
+        assertThat(result[0], is(true));
+    }
+}
@@ -3,6 +3,7 @@ package net.ihiroky.niotty.buffer;
 import net.ihiroky.niotty.util.Charsets;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
@@ -20,6 +21,23 @@ public class BuffersTest {
 
     private static final Charset CHARSET = Charsets.UTF_8;
 
+    @Test
+    public void testIsPooled() throws Exception {
+        ByteBufferChunkPool byteBufferChunkPool = new ByteBufferChunkPool(1024);
+        ArrayChunkPool arrayChunkPool = new ArrayChunkPool(1024);
+        CodecBuffer byteBuffer = Buffers.newCodecBuffer(byteBufferChunkPool, 16);
+        CodecBuffer array = Buffers.newCodecBuffer(arrayChunkPool, 16);
+        byteBuffer.writeInt(1);
+
+        assertThat(Buffers.isPooled(byteBuffer), is(true));
+        assertThat(Buffers.isPooled(array), is(true));
+        assertThat(Buffers.isPooled(byteBuffer.slice(2)), is(true));
+        assertThat(Buffers.isPooled(Buffers.newCodecBuffer(16)), is(false));
+        assertThat(Buffers.isPooled(Buffers.wrap(new byte[16])), is(false));
+        assertThat(Buffers.isPooled(Buffers.wrap(ByteBuffer.allocateDirect(16))), is(false));
+        assertThat(Buffers.isPooled(Buffers.wrap(byteBuffer)), is(false));
+    }
+
     @Test
     public void testExpand() throws Exception {
         CharsetDecoder decoder = CHARSET.newDecoder();
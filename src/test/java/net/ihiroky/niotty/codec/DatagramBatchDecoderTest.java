@@ -0,0 +1,93 @@
+package net.ihiroky.niotty.codec;
+
+import net.ihiroky.niotty.LoadStage;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.CodecBuffer;
+import net.ihiroky.niotty.nio.DatagramBatch;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class DatagramBatchDecoderTest {
+
+    private DatagramBatchDecoder sut_;
+    private LoadStage stage_;
+    private StageContextMock<Object> context_;
+
+    @Before
+    public void setUp() throws Exception {
+        stage_ = mock(LoadStage.class);
+        sut_ = new DatagramBatchDecoder(stage_);
+        context_ = new StageContextMock<Object>();
+    }
+
+    @Test
+    public void testLoaded_PassesEachDatagramWithItsSource() throws Exception {
+        CodecBuffer b0 = Buffers.wrap(new byte[]{0});
+        CodecBuffer b1 = Buffers.wrap(new byte[]{1});
+        SocketAddress s0 = new InetSocketAddress(12345);
+        SocketAddress s1 = new InetSocketAddress(12346);
+        DatagramBatch batch = new DatagramBatch(2);
+        batch.add(b0, s0);
+        batch.add(b1, s1);
+
+        sut_.loaded(context_, batch, null);
+
+        verify(stage_).loaded(context_, b0, s0);
+        verify(stage_).loaded(context_, b1, s1);
+    }
+
+    @Test
+    public void testLoaded_ReleasesBatch() throws Exception {
+        DatagramBatch batch = new DatagramBatch(1);
+        batch.add(Buffers.wrap(new byte[]{0}), new InetSocketAddress(12345));
+
+        sut_.loaded(context_, batch, null);
+
+        assertThat(batch.size(), is(0));
+    }
+
+    @Test
+    public void testLoaded_PassesOtherMessageAsItIs() throws Exception {
+        CodecBuffer b = Buffers.wrap(new byte[]{0});
+        SocketAddress s = new InetSocketAddress(12345);
+
+        sut_.loaded(context_, b, s);
+
+        verify(stage_).loaded(context_, b, s);
+    }
+
+    @Test
+    public void testEventsArePassedToStage() throws Exception {
+        Exception e = new Exception();
+        Object event = new Object();
+
+        sut_.activated(context_);
+        sut_.exceptionCaught(context_, e);
+        sut_.eventTriggered(context_, event);
+        sut_.deactivated(context_);
+
+        verify(stage_).activated(context_);
+        verify(stage_).exceptionCaught(context_, e);
+        verify(stage_).eventTriggered(context_, event);
+        verify(stage_).deactivated(context_);
+    }
+
+    @Test
+    public void testStored() throws Exception {
+        Object message = new Object();
+
+        sut_.stored(context_, message, null);
+
+        assertThat(context_.pollEvent(), is(message));
+    }
+}
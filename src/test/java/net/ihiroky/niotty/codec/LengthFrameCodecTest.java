@@ -3,6 +3,7 @@ package net.ihiroky.niotty.codec;
 import net.ihiroky.niotty.buffer.ArrayCodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.buffer.CodecBuffer;
 import org.junit.Before;
 import org.junit.Test;
@@ -328,4 +329,22 @@ public class LengthFrameCodecTest {
         assertThat(output.array(), is(not(sameInstance(input.array()))));
         assertThat(input, hasReferenceCount(0));
     }
+
+    @Test
+    public void testLoad_SlicesPooledBufferEvenIfChangesDispatcher() throws Exception {
+        context_ = new StageContextMock<CodecBuffer>(null, true);
+        ByteBufferChunkPool pool = new ByteBufferChunkPool(1024);
+        CodecBuffer input = Buffers.newCodecBuffer(pool, dataLength_);
+        input.writeBytes(data_, 0, dataLength_);
+
+        sut_.loaded(context_, input, null);
+
+        CodecBuffer output = context_.pollEvent();
+        assertThat(output.remaining(), is(dataLength_ - 2)); // 2: header of packet
+        assertThat(Buffers.isPooled(output), is(true));
+        assertThat(pool.referredChunkCount(), is(1));
+        output.dispose();
+        assertThat(pool.referredChunkCount(), is(0));
+        pool.close();
+    }
 }
@@ -0,0 +1,159 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.DefaultTransportFuture;
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.EventDispatcherGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class AcceptAdmissionTest {
+
+    private AcceptAdmission sut_;
+    private NioServerSocketTransport transport_;
+    private NioEventDispatcherGroup ioGroup_;
+
+    @Before
+    public void setUp() {
+        transport_ = mock(NioServerSocketTransport.class);
+        when(transport_.eventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        ioGroup_ = new NioEventDispatcherGroup(1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+        sut_ = new AcceptAdmission(transport_, ioGroup_);
+    }
+
+    @After
+    public void tearDown() {
+        ioGroup_.close();
+    }
+
+    private List<DefaultTransportFuture> accept(int n) {
+        List<DefaultTransportFuture> closeFutures = new ArrayList<DefaultTransportFuture>(n);
+        for (int i = 0; i < n; i++) {
+            NioClientSocketTransport accepted = mock(NioClientSocketTransport.class);
+            EventDispatcher eventDispatcher = mock(EventDispatcher.class);
+            when(eventDispatcher.isInDispatcherThread()).thenReturn(true);
+            when(accepted.eventDispatcher()).thenReturn(eventDispatcher);
+            DefaultTransportFuture closeFuture = new DefaultTransportFuture(accepted);
+            when(accepted.closeFuture()).thenReturn(closeFuture);
+            sut_.accepted(accepted);
+            closeFutures.add(closeFuture);
+        }
+        return closeFutures;
+    }
+
+    @Test
+    public void testAccepted_PausesOnMaxConnectionsAndResumesWithHysteresis() throws Exception {
+        sut_.setMaxConnections(10);
+
+        List<DefaultTransportFuture> closeFutures = accept(9);
+        assertThat(sut_.isPaused(), is(false));
+        closeFutures.addAll(accept(1));
+        assertThat(sut_.isPaused(), is(true));
+        verify(transport_).setAcceptInterest(false);
+
+        closeFutures.get(0).done();
+        assertThat(sut_.connections(), is(9));
+        assertThat(sut_.isPaused(), is(true));
+        closeFutures.get(1).done();
+        assertThat(sut_.connections(), is(8));
+        assertThat(sut_.isPaused(), is(false));
+        verify(transport_).setAcceptInterest(true);
+    }
+
+    @Test
+    public void testAccepted_NeverPausesIfUnlimited() throws Exception {
+        accept(100);
+
+        assertThat(sut_.connections(), is(100));
+        assertThat(sut_.isPaused(), is(false));
+        verify(transport_, never()).setAcceptInterest(anyBoolean());
+    }
+
+    @Test
+    public void testSetMaxConnections_ResumesIfLimitIsRemoved() throws Exception {
+        sut_.setMaxConnections(1);
+        accept(1);
+        assertThat(sut_.isPaused(), is(true));
+
+        sut_.setMaxConnections(0);
+
+        assertThat(sut_.isPaused(), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void testCheckLag_PausesWhileIoDispatcherIsBlocked() throws Exception {
+        ioGroup_.open();
+        sut_.setMaxLagNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        EventDispatcher ioDispatcher = ioGroup_.eventDispatchers().get(0);
+        ioDispatcher.offer(new Event() {
+            @Override
+            public long execute() throws Exception {
+                blocked.countDown();
+                release.await();
+                return DONE;
+            }
+        });
+        blocked.await();
+
+        sut_.checkLag();
+        assertThat(sut_.isPaused(), is(false));
+        Thread.sleep(100);
+        sut_.checkLag();
+        assertThat(sut_.isPaused(), is(true));
+        assertThat(sut_.lagNanos() >= TimeUnit.MILLISECONDS.toNanos(50), is(true));
+
+        release.countDown();
+        awaitEvents(ioDispatcher);
+        sut_.checkLag(); // the executed probe still has the lag measured while blocked
+        assertThat(sut_.isPaused(), is(true));
+        awaitEvents(ioDispatcher);
+        sut_.checkLag();
+        assertThat(sut_.isPaused(), is(false));
+        verify(transport_).setAcceptInterest(false);
+        verify(transport_).setAcceptInterest(true);
+    }
+
+    @Test
+    public void testCheckLag_DoesNotPauseIfGroupIsIdle() throws Exception {
+        ioGroup_.open();
+        sut_.setMaxLagNanos(TimeUnit.MILLISECONDS.toNanos(50));
+
+        for (int i = 0; i < 3; i++) {
+            sut_.checkLag();
+            awaitEvents(ioGroup_);
+        }
+
+        assertThat(sut_.isPaused(), is(false));
+    }
+
+    private static void awaitEvents(EventDispatcherGroup group) throws InterruptedException {
+        for (EventDispatcher eventDispatcher : group.eventDispatchers()) {
+            awaitEvents(eventDispatcher);
+        }
+    }
+
+    private static void awaitEvents(EventDispatcher eventDispatcher) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        eventDispatcher.offer(new Event() {
+            @Override
+            public long execute() {
+                latch.countDown();
+                return DONE;
+            }
+        });
+        latch.await();
+    }
+}
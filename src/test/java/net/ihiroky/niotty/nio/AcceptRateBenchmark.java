@@ -0,0 +1,120 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.EventDispatcherSelection;
+import net.ihiroky.niotty.PipelineComposer;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the rate of the connections accepted and registered by {@link NioServerSocketTransport},
+ * with one connection accepted per wakeup and with the default batch. The client threads connect
+ * to the server as fast as possible like a reconnect storm. The connections are kept until
+ * the server registers all of them, and then reset not to leave them in TIME_WAIT.
+ *
+ * Usage: java net.ihiroky.niotty.nio.AcceptRateBenchmark [connections] [clientThreads] [rounds]
+ */
+public class AcceptRateBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int connections = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        int clientThreads = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+        for (int r = 0; r < rounds; r++) {
+            run(1, connections, clientThreads);
+            run(NioServerSocketTransport.DEFAULT_MAX_ACCEPTS_PER_SELECT, connections, clientThreads);
+        }
+    }
+
+    private static void run(int maxAcceptsPerSelect, int connections, int clientThreads) throws Exception {
+        NioEventDispatcherGroup acceptGroup = NioEventDispatcherGroup.newBuilder()
+                .setWorkers(1).setBufferSizeNonIo().build();
+        NioEventDispatcherGroup ioGroup = NioEventDispatcherGroup.newBuilder().setWorkers(2).build();
+        NioServerSocketTransport server = new NioServerSocketTransport("AcceptRateBenchmark",
+                PipelineComposer.empty(), acceptGroup, ioGroup, new SimplePacketQueueFactory());
+        final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>(connections));
+        try {
+            server.setMaxAcceptsPerSelect(maxAcceptsPerSelect);
+            server.bind(new InetSocketAddress("127.0.0.1", 0), 4096).await().throwExceptionIfFailed();
+            final int port = server.localAddress().getPort();
+
+            final AtomicInteger remaining = new AtomicInteger(connections);
+            Thread[] clients = new Thread[clientThreads];
+            long start = System.nanoTime();
+            for (int i = 0; i < clientThreads; i++) {
+                clients[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (remaining.getAndDecrement() > 0) {
+                                Socket socket = new Socket("127.0.0.1", port);
+                                socket.setSoLinger(true, 0);
+                                sockets.add(socket);
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                };
+                clients[i].start();
+            }
+            while (acceptedTransports(ioGroup) < connections) {
+                Thread.yield();
+            }
+            awaitRegistrations(ioGroup);
+            long elapsed = System.nanoTime() - start;
+            for (Thread client : clients) {
+                client.join();
+            }
+            System.out.printf("maxAcceptsPerSelect %3d: %,10.0f connections/s, %,6d wakeups of the acceptor%n",
+                    maxAcceptsPerSelect, connections * 1e9d / elapsed, server.selectedCount_);
+        } finally {
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+            server.close().await();
+            acceptGroup.close();
+            ioGroup.close();
+        }
+    }
+
+    private static int acceptedTransports(NioEventDispatcherGroup group) {
+        int count = 0;
+        for (EventDispatcher eventDispatcher : group.eventDispatchers()) {
+            for (EventDispatcherSelection selection : eventDispatcher.selections()) {
+                if (selection instanceof NioClientSocketTransport) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits for the registrations offered before this method to be executed.
+     */
+    private static void awaitRegistrations(NioEventDispatcherGroup group) throws InterruptedException {
+        List<EventDispatcher> eventDispatchers = group.eventDispatchers();
+        final CountDownLatch latch = new CountDownLatch(eventDispatchers.size());
+        for (EventDispatcher eventDispatcher : eventDispatchers) {
+            eventDispatcher.offer(new Event() {
+                @Override
+                public long execute() {
+                    latch.countDown();
+                    return DONE;
+                }
+            });
+        }
+        latch.await();
+    }
+}
@@ -0,0 +1,170 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.Packet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class ArrayDatagramQueueTest {
+
+    private ArrayDatagramQueue sut_;
+    private DatagramChannel channel_;
+    private SocketAddress target_;
+    private ByteBuffer buffer_;
+
+    @Before
+    public void setUp() throws Exception {
+        sut_ = new ArrayDatagramQueue(4);
+        channel_ = mock(DatagramChannel.class);
+        target_ = mock(SocketAddress.class);
+        buffer_ = ByteBuffer.allocate(0);
+    }
+
+    @Test
+    public void testCapacityIsRoundUpToPowerOfTwo() throws Exception {
+        assertThat(new ArrayDatagramQueue(1).capacity(), is(1));
+        assertThat(new ArrayDatagramQueue(4).capacity(), is(4));
+        assertThat(new ArrayDatagramQueue(5).capacity(), is(8));
+    }
+
+    @Test
+    public void testSizeAndIsEmpty() throws Exception {
+        assertThat(sut_.isEmpty(), is(true));
+
+        sut_.offer(Buffers.emptyBuffer(), target_);
+        sut_.offer(Buffers.emptyBuffer(), target_);
+
+        assertThat(sut_.size(), is(2));
+        assertThat(sut_.isEmpty(), is(false));
+    }
+
+    @Test
+    public void testOfferReturnsFalseIfFull() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertThat(sut_.offer(Buffers.emptyBuffer(), target_), is(true));
+        }
+
+        assertThat(sut_.offer(Buffers.emptyBuffer(), target_), is(false));
+        assertThat(sut_.size(), is(4));
+    }
+
+    @Test
+    public void testFlushSendsToTargetOrChannel() throws Exception {
+        Packet p0 = mock(Packet.class);
+        Packet p1 = mock(Packet.class);
+        when(p0.sink(channel_, buffer_, target_)).thenReturn(true);
+        when(p1.sink(channel_)).thenReturn(true);
+        sut_.offer(p0, target_);
+        sut_.offer(p1, null);
+
+        FlushStatus status = sut_.flush(channel_, buffer_);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        verify(p0).sink(channel_, buffer_, target_);
+        verify(p0).dispose();
+        verify(p1).sink(channel_);
+        verify(p1).dispose();
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFlushPartOfElements() throws Exception {
+        Packet p0 = mock(Packet.class);
+        Packet p1 = mock(Packet.class);
+        Packet p2 = mock(Packet.class);
+        when(p0.remaining()).thenReturn(10);
+        when(p1.remaining()).thenReturn(20);
+        when(p2.remaining()).thenReturn(30);
+        when(p0.sink(channel_, buffer_, target_)).thenReturn(true);
+        when(p1.sink(channel_, buffer_, target_)).thenReturn(false);
+        sut_.offer(p0, target_);
+        sut_.offer(p1, target_);
+        sut_.offer(p2, target_);
+        assertThat(sut_.pendingBytes(), is(60L));
+
+        FlushStatus status = sut_.flush(channel_, buffer_);
+
+        assertThat(status, is(FlushStatus.FLUSHING));
+        verify(p1, never()).dispose();
+        verify(p2, never()).sink(channel_, buffer_, target_);
+        assertThat(sut_.size(), is(2));
+        assertThat(sut_.pendingBytes(), is(50L));
+
+        when(p1.sink(channel_, buffer_, target_)).thenReturn(true);
+        when(p2.sink(channel_, buffer_, target_)).thenReturn(true);
+        status = sut_.flush(channel_, buffer_);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        verify(p1).dispose();
+        verify(p2).dispose();
+        assertThat(sut_.pendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testEntriesAreReusedAfterFlush() throws Exception {
+        for (int round = 0; round < 3; round++) {
+            Packet[] packets = new Packet[4];
+            for (int i = 0; i < packets.length; i++) {
+                packets[i] = mock(Packet.class);
+                when(packets[i].sink(channel_, buffer_, target_)).thenReturn(true);
+                assertThat(sut_.offer(packets[i], target_), is(true));
+            }
+
+            FlushStatus status = sut_.flush(channel_, buffer_);
+
+            assertThat(status, is(FlushStatus.FLUSHED));
+            for (Packet packet : packets) {
+                verify(packet).sink(channel_, buffer_, target_);
+            }
+            assertThat(sut_.isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            sut_.offer(Buffers.emptyBuffer(), target_);
+        }
+
+        sut_.clear();
+
+        assertThat(sut_.isEmpty(), is(true));
+        assertThat(sut_.pendingBytes(), is(0L));
+        assertThat(sut_.offer(Buffers.emptyBuffer(), target_), is(true));
+    }
+
+    @Test
+    public void testClear_DisposesPackets() throws Exception {
+        Packet p0 = mock(Packet.class);
+        Packet p1 = mock(Packet.class);
+        sut_.offer(p0, target_);
+        sut_.offer(p1, target_);
+
+        sut_.clear();
+
+        verify(p0).dispose();
+        verify(p1).dispose();
+    }
+
+    @Test
+    public void testOfferAttachedMessage() throws Exception {
+        Packet p0 = mock(Packet.class);
+        when(p0.sink(channel_, buffer_, target_)).thenReturn(true);
+
+        sut_.offer(new AttachedMessage<Packet>(p0, target_));
+        sut_.flush(channel_, buffer_);
+
+        verify(p0).sink(channel_, buffer_, target_);
+    }
+}
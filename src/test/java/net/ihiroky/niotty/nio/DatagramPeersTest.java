@@ -0,0 +1,263 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.LoadStage;
+import net.ihiroky.niotty.Pipeline;
+import net.ihiroky.niotty.PipelineComposer;
+import net.ihiroky.niotty.StageContext;
+import net.ihiroky.niotty.StageKeys;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.CodecBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class DatagramPeersTest {
+
+    private DatagramPeers sut_;
+    private NioDatagramSocketTransport parent_;
+    private EventDispatcher parentDispatcher_;
+    private NioEventDispatcherGroup peerGroup_;
+    private BlockingQueue<Object[]> loaded_;
+    private int composed_;
+    private PipelineComposer composer_;
+    private Pipeline parentPipeline_;
+
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAX_PEERS = 16;
+
+    @Before
+    public void setUp() throws Exception {
+        parentPipeline_ = mock(Pipeline.class);
+        when(parentPipeline_.name()).thenReturn("parent");
+        parentDispatcher_ = mock(EventDispatcher.class);
+        parent_ = mock(NioDatagramSocketTransport.class);
+        when(parent_.pipeline()).thenReturn(parentPipeline_);
+        when(parent_.eventDispatcher()).thenReturn(parentDispatcher_);
+        when(parent_.isOpen()).thenReturn(true);
+        peerGroup_ = NioEventDispatcherGroup.newBuilder().setWorkers(2).build();
+        loaded_ = new LinkedBlockingQueue<Object[]>();
+
+        composer_ = new PipelineComposer() {
+            @Override
+            public void compose(Pipeline pipeline) {
+                composed_++;
+                pipeline.add(StageKeys.of("RECORD"), new LoadStage() {
+                    @Override
+                    public void loaded(StageContext context, Object message, Object parameter) {
+                        loaded_.add(new Object[]{context.transport(), message, parameter});
+                    }
+                    @Override
+                    public void exceptionCaught(StageContext context, Exception exception) {
+                    }
+                    @Override
+                    public void activated(StageContext context) {
+                    }
+                    @Override
+                    public void deactivated(StageContext context) {
+                    }
+                    @Override
+                    public void eventTriggered(StageContext context, Object event) {
+                    }
+                });
+            }
+        };
+        sut_ = new DatagramPeers(parent_, composer_, peerGroup_, IDLE_TIMEOUT_NANOS, MAX_PEERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut_.closeAll();
+        peerGroup_.close();
+    }
+
+    private Object[] poll() throws InterruptedException {
+        return loaded_.poll(3, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testLoad_CreatesPeerTransportForEachSource() throws Exception {
+        SocketAddress source0 = new InetSocketAddress("127.0.0.1", 10000);
+        SocketAddress source1 = new InetSocketAddress("127.0.0.1", 10001);
+
+        sut_.load(Buffers.wrap(new byte[]{0}), source0, false);
+        sut_.load(Buffers.wrap(new byte[]{1}), source1, false);
+        Object[] loaded0 = poll();
+        Object[] loaded1 = poll();
+        if (loaded0[2].equals(source1)) {
+            Object[] t = loaded0;
+            loaded0 = loaded1;
+            loaded1 = t;
+        }
+
+        NioDatagramPeerTransport peer0 = sut_.peer(source0);
+        NioDatagramPeerTransport peer1 = sut_.peer(source1);
+        assertThat(composed_, is(2));
+        assertThat(sut_.peers().size(), is(2));
+        assertThat(loaded0[0], is((Object) peer0));
+        assertThat(((CodecBuffer) loaded0[1]).readByte(), is((byte) 0));
+        assertThat(loaded0[2], is((Object) source0));
+        assertThat(loaded1[0], is((Object) peer1));
+        assertThat(((CodecBuffer) loaded1[1]).readByte(), is((byte) 1));
+        assertThat(loaded1[2], is((Object) source1));
+        assertThat(peer0.remoteAddress(), is(source0));
+        assertThat(peer0.parent(), is(parent_));
+        assertThat(peer0.eventDispatcher(), is(not(peer1.eventDispatcher())));
+    }
+
+    @Test
+    public void testLoad_ReusesPeerTransportForSameSource() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+
+        sut_.load(Buffers.wrap(new byte[]{0}), source, false);
+        sut_.load(Buffers.wrap(new byte[]{1}), source, false);
+        Object[] loaded0 = poll();
+        Object[] loaded1 = poll();
+
+        assertThat(composed_, is(1));
+        assertThat(sut_.peers().size(), is(1));
+        assertThat(loaded0[0], is(sameInstance(loaded1[0])));
+        assertThat(((CodecBuffer) loaded0[1]).readByte(), is((byte) 0));
+        assertThat(((CodecBuffer) loaded1[1]).readByte(), is((byte) 1));
+    }
+
+    @Test
+    public void testLoad_CopiesSharedDatagramHandedOffToPeerDispatcher() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+        ByteBuffer readBuffer = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        CodecBuffer shared = Buffers.wrap(readBuffer);
+
+        sut_.load(shared, source, true);
+        readBuffer.put(0, (byte) 0);
+        Object[] loaded = poll();
+
+        CodecBuffer buffer = (CodecBuffer) loaded[1];
+        assertThat(buffer, is(not(sameInstance(shared))));
+        assertThat(buffer.remaining(), is(3));
+        assertThat(buffer.readByte(), is((byte) 1));
+    }
+
+    @Test
+    public void testLoad_DoesNotCopyDatagramNotShared() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+        CodecBuffer datagram = Buffers.wrap(new byte[]{1, 2, 3});
+
+        sut_.load(datagram, source, false);
+        Object[] loaded = poll();
+
+        assertThat(loaded[1], is((Object) datagram));
+    }
+
+    @Test
+    public void testLoad_LoadsIntoParentPipelineIfPeersReachMaximum() throws Exception {
+        sut_ = new DatagramPeers(parent_, composer_, peerGroup_, IDLE_TIMEOUT_NANOS, 1);
+        SocketAddress source0 = new InetSocketAddress("127.0.0.1", 10000);
+        SocketAddress source1 = new InetSocketAddress("127.0.0.1", 10001);
+        CodecBuffer datagram = Buffers.wrap(new byte[]{1});
+
+        sut_.load(Buffers.wrap(new byte[]{0}), source0, false);
+        sut_.load(datagram, source1, false);
+
+        assertThat(composed_, is(1));
+        assertThat(sut_.peers().size(), is(1));
+        assertThat(sut_.peer(source1), is(nullValue()));
+        verify(parentPipeline_).load(datagram, source1);
+    }
+
+    @Test
+    public void testLoad_CreatesPeerTransportAgainIfPeerIsClosedAtMaximum() throws Exception {
+        sut_ = new DatagramPeers(parent_, composer_, peerGroup_, IDLE_TIMEOUT_NANOS, 1);
+        SocketAddress source0 = new InetSocketAddress("127.0.0.1", 10000);
+        SocketAddress source1 = new InetSocketAddress("127.0.0.1", 10001);
+        sut_.load(Buffers.wrap(new byte[]{0}), source0, false);
+
+        sut_.peer(source0).close();
+        sut_.load(Buffers.wrap(new byte[]{1}), source1, false);
+
+        assertThat(composed_, is(2));
+        assertThat(sut_.peer(source1), is(not(nullValue())));
+        verify(parentPipeline_, never()).load(Mockito.any(CodecBuffer.class), Mockito.any());
+    }
+
+    @Test
+    public void testLoad_SchedulesExpiration() throws Exception {
+        sut_.load(Buffers.wrap(new byte[]{0}), new InetSocketAddress("127.0.0.1", 10000), false);
+        sut_.load(Buffers.wrap(new byte[]{0}), new InetSocketAddress("127.0.0.1", 10001), false);
+
+        verify(parentDispatcher_).schedule(any(Event.class), eq(IDLE_TIMEOUT_NANOS / 2), eq(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+        sut_.load(Buffers.wrap(new byte[]{0}), source, false);
+        NioDatagramPeerTransport peer = sut_.peer(source);
+        long lastActive = peer.lastActiveNanos();
+
+        int notExpired = sut_.expire(lastActive + IDLE_TIMEOUT_NANOS - 1);
+        boolean openBeforeTimeout = peer.isOpen();
+        int expired = sut_.expire(lastActive + IDLE_TIMEOUT_NANOS);
+
+        assertThat(notExpired, is(0));
+        assertThat(openBeforeTimeout, is(true));
+        assertThat(expired, is(1));
+        assertThat(sut_.peers().isEmpty(), is(true));
+        assertThat(sut_.peer(source), is(nullValue()));
+        assertThat(peer.closeFuture().isDone(), is(true));
+        assertThat(peer.isOpen(), is(false));
+    }
+
+    @Test
+    public void testExpire_PeerTransportIsCreatedAgainForExpiredSource() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+        sut_.load(Buffers.wrap(new byte[]{0}), source, false);
+        NioDatagramPeerTransport peer = sut_.peer(source);
+        sut_.expire(peer.lastActiveNanos() + IDLE_TIMEOUT_NANOS);
+
+        sut_.load(Buffers.wrap(new byte[]{0}), source, false);
+
+        assertThat(composed_, is(2));
+        assertThat(sut_.peer(source), is(not(sameInstance(peer))));
+    }
+
+    @Test
+    public void testWrite_SentThroughParent() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+        sut_.load(Buffers.wrap(new byte[]{0}), source, false);
+        NioDatagramPeerTransport peer = sut_.peer(source);
+        CodecBuffer message = Buffers.wrap(new byte[]{1});
+
+        peer.write(message);
+
+        verify(parent_, timeout(3000)).write(message, source);
+    }
+
+    @Test
+    public void testCloseAll() throws Exception {
+        SocketAddress source = new InetSocketAddress("127.0.0.1", 10000);
+        sut_.load(Buffers.wrap(new byte[]{0}), source, false);
+        NioDatagramPeerTransport peer = sut_.peer(source);
+
+        sut_.closeAll();
+
+        assertThat(sut_.peers().isEmpty(), is(true));
+        assertThat(peer.closeFuture().isSuccessful(), is(true));
+        assertThat(peer.eventDispatcher().selections().contains(peer), is(false));
+    }
+}
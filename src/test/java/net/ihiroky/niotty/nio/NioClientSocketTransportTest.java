@@ -1,6 +1,7 @@
 package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
 import net.ihiroky.niotty.EventDispatcherGroup;
 import net.ihiroky.niotty.EventDispatcherSelection;
 import net.ihiroky.niotty.Pipeline;
@@ -8,9 +9,13 @@ import net.ihiroky.niotty.PipelineComposer;
 import net.ihiroky.niotty.Stage;
 import net.ihiroky.niotty.TransportFuture;
 import net.ihiroky.niotty.TransportOptions;
+import net.ihiroky.niotty.WritabilityEvent;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.buffer.CodecBuffer;
 import net.ihiroky.niotty.util.JavaVersion;
 import net.ihiroky.niotty.util.Platform;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
@@ -20,6 +25,7 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -31,6 +37,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectionKey;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -47,16 +55,19 @@ import static org.mockito.Mockito.*;
 @RunWith(Enclosed.class)
 public class NioClientSocketTransportTest {
 
+    interface CountingPacketQueue extends PacketQueue, ByteCountingWriteQueue {
+    }
+
     public static class OnSelectedTest {
 
         private NioEventDispatcherGroup selectDispatcherGroup_;
         private WriteQueueFactory<PacketQueue> writeQueueFactory_;
-        private PacketQueue writeQueue_;
+        private CountingPacketQueue writeQueue_;
 
         @Before
         @SuppressWarnings("unchecked")
         public void setUp() throws Exception {
-            writeQueue_ = mock(PacketQueue.class);
+            writeQueue_ = mock(CountingPacketQueue.class);
             writeQueueFactory_ = mock(WriteQueueFactory.class);
             when(writeQueueFactory_.newWriteQueue()).thenReturn(writeQueue_);
         }
@@ -91,6 +102,148 @@ public class NioClientSocketTransportTest {
             verify(sut.pipeline()).load(Mockito.any(CodecBuffer.class), Mockito.isNull());
         }
 
+        @Test
+        public void testRead_RepeatsWhileReadBufferIsFilledUpToMaxReadBytesPerSelect() throws Exception {
+            selectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder()
+                    .setReadBufferSize(1024).setMaxReadBufferSize(4096).setMaxReadBytesPerSelect(8192).build();
+            NioClientSocketTransport sut = spy(new NioClientSocketTransport(
+                    "TEST", PipelineComposer.empty(), selectDispatcherGroup_, writeQueueFactory_));
+            final List<Integer> readSizes = new ArrayList<Integer>();
+            SocketChannel channel = mock(SocketChannel.class);
+            when(channel.read(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    int read = bb.remaining();
+                    readSizes.add(read);
+                    bb.position(bb.limit());
+                    return read;
+                }
+            });
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            assertThat(readSizes, is(Arrays.asList(1024, 2048, 4096, 4096)));
+            verify(pipeline, times(4)).load(Mockito.any(CodecBuffer.class), Mockito.isNull());
+        }
+
+        @Test
+        public void testRead_ShrinksReadSizeAfterSmallReads() throws Exception {
+            selectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder().setReadBufferSize(1024).build();
+            NioClientSocketTransport sut = spy(new NioClientSocketTransport(
+                    "TEST", PipelineComposer.empty(), selectDispatcherGroup_, writeQueueFactory_));
+            final List<Integer> readSizes = new ArrayList<Integer>();
+            SocketChannel channel = mock(SocketChannel.class);
+            when(channel.read(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    readSizes.add(bb.remaining());
+                    bb.put(new byte[10]);
+                    return 10;
+                }
+            });
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            for (int i = 0; i < 5; i++) {
+                sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+            }
+
+            assertThat(readSizes, is(Arrays.asList(1024, 1024, 512, 512, 256)));
+            verify(pipeline, times(5)).load(Mockito.any(CodecBuffer.class), Mockito.isNull());
+        }
+
+        @Test
+        public void testRead_ReadsIntoBufferAllocatedFromReadChunkPool() throws Exception {
+            ByteBufferChunkPool pool = new ByteBufferChunkPool(8192);
+            selectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder()
+                    .setReadBufferSize(1024).setReadChunkPool(pool).build();
+            NioClientSocketTransport sut = spy(new NioClientSocketTransport(
+                    "TEST", PipelineComposer.empty(), selectDispatcherGroup_, writeQueueFactory_));
+            SocketChannel channel = mock(SocketChannel.class);
+            when(channel.read(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    bb.put(new byte[]{1, 2, 3});
+                    return 3;
+                }
+            }).thenReturn(-1);
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            ArgumentCaptor<CodecBuffer> captor = ArgumentCaptor.forClass(CodecBuffer.class);
+            verify(pipeline).load(captor.capture(), Mockito.isNull());
+            CodecBuffer loaded = captor.getValue();
+            assertThat(Buffers.isPooled(loaded), is(true));
+            assertThat(loaded.remaining(), is(3));
+            assertThat(loaded.readByte(), is((byte) 1));
+            assertThat(pool.referredChunkCount(), is(1));
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher()); // end of stream
+
+            verify(pipeline).load(Mockito.any(CodecBuffer.class), Mockito.isNull());
+            loaded.dispose();
+            assertThat(pool.referredChunkCount(), is(0));
+            pool.close();
+        }
+
+        @Test
+        public void testRead_DisposesBufferIfNoDataIsRead() throws Exception {
+            ByteBufferChunkPool pool = new ByteBufferChunkPool(8192);
+            selectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder()
+                    .setReadBufferSize(1024).setReadChunkPool(pool).build();
+            NioClientSocketTransport sut = spy(new NioClientSocketTransport(
+                    "TEST", PipelineComposer.empty(), selectDispatcherGroup_, writeQueueFactory_));
+            SocketChannel channel = mock(SocketChannel.class);
+            when(channel.read(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    int read = bb.remaining();
+                    bb.position(bb.limit());
+                    return read;
+                }
+            }).thenReturn(0);
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            ArgumentCaptor<CodecBuffer> captor = ArgumentCaptor.forClass(CodecBuffer.class);
+            verify(channel, times(2)).read(Mockito.any(ByteBuffer.class));
+            verify(pipeline).load(captor.capture(), Mockito.isNull());
+            assertThat(captor.getValue().remaining(), is(1024));
+            assertThat(pool.referredChunkCount(), is(1));
+            captor.getValue().dispose();
+            pool.close();
+        }
+
         @Test
         public void testWriteBuffer() throws Exception {
             selectDispatcherGroup_ = new NioEventDispatcherGroup(
@@ -121,6 +274,14 @@ public class NioClientSocketTransportTest {
 
             SocketChannel channel = mock(SocketChannel.class);
             when(channel.isConnected()).thenReturn(true);
+            when(channel.read(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    bb.put((byte) 1);
+                    return 1;
+                }
+            });
             Pipeline pipeline = mock(Pipeline.class);
             SelectionKey key = spy(new SelectionKeyMock());
             when(key.channel()).thenReturn(channel);
@@ -166,7 +327,7 @@ public class NioClientSocketTransportTest {
     public static class FlushTest {
         private NioClientSocketTransport sut_;
         private SocketChannel channel_;
-        private PacketQueue writeQueue_;
+        private CountingPacketQueue writeQueue_;
 
         @Before
         public void setUp() throws Exception {
@@ -179,7 +340,7 @@ public class NioClientSocketTransportTest {
             Socket socket = mock(Socket.class);
             channel_ = mock(SocketChannel.class);
             when(channel_.socket()).thenReturn(socket);
-            writeQueue_ = mock(PacketQueue.class);
+            writeQueue_ = mock(CountingPacketQueue.class);
             @SuppressWarnings("unchecked")
             WriteQueueFactory<PacketQueue> writeQueueFactory = mock(WriteQueueFactory.class);
             when(writeQueueFactory.newWriteQueue()).thenReturn(writeQueue_);
@@ -203,28 +364,46 @@ public class NioClientSocketTransportTest {
             ArgumentCaptor<Integer> opsCaptor = ArgumentCaptor.forClass(Integer.class);
             verify(sut_.key()).interestOps(opsCaptor.capture());
             assertThat(opsCaptor.getValue(), is(~SelectionKey.OP_WRITE));
-            verify(sut_, never()).eventDispatcher();
+            verify(sut_.eventDispatcher(), never()).schedule(
+                    Mockito.any(Event.class), anyLong(), Mockito.any(TimeUnit.class));
         }
 
         @Test
         public void testFlush_Flushing() throws Exception {
             when(writeQueue_.flush(Mockito.any(GatheringByteChannel.class)))
                     .thenReturn(FlushStatus.FLUSHING);
-            when(sut_.key().interestOps()).thenReturn(SelectionKey.OP_WRITE);
+            when(sut_.key().interestOps()).thenReturn(0);
 
             sut_.flush(null);
-            when(sut_.key().interestOps()).thenReturn(0); // sut_.key() is mock, so set result explicitly.
-
-            ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
-            verify(sut_.eventDispatcher()).schedule(eventCaptor.capture(), anyLong(), Mockito.any(TimeUnit.class));
-            Event event = eventCaptor.getValue();
-            event.execute();
 
             ArgumentCaptor<Integer> opsCaptor = ArgumentCaptor.forClass(Integer.class);
-            verify(sut_.key(), times(2)).interestOps(opsCaptor.capture());
-            List<Integer> opsList = opsCaptor.getAllValues();
-            assertThat(opsList.get(0), is(0));
-            assertThat(opsList.get(1), is(SelectionKey.OP_WRITE));
+            verify(sut_.key()).interestOps(opsCaptor.capture());
+            assertThat(opsCaptor.getValue(), is(SelectionKey.OP_WRITE));
+            verify(sut_.eventDispatcher(), never()).schedule(
+                    Mockito.any(Event.class), anyLong(), Mockito.any(TimeUnit.class));
+        }
+
+        @Test
+        public void testFlush_SpinsWhileWriteProgresses() throws Exception {
+            when(writeQueue_.flush(Mockito.any(GatheringByteChannel.class)))
+                    .thenReturn(FlushStatus.FLUSHING);
+            when(writeQueue_.pendingBytes()).thenReturn(100L, 50L, 50L, 50L);
+
+            sut_.flush(null);
+
+            verify(writeQueue_, times(2)).flush(Mockito.any(GatheringByteChannel.class));
+        }
+
+        @Test
+        public void testFlush_SpinsUpToWriteSpinCount() throws Exception {
+            when(writeQueue_.flush(Mockito.any(GatheringByteChannel.class)))
+                    .thenReturn(FlushStatus.FLUSHING);
+            when(writeQueue_.pendingBytes()).thenReturn(100L, 90L, 90L, 80L, 80L, 70L, 70L);
+            sut_.setOption(TransportOptions.WRITE_SPIN_COUNT, 3);
+
+            sut_.flush(null);
+
+            verify(writeQueue_, times(3)).flush(Mockito.any(GatheringByteChannel.class));
         }
 
         @Test
@@ -250,7 +429,205 @@ public class NioClientSocketTransportTest {
             ArgumentCaptor<Integer> opsCaptor = ArgumentCaptor.forClass(Integer.class);
             verify(sut_.key()).interestOps(opsCaptor.capture());
             assertThat(opsCaptor.getValue(), is(SelectionKey.OP_WRITE));
-            verify(sut_, never()).eventDispatcher();
+            verify(sut_.eventDispatcher(), never()).schedule(
+                    Mockito.any(Event.class), anyLong(), Mockito.any(TimeUnit.class));
+        }
+    }
+
+    public static class WritabilityTest {
+        private NioClientSocketTransport sut_;
+        private CountingPacketQueue writeQueue_;
+        private Pipeline pipeline_;
+
+        @Before
+        public void setUp() throws Exception {
+            Stage stage = mock(Stage.class);
+            NioEventDispatcher selector = mock(NioEventDispatcher.class);
+            when(selector.ioStage()).thenReturn(stage);
+            @SuppressWarnings("unchecked")
+            NioEventDispatcherGroup ioPool = mock(NioEventDispatcherGroup.class);
+            when(ioPool.assign(Mockito.<EventDispatcherSelection>any())).thenReturn(selector);
+            SocketChannel channel = mock(SocketChannel.class);
+            when(channel.socket()).thenReturn(mock(Socket.class));
+            writeQueue_ = mock(CountingPacketQueue.class);
+            when(writeQueue_.flush(Mockito.any(GatheringByteChannel.class))).thenReturn(FlushStatus.FLUSHED);
+            @SuppressWarnings("unchecked")
+            WriteQueueFactory<PacketQueue> writeQueueFactory = mock(WriteQueueFactory.class);
+            when(writeQueueFactory.newWriteQueue()).thenReturn(writeQueue_);
+            pipeline_ = mock(Pipeline.class);
+
+            sut_ = spy(new NioClientSocketTransport(
+                    "TEST", PipelineComposer.empty(), ioPool, writeQueueFactory, channel));
+            when(sut_.pipeline()).thenReturn(pipeline_);
+            sut_.setSelectionKey(mock(SelectionKey.class));
+        }
+
+        @Test
+        public void testWritabilityChangesWithWatermarks() throws Exception {
+            sut_.setOption(TransportOptions.WRITE_BUFFER_HIGH_WATERMARK, 64);
+            sut_.setOption(TransportOptions.WRITE_BUFFER_LOW_WATERMARK, 32);
+
+            when(writeQueue_.pendingBytes()).thenReturn(64L);
+            sut_.readyToWrite(Buffers.wrap(new byte[64]), null);
+            assertThat(sut_.isWritable(), is(true));
+
+            when(writeQueue_.pendingBytes()).thenReturn(65L);
+            sut_.readyToWrite(Buffers.wrap(new byte[1]), null);
+            assertThat(sut_.isWritable(), is(false));
+            verify(pipeline_).eventTriggered(WritabilityEvent.UNWRITABLE);
+
+            when(writeQueue_.pendingBytes()).thenReturn(33L);
+            sut_.flush(null);
+            assertThat(sut_.isWritable(), is(false));
+
+            when(writeQueue_.pendingBytes()).thenReturn(32L);
+            sut_.flush(null);
+            assertThat(sut_.isWritable(), is(true));
+            verify(pipeline_).eventTriggered(WritabilityEvent.WRITABLE);
+            verify(pipeline_, times(1)).eventTriggered(WritabilityEvent.UNWRITABLE);
+        }
+
+        @Test
+        public void testAlwaysWritableIfHighWatermarkIsZero() throws Exception {
+            when(writeQueue_.pendingBytes()).thenReturn(Long.MAX_VALUE);
+            sut_.readyToWrite(Buffers.wrap(new byte[1]), null);
+
+            assertThat(sut_.isWritable(), is(true));
+            verify(pipeline_, never()).eventTriggered(Mockito.any());
+        }
+
+        private NioClientSocketTransport newTransport(PacketQueue writeQueue) throws Exception {
+            @SuppressWarnings("unchecked")
+            WriteQueueFactory<PacketQueue> writeQueueFactory = mock(WriteQueueFactory.class);
+            when(writeQueueFactory.newWriteQueue()).thenReturn(writeQueue);
+            @SuppressWarnings("unchecked")
+            NioEventDispatcherGroup ioPool = mock(NioEventDispatcherGroup.class);
+            NioEventDispatcher selector = mock(NioEventDispatcher.class);
+            when(selector.ioStage()).thenReturn(mock(Stage.class));
+            when(ioPool.assign(Mockito.<EventDispatcherSelection>any())).thenReturn(selector);
+            SocketChannel channel = mock(SocketChannel.class);
+            when(channel.socket()).thenReturn(mock(Socket.class));
+            NioClientSocketTransport sut = spy(new NioClientSocketTransport(
+                    "TEST", PipelineComposer.empty(), ioPool, writeQueueFactory, channel));
+            when(sut.pipeline()).thenReturn(pipeline_);
+            sut.setSelectionKey(mock(SelectionKey.class));
+            return sut;
+        }
+
+        @Test
+        public void testAlwaysWritableIfWriteQueueDoesNotCountBytes() throws Exception {
+            PacketQueue writeQueue = mock(PacketQueue.class);
+            NioClientSocketTransport sut = newTransport(writeQueue);
+            sut.setOption(TransportOptions.WRITE_BUFFER_HIGH_WATERMARK, 1);
+            CodecBuffer buffer = Buffers.wrap(new byte[64]);
+
+            sut.readyToWrite(buffer, 0);
+
+            verify(writeQueue).offer(buffer);
+            assertThat(sut.pendingWriteBytes(), is(0L));
+            assertThat(sut.isWritable(), is(true));
+            verify(pipeline_, never()).eventTriggered(Mockito.any());
+        }
+
+        @Test
+        public void testReadyToWrite_PassesParameterToParameterizedPacketQueue() throws Exception {
+            ParameterizedPacketQueue writeQueue = mock(ParameterizedPacketQueue.class);
+            NioClientSocketTransport sut = newTransport(writeQueue);
+            CodecBuffer buffer = Buffers.wrap(new byte[1]);
+
+            sut.readyToWrite(buffer, 0);
+
+            verify(writeQueue).offer(buffer, 0);
+            verify(writeQueue, never()).offer(buffer);
+        }
+
+        @Test
+        public void testOption() throws Exception {
+            sut_.setOption(TransportOptions.WRITE_BUFFER_HIGH_WATERMARK, 64);
+            sut_.setOption(TransportOptions.WRITE_BUFFER_LOW_WATERMARK, 32);
+
+            assertThat(sut_.option(TransportOptions.WRITE_BUFFER_HIGH_WATERMARK), is(64));
+            assertThat(sut_.option(TransportOptions.WRITE_BUFFER_LOW_WATERMARK), is(32));
+        }
+    }
+
+    public static class SlowReaderTest {
+
+        private NioServerSocketTransport server_;
+        private NioEventDispatcherGroup acceptGroup_;
+        private NioEventDispatcherGroup ioGroup_;
+
+        @Before
+        public void setUp() {
+            acceptGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            ioGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            server_ = new NioServerSocketTransport("TEST", PipelineComposer.empty(),
+                    acceptGroup_, ioGroup_, new SimplePacketQueueFactory());
+            server_.setAcceptedTransportOption(TransportOptions.SO_SNDBUF, 8192);
+        }
+
+        @After
+        public void tearDown() throws Exception {
+            server_.close();
+            acceptGroup_.close();
+            ioGroup_.close();
+        }
+
+        /*
+         * The send buffer fills up repeatedly because the reader is slower than the writer.
+         * The rest of the write queue is written as soon as the send buffer drains; this test
+         * times out if the writer stops writing for a while on each partial write.
+         */
+        @Test(timeout = 3000)
+        public void testWriteToSlowReader() throws Exception {
+            server_.bind(new InetSocketAddress("127.0.0.1", 0)).await().throwExceptionIfFailed();
+            Socket client = new Socket();
+            try {
+                client.setReceiveBufferSize(8192);
+                client.connect(server_.localAddress());
+                NioClientSocketTransport accepted = acceptedTransport();
+
+                int total = 2 * 1024 * 1024;
+                byte[] data = new byte[8192];
+                for (int i = 0; i < total / data.length; i++) {
+                    accepted.write(Buffers.wrap(data));
+                }
+
+                InputStream input = client.getInputStream();
+                byte[] readBuffer = new byte[4096];
+                int received = 0;
+                for (int i = 0; received < total; i++) {
+                    int read = input.read(readBuffer);
+                    if (read == -1) {
+                        break;
+                    }
+                    received += read;
+                    if (i % 4 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+
+                assertThat(received, is(total));
+            } finally {
+                client.close();
+            }
+        }
+
+        private NioClientSocketTransport acceptedTransport() throws InterruptedException {
+            for (;;) {
+                for (EventDispatcher eventDispatcher : ioGroup_.eventDispatchers()) {
+                    for (EventDispatcherSelection selection : eventDispatcher.selections()) {
+                        // registered to the selector after the construction
+                        if (selection instanceof NioClientSocketTransport
+                                && ((NioClientSocketTransport) selection).key() != null) {
+                            return (NioClientSocketTransport) selection;
+                        }
+                    }
+                }
+                Thread.sleep(10);
+            }
         }
     }
 
@@ -1,7 +1,10 @@
 package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.*;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.buffer.CodecBuffer;
+import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.util.JavaVersion;
 import net.ihiroky.niotty.util.Platform;
 import org.junit.After;
@@ -29,6 +32,8 @@ import static net.ihiroky.niotty.util.JavaVersionMatchers.equal;
 import static net.ihiroky.niotty.util.JavaVersionMatchers.greaterOrEqual;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assume.assumeThat;
 import static org.mockito.Matchers.anyLong;
@@ -40,30 +45,102 @@ import static org.mockito.Mockito.*;
 @RunWith(Enclosed.class)
 public class NioDatagramSocketTransportTest {
 
+    interface CountingDatagramQueue extends ParameterizedDatagramQueue, ByteCountingWriteQueue {
+    }
+
     public static class FlushTest {
 
         private NioDatagramSocketTransport sut_;
-        private DatagramQueue writeQueue_;
+        private CountingDatagramQueue writeQueue_;
 
         @Before
         public void setUp() throws Exception {
+            writeQueue_ = mock(CountingDatagramQueue.class);
+            sut_ = newTransport(writeQueue_);
+        }
+
+        private static NioDatagramSocketTransport newTransport(DatagramQueue writeQueue) {
             Stage ioStage = mock(Stage.class);
             NioEventDispatcher selector = mock(NioEventDispatcher.class);
             when(selector.ioStage()).thenReturn(ioStage);
             @SuppressWarnings("unchecked")
             NioEventDispatcherGroup ioPool = mock(NioEventDispatcherGroup.class);
             when(ioPool.assign(Mockito.<EventDispatcherSelection>any())).thenReturn(selector);
-            writeQueue_ = mock(DatagramQueue.class);
             @SuppressWarnings("unchecked")
             WriteQueueFactory<DatagramQueue> writeQueueFactory = mock(WriteQueueFactory.class);
-            when(writeQueueFactory.newWriteQueue()).thenReturn(writeQueue_);
+            when(writeQueueFactory.newWriteQueue()).thenReturn(writeQueue);
             SelectionKey selectionKey = mock(SelectionKey.class);
             NioEventDispatcher eventLoop = mock(NioEventDispatcher.class);
 
-            sut_ = spy(new NioDatagramSocketTransport(
+            NioDatagramSocketTransport transport = spy(new NioDatagramSocketTransport(
                     "TEST", PipelineComposer.empty(), ioPool, writeQueueFactory, (InternetProtocolFamily) null));
-            when(sut_.eventDispatcher()).thenReturn(eventLoop);
-            sut_.setSelectionKey(selectionKey);
+            when(transport.eventDispatcher()).thenReturn(eventLoop);
+            transport.setSelectionKey(selectionKey);
+            return transport;
+        }
+
+        @Test
+        public void testReadyToWrite_OffersMessageWithTarget() throws Exception {
+            CodecBuffer message = mock(CodecBuffer.class);
+            SocketAddress target = new InetSocketAddress(12345);
+            when(writeQueue_.offer(message, target)).thenReturn(true);
+
+            sut_.readyToWrite(message, target);
+
+            verify(writeQueue_).offer(message, target);
+            verify(message, never()).dispose();
+        }
+
+        @Test
+        public void testReadyToWrite_DisposesMessageIfQueueIsFull() throws Exception {
+            CodecBuffer message = mock(CodecBuffer.class);
+            SocketAddress target = new InetSocketAddress(12345);
+            when(writeQueue_.offer(message, target)).thenReturn(false);
+
+            sut_.readyToWrite(message, target);
+            sut_.readyToWrite(message, target);
+
+            verify(message, times(2)).dispose();
+            assertThat(sut_.droppedMessages(), is(2L));
+        }
+
+        @Test
+        public void testReadyToWrite_OffersAttachedMessageToQueueWithoutParameter() throws Exception {
+            DatagramQueue writeQueue = mock(DatagramQueue.class);
+            when(writeQueue.offer(Mockito.<AttachedMessage<Packet>>any())).thenReturn(true);
+            sut_ = newTransport(writeQueue);
+            CodecBuffer message = mock(CodecBuffer.class);
+            SocketAddress target = new InetSocketAddress(12345);
+
+            sut_.readyToWrite(message, target);
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<AttachedMessage<Packet>> captor = ArgumentCaptor.forClass((Class) AttachedMessage.class);
+            verify(writeQueue).offer(captor.capture());
+            assertThat(captor.getValue().message(), is((Packet) message));
+            assertThat(captor.getValue().parameter(), is((Object) target));
+            verify(message, never()).dispose();
+        }
+
+        @Test
+        public void testNewWriteBuffer_AllocatesFromWriteChunkPool() throws Exception {
+            ByteBufferChunkPool pool = new ByteBufferChunkPool(1024);
+            when(((NioEventDispatcher) sut_.eventDispatcher()).writeChunkPool()).thenReturn(pool);
+
+            CodecBuffer buffer = sut_.newWriteBuffer(16);
+
+            assertThat(Buffers.isPooled(buffer), is(true));
+            assertThat(buffer.byteBuffer().isDirect(), is(true));
+            buffer.dispose();
+            pool.close();
+        }
+
+        @Test
+        public void testNewWriteBuffer_AllocatesInHeapWithoutWriteChunkPool() throws Exception {
+            CodecBuffer buffer = sut_.newWriteBuffer(16);
+
+            assertThat(Buffers.isPooled(buffer), is(false));
+            assertThat(buffer.capacity() >= 16, is(true));
         }
 
         @Test
@@ -77,28 +154,46 @@ public class NioDatagramSocketTransportTest {
             ArgumentCaptor<Integer> opsCaptor = ArgumentCaptor.forClass(Integer.class);
             verify(sut_.key()).interestOps(opsCaptor.capture());
             assertThat(opsCaptor.getValue(), is(~SelectionKey.OP_WRITE));
-            verify(sut_, never()).eventDispatcher();
+            verify(sut_.eventDispatcher(), never()).schedule(
+                    Mockito.any(Event.class), anyLong(), Mockito.any(TimeUnit.class));
         }
 
         @Test
         public void testFlush_Flushing() throws Exception {
             when(writeQueue_.flush(Mockito.any(DatagramChannel.class), Mockito.any(ByteBuffer.class)))
                     .thenReturn(FlushStatus.FLUSHING);
-            when(sut_.key().interestOps()).thenReturn(SelectionKey.OP_WRITE);
+            when(sut_.key().interestOps()).thenReturn(0);
 
             sut_.flush(null);
-            when(sut_.key().interestOps()).thenReturn(0); // sut_.key() is mock, so set result explicitly.
-
-            ArgumentCaptor<Event> eventCaptor = ArgumentCaptor.forClass(Event.class);
-            verify(sut_.eventDispatcher()).schedule(eventCaptor.capture(), anyLong(), Mockito.any(TimeUnit.class));
-            Event event = eventCaptor.getValue();
-            event.execute();
 
             ArgumentCaptor<Integer> opsCaptor = ArgumentCaptor.forClass(Integer.class);
-            verify(sut_.key(), times(2)).interestOps(opsCaptor.capture());
-            List<Integer> opsList = opsCaptor.getAllValues();
-            assertThat(opsList.get(0), is(0));
-            assertThat(opsList.get(1), is(SelectionKey.OP_WRITE));
+            verify(sut_.key()).interestOps(opsCaptor.capture());
+            assertThat(opsCaptor.getValue(), is(SelectionKey.OP_WRITE));
+            verify(sut_.eventDispatcher(), never()).schedule(
+                    Mockito.any(Event.class), anyLong(), Mockito.any(TimeUnit.class));
+        }
+
+        @Test
+        public void testFlush_SpinsWhileWriteProgresses() throws Exception {
+            when(writeQueue_.flush(Mockito.any(DatagramChannel.class), Mockito.any(ByteBuffer.class)))
+                    .thenReturn(FlushStatus.FLUSHING);
+            when(writeQueue_.pendingBytes()).thenReturn(100L, 50L, 50L, 50L);
+
+            sut_.flush(null);
+
+            verify(writeQueue_, times(2)).flush(Mockito.any(DatagramChannel.class), Mockito.any(ByteBuffer.class));
+        }
+
+        @Test
+        public void testFlush_SpinsUpToWriteSpinCount() throws Exception {
+            when(writeQueue_.flush(Mockito.any(DatagramChannel.class), Mockito.any(ByteBuffer.class)))
+                    .thenReturn(FlushStatus.FLUSHING);
+            when(writeQueue_.pendingBytes()).thenReturn(100L, 90L, 90L, 80L, 80L, 70L, 70L);
+            sut_.setOption(TransportOptions.WRITE_SPIN_COUNT, 3);
+
+            sut_.flush(null);
+
+            verify(writeQueue_, times(3)).flush(Mockito.any(DatagramChannel.class), Mockito.any(ByteBuffer.class));
         }
 
         @Test
@@ -124,7 +219,8 @@ public class NioDatagramSocketTransportTest {
             ArgumentCaptor<Integer> opsCaptor = ArgumentCaptor.forClass(Integer.class);
             verify(sut_.key()).interestOps(opsCaptor.capture());
             assertThat(opsCaptor.getValue(), is(SelectionKey.OP_WRITE));
-            verify(sut_, never()).eventDispatcher();
+            verify(sut_.eventDispatcher(), never()).schedule(
+                    Mockito.any(Event.class), anyLong(), Mockito.any(TimeUnit.class));
         }
     }
 
@@ -132,11 +228,11 @@ public class NioDatagramSocketTransportTest {
 
         private NioEventDispatcherGroup selectDispatcherGroup_;
         private WriteQueueFactory<DatagramQueue> writeQueueFactory_;
-        private DatagramQueue writeQueue_;
+        private CountingDatagramQueue writeQueue_;
 
         @Before
         public void setUp() throws Exception {
-            writeQueue_ = mock(DatagramQueue.class);
+            writeQueue_ = mock(CountingDatagramQueue.class);
             writeQueueFactory_ = mock(SimpleDatagramQueueFactory.class);
             when(writeQueueFactory_.newWriteQueue()).thenReturn(writeQueue_);
         }
@@ -242,11 +338,384 @@ public class NioDatagramSocketTransportTest {
             verify(pipeline).load(Mockito.any(CodecBuffer.class), eq(source));
         }
 
+        @Test
+        public void testReadBufferWhenNotConnected_LimitedByMaxReadBytesPerSelect() throws Exception {
+            selectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder()
+                    .setWorkers(1).setMaxReadBytesPerSelect(25).build();
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            final InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<SocketAddress>() {
+                @Override
+                public SocketAddress answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    bb.position(10);
+                    return source;
+                }
+            });
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            verify(channel, times(3)).receive(Mockito.any(ByteBuffer.class));
+            verify(pipeline, times(3)).load(Mockito.any(CodecBuffer.class), eq(source));
+        }
+
+        @Test
+        public void testReadBufferWhenNotConnected_LimitedByMaxDatagramsPerSelect() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenReturn(source); // empty datagrams
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            verify(channel, times(NioDatagramSocketTransport.MAX_DATAGRAMS_PER_SELECT))
+                    .receive(Mockito.any(ByteBuffer.class));
+            verify(pipeline, times(NioDatagramSocketTransport.MAX_DATAGRAMS_PER_SELECT))
+                    .load(Mockito.any(CodecBuffer.class), eq(source));
+        }
+
+        @Test
+        public void testReceiveBatch() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 8);
+            final InetSocketAddress[] sources = {
+                    new InetSocketAddress(12345), new InetSocketAddress(12346), new InetSocketAddress(12347)};
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<SocketAddress>() {
+                int counter_ = 0;
+                @Override
+                public SocketAddress answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    if (counter_ == sources.length) {
+                        return null;
+                    }
+                    for (int i = 0; i <= counter_; i++) {
+                        bb.put((byte) counter_);
+                    }
+                    return sources[counter_++];
+                }
+            });
+            DefaultPipeline pipeline = mock(DefaultPipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+            verify(pipeline).loadMessage(captor.capture(), Mockito.isNull());
+            DatagramBatch batch = (DatagramBatch) captor.getValue();
+            assertThat(batch.size(), is(3));
+            for (int i = 0; i < sources.length; i++) {
+                CodecBuffer datagram = batch.datagram(i);
+                assertThat(datagram.remaining(), is(i + 1));
+                assertThat(datagram.readByte(), is((byte) i));
+                assertThat(datagram.capacity(), is(i + 1));
+                assertThat(batch.source(i), is((SocketAddress) sources[i]));
+            }
+            batch.dispose();
+        }
+
+        @Test
+        public void testReceiveBatch_DemultiplexesPeers() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 8);
+            PipelineComposer peerComposer = mock(PipelineComposer.class);
+            sut.demultiplexPeers(peerComposer, selectDispatcherGroup_, 0L, TimeUnit.SECONDS);
+            final InetSocketAddress[] sources = {
+                    new InetSocketAddress(12345), new InetSocketAddress(12346), new InetSocketAddress(12345)};
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<SocketAddress>() {
+                int counter_ = 0;
+                @Override
+                public SocketAddress answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    if (counter_ == sources.length) {
+                        return null;
+                    }
+                    bb.put((byte) counter_);
+                    return sources[counter_++];
+                }
+            });
+            Pipeline pipeline = mock(Pipeline.class);
+            when(pipeline.name()).thenReturn("TEST");
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            verify(pipeline, never()).load(Mockito.any(CodecBuffer.class), Mockito.any());
+            verify(peerComposer, times(2)).compose(Mockito.any(Pipeline.class));
+            assertThat(sut.peers().size(), is(2));
+            assertThat(sut.peer(sources[0]).remoteAddress(), is((SocketAddress) sources[0]));
+            assertThat(sut.peer(sources[1]).remoteAddress(), is((SocketAddress) sources[1]));
+
+            NioDatagramPeerTransport peer = sut.peer(sources[0]);
+            sut.onCloseSelectableChannel();
+
+            assertThat(sut.peers().isEmpty(), is(true));
+            assertThat(peer.closeFuture().isSuccessful(), is(true));
+        }
+
+        @Test
+        public void testReceiveBatch_UpToBatchSize() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 2);
+            final InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<SocketAddress>() {
+                @Override
+                public SocketAddress answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    bb.put((byte) 1);
+                    return source;
+                }
+            });
+            DefaultPipeline pipeline = mock(DefaultPipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+            verify(channel, times(2)).receive(Mockito.any(ByteBuffer.class));
+            verify(pipeline).loadMessage(captor.capture(), Mockito.isNull());
+            assertThat(((DatagramBatch) captor.getValue()).size(), is(2));
+        }
+
+        @Test
+        public void testReceiveBatch_NotLoadedIfNoDatagramIsReceived() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 2);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenReturn(null);
+            DefaultPipeline pipeline = mock(DefaultPipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            verify(pipeline, never()).loadMessage(Mockito.any(), Mockito.any());
+        }
+
+        @Test
+        public void testReceiveBatch_LoadsEachDatagramIfPipelineIsNotDefault() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 8);
+            final InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<SocketAddress>() {
+                int counter_ = 0;
+                @Override
+                public SocketAddress answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    if (++counter_ == 3) {
+                        return null;
+                    }
+                    bb.put((byte) counter_);
+                    return source;
+                }
+            });
+            Pipeline pipeline = mock(Pipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            verify(pipeline, times(2)).load(Mockito.any(CodecBuffer.class), eq(source));
+        }
+
+        @Test
+        public void testReceiveBatch_LimitedByMaxDatagramsPerSelect() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, Integer.MAX_VALUE);
+            InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenReturn(source); // empty datagrams
+            DefaultPipeline pipeline = mock(DefaultPipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+            verify(channel, times(NioDatagramSocketTransport.MAX_DATAGRAMS_PER_SELECT))
+                    .receive(Mockito.any(ByteBuffer.class));
+            verify(pipeline).loadMessage(captor.capture(), Mockito.isNull());
+            assertThat(((DatagramBatch) captor.getValue()).size(),
+                    is(NioDatagramSocketTransport.MAX_DATAGRAMS_PER_SELECT));
+        }
+
+        @Test
+        public void testReceiveBatch_SlicesBufferAllocatedFromReadChunkPool() throws Exception {
+            ByteBufferChunkPool pool = new ByteBufferChunkPool(8192);
+            selectDispatcherGroup_ = NioEventDispatcherGroup.newBuilder()
+                    .setReadBufferSize(1024).setReadChunkPool(pool).build();
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 4);
+            final InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenAnswer(new Answer<SocketAddress>() {
+                int counter_ = 0;
+                @Override
+                public SocketAddress answer(InvocationOnMock invocation) throws Throwable {
+                    ByteBuffer bb = (ByteBuffer) invocation.getArguments()[0];
+                    if (counter_ == 3) {
+                        return null;
+                    }
+                    assertThat(bb.remaining(), is(1024));
+                    bb.put(new byte[]{(byte) counter_, (byte) counter_++});
+                    return source;
+                }
+            });
+            DefaultPipeline pipeline = mock(DefaultPipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+
+            sut.onSelected(key, (NioEventDispatcher) sut.eventDispatcher());
+
+            ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+            verify(pipeline).loadMessage(captor.capture(), Mockito.isNull());
+            DatagramBatch batch = (DatagramBatch) captor.getValue();
+            assertThat(batch.size(), is(3));
+            for (int i = 0; i < batch.size(); i++) {
+                CodecBuffer datagram = batch.datagram(i);
+                assertThat(Buffers.isPooled(datagram), is(true));
+                assertThat(datagram.remaining(), is(2));
+                assertThat(datagram.readByte(), is((byte) i));
+            }
+            assertThat(pool.referredChunkCount(), is(1));
+
+            batch.dispose();
+
+            assertThat(pool.referredChunkCount(), is(0));
+        }
+
+        @Test
+        public void testReceiveBatch_ReusesBatchOnlyIfReleased() throws Exception {
+            selectDispatcherGroup_ = new NioEventDispatcherGroup(
+                    1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            NioDatagramSocketTransport sut = spy(new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
+                    selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null));
+            sut.setOption(TransportOptions.DATAGRAM_RECEIVE_BATCH, 1);
+            InetSocketAddress source = new InetSocketAddress(12345);
+
+            DatagramChannel channel = mock(DatagramChannel.class);
+            when(channel.isConnected()).thenReturn(false);
+            when(channel.receive(Mockito.any(ByteBuffer.class))).thenReturn(source); // empty datagrams
+            DefaultPipeline pipeline = mock(DefaultPipeline.class);
+            SelectionKey key = spy(new SelectionKeyMock());
+            when(key.channel()).thenReturn(channel);
+            when(key.readyOps()).thenReturn(SelectionKey.OP_READ);
+            when(sut.pipeline()).thenReturn(pipeline);
+            key.attach(sut);
+            sut.setSelectionKey(key);
+            NioEventDispatcher dispatcher = (NioEventDispatcher) sut.eventDispatcher();
+
+            ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+            sut.onSelected(key, dispatcher);
+            sut.onSelected(key, dispatcher);
+            verify(pipeline, times(2)).loadMessage(captor.capture(), Mockito.isNull());
+            List<Object> batches = captor.getAllValues();
+            assertThat(batches.get(1), is(not(sameInstance(batches.get(0)))));
+
+            ((DatagramBatch) batches.get(1)).release();
+            sut.onSelected(key, dispatcher);
+            verify(pipeline, times(3)).loadMessage(captor.capture(), Mockito.isNull());
+            DatagramBatch reused = (DatagramBatch) captor.getValue();
+            assertThat(reused, is(sameInstance(batches.get(1))));
+            assertThat(reused.size(), is(1));
+        }
+
         @Test
         public void testWriteBuffer() throws Exception {
             selectDispatcherGroup_ = new NioEventDispatcherGroup(
                     1, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
-            when(writeQueue_.flush(Mockito.isA(DatagramChannel.class), Mockito.isA(ByteBuffer.class))).thenReturn(FlushStatus.FLUSHED);
+            when(writeQueue_.flush(Mockito.isA(DatagramChannel.class), Mockito.isA(ByteBuffer.class)))
+                    .thenReturn(FlushStatus.FLUSHED);
             NioDatagramSocketTransport sut = new NioDatagramSocketTransport("TEST", PipelineComposer.empty(),
                     selectDispatcherGroup_, writeQueueFactory_, (InternetProtocolFamily) null);
 
@@ -1,15 +1,23 @@
 package net.ihiroky.niotty.nio;
 
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
 import net.ihiroky.niotty.Stage;
 import net.ihiroky.niotty.StageContext;
 import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.ByteBufferChunkPool;
 import net.ihiroky.niotty.buffer.CodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.*;
@@ -38,6 +46,127 @@ public class NioEventDispatcherTest {
         verify(transport).flush(Mockito.any(ByteBuffer.class));
     }
 
+    @Test
+    public void testStore_DefersFlushToLoopEndIfFlushConsolidationIsEnabled() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher selectDispatcher = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setFlushConsolidationThreshold(1024));
+        when(transport.eventDispatcher()).thenReturn(selectDispatcher);
+        Stage sut = selectDispatcher.ioStage();
+        StageContext context = mock(StageContext.class);
+        when(context.transport()).thenReturn(transport);
+
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+
+        verify(transport, times(3)).readyToWrite(Mockito.any(Packet.class), Mockito.<Object>any());
+        verify(transport, never()).flush(Mockito.any(ByteBuffer.class));
+        assertThat(selectDispatcher.flushPendingTransportCount(), is(1));
+        assertThat(transport.pendingFlushBytes_, is(30));
+
+        selectDispatcher.onLoopEnd();
+
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+        assertThat(selectDispatcher.flushPendingTransportCount(), is(0));
+        assertThat(transport.flushPending_, is(false));
+        assertThat(transport.pendingFlushBytes_, is(0));
+    }
+
+    @Test
+    public void testStore_FlushesIfPendingBytesReachFlushConsolidationThreshold() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher selectDispatcher = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setFlushConsolidationThreshold(20));
+        when(transport.eventDispatcher()).thenReturn(selectDispatcher);
+        Stage sut = selectDispatcher.ioStage();
+        StageContext context = mock(StageContext.class);
+        when(context.transport()).thenReturn(transport);
+
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+        verify(transport, never()).flush(Mockito.any(ByteBuffer.class));
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+
+        selectDispatcher.onLoopEnd();
+
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+        assertThat(selectDispatcher.flushPendingTransportCount(), is(0));
+    }
+
+    @Test
+    public void testFlushNow_FlushesDeferredTransportImmediately() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher dispatcher = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setFlushConsolidationThreshold(1024));
+        NioEventDispatcher selectDispatcher = spy(dispatcher);
+        doReturn(true).when(selectDispatcher).isInDispatcherThread();
+        when(transport.eventDispatcher()).thenReturn(selectDispatcher);
+        doCallRealMethod().when(transport).flushNow();
+        Stage sut = selectDispatcher.ioStage();
+        StageContext context = mock(StageContext.class);
+        when(context.transport()).thenReturn(transport);
+
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+        transport.flushNow();
+
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+        assertThat(transport.flushPending_, is(false));
+
+        selectDispatcher.onLoopEnd();
+
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+        assertThat(selectDispatcher.flushPendingTransportCount(), is(0));
+    }
+
+    @Test
+    public void testOnLoopEnd_FlushesTransportWrittenAgainInFlush() throws Exception {
+        final NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher selectDispatcher = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setFlushConsolidationThreshold(1024));
+        when(transport.eventDispatcher()).thenReturn(selectDispatcher);
+        final Stage sut = selectDispatcher.ioStage();
+        final StageContext context = mock(StageContext.class);
+        when(context.transport()).thenReturn(transport);
+        doAnswer(new Answer<Void>() {
+            boolean written_;
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                // A stage writes a response on the writability event fired by the flush.
+                if (!written_) {
+                    written_ = true;
+                    sut.stored(context, Buffers.wrap(new byte[10]), null);
+                }
+                return null;
+            }
+        }).when(transport).flush(Mockito.any(ByteBuffer.class));
+
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+        selectDispatcher.onLoopEnd();
+
+        verify(transport, times(2)).flush(Mockito.any(ByteBuffer.class));
+        assertThat(transport.flushPending_, is(false));
+        assertThat(selectDispatcher.flushPendingTransportCount(), is(0));
+
+        sut.stored(context, Buffers.wrap(new byte[10]), null);
+
+        assertThat(selectDispatcher.flushPendingTransportCount(), is(1));
+    }
+
+    @Test
+    public void testFlushNow_OffersToDispatcherOtherThanNioEventDispatcher() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        EventDispatcher dispatcher = mock(EventDispatcher.class);
+        when(dispatcher.isInDispatcherThread()).thenReturn(true);
+        when(transport.eventDispatcher()).thenReturn(dispatcher);
+        doCallRealMethod().when(transport).flushNow();
+
+        transport.flushNow();
+
+        verify(dispatcher).offer(Mockito.any(Event.class));
+        verify(transport, never()).flush(Mockito.any(ByteBuffer.class));
+    }
+
     @Test
     public void testLoadDoNotCopyBuffer() throws Exception {
         NioSocketTransport transport = mock(NioSocketTransport.class);
@@ -76,4 +205,114 @@ public class NioEventDispatcherTest {
         assertThat(actual, is(message));
     }
 
+    @Test
+    public void testLoadDoNotCopyPooledBufferEvenIfDispatcherChanges() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher selectDispatcher = new NioEventDispatcher(0, 256, 256, false);
+        Stage sut = selectDispatcher.ioStage();
+        StageContext context = mock(StageContext.class);
+        when(context.transport()).thenReturn(transport);
+        when(context.changesDispatcherOnProceed()).thenReturn(true);
+        ByteBufferChunkPool pool = new ByteBufferChunkPool(256);
+        CodecBuffer message = Buffers.newCodecBuffer(pool, 2);
+        message.writeBytes(new byte[]{'0', '0'}, 0, 2);
+        Object parameter = new Object();
+
+        sut.loaded(context, message, parameter);
+
+        ArgumentCaptor<CodecBuffer> captor = ArgumentCaptor.forClass(CodecBuffer.class);
+        verify(context).proceed(captor.capture(), eq(parameter));
+        assertThat(captor.getValue(), is(sameInstance(message)));
+        message.dispose();
+        pool.close();
+    }
+
+    @Test
+    public void testPoll_OptimizedSelectedKeys() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher sut = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setOptimizeSelectedKeys(true));
+        Pipe pipe = Pipe.open();
+        sut.onOpen();
+        try {
+            pipe.source().configureBlocking(false);
+            SelectionKey key = sut.register(pipe.source(), SelectionKey.OP_READ, transport);
+            pipe.sink().close();
+
+            sut.poll(1000L * 1000L * 1000L);
+            sut.poll(1000L * 1000L * 1000L);
+
+            verify(transport, times(2)).onSelected(key, sut);
+        } finally {
+            pipe.source().close();
+            sut.onClose();
+        }
+    }
+
+    @Test
+    public void testRebuildSelector() throws Exception {
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        NioEventDispatcher sut = new NioEventDispatcher(0, 256, 256, false);
+        Pipe pipe = Pipe.open();
+        sut.onOpen();
+        try {
+            pipe.source().configureBlocking(false);
+            SelectionKey oldKey = sut.register(pipe.source(), SelectionKey.OP_READ, transport);
+            transport.setSelectionKey(oldKey);
+
+            sut.rebuildSelector();
+
+            SelectionKey newKey = transport.key();
+            assertThat(newKey, is(not(sameInstance(oldKey))));
+            assertThat(oldKey.isValid(), is(false));
+            assertThat(newKey.isValid(), is(true));
+            assertThat(newKey.interestOps(), is(SelectionKey.OP_READ));
+            assertThat(newKey.attachment(), is((Object) transport));
+            assertThat(sut.keys().size(), is(1));
+            assertThat(sut.selectorRebuildCount(), is(1L));
+
+            pipe.sink().close();
+            sut.poll(1000L * 1000L * 1000L);
+            verify(transport).onSelected(newKey, sut);
+        } finally {
+            pipe.source().close();
+            sut.onClose();
+        }
+    }
+
+    @Test
+    public void testPoll_RebuildSelectorOnPrematureSelect() throws Exception {
+        NioEventDispatcher sut = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setSelectorRebuildThreshold(2));
+        sut.onOpen();
+        try {
+            Selector selector = sut.selector();
+            selector.wakeup();
+            sut.poll(1000L * 1000L * 1000L);
+            assertThat(sut.selectorRebuildCount(), is(0L));
+
+            selector.wakeup();
+            sut.poll(1000L * 1000L * 1000L);
+            assertThat(sut.selectorRebuildCount(), is(1L));
+            assertThat(sut.selector(), is(not(sameInstance(selector))));
+            assertThat(selector.isOpen(), is(false));
+        } finally {
+            sut.onClose();
+        }
+    }
+
+    @Test
+    public void testPoll_WakeUpIsNotPrematureSelect() throws Exception {
+        NioEventDispatcher sut = new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setSelectorRebuildThreshold(1));
+        sut.onOpen();
+        try {
+            sut.wakeUp();
+            sut.poll(1000L * 1000L * 1000L);
+
+            assertThat(sut.selectorRebuildCount(), is(0L));
+        } finally {
+            sut.onClose();
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package net.ihiroky.niotty.nio;
 
 import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.EventDispatcherSelection;
 import net.ihiroky.niotty.PipelineComposer;
 import net.ihiroky.niotty.TransportFuture;
 import net.ihiroky.niotty.TransportOptions;
@@ -20,13 +22,18 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 
 import static net.ihiroky.niotty.util.JavaVersionMatchers.equal;
 import static net.ihiroky.niotty.util.JavaVersionMatchers.greaterOrEqual;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assume.assumeThat;
 import static org.mockito.Mockito.*;
@@ -351,4 +358,239 @@ public class NioServerSocketTransportTest {
         }
 
     }
+
+    public static class AcceptorTest {
+
+        private NioServerSocketTransport sut_;
+        private NioEventDispatcherGroup acceptGroup_;
+        private NioEventDispatcherGroup ioGroup_;
+
+        @Before
+        public void setUp() {
+            assumeThat(Platform.javaVersion(), is(greaterOrEqual(JavaVersion.JAVA7)));
+            acceptGroup_ = new NioEventDispatcherGroup(
+                    2, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            ioGroup_ = new NioEventDispatcherGroup(
+                    2, Executors.defaultThreadFactory(), new SelectDispatcherFactory());
+            sut_ = new NioServerSocketTransport("TEST", PipelineComposer.empty(),
+                    acceptGroup_, ioGroup_, new SimplePacketQueueFactory());
+        }
+
+        @After
+        public void tearDown() throws Exception {
+            if (sut_ != null) {
+                sut_.close();
+            }
+            if (acceptGroup_ != null) {
+                acceptGroup_.close();
+            }
+            if (ioGroup_ != null) {
+                ioGroup_.close();
+            }
+        }
+
+        @Test(timeout = 5000)
+        public void testRegister_AcceptedTransportUsesAcceptedEventDispatcher() throws Exception {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            try {
+                server.bind(new InetSocketAddress("127.0.0.1", 0));
+                ioGroup_.open();
+                for (EventDispatcher target : ioGroup_.eventDispatchers()) {
+                    sut_.setAcceptedEventDispatcher(target);
+                    SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                    SocketChannel accepted = server.accept();
+                    accepted.configureBlocking(false);
+
+                    sut_.register(accepted);
+
+                    assertThat(clientTransportsOn(target), is(1));
+                    client.close();
+                }
+            } finally {
+                server.close();
+            }
+        }
+
+        @Test(timeout = 5000)
+        public void testOnSelected_AcceptsUpToMaxAcceptsPerSelectAndRegistersAtOnce() throws Exception {
+            NioEventDispatcher target = mock(NioEventDispatcher.class);
+            when(target.isAlive()).thenReturn(true);
+            sut_.setAcceptedEventDispatcher(target);
+            sut_.setMaxAcceptsPerSelect(3);
+            ServerSocketChannel server = ServerSocketChannel.open();
+            List<Socket> clients = new ArrayList<Socket>();
+            try {
+                server.bind(new InetSocketAddress("127.0.0.1", 0));
+                server.configureBlocking(false);
+                SelectionKey key = mock(SelectionKey.class);
+                when(key.channel()).thenReturn(server);
+                for (int i = 0; i < 5; i++) {
+                    clients.add(new Socket("127.0.0.1", ((InetSocketAddress) server.getLocalAddress()).getPort()));
+                }
+
+                sut_.onSelected(key, null);
+                ArgumentCaptor<Event> registrationCaptor = ArgumentCaptor.forClass(Event.class);
+                verify(target).offer(registrationCaptor.capture());
+                sut_.onSelected(key, null);
+                verify(target, times(2)).offer(Mockito.<Event>any());
+                sut_.onSelected(key, null);
+
+                verify(target, times(2)).offer(Mockito.<Event>any());
+                assertThat(server.accept() == null, is(true));
+                assertThat(registrationCaptor.getValue().getClass().getSimpleName(), is("AcceptedRegistration"));
+            } finally {
+                for (Socket client : clients) {
+                    client.close();
+                }
+                server.close();
+            }
+        }
+
+        @Test(timeout = 10000)
+        public void testBind_SpreadsConnectionsAcrossAcceptors() throws Exception {
+            assumeThat(sut_.isReusePortSupported(), is(true));
+            sut_.setReusePortAcceptors(true);
+
+            TransportFuture future = sut_.bind(new InetSocketAddress("127.0.0.1", 0), 64).await();
+            List<NioServerSocketTransport> acceptors = new ArrayList<NioServerSocketTransport>(sut_.acceptors());
+            int connections = 64;
+            List<Socket> clients = new ArrayList<Socket>();
+            try {
+                for (int i = 0; i < connections; i++) {
+                    clients.add(new Socket("127.0.0.1", sut_.localAddress().getPort()));
+                }
+                while (clientTransportsOn(ioGroup_) < connections) {
+                    Thread.sleep(10);
+                }
+
+                assertThat(future.isSuccessful(), is(true));
+                assertThat(acceptors.size(), is(1));
+                NioServerSocketTransport acceptor = acceptors.get(0);
+                assertThat(acceptor.eventDispatcher(), is(not(sut_.eventDispatcher())));
+                assertThat(acceptor.localAddress(), is(sut_.localAddress()));
+                assertThat(sut_.selectedCount_ > 0, is(true));
+                assertThat(acceptor.selectedCount_ > 0, is(true));
+                // The accept dispatchers are not in the I/O group, so the connections are not pinned.
+                assertThat(sut_.acceptedEventDispatcher(), is(nullValue()));
+                assertThat(acceptor.acceptedEventDispatcher(), is(nullValue()));
+                for (EventDispatcher ioEventDispatcher : ioGroup_.eventDispatchers()) {
+                    assertThat(clientTransportsOn(ioEventDispatcher) > 0, is(true));
+                }
+            } finally {
+                for (Socket client : clients) {
+                    client.close();
+                }
+            }
+
+            sut_.close().await();
+            while (acceptors.get(0).isOpen()) {
+                Thread.sleep(10);
+            }
+            assertThat(sut_.acceptors().isEmpty(), is(true));
+        }
+
+        @Test(timeout = 10000)
+        public void testBind_PinsConnectionsToAcceptDispatcherInIOGroup() throws Exception {
+            sut_.close();
+            sut_ = new NioServerSocketTransport("TEST", PipelineComposer.empty(),
+                    ioGroup_, ioGroup_, new SimplePacketQueueFactory());
+            assumeThat(sut_.isReusePortSupported(), is(true));
+            sut_.setReusePortAcceptors(true);
+
+            sut_.bind(new InetSocketAddress("127.0.0.1", 0), 64).await().throwExceptionIfFailed();
+            NioServerSocketTransport acceptor = sut_.acceptors().get(0);
+            int connections = 64;
+            List<Socket> clients = new ArrayList<Socket>();
+            try {
+                for (int i = 0; i < connections; i++) {
+                    clients.add(new Socket("127.0.0.1", sut_.localAddress().getPort()));
+                }
+                while (clientTransportsOn(ioGroup_) < connections) {
+                    Thread.sleep(10);
+                }
+
+                assertThat(sut_.acceptedEventDispatcher(), is(sut_.eventDispatcher()));
+                assertThat(acceptor.acceptedEventDispatcher(), is(acceptor.eventDispatcher()));
+                assertThat(clientTransportsOn(sut_.eventDispatcher())
+                        + clientTransportsOn(acceptor.eventDispatcher()), is(connections));
+            } finally {
+                for (Socket client : clients) {
+                    client.close();
+                }
+            }
+        }
+
+        @Test(timeout = 10000)
+        public void testBind_StopsAcceptingOnMaxConnectionsUntilClosed() throws Exception {
+            sut_.setMaxConnections(5);
+            sut_.bind(new InetSocketAddress("127.0.0.1", 0)).await().throwExceptionIfFailed();
+            List<Socket> clients = new ArrayList<Socket>();
+            try {
+                for (int i = 0; i < 6; i++) {
+                    clients.add(new Socket("127.0.0.1", sut_.localAddress().getPort()));
+                }
+                while (clientTransportsOn(ioGroup_) < 5) {
+                    Thread.sleep(10);
+                }
+                Thread.sleep(100);
+
+                assertThat(sut_.isAcceptPaused(), is(true));
+                assertThat(sut_.connections(), is(5));
+                assertThat(clientTransportsOn(ioGroup_), is(5));
+
+                // resumes at 4 connections (80% of 5), then accepts the 6th one
+                closeClientTransportOn(ioGroup_).await();
+                while (sut_.connections() < 5 || clientTransportsOn(ioGroup_) < 5) {
+                    Thread.sleep(10);
+                }
+
+                assertThat(sut_.connections(), is(5));
+                assertThat(clientTransportsOn(ioGroup_), is(5));
+            } finally {
+                for (Socket client : clients) {
+                    client.close();
+                }
+            }
+        }
+
+        @Test
+        public void testBind_FailsIfReusePortIsNotSupported() throws Exception {
+            assumeThat(sut_.isReusePortSupported(), is(false));
+            sut_.setReusePortAcceptors(true);
+
+            TransportFuture future = sut_.bind(new InetSocketAddress("127.0.0.1", 0));
+
+            assertThat(future.isSuccessful(), is(false));
+            assertThat(future.throwable() instanceof UnsupportedOperationException, is(true));
+        }
+
+        private static TransportFuture closeClientTransportOn(NioEventDispatcherGroup group) {
+            for (EventDispatcher eventDispatcher : group.eventDispatchers()) {
+                for (EventDispatcherSelection selection : eventDispatcher.selections()) {
+                    if (selection instanceof NioClientSocketTransport) {
+                        return ((NioClientSocketTransport) selection).close();
+                    }
+                }
+            }
+            throw new AssertionError("No client transport is found.");
+        }
+
+        private static int clientTransportsOn(NioEventDispatcherGroup group) {
+            int count = 0;
+            for (EventDispatcher eventDispatcher : group.eventDispatchers()) {
+                count += clientTransportsOn(eventDispatcher);
+            }
+            return count;
+        }
+
+        private static int clientTransportsOn(EventDispatcher eventDispatcher) {
+            int count = 0;
+            for (EventDispatcherSelection selection : eventDispatcher.selections()) {
+                if (selection instanceof NioClientSocketTransport && ((NioClientSocketTransport) selection).isOpen()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
 }
@@ -60,6 +60,50 @@ public class NioSocketTransportTest {
         verify(selector_).register(channel, SelectionKey.OP_ACCEPT, sut_);
     }
 
+    @Test
+    public void testSetInterestOp_DeferredIfInDispatcherThread() throws Exception {
+        SelectionKey key = mock(SelectionKey.class);
+        when(key.interestOps()).thenReturn(SelectionKey.OP_READ);
+        when(selector_.isInDispatcherThread()).thenReturn(true);
+        sut_.setSelectionKey(key);
+
+        sut_.setInterestOp(SelectionKey.OP_WRITE);
+
+        verify(selector_).deferInterestOps(sut_);
+        verify(key, never()).interestOps(anyInt());
+
+        sut_.applyInterestOps();
+
+        verify(key).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    @Test
+    public void testSetInterestOp_CoalescesChangesCancellingEachOther() throws Exception {
+        SelectionKey key = mock(SelectionKey.class);
+        when(key.interestOps()).thenReturn(SelectionKey.OP_READ);
+        when(selector_.isInDispatcherThread()).thenReturn(true);
+        sut_.setSelectionKey(key);
+
+        sut_.setInterestOp(SelectionKey.OP_WRITE);
+        sut_.clearInterestOp(SelectionKey.OP_WRITE);
+        sut_.applyInterestOps();
+
+        verify(key, never()).interestOps(anyInt());
+    }
+
+    @Test
+    public void testSetInterestOp_AppliedAtOnceIfNotInDispatcherThread() throws Exception {
+        SelectionKey key = mock(SelectionKey.class);
+        when(key.interestOps()).thenReturn(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        when(selector_.isInDispatcherThread()).thenReturn(false);
+        sut_.setSelectionKey(key);
+
+        sut_.clearInterestOp(SelectionKey.OP_WRITE);
+
+        verify(selector_, never()).deferInterestOps(sut_);
+        verify(key).interestOps(SelectionKey.OP_READ);
+    }
+
     private static class Impl extends NioSocketTransport {
 
         Impl(String name, PipelineComposer pipelineComposer, NioEventDispatcherGroup eventDispatcherGroup) {
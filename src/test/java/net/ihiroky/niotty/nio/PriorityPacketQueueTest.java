@@ -0,0 +1,124 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.Packet;
+import net.ihiroky.niotty.nio.SimplePacketQueueTest.GatheringChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class PriorityPacketQueueTest {
+
+    private PriorityPacketQueue sut_;
+
+    @Before
+    public void setUp() throws Exception {
+        sut_ = new PriorityPacketQueue(3, 0);
+    }
+
+    @Test
+    public void testLaneOf() throws Exception {
+        assertThat(sut_.laneOf(0), is(0));
+        assertThat(sut_.laneOf(1), is(1));
+        assertThat(sut_.laneOf(2), is(2));
+        assertThat(sut_.laneOf(3), is(2));
+        assertThat(sut_.laneOf(-1), is(2));
+        assertThat(sut_.laneOf(null), is(2));
+        assertThat(sut_.laneOf("0"), is(2));
+    }
+
+    @Test
+    public void testFlush_WritesHigherPriorityLaneFirst() throws Exception {
+        GatheringChannel channel = new GatheringChannel(Integer.MAX_VALUE);
+        sut_.offer(Buffers.wrap(new byte[]{0, 1}));
+        sut_.offer(Buffers.wrap(new byte[]{2, 3}), 1);
+        sut_.offer(Buffers.wrap(new byte[]{4}), 0);
+        sut_.offer(Buffers.wrap(new byte[]{5}), 1);
+
+        FlushStatus status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        assertThat(channel.written(), is(new byte[]{4, 2, 3, 5, 0, 1}));
+        assertThat(sut_.isEmpty(), is(true));
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.pendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testFlush_FinishesPartiallyWrittenPacketBeforeHigherPriorityLane() throws Exception {
+        GatheringChannel channel = new GatheringChannel(3);
+        sut_.offer(Buffers.wrap(new byte[]{0, 1, 2, 3, 4, 5}));
+        sut_.offer(Buffers.wrap(new byte[]{6, 7}));
+
+        FlushStatus status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHING));
+        assertThat(sut_.pendingBytes(), is(5L));
+
+        sut_.offer(Buffers.wrap(new byte[]{8}), 0);
+        channel.limit_ = Integer.MAX_VALUE;
+        status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        assertThat(channel.written(), is(new byte[]{0, 1, 2, 3, 4, 5, 8, 6, 7}));
+        assertThat(sut_.pendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testFlush_HigherPriorityPacketOvertakesQueuedPacketsAfterPartialWrite() throws Exception {
+        GatheringChannel channel = new GatheringChannel(4);
+        sut_.offer(Buffers.wrap(new byte[]{0, 1, 2, 3, 4, 5}));
+        sut_.offer(Buffers.wrap(new byte[]{6, 7}));
+        sut_.offer(Buffers.wrap(new byte[]{8, 9}));
+        sut_.flush(channel);
+        sut_.offer(Buffers.wrap(new byte[]{10}), 0);
+
+        FlushStatus status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        assertThat(channel.written(), is(new byte[]{0, 1, 2, 3, 4, 5, 10, 6, 7, 8, 9}));
+        assertThat(sut_.size(), is(0));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        GatheringChannel channel = new GatheringChannel(1);
+        sut_.offer(Buffers.wrap(new byte[]{0, 1}), 0);
+        sut_.offer(Buffers.wrap(new byte[]{2, 3}));
+        sut_.flush(channel);
+
+        sut_.clear();
+
+        assertThat(sut_.isEmpty(), is(true));
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.pendingBytes(), is(0L));
+        assertThat(sut_.flush(channel), is(FlushStatus.FLUSHED));
+    }
+
+    @Test
+    public void testClear_DisposesPackets() throws Exception {
+        GatheringChannel channel = new GatheringChannel(1);
+        Packet p0 = mock(Packet.class);
+        Packet p1 = mock(Packet.class);
+        Packet p2 = mock(Packet.class);
+        when(p0.remaining()).thenReturn(2);
+        when(p0.sink(channel)).thenReturn(false);
+        sut_.offer(p0, 0);
+        sut_.offer(p1, 1);
+        sut_.offer(p2);
+        sut_.flush(channel);
+
+        sut_.clear();
+
+        verify(p0).dispose();
+        verify(p1).dispose();
+        verify(p2).dispose();
+        assertThat(sut_.isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,56 @@
+package net.ihiroky.niotty.nio;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ReadSizePredictorTest {
+
+    @Test
+    public void testConstructor_ClampsInitialSize() throws Exception {
+        assertThat(new ReadSizePredictor(64, 1024, 4096).size(), is(1024));
+        assertThat(new ReadSizePredictor(64, 8192, 4096).size(), is(4096));
+        assertThat(new ReadSizePredictor(64, 0, 4096).size(), is(64));
+        assertThat(new ReadSizePredictor(64, 0, 32).size(), is(32));
+    }
+
+    @Test
+    public void testRecord_GrowsUpToMaxSizeIfFilled() throws Exception {
+        ReadSizePredictor sut = new ReadSizePredictor(64, 1024, 4096);
+
+        sut.record(1024);
+        assertThat(sut.size(), is(2048));
+        sut.record(2048);
+        assertThat(sut.size(), is(4096));
+        sut.record(4096);
+        assertThat(sut.size(), is(4096));
+    }
+
+    @Test
+    public void testRecord_ShrinksDownToMinSizeIfSmallTwiceInARow() throws Exception {
+        ReadSizePredictor sut = new ReadSizePredictor(64, 256, 4096);
+
+        sut.record(1);
+        assertThat(sut.size(), is(256));
+        sut.record(1);
+        assertThat(sut.size(), is(128));
+        sut.record(1);
+        sut.record(1);
+        assertThat(sut.size(), is(64));
+        sut.record(1);
+        sut.record(1);
+        assertThat(sut.size(), is(64));
+    }
+
+    @Test
+    public void testRecord_KeepsSizeIfNotSmallInARow() throws Exception {
+        ReadSizePredictor sut = new ReadSizePredictor(64, 1024, 4096);
+
+        sut.record(100);
+        sut.record(600);
+        sut.record(100);
+
+        assertThat(sut.size(), is(1024));
+    }
+}
@@ -0,0 +1,79 @@
+package net.ihiroky.niotty.nio;
+
+import java.io.IOException;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Compares the default selected key set with {@link net.ihiroky.niotty.nio.SelectedKeySet}
+ * under many active channels. Each channel is the source of a pipe whose sink is closed,
+ * so that all the channels are selected by every select operation.
+ *
+ * Usage: java net.ihiroky.niotty.nio.SelectedKeySetBenchmark [channels] [rounds] [selects]
+ */
+public class SelectedKeySetBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int channels = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        int selects = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+
+        for (int r = 0; r < rounds; r++) {
+            run("default  ", channels, selects, false);
+            run("optimized", channels, selects, true);
+        }
+    }
+
+    private static void run(String name, int channels, int selects, boolean optimize) throws IOException {
+        Selector selector = Selector.open();
+        SelectedKeySet selectedKeySet = optimize ? SelectedKeySet.install(selector) : null;
+        if (optimize && selectedKeySet == null) {
+            System.out.println("Failed to install SelectedKeySet.");
+            selector.close();
+            return;
+        }
+        Pipe.SourceChannel[] sources = new Pipe.SourceChannel[channels];
+        try {
+            for (int i = 0; i < channels; i++) {
+                Pipe pipe = Pipe.open();
+                pipe.sink().close();
+                sources[i] = pipe.source();
+                sources[i].configureBlocking(false);
+                sources[i].register(selector, SelectionKey.OP_READ, sources[i]);
+            }
+
+            long count = 0;
+            long start = System.nanoTime();
+            for (int s = 0; s < selects; s++) {
+                selector.selectNow();
+                if (selectedKeySet != null) {
+                    SelectionKey[] keys = selectedKeySet.keys();
+                    int size = selectedKeySet.size();
+                    for (int i = 0; i < size; i++) {
+                        count += keys[i].attachment().hashCode() & 1;
+                    }
+                    selectedKeySet.reset();
+                } else {
+                    Set<SelectionKey> keys = selector.selectedKeys();
+                    for (Iterator<SelectionKey> iterator = keys.iterator(); iterator.hasNext();) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        count += key.attachment().hashCode() & 1;
+                    }
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%s: %,d ns/select (%d)%n", name, elapsed / selects, count);
+        } finally {
+            for (Pipe.SourceChannel source : sources) {
+                if (source != null) {
+                    source.close();
+                }
+            }
+            selector.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package net.ihiroky.niotty.nio;
+
+import org.junit.Test;
+
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class SelectedKeySetTest {
+
+    @Test
+    public void testAddGrowsArray() throws Exception {
+        SelectedKeySet sut = new SelectedKeySet();
+        int n = sut.keys().length + 1;
+        SelectionKey[] keys = new SelectionKey[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = mock(SelectionKey.class);
+            sut.add(keys[i]);
+        }
+
+        assertThat(sut.size(), is(n));
+        for (int i = 0; i < n; i++) {
+            assertThat(sut.keys()[i], is(sameInstance(keys[i])));
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        SelectedKeySet sut = new SelectedKeySet();
+        sut.add(mock(SelectionKey.class));
+        sut.add(mock(SelectionKey.class));
+
+        sut.reset();
+
+        assertThat(sut.size(), is(0));
+        assertThat(sut.keys()[0], is(nullValue()));
+        assertThat(sut.keys()[1], is(nullValue()));
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        SelectedKeySet sut = new SelectedKeySet();
+        SelectionKey key0 = mock(SelectionKey.class);
+        SelectionKey key1 = mock(SelectionKey.class);
+        sut.add(key0);
+        sut.add(key1);
+
+        Iterator<SelectionKey> iterator = sut.iterator();
+
+        assertThat(iterator.next(), is(key0));
+        assertThat(iterator.next(), is(key1));
+        assertThat(iterator.hasNext(), is(false));
+    }
+
+    @Test
+    public void testInstall() throws Exception {
+        Selector selector = Selector.open();
+        Pipe pipe = Pipe.open();
+        try {
+            SelectedKeySet sut = SelectedKeySet.install(selector);
+            if (sut == null) {
+                // The selector implementation does not allow the replacement.
+                return;
+            }
+            pipe.source().configureBlocking(false);
+            SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+            pipe.sink().close();
+
+            int selected = selector.select(1000);
+
+            assertThat(selected, is(1));
+            assertThat(sut.size(), is(1));
+            assertThat(sut.keys()[0], is(key));
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            selector.close();
+        }
+    }
+}
@@ -53,6 +53,26 @@ public class SimpleDatagramQueueTest {
         assertThat(sut_.isEmpty(), is(true));
     }
 
+    @Test
+    public void testPendingBytes() throws Exception {
+        DatagramChannel channel = mock(DatagramChannel.class);
+        SocketAddress target = mock(SocketAddress.class);
+        ByteBuffer buffer = ByteBuffer.allocate(0);
+        Packet p0 = mock(Packet.class);
+        Packet p1 = mock(Packet.class);
+        when(p0.remaining()).thenReturn(10);
+        when(p1.remaining()).thenReturn(20);
+        when(p0.sink(channel, buffer, target)).thenReturn(true);
+        when(p1.sink(channel, buffer, target)).thenReturn(false);
+        sut_.offer(new AttachedMessage<Packet>(p0, target));
+        sut_.offer(new AttachedMessage<Packet>(p1, target));
+        assertThat(sut_.pendingBytes(), is(30L));
+
+        sut_.flush(channel, buffer);
+
+        assertThat(sut_.pendingBytes(), is(20L));
+    }
+
     @Test
     public void testFlushAllElements() throws Exception {
         DatagramChannel channel = mock(DatagramChannel.class);
@@ -1,10 +1,17 @@
 package net.ihiroky.niotty.nio;
 
+import net.ihiroky.niotty.buffer.ArrayCodecBuffer;
 import net.ihiroky.niotty.buffer.Packet;
 import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.CodecBuffer;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -92,4 +99,225 @@ public class SimplePacketQueueTest {
         verify(p1).sink(channel);
         verify(p2, never()).sink(channel);
     }
+
+    @Test
+    public void testFlushGathering_WritesBuffersByOneCall() throws Exception {
+        sut_ = new SimplePacketQueue(0, 16, 1024);
+        GatheringChannel channel = new GatheringChannel(Integer.MAX_VALUE);
+        CodecBuffer b0 = Buffers.wrap(new byte[]{0, 1, 2, 3});
+        CodecBuffer b1 = Buffers.wrap(new byte[]{4, 5, 6, 7});
+        CodecBuffer b2 = Buffers.wrap(new byte[]{8, 9});
+        sut_.offer(b0);
+        sut_.offer(b1);
+        sut_.offer(b2);
+
+        FlushStatus status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        assertThat(channel.writeCount_, is(1));
+        assertThat(channel.written(), is(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        assertThat(((ArrayCodecBuffer) b0).referenceCount(), is(0));
+        assertThat(((ArrayCodecBuffer) b1).referenceCount(), is(0));
+        assertThat(((ArrayCodecBuffer) b2).referenceCount(), is(0));
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFlushGathering_AdvancesPartiallyWrittenBuffer() throws Exception {
+        sut_ = new SimplePacketQueue(0, 16, 1024);
+        GatheringChannel channel = new GatheringChannel(6);
+        CodecBuffer b0 = Buffers.wrap(new byte[]{0, 1, 2, 3});
+        CodecBuffer b1 = Buffers.wrap(new byte[]{4, 5, 6, 7});
+        CodecBuffer b2 = Buffers.wrap(new byte[]{8, 9});
+        sut_.offer(b0);
+        sut_.offer(b1);
+        sut_.offer(b2);
+
+        FlushStatus status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHING));
+        assertThat(((ArrayCodecBuffer) b0).referenceCount(), is(0));
+        assertThat(b1.remaining(), is(2));
+        assertThat(((ArrayCodecBuffer) b1).referenceCount(), is(1));
+        assertThat(sut_.size(), is(2));
+        assertThat(sut_.isEmpty(), is(false));
+
+        channel.limit_ = Integer.MAX_VALUE;
+        status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        assertThat(channel.written(), is(new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testClear_DisposesGatheredAndQueuedBuffers() throws Exception {
+        sut_ = new SimplePacketQueue(0, 2, 1024);
+        GatheringChannel channel = new GatheringChannel(2);
+        CodecBuffer b0 = Buffers.wrap(new byte[]{0, 1, 2, 3});
+        CodecBuffer b1 = Buffers.wrap(new byte[]{4, 5, 6, 7});
+        CodecBuffer b2 = Buffers.wrap(new byte[]{8, 9});
+        sut_.offer(b0);
+        sut_.offer(b1);
+        sut_.offer(b2);
+        sut_.flush(channel);
+
+        sut_.clear();
+
+        assertThat(((ArrayCodecBuffer) b0).referenceCount(), is(0));
+        assertThat(((ArrayCodecBuffer) b1).referenceCount(), is(0));
+        assertThat(((ArrayCodecBuffer) b2).referenceCount(), is(0));
+        assertThat(sut_.size(), is(0));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIsEmpty_ReturnsFalseWhileGatheredBuffersAreLeft() throws Exception {
+        sut_ = new SimplePacketQueue(0, 2, 1024);
+        GatheringChannel channel = new GatheringChannel(2);
+        sut_.offer(Buffers.wrap(new byte[]{0, 1, 2, 3}));
+        sut_.flush(channel);
+
+        assertThat(sut_.isEmpty(), is(false));
+    }
+
+    @Test
+    public void testFlushGathering_LimitsBuffersAndBytesPerWrite() throws Exception {
+        GatheringChannel channel = new GatheringChannel(Integer.MAX_VALUE);
+        sut_ = new SimplePacketQueue(0, 2, 1024);
+        for (int i = 0; i < 5; i++) {
+            sut_.offer(Buffers.wrap(new byte[]{(byte) i, (byte) i}));
+        }
+
+        assertThat(sut_.flush(channel), is(FlushStatus.FLUSHED));
+        assertThat(channel.writeCount_, is(3));
+
+        channel = new GatheringChannel(Integer.MAX_VALUE);
+        sut_ = new SimplePacketQueue(0, 16, 5);
+        for (int i = 0; i < 5; i++) {
+            sut_.offer(Buffers.wrap(new byte[]{(byte) i, (byte) i}));
+        }
+        sut_.offer(Buffers.wrap(new byte[8]));
+
+        assertThat(sut_.flush(channel), is(FlushStatus.FLUSHED));
+        assertThat(channel.writeCount_, is(4)); // 2 + 2, 2 + 2, 2, 8
+    }
+
+    @Test
+    public void testFlushGathering_SinksNonGatherablePacketInOrder() throws Exception {
+        sut_ = new SimplePacketQueue(0, 16, 1024);
+        final GatheringChannel channel = new GatheringChannel(Integer.MAX_VALUE);
+        Packet p1 = mock(Packet.class);
+        when(p1.sink(channel)).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                channel.write(ByteBuffer.wrap(new byte[]{2, 3}));
+                return true;
+            }
+        });
+        sut_.offer(Buffers.wrap(new byte[]{0, 1}));
+        sut_.offer(p1);
+        sut_.offer(Buffers.wrap(new byte[]{4, 5}));
+
+        FlushStatus status = sut_.flush(channel);
+
+        assertThat(status, is(FlushStatus.FLUSHED));
+        assertThat(channel.written(), is(new byte[]{0, 1, 2, 3, 4, 5}));
+        verify(p1).dispose();
+        assertThat(sut_.size(), is(0));
+    }
+
+    @Test
+    public void testPendingBytes() throws Exception {
+        GatheringChannel channel = new GatheringChannel(2);
+        sut_.offer(Buffers.wrap(new byte[4]));
+        sut_.offer(Buffers.wrap(new byte[4]));
+        assertThat(sut_.pendingBytes(), is(8L));
+
+        sut_.flush(channel);
+        assertThat(sut_.pendingBytes(), is(6L));
+
+        channel.limit_ = Integer.MAX_VALUE;
+        sut_.flush(channel);
+        assertThat(sut_.pendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testPendingBytes_Gathering() throws Exception {
+        sut_ = new SimplePacketQueue(0, 16, 1024);
+        GatheringChannel channel = new GatheringChannel(6);
+        sut_.offer(Buffers.wrap(new byte[4]));
+        sut_.offer(Buffers.wrap(new byte[4]));
+        sut_.offer(Buffers.wrap(new byte[4]));
+        assertThat(sut_.pendingBytes(), is(12L));
+
+        sut_.flush(channel);
+        assertThat(sut_.pendingBytes(), is(6L));
+
+        channel.limit_ = Integer.MAX_VALUE;
+        sut_.flush(channel);
+        assertThat(sut_.pendingBytes(), is(0L));
+    }
+
+    @Test
+    public void testPendingBytes_Clear() throws Exception {
+        sut_.offer(Buffers.wrap(new byte[4]));
+        sut_.clear();
+
+        assertThat(sut_.pendingBytes(), is(0L));
+    }
+
+    /**
+     * A channel which writes up to the limit bytes per a write call.
+     */
+    static class GatheringChannel implements GatheringByteChannel {
+
+        ByteArrayOutputStream output_ = new ByteArrayOutputStream();
+        int limit_;
+        int writeCount_;
+
+        GatheringChannel(int limit) {
+            limit_ = limit;
+        }
+
+        byte[] written() {
+            return output_.toByteArray();
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            writeCount_++;
+            long written = 0;
+            for (int i = offset; i < offset + length && written < limit_; i++) {
+                ByteBuffer src = srcs[i];
+                int n = (int) Math.min(src.remaining(), limit_ - written);
+                for (int j = 0; j < n; j++) {
+                    output_.write(src.get());
+                }
+                written += n;
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[]{src}, 0, 1);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
 }
@@ -0,0 +1,266 @@
+package net.ihiroky.niotty.nio;
+
+import net.ihiroky.niotty.Event;
+import net.ihiroky.niotty.EventDispatcher;
+import net.ihiroky.niotty.LoadStage;
+import net.ihiroky.niotty.PipelineComposer;
+import net.ihiroky.niotty.StageContext;
+import net.ihiroky.niotty.StageKeys;
+import net.ihiroky.niotty.TransportFuture;
+import net.ihiroky.niotty.buffer.Buffers;
+import net.ihiroky.niotty.buffer.CodecBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ */
+public class TransportMigrationTest {
+
+    private NioEventDispatcherGroup group_;
+    private ServerSocketChannel server_;
+    private SocketChannel peer_;
+    private NioClientSocketTransport sut_;
+    private BlockingQueue<Object[]> loaded_;
+
+    @Before
+    public void setUp() throws Exception {
+        group_ = NioEventDispatcherGroup.newBuilder().setWorkers(2).build();
+        group_.open();
+        server_ = ServerSocketChannel.open();
+        server_.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        peer_ = SocketChannel.open(server_.socket().getLocalSocketAddress());
+        SocketChannel accepted = server_.accept();
+        accepted.configureBlocking(false);
+
+        loaded_ = new LinkedBlockingQueue<Object[]>();
+        sut_ = new NioClientSocketTransport("TEST", PipelineComposer.empty(), group_,
+                new SimplePacketQueueFactory(), accepted);
+        sut_.pipeline().add(StageKeys.of("LOAD"), new LoadStage() {
+            @Override
+            public void loaded(StageContext context, Object message, Object parameter) {
+                CodecBuffer buffer = (CodecBuffer) message;
+                loaded_.offer(new Object[]{Thread.currentThread(), buffer.readByte()});
+            }
+
+            @Override
+            public void exceptionCaught(StageContext context, Exception exception) {
+            }
+
+            @Override
+            public void activated(StageContext context) {
+            }
+
+            @Override
+            public void deactivated(StageContext context) {
+            }
+
+            @Override
+            public void eventTriggered(StageContext context, Object event) {
+            }
+        });
+        sut_.register(accepted, SelectionKey.OP_READ);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut_.close().await();
+        peer_.close();
+        server_.close();
+        group_.close();
+    }
+
+    private Object[] send(int b) throws Exception {
+        peer_.write(ByteBuffer.wrap(new byte[]{(byte) b}));
+        Object[] result = loaded_.poll(3, TimeUnit.SECONDS);
+        assertThat(result, is(notNullValue()));
+        assertThat((Byte) result[1], is((byte) b));
+        return result;
+    }
+
+    private NioEventDispatcher anotherDispatcher(EventDispatcher dispatcher) {
+        for (EventDispatcher d : group_.eventDispatchers()) {
+            if (d != dispatcher) {
+                return (NioEventDispatcher) d;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrate() throws Exception {
+        EventDispatcher source = sut_.eventDispatcher();
+        NioEventDispatcher target = anotherDispatcher(source);
+        Object[] before = send(1);
+        assertThat(source.isAssigned((Thread) before[0]), is(true));
+
+        TransportFuture future = sut_.migrate(target);
+        future.await();
+
+        assertThat(future.isSuccessful(), is(true));
+        assertThat(sut_.isMigrating(), is(false));
+        assertThat(sut_.eventDispatcher(), is((EventDispatcher) target));
+        assertThat(source.selections().contains(sut_), is(false));
+        assertThat(target.selections().contains(sut_), is(true));
+        Object[] after = send(2);
+        assertThat(target.isAssigned((Thread) after[0]), is(true));
+
+        sut_.write(Buffers.wrap(new byte[]{3}));
+        ByteBuffer received = ByteBuffer.allocate(1);
+        peer_.read(received);
+        assertThat(received.get(0), is((byte) 3));
+    }
+
+    @Test
+    public void testMigrate_FlushesDeferredFlushBeforeLeavingSource() throws Exception {
+        NioEventDispatcher source = spy(new NioEventDispatcher(NioEventDispatcherGroup.newBuilder()
+                .setReadBufferSize(256).setWriteBufferSize(256).setFlushConsolidationThreshold(1024)));
+        doReturn(true).when(source).isInDispatcherThread();
+        doNothing().when(source).offer(Mockito.any(Event.class));
+        NioSocketTransport transport = mock(NioSocketTransport.class);
+        when(transport.eventDispatcher()).thenReturn(source);
+        StageContext context = mock(StageContext.class);
+        when(context.transport()).thenReturn(transport);
+        source.ioStage().stored(context, Buffers.wrap(new byte[10]), null);
+        assertThat(source.flushPendingTransportCount(), is(1));
+
+        TransportMigration.start(transport, mock(NioEventDispatcher.class));
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(source).offer(captor.capture());
+        captor.getValue().execute(); // leave the source; aborted as the transport has no key
+
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+        assertThat(transport.flushPending_, is(false));
+
+        source.onLoopEnd();
+
+        verify(transport).flush(Mockito.any(ByteBuffer.class));
+        verify(transport, never()).flushNow();
+        assertThat(source.flushPendingTransportCount(), is(0));
+    }
+
+    @Test
+    public void testMigrate_ReturnsCancelledFutureIfTargetIsCurrentDispatcher() throws Exception {
+        assertThat(sut_.migrate((NioEventDispatcher) sut_.eventDispatcher()).isCancelled(), is(true));
+    }
+
+    @Test(timeout = 10000)
+    public void testMigrate_ClosesTransportIfRegisterFails() throws Exception {
+        EventDispatcher source = sut_.eventDispatcher();
+        send(1);
+        ClosedChannelException failure = new ClosedChannelException();
+        NioEventDispatcher target = mock(NioEventDispatcher.class);
+        when(target.isInDispatcherThread()).thenReturn(true);
+        when(target.register(Mockito.any(SelectableChannel.class), anyInt(), Mockito.any(NioSocketTransport.class)))
+                .thenThrow(failure);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Event) invocation.getArguments()[0]).execute();
+                return null;
+            }
+        }).when(target).offer(Mockito.any(Event.class));
+
+        TransportFuture future = sut_.migrate(target);
+        future.await();
+
+        assertThat(future.isSuccessful(), is(false));
+        assertThat(future.throwable(), is(sameInstance((Throwable) failure)));
+        assertThat(sut_.isMigrating(), is(false));
+        assertThat(sut_.closeFuture().isSuccessful(), is(true));
+        assertThat(sut_.isOpen(), is(false));
+        assertThat(source.selections().contains(sut_), is(false));
+        verify(target, atLeastOnce()).reject(sut_);
+        assertThat(peer_.read(ByteBuffer.allocate(1)), is(-1));
+    }
+
+    @Test(timeout = 20000)
+    public void testMigrate_LoadsConcurrentlyWithMigration() throws Exception {
+        final int count = 20000;
+        final List<Integer> received = new ArrayList<Integer>(count);
+        final AtomicInteger violations = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        sut_.pipeline().add(StageKeys.of("CHECK"), new LoadStage() {
+            @Override
+            public void loaded(StageContext context, Object message, Object parameter) {
+                if (running.incrementAndGet() != 1 || !sut_.eventDispatcher().isInDispatcherThread()) {
+                    violations.incrementAndGet();
+                }
+                synchronized (received) {
+                    received.add(((CodecBuffer) message).readInt());
+                    received.notifyAll();
+                }
+                running.decrementAndGet();
+            }
+
+            @Override
+            public void exceptionCaught(StageContext context, Exception exception) {
+            }
+
+            @Override
+            public void activated(StageContext context) {
+            }
+
+            @Override
+            public void deactivated(StageContext context) {
+            }
+
+            @Override
+            public void eventTriggered(StageContext context, Object event) {
+            }
+        });
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    CodecBuffer buffer = Buffers.newCodecBuffer(4);
+                    buffer.writeInt(i);
+                    sut_.pipeline().load(buffer, null);
+                }
+            }
+        };
+
+        producer.start();
+        int migrations = 0;
+        while (producer.isAlive()) {
+            sut_.migrate(anotherDispatcher(sut_.eventDispatcher())).await();
+            migrations++;
+        }
+        producer.join();
+        synchronized (received) {
+            while (received.size() < count) {
+                received.wait();
+            }
+        }
+
+        assertThat(migrations > 0, is(true));
+        assertThat(violations.get(), is(0));
+        for (int i = 0; i < count; i++) {
+            assertThat(received.get(i), is(i));
+        }
+    }
+}
@@ -3,6 +3,9 @@ package net.ihiroky.niotty.util;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -110,4 +113,66 @@ public class MPSCArrayQueueTest {
 
         assertThat(sut_.size(), is(2));
     }
+
+    @Test
+    public void testDrain() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            sut_.offer(i);
+        }
+        final List<Integer> drained = new ArrayList<Integer>();
+        MPSCQueue.Consumer<Integer> consumer = new MPSCQueue.Consumer<Integer>() {
+            @Override
+            public boolean accept(Integer e) {
+                drained.add(e);
+                return true;
+            }
+        };
+
+        int count0 = sut_.drain(consumer, 6);
+        int count1 = sut_.drain(consumer, 6);
+        int count2 = sut_.drain(consumer, 6);
+
+        assertThat(count0, is(6));
+        assertThat(count1, is(4));
+        assertThat(count2, is(0));
+        assertThat(drained, is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDrainStopsIfConsumerReturnsFalse() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            sut_.offer(i);
+        }
+        MPSCQueue.Consumer<Integer> consumer = new MPSCQueue.Consumer<Integer>() {
+            @Override
+            public boolean accept(Integer e) {
+                return e != 2;
+            }
+        };
+
+        int count = sut_.drain(consumer, 10);
+
+        assertThat(count, is(3));
+        assertThat(sut_.size(), is(7));
+        assertThat(sut_.poll(), is(3));
+    }
+
+    @Test
+    public void testRelaxedOfferReturnsFalseIfFull() throws Exception {
+        MPSCArrayQueue<Integer> sut = new MPSCArrayQueue<Integer>(4);
+        boolean o0 = sut.relaxedOffer(0);
+        boolean o1 = sut.relaxedOffer(1);
+        boolean o2 = sut.relaxedOffer(2);
+        boolean o3 = sut.relaxedOffer(3);
+        sut.poll();
+        boolean o4 = sut.relaxedOffer(4);
+
+        assertThat(o0, is(true));
+        assertThat(o1, is(true));
+        assertThat(o2, is(true));
+        assertThat(o3, is(false));
+        assertThat(o4, is(true));
+        assertThat(sut.size(), is(3));
+    }
 }
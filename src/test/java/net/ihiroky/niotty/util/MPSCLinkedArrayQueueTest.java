@@ -0,0 +1,225 @@
+package net.ihiroky.niotty.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class MPSCLinkedArrayQueueTest {
+
+    private MPSCLinkedArrayQueue<Integer> sut_;
+
+    @Before
+    public void setUp() throws Exception {
+        sut_ = new MPSCLinkedArrayQueue<Integer>(4);
+    }
+
+    @Test
+    public void testOfferAndPoll() throws Exception {
+        sut_.offer(0);
+        sut_.offer(1);
+        sut_.offer(2);
+
+        Integer p0 = sut_.poll();
+        Integer p1 = sut_.poll();
+        Integer p2 = sut_.poll();
+        Integer p3 = sut_.poll();
+
+        assertThat(p0, is(0));
+        assertThat(p1, is(1));
+        assertThat(p2, is(2));
+        assertThat(p3, is(nullValue()));
+    }
+
+    @Test
+    public void testOfferAndPollOverChunks() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            sut_.offer(i);
+        }
+        assertThat(sut_.size(), is(10));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(sut_.peek(), is(i));
+            assertThat(sut_.poll(), is(i));
+        }
+        assertThat(sut_.peek(), is(nullValue()));
+        assertThat(sut_.poll(), is(nullValue()));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testOfferAndPollAlternatelyOverChunks() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            sut_.offer(i);
+            sut_.offer(-i);
+            assertThat(sut_.poll(), is(i));
+            assertThat(sut_.poll(), is(-i));
+            assertThat(sut_.poll(), is(nullValue()));
+        }
+        assertThat(sut_.size(), is(0));
+    }
+
+    @Test
+    public void testPollReturnsNullAtChunkBoundaryIfEmpty() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            sut_.offer(i);
+            sut_.poll();
+        }
+
+        assertThat(sut_.peek(), is(nullValue()));
+        assertThat(sut_.poll(), is(nullValue()));
+
+        sut_.offer(4);
+
+        assertThat(sut_.poll(), is(4));
+    }
+
+    @Test
+    public void testOfferAndPollMultiThread() throws Exception {
+        final int N = 100000;
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final Integer FINISH = -1;
+        Thread producer0 = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < N; i += 2) {
+                    sut_.offer(i);
+                }
+                sut_.offer(FINISH);
+            }
+        }, "P0");
+        Thread producer1 = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i < N; i += 2) {
+                    sut_.offer(i);
+                }
+                sut_.offer(FINISH);
+            }
+        }, "P1");
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                int finishCount = 0;
+                int[] last = new int[]{-2, -1};
+                for (;;) {
+                    Integer i = sut_.poll();
+                    if (i == null) {
+                        continue; // may busy loop.
+                    }
+                    if (!i.equals(FINISH)) {
+                        count.incrementAndGet();
+                        if (i != last[i & 1] + 2) {
+                            outOfOrder.incrementAndGet();
+                        }
+                        last[i & 1] = i;
+                    } else {
+                        if (++finishCount == 2) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }, "C");
+        producer0.start();
+        producer1.start();
+        consumer.start();
+        producer0.join();
+        producer1.join();
+        consumer.join();
+
+        assertThat(count.get(), is(N));
+        assertThat(outOfOrder.get(), is(0));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIsEmptyReturnsTrueIfDoesNotHaveElements() throws Exception {
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testIsEmptyReturnsFalseIfHaveSomeElements() throws Exception {
+        sut_.offer(0);
+
+        assertThat(sut_.isEmpty(), is(false));
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        sut_.offer(0);
+        sut_.offer(0);
+        sut_.offer(0);
+        sut_.poll();
+
+        assertThat(sut_.size(), is(2));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            sut_.offer(i);
+        }
+
+        sut_.clear();
+
+        assertThat(sut_.isEmpty(), is(true));
+        assertThat(sut_.poll(), is(nullValue()));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testOfferNull() throws Exception {
+        sut_.offer(null);
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            sut_.offer(i);
+        }
+        final List<Integer> drained = new ArrayList<Integer>();
+        MPSCQueue.Consumer<Integer> consumer = new MPSCQueue.Consumer<Integer>() {
+            @Override
+            public boolean accept(Integer e) {
+                drained.add(e);
+                return true;
+            }
+        };
+
+        int count0 = sut_.drain(consumer, 6);
+        int count1 = sut_.drain(consumer, 6);
+        int count2 = sut_.drain(consumer, 6);
+
+        assertThat(count0, is(6));
+        assertThat(count1, is(4));
+        assertThat(count2, is(0));
+        assertThat(drained, is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+        assertThat(sut_.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testDrainStopsIfConsumerReturnsFalse() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            sut_.offer(i);
+        }
+        MPSCQueue.Consumer<Integer> consumer = new MPSCQueue.Consumer<Integer>() {
+            @Override
+            public boolean accept(Integer e) {
+                return e != 2;
+            }
+        };
+
+        int count = sut_.drain(consumer, 10);
+
+        assertThat(count, is(3));
+        assertThat(sut_.size(), is(7));
+        assertThat(sut_.poll(), is(3));
+    }
+}
@@ -0,0 +1,72 @@
+package net.ihiroky.niotty.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares {@link net.ihiroky.niotty.util.MPSCLinkedArrayQueue} with
+ * {@link java.util.concurrent.ConcurrentLinkedQueue} as an unbounded multiple producers and
+ * single consumer queue. Each round offers the elements from the producer threads and polls
+ * them in a consumer thread, and then prints the throughput and the heap allocated per element.
+ *
+ * Usage: java net.ihiroky.niotty.util.MPSCQueueBenchmark [producers] [elements per producer] [rounds]
+ */
+public class MPSCQueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+
+    public static void main(String[] args) throws Exception {
+        int producers = (args.length > 0) ? Integer.parseInt(args[0]) : 2;
+        int elements = (args.length > 1) ? Integer.parseInt(args[1]) : 5000000;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+        for (int r = 0; r < rounds; r++) {
+            run("ConcurrentLinkedQueue", new ConcurrentLinkedQueue<Integer>(), producers, elements);
+            run("MPSCLinkedArrayQueue ", new MPSCLinkedArrayQueue<Integer>(), producers, elements);
+        }
+    }
+
+    private static void run(String name, final Queue<Integer> queue, int producers, final int elements)
+            throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    for (int i = 0; i < elements; i++) {
+                        queue.offer(ELEMENT);
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long total = (long) producers * elements;
+        long start = System.nanoTime();
+        startLatch.countDown();
+        for (long polled = 0; polled < total;) {
+            if (queue.poll() != null) {
+                polled++;
+            }
+        }
+        long end = System.nanoTime();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // The allocation is a rough estimate; it is inaccurate if GC runs in the round.
+        System.out.printf("%s %6.2f Mops/s, about %5.1f bytes/op allocated%n",
+                name, total * 1e3 / (end - start), Math.max(usedAfter - usedBefore, 0L) / (double) total);
+    }
+}